@@ -0,0 +1,247 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * {@link PoolingClientConnectionManager} that puts an {@link UpstreamBulkhead} in front of every upstream (target)
+ * host, so a slow or failing upstream cannot hold more connections of the shared pool than its adaptive limit allows,
+ * while requests to healthy upstream hosts are still served. Requests over the limit fail fast with
+ * {@link UpstreamSaturatedException}. To feed the bulkheads with latencies and response codes, this class must be
+ * added as response interceptor to the HTTP clients using it; connections released without a response (transport
+ * errors, timeouts) are counted as failures.
+ *
+ * @since 2.4
+ */
+public class BulkheadClientConnectionManager
+    extends PoolingClientConnectionManager
+    implements HttpResponseInterceptor
+{
+    private final int minLimit;
+
+    private final int maxQueued;
+
+    private final long queueTimeoutMillis;
+
+    private final long slowCallThresholdMillis;
+
+    private final ConcurrentMap<String, UpstreamBulkhead> bulkheads;
+
+    private final ConcurrentMap<HttpRoute, String> routes;
+
+    private final ConcurrentMap<ManagedClientConnection, UpstreamPermit> permits;
+
+    /**
+     * Constructor.
+     *
+     * @param schemeRegistry          the scheme registry.
+     * @param minLimit                the minimum limit of requests in flight per upstream host.
+     * @param maxQueued               the maximum count of requests waiting for a permit per upstream host.
+     * @param queueTimeoutMillis      the maximum time a request waits for a permit.
+     * @param slowCallThresholdMillis the latency (time to response) above which a call is considered slow.
+     */
+    public BulkheadClientConnectionManager( final SchemeRegistry schemeRegistry, final int minLimit,
+                                            final int maxQueued, final long queueTimeoutMillis,
+                                            final long slowCallThresholdMillis )
+    {
+        super( schemeRegistry );
+        this.minLimit = minLimit;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.slowCallThresholdMillis = slowCallThresholdMillis;
+        this.bulkheads = new ConcurrentHashMap<String, UpstreamBulkhead>();
+        this.routes = new ConcurrentHashMap<HttpRoute, String>();
+        // weak keys: compared by identity, and a lost connection does not leak
+        this.permits = new MapMaker().weakKeys().makeMap();
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection( final HttpRoute route, final Object state )
+    {
+        final ClientConnectionRequest request = super.requestConnection( route, state );
+        final UpstreamBulkhead bulkhead = getBulkhead( route );
+        return new ClientConnectionRequest()
+        {
+            @Override
+            public ManagedClientConnection getConnection( final long timeout, final TimeUnit tunit )
+                throws InterruptedException, ConnectionPoolTimeoutException
+            {
+                try
+                {
+                    bulkhead.acquire( queueTimeoutMillis );
+                }
+                catch ( UpstreamSaturatedException e )
+                {
+                    request.abortRequest();
+                    throw e;
+                }
+                boolean leased = false;
+                try
+                {
+                    final ManagedClientConnection conn = request.getConnection( timeout, tunit );
+                    permits.put( conn, new UpstreamPermit( bulkhead ) );
+                    leased = true;
+                    return conn;
+                }
+                finally
+                {
+                    if ( !leased )
+                    {
+                        bulkhead.release();
+                    }
+                }
+            }
+
+            @Override
+            public void abortRequest()
+            {
+                request.abortRequest();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection( final ManagedClientConnection conn, final long keepalive, final TimeUnit tunit )
+    {
+        final UpstreamPermit permit = permits.remove( conn );
+        try
+        {
+            super.releaseConnection( conn, keepalive, tunit );
+        }
+        finally
+        {
+            if ( permit != null )
+            {
+                permit.release();
+            }
+        }
+    }
+
+    @Override
+    public void process( final HttpResponse response, final HttpContext context )
+        throws HttpException, IOException
+    {
+        final Object conn = context.getAttribute( ExecutionContext.HTTP_CONNECTION );
+        if ( conn instanceof ManagedClientConnection )
+        {
+            final UpstreamPermit permit = permits.get( conn );
+            if ( permit != null )
+            {
+                permit.responded( response.getStatusLine().getStatusCode() );
+            }
+        }
+    }
+
+    // ==
+
+    /**
+     * Returns the bulkheads of upstream hosts contacted so far, keyed by host.
+     *
+     * @return map of bulkheads, never {@code null}.
+     */
+    public Map<String, UpstreamBulkhead> getBulkheads()
+    {
+        return Collections.unmodifiableMap( new TreeMap<String, UpstreamBulkhead>( bulkheads ) );
+    }
+
+    /**
+     * Returns the pool statistics of upstream hosts contacted so far, aggregated over all routes leading to the host
+     * (direct or via a proxy), keyed by host.
+     *
+     * @return map of pool statistics, never {@code null}.
+     */
+    public Map<String, PoolStats> getHostStats()
+    {
+        final Map<String, PoolStats> result = new TreeMap<String, PoolStats>();
+        for ( Map.Entry<HttpRoute, String> entry : routes.entrySet() )
+        {
+            final PoolStats routeStats = getStats( entry.getKey() );
+            final PoolStats hostStats = result.get( entry.getValue() );
+            if ( hostStats == null )
+            {
+                result.put( entry.getValue(), routeStats );
+            }
+            else
+            {
+                result.put( entry.getValue(), new PoolStats( hostStats.getLeased() + routeStats.getLeased(),
+                    hostStats.getPending() + routeStats.getPending(),
+                    hostStats.getAvailable() + routeStats.getAvailable(), hostStats.getMax() + routeStats.getMax() ) );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Acquires a permit from the bulkhead of given upstream host, for requests to the host that are not executed over
+     * connections of this manager (like those of an async client), so they count against the same limit. The returned
+     * permit must be released once the request is done.
+     *
+     * @param targetHost the upstream host.
+     * @return the acquired permit, never {@code null}.
+     * @throws UpstreamSaturatedException if no permit was available and queue is full or waiting timed out.
+     * @throws InterruptedException if interrupted while waiting in queue.
+     */
+    public UpstreamPermit acquire( final HttpHost targetHost )
+        throws UpstreamSaturatedException, InterruptedException
+    {
+        final UpstreamBulkhead bulkhead = getBulkhead( new HttpRoute( targetHost ) );
+        bulkhead.acquire( queueTimeoutMillis );
+        return new UpstreamPermit( bulkhead );
+    }
+
+    // ==
+
+    private UpstreamBulkhead getBulkhead( final HttpRoute route )
+    {
+        final String host = route.getTargetHost().toURI();
+        UpstreamBulkhead bulkhead = bulkheads.get( host );
+        if ( bulkhead == null )
+        {
+            final int maxLimit = Math.max( 1, getMaxPerRoute( route ) );
+            bulkhead =
+                new UpstreamBulkhead( host, Math.min( minLimit, maxLimit ), maxLimit, maxQueued,
+                    slowCallThresholdMillis );
+            final UpstreamBulkhead existing = bulkheads.putIfAbsent( host, bulkhead );
+            if ( existing != null )
+            {
+                bulkhead = existing;
+            }
+        }
+        // after bulkhead, as host stats expect every host to have one
+        routes.putIfAbsent( route, host );
+        return bulkhead;
+    }
+}
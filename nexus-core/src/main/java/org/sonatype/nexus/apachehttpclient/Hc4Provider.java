@@ -12,9 +12,12 @@
  */
 package org.sonatype.nexus.apachehttpclient;
 
+import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.protocol.HttpContext;
 import org.sonatype.nexus.configuration.application.ApplicationConfiguration;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
@@ -69,4 +72,33 @@ public interface Hc4Provider
      * @return HttpClient4x pre-configured instance, that uses passed {@link RemoteStorageContext} to be configured.
      */
     HttpClient createHttpClient( RemoteStorageContext context );
+
+    /**
+     * Advanced. Creates a new instance of Apache HttpAsyncClient4x, configured with the connection pool and keep alive
+     * settings of this provider. Unlike clients created by {@link #createHttpClient(RemoteStorageContext)}, the created
+     * instance has its own I/O reactor and connection pool, hence it is not started, and the caller must start and
+     * shut it down. Settings of {@link RemoteStorageContext} (timeouts, authentication and HTTP proxy) are to be
+     * applied per request by the caller. Requests should acquire a permit using
+     * {@link #acquireUpstreamPermit(HttpHost)}, to obey same per upstream host limits as requests executed by clients
+     * created by this provider.
+     * 
+     * @return HttpAsyncClient4x pre-configured instance, not started.
+     * @throws IOReactorException if I/O reactor of the client could not be created.
+     * @since 2.4
+     */
+    HttpAsyncClient createHttpAsyncClient()
+        throws IOReactorException;
+
+    /**
+     * Advanced. Acquires a permit for a request to given upstream host, for requests not executed by clients created by
+     * this provider (see {@link #createHttpAsyncClient()}). The permit must be released once the request is done.
+     * 
+     * @param targetHost the upstream host to execute request against.
+     * @return the acquired permit, never {@code null}.
+     * @throws UpstreamSaturatedException if upstream host is saturated, see {@link BulkheadClientConnectionManager}.
+     * @throws InterruptedException if interrupted while waiting for a permit.
+     * @since 2.4
+     */
+    UpstreamPermit acquireUpstreamPermit( HttpHost targetHost )
+        throws UpstreamSaturatedException, InterruptedException;
 }
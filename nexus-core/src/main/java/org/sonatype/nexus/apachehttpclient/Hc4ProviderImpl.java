@@ -18,6 +18,8 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.apache.http.HttpHost;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.params.ClientPNames;
 import org.apache.http.conn.ClientConnectionOperator;
 import org.apache.http.conn.scheme.PlainSocketFactory;
@@ -27,12 +29,19 @@ import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.NoConnectionReuseStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingClientAsyncConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
 import org.sonatype.nexus.configuration.application.ApplicationConfiguration;
 import org.sonatype.nexus.configuration.application.GlobalRemoteConnectionSettings;
 import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
 import org.sonatype.nexus.proxy.utils.UserAgentBuilder;
+import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 import com.google.common.base.Preconditions;
@@ -97,6 +106,72 @@ public class Hc4ProviderImpl
      */
     private static final long CONNECTION_POOL_TIMEOUT_DEFAULT = TimeUnit.SECONDS.toMillis( 30 );
 
+    /**
+     * Key for enabling per upstream host bulkheads (see {@link BulkheadClientConnectionManager}). Value is boolean.
+     */
+    private static final String BULKHEAD_ENABLED_KEY = "nexus.apacheHttpClient4x.bulkheadEnabled";
+
+    /**
+     * Default bulkhead enabled: true.
+     */
+    private static final boolean BULKHEAD_ENABLED_DEFAULT = true;
+
+    /**
+     * Key for customizing the minimum count of requests in flight per upstream host, to which the adaptive limit
+     * might decrease. The maximum (and initial) limit is the pool size per route. Value should be positive integer.
+     */
+    private static final String BULKHEAD_MIN_LIMIT_KEY = "nexus.apacheHttpClient4x.bulkheadMinLimit";
+
+    /**
+     * Default bulkhead minimum limit: 2.
+     */
+    private static final int BULKHEAD_MIN_LIMIT_DEFAULT = 2;
+
+    /**
+     * Key for customizing the count of requests per upstream host that might wait when the host has no more requests
+     * in flight allowed. Value should be integer equal to 0 or greater, 0 means requests over limit fail immediately.
+     */
+    private static final String BULKHEAD_MAX_QUEUED_KEY = "nexus.apacheHttpClient4x.bulkheadMaxQueued";
+
+    /**
+     * Default bulkhead maximum queued: 20.
+     */
+    private static final int BULKHEAD_MAX_QUEUED_DEFAULT = 20;
+
+    /**
+     * Key for customizing how long a queued request waits for upstream host before failing as saturated. Value is
+     * milliseconds.
+     */
+    private static final String BULKHEAD_QUEUE_TIMEOUT_KEY = "nexus.apacheHttpClient4x.bulkheadQueueTimeout";
+
+    /**
+     * Default bulkhead queue timeout: 2 seconds.
+     */
+    private static final long BULKHEAD_QUEUE_TIMEOUT_DEFAULT = TimeUnit.SECONDS.toMillis( 2 );
+
+    /**
+     * Key for customizing the time to response above which the call is considered slow, and the limit of upstream
+     * host is decreased. Value is milliseconds.
+     */
+    private static final String BULKHEAD_SLOW_CALL_THRESHOLD_KEY =
+        "nexus.apacheHttpClient4x.bulkheadSlowCallThreshold";
+
+    /**
+     * Default bulkhead slow call threshold: 10 seconds.
+     */
+    private static final long BULKHEAD_SLOW_CALL_THRESHOLD_DEFAULT = TimeUnit.SECONDS.toMillis( 10 );
+
+    /**
+     * Key for customizing the count of I/O reactor threads of async clients (see {@link #createHttpAsyncClient()}).
+     * Value should be a positive integer.
+     */
+    private static final String ASYNC_IO_THREAD_COUNT_KEY = "nexus.apacheHttpClient4x.asyncIoThreadCount";
+
+    /**
+     * Default async I/O thread count: count of available processors.
+     */
+    private static final int ASYNC_IO_THREAD_COUNT_DEFAULT = Runtime.getRuntime().availableProcessors();
+
     // ==
 
     /**
@@ -149,9 +224,9 @@ public class Hc4ProviderImpl
         this.eventBus.register( this );
         this.jmxInstaller.register( sharedConnectionManager );
         getLogger().info(
-            "{} started (connectionPoolMaxSize {}, connectionPoolSize {}, connectionPoolIdleTime {} ms, connectionPoolTimeout {} ms, keepAliveMaxDuration {} ms)",
+            "{} started (connectionPoolMaxSize {}, connectionPoolSize {}, connectionPoolIdleTime {} ms, connectionPoolTimeout {} ms, keepAliveMaxDuration {} ms, bulkheadEnabled {})",
             getClass().getSimpleName(), getConnectionPoolMaxSize(), getConnectionPoolSize(),
-            getConnectionPoolIdleTime(), getConnectionPoolTimeout(), getKeepAliveMaxDuration() );
+            getConnectionPoolIdleTime(), getConnectionPoolTimeout(), getKeepAliveMaxDuration(), isBulkheadEnabled() );
     }
 
     // configuration
@@ -196,6 +271,73 @@ public class Hc4ProviderImpl
         return SystemPropertiesHelper.getLong( CONNECTION_POOL_TIMEOUT_KEY, CONNECTION_POOL_TIMEOUT_DEFAULT );
     }
 
+    /**
+     * Returns {@code true} if per upstream host bulkheads are enabled.
+     *
+     * @return {@code true} if bulkheads are enabled.
+     * @since 2.4
+     */
+    protected boolean isBulkheadEnabled()
+    {
+        return SystemPropertiesHelper.getBoolean( BULKHEAD_ENABLED_KEY, BULKHEAD_ENABLED_DEFAULT );
+    }
+
+    /**
+     * Returns the minimum limit of requests in flight per upstream host.
+     *
+     * @return bulkhead minimum limit.
+     * @since 2.4
+     */
+    protected int getBulkheadMinLimit()
+    {
+        return SystemPropertiesHelper.getInteger( BULKHEAD_MIN_LIMIT_KEY, BULKHEAD_MIN_LIMIT_DEFAULT );
+    }
+
+    /**
+     * Returns the maximum count of requests queued per upstream host.
+     *
+     * @return bulkhead maximum queued count.
+     * @since 2.4
+     */
+    protected int getBulkheadMaxQueued()
+    {
+        return SystemPropertiesHelper.getInteger( BULKHEAD_MAX_QUEUED_KEY, BULKHEAD_MAX_QUEUED_DEFAULT );
+    }
+
+    /**
+     * Returns the bulkhead queue timeout in milliseconds.
+     *
+     * @return bulkhead queue timeout in milliseconds.
+     * @since 2.4
+     */
+    protected long getBulkheadQueueTimeout()
+    {
+        return SystemPropertiesHelper.getLong( BULKHEAD_QUEUE_TIMEOUT_KEY, BULKHEAD_QUEUE_TIMEOUT_DEFAULT );
+    }
+
+    /**
+     * Returns the bulkhead slow call threshold in milliseconds.
+     *
+     * @return bulkhead slow call threshold in milliseconds.
+     * @since 2.4
+     */
+    protected long getBulkheadSlowCallThreshold()
+    {
+        return SystemPropertiesHelper.getLong( BULKHEAD_SLOW_CALL_THRESHOLD_KEY,
+            BULKHEAD_SLOW_CALL_THRESHOLD_DEFAULT );
+    }
+
+    /**
+     * Returns the count of I/O reactor threads of async clients.
+     *
+     * @return async I/O thread count.
+     * @since 2.4
+     */
+    protected int getAsyncIoThreadCount()
+    {
+        return SystemPropertiesHelper.getInteger( ASYNC_IO_THREAD_COUNT_KEY, ASYNC_IO_THREAD_COUNT_DEFAULT );
+    }
+
     // ==
 
     /**
@@ -254,7 +396,47 @@ public class Hc4ProviderImpl
     @Override
     public DefaultHttpClient createHttpClient( final RemoteStorageContext context )
     {
-        return createHttpClient( context, sharedConnectionManager );
+        final DefaultHttpClient result = createHttpClient( context, sharedConnectionManager );
+        if ( sharedConnectionManager instanceof BulkheadClientConnectionManager )
+        {
+            // feed the bulkheads with response codes and latencies
+            result.addResponseInterceptor( (BulkheadClientConnectionManager) sharedConnectionManager );
+        }
+        return result;
+    }
+
+    @Override
+    public DefaultHttpAsyncClient createHttpAsyncClient()
+        throws IOReactorException
+    {
+        final IOReactorConfig config = new IOReactorConfig();
+        config.setIoThreadCount( getAsyncIoThreadCount() );
+        final DefaultConnectingIOReactor ioReactor =
+            new DefaultConnectingIOReactor( config, new NexusThreadFactory( "hc4async", "HC4 async I/O reactor",
+                Thread.NORM_PRIORITY, true ) );
+        final PoolingClientAsyncConnectionManager connManager = new PoolingClientAsyncConnectionManager( ioReactor );
+        // async pool cannot be disabled, is used with at least one connection
+        final int maxConnectionCount = Math.max( 1, getConnectionPoolMaxSize() );
+        connManager.setMaxTotal( maxConnectionCount );
+        connManager.setDefaultMaxPerRoute( Math.max( 1, Math.min( getConnectionPoolSize(), maxConnectionCount ) ) );
+
+        final DefaultHttpAsyncClient result = new DefaultHttpAsyncClient( connManager );
+        result.getParams().setParameter( HttpProtocolParams.PROTOCOL_VERSION, HttpVersion.HTTP_1_1 );
+        result.getParams().setBooleanParameter( HttpProtocolParams.USE_EXPECT_CONTINUE, false );
+        result.getParams().setLongParameter( ClientPNames.CONN_MANAGER_TIMEOUT, getConnectionPoolTimeout() );
+        result.setKeepAliveStrategy( new NexusConnectionKeepAliveStrategy( getKeepAliveMaxDuration() ) );
+        return result;
+    }
+
+    @Override
+    public UpstreamPermit acquireUpstreamPermit( final HttpHost targetHost )
+        throws UpstreamSaturatedException, InterruptedException
+    {
+        if ( sharedConnectionManager instanceof BulkheadClientConnectionManager )
+        {
+            return ( (BulkheadClientConnectionManager) sharedConnectionManager ).acquire( targetHost );
+        }
+        return UpstreamPermit.UNLIMITED;
     }
 
     // ==
@@ -275,14 +457,32 @@ public class Hc4ProviderImpl
         schemeRegistry.register( new Scheme( "http", 80, PlainSocketFactory.getSocketFactory() ) );
         schemeRegistry.register( new Scheme( "https", 443, SSLSocketFactory.getSocketFactory() ) );
 
-        final PoolingClientConnectionManager connManager = new PoolingClientConnectionManager( schemeRegistry )
+        final PoolingClientConnectionManager connManager;
+        if ( isBulkheadEnabled() )
         {
-            @Override
-            protected ClientConnectionOperator createConnectionOperator( final SchemeRegistry defaultSchemeRegistry )
+            connManager = new BulkheadClientConnectionManager( schemeRegistry, getBulkheadMinLimit(),
+                getBulkheadMaxQueued(), getBulkheadQueueTimeout(), getBulkheadSlowCallThreshold() )
             {
-                return new Hc4ClientConnectionOperator( defaultSchemeRegistry, selectors );
-            }
-        };
+                @Override
+                protected ClientConnectionOperator createConnectionOperator(
+                    final SchemeRegistry defaultSchemeRegistry )
+                {
+                    return new Hc4ClientConnectionOperator( defaultSchemeRegistry, selectors );
+                }
+            };
+        }
+        else
+        {
+            connManager = new PoolingClientConnectionManager( schemeRegistry )
+            {
+                @Override
+                protected ClientConnectionOperator createConnectionOperator(
+                    final SchemeRegistry defaultSchemeRegistry )
+                {
+                    return new Hc4ClientConnectionOperator( defaultSchemeRegistry, selectors );
+                }
+            };
+        }
 
         final int maxConnectionCount = getConnectionPoolMaxSize();
         final int perRouteConnectionCount = Math.min( getConnectionPoolSize(), maxConnectionCount );
@@ -34,6 +34,14 @@ public interface PoolingClientConnectionManagerMBean
 
     int getMax();
 
+    /**
+     * Returns per upstream host statistics: pool statistics and, if bulkheads are enabled, the state of the bulkhead
+     * of the host. One line per host.
+     *
+     * @since 2.4
+     */
+    String[] getHostStats();
+
     void closeIdleConnections( long idleTimeoutInMillis );
 
     void closeExpiredConnections();
@@ -12,11 +12,15 @@
  */
 package org.sonatype.nexus.apachehttpclient;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.management.StandardMBean;
 
 import com.google.common.base.Preconditions;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 
 /**
  * Default {@link PoolingClientConnectionManagerMBean} implementation.
@@ -73,6 +77,29 @@ class PoolingClientConnectionManagerMBeanImpl
         return connMgr.getTotalStats().getMax();
     }
 
+    @Override
+    public String[] getHostStats()
+    {
+        final List<String> result = new ArrayList<String>();
+        if ( connMgr instanceof BulkheadClientConnectionManager )
+        {
+            final BulkheadClientConnectionManager bulkheadConnMgr = (BulkheadClientConnectionManager) connMgr;
+            final Map<String, UpstreamBulkhead> bulkheads = bulkheadConnMgr.getBulkheads();
+            for ( Map.Entry<String, PoolStats> entry : bulkheadConnMgr.getHostStats().entrySet() )
+            {
+                final PoolStats stats = entry.getValue();
+                final UpstreamBulkhead bulkhead = bulkheads.get( entry.getKey() );
+                result.add( String.format(
+                    "%s leased=%s pending=%s available=%s max=%s limit=%s inFlight=%s queued=%s success=%s "
+                        + "failure=%s slow=%s rejected=%s", entry.getKey(), stats.getLeased(), stats.getPending(),
+                    stats.getAvailable(), stats.getMax(), bulkhead.getLimit(), bulkhead.getInFlight(),
+                    bulkhead.getQueued(), bulkhead.getSuccessCount(), bulkhead.getFailureCount(),
+                    bulkhead.getSlowCount(), bulkhead.getRejectedCount() ) );
+            }
+        }
+        return result.toArray( new String[result.size()] );
+    }
+
     @Override
     public void closeIdleConnections( final long idleTimeoutInMillis )
     {
@@ -0,0 +1,253 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Bulkhead of a single upstream host: limits the count of requests in flight against the host, and adapts that limit
+ * to observed outcomes using AIMD (additive increase, multiplicative decrease). Every successful and fast enough
+ * request increases the limit by {@code 1/limit} (so roughly by one per "limit" count of requests), while failures and
+ * slow calls halve it, but at most once per second, as one congestion episode usually fails several requests at once.
+ * The limit always stays between the configured minimum and maximum. Requests over the limit wait in a bounded queue
+ * for a bounded time, and are rejected with {@link UpstreamSaturatedException} when either of these is exhausted.
+ *
+ * @since 2.4
+ */
+public class UpstreamBulkhead
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( UpstreamBulkhead.class );
+
+    /**
+     * The ratio applied to limit on failure or slow call.
+     */
+    private static final double BACKOFF_RATIO = 0.5d;
+
+    /**
+     * The minimal period between two subsequent decreases of the limit.
+     */
+    private static final long BACKOFF_INTERVAL_MILLIS = 1000L;
+
+    private final String host;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int maxQueued;
+
+    private final long slowCallThresholdMillis;
+
+    // guarded by this
+
+    private double limit;
+
+    private int inFlight;
+
+    private int queued;
+
+    private long lastBackoff;
+
+    private long successCount;
+
+    private long failureCount;
+
+    private long slowCount;
+
+    private long rejectedCount;
+
+    /**
+     * Constructor.
+     *
+     * @param host                    the upstream host this bulkhead guards.
+     * @param minLimit                the minimum limit of requests in flight, must be positive.
+     * @param maxLimit                the maximum (and initial) limit of requests in flight.
+     * @param maxQueued               the maximum count of requests waiting for a permit, {@code 0} disables queueing.
+     * @param slowCallThresholdMillis the latency (time to response) above which a call is considered slow.
+     */
+    public UpstreamBulkhead( final String host, final int minLimit, final int maxLimit, final int maxQueued,
+                             final long slowCallThresholdMillis )
+    {
+        Preconditions.checkArgument( minLimit > 0, "Minimum limit must be positive!" );
+        Preconditions.checkArgument( maxLimit >= minLimit, "Maximum limit must not be less than minimum limit!" );
+        Preconditions.checkArgument( maxQueued >= 0, "Maximum queued count cannot be negative!" );
+        this.host = Preconditions.checkNotNull( host );
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+        this.slowCallThresholdMillis = slowCallThresholdMillis;
+        this.limit = maxLimit;
+    }
+
+    /**
+     * Acquires a permit to execute a request against this upstream host, waiting in queue if needed. Every successful
+     * invocation of this method must be followed by one invocation of {@link #release()}.
+     *
+     * @param queueTimeoutMillis the maximum time to wait for a permit.
+     * @throws UpstreamSaturatedException if no permit was available and queue is full or waiting timed out.
+     * @throws InterruptedException if interrupted while waiting in queue.
+     */
+    public synchronized void acquire( final long queueTimeoutMillis )
+        throws UpstreamSaturatedException, InterruptedException
+    {
+        if ( inFlight < getLimit() )
+        {
+            inFlight++;
+            return;
+        }
+        if ( queued >= maxQueued || queueTimeoutMillis <= 0 )
+        {
+            throw saturated();
+        }
+        queued++;
+        try
+        {
+            final long deadline = System.currentTimeMillis() + queueTimeoutMillis;
+            long remaining = queueTimeoutMillis;
+            while ( inFlight >= getLimit() )
+            {
+                if ( remaining <= 0 )
+                {
+                    throw saturated();
+                }
+                wait( remaining );
+                remaining = deadline - System.currentTimeMillis();
+            }
+            inFlight++;
+        }
+        finally
+        {
+            queued--;
+        }
+    }
+
+    /**
+     * Releases a permit acquired by {@link #acquire(long)}.
+     */
+    public synchronized void release()
+    {
+        if ( inFlight > 0 )
+        {
+            inFlight--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Records a request that got a (non-error) response from upstream host.
+     *
+     * @param latencyMillis the time it took to get the response.
+     */
+    public synchronized void onSuccess( final long latencyMillis )
+    {
+        if ( latencyMillis > slowCallThresholdMillis )
+        {
+            slowCount++;
+            backoff( "slow call of " + latencyMillis + " ms" );
+        }
+        else
+        {
+            successCount++;
+            if ( limit < maxLimit )
+            {
+                final int oldLimit = getLimit();
+                limit = Math.min( maxLimit, limit + 1d / limit );
+                if ( getLimit() > oldLimit )
+                {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a request that failed: transport error or error response from upstream host.
+     */
+    public synchronized void onFailure()
+    {
+        failureCount++;
+        backoff( "failure" );
+    }
+
+    // ==
+
+    public String getHost()
+    {
+        return host;
+    }
+
+    public synchronized int getLimit()
+    {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight()
+    {
+        return inFlight;
+    }
+
+    public synchronized int getQueued()
+    {
+        return queued;
+    }
+
+    public synchronized long getSuccessCount()
+    {
+        return successCount;
+    }
+
+    public synchronized long getFailureCount()
+    {
+        return failureCount;
+    }
+
+    public synchronized long getSlowCount()
+    {
+        return slowCount;
+    }
+
+    public synchronized long getRejectedCount()
+    {
+        return rejectedCount;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return host + "{limit=" + getLimit() + ", inFlight=" + inFlight + ", queued=" + queued + ", success="
+            + successCount + ", failure=" + failureCount + ", slow=" + slowCount + ", rejected=" + rejectedCount + "}";
+    }
+
+    // ==
+
+    private void backoff( final String reason )
+    {
+        final long now = System.currentTimeMillis();
+        if ( now - lastBackoff >= BACKOFF_INTERVAL_MILLIS && limit > minLimit )
+        {
+            limit = Math.max( minLimit, limit * BACKOFF_RATIO );
+            lastBackoff = now;
+            LOGGER.debug( "Upstream {} limit decreased to {} due to {}", host, getLimit(), reason );
+        }
+    }
+
+    private UpstreamSaturatedException saturated()
+    {
+        rejectedCount++;
+        return new UpstreamSaturatedException( host, "Upstream " + host + " saturated: " + inFlight
+            + " requests in flight (limit " + getLimit() + "), " + queued + " queued" );
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * A permit acquired from an {@link UpstreamBulkhead}, tracking the outcome of the request executed with it. Once the
+ * request is done, the permit must be released, what feeds the bulkhead with the outcome and frees the permit.
+ * Releasing the permit multiple times is safe.
+ *
+ * @since 2.4
+ */
+public class UpstreamPermit
+{
+    /**
+     * Permit of requests not guarded by any bulkhead (bulkheads are disabled).
+     */
+    public static final UpstreamPermit UNLIMITED = new UpstreamPermit( null );
+
+    private final UpstreamBulkhead bulkhead;
+
+    private final long started;
+
+    private final AtomicBoolean released;
+
+    private volatile int statusCode;
+
+    private volatile long latency;
+
+    UpstreamPermit( final UpstreamBulkhead bulkhead )
+    {
+        this.bulkhead = bulkhead;
+        this.started = System.currentTimeMillis();
+        this.released = new AtomicBoolean( bulkhead == null );
+    }
+
+    /**
+     * Records the response of upstream host, to be invoked once the response head was received.
+     *
+     * @param statusCode the response status code.
+     */
+    public void responded( final int statusCode )
+    {
+        if ( bulkhead != null )
+        {
+            this.latency = System.currentTimeMillis() - started;
+            this.statusCode = statusCode;
+        }
+    }
+
+    /**
+     * Releases this permit. Requests without response recorded count as failures.
+     */
+    public void release()
+    {
+        if ( !released.compareAndSet( false, true ) )
+        {
+            return;
+        }
+        try
+        {
+            // no response at all, server errors and throttling are all signs of a struggling upstream
+            if ( statusCode == 0 || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR || statusCode == 429 )
+            {
+                bulkhead.onFailure();
+            }
+            else
+            {
+                bulkhead.onSuccess( latency );
+            }
+        }
+        finally
+        {
+            bulkhead.release();
+        }
+    }
+}
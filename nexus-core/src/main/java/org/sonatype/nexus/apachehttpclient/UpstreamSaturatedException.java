@@ -0,0 +1,46 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+/**
+ * Thrown when a request to an upstream host is rejected by its {@link UpstreamBulkhead}, as the host already has as
+ * many requests in flight as it is currently allowed to, and the request could not be queued or timed out while
+ * queued. This is a fail-fast outcome: the request never touched the shared connection pool.
+ *
+ * @since 2.4
+ */
+public class UpstreamSaturatedException
+    extends ConnectionPoolTimeoutException
+{
+    private static final long serialVersionUID = 2891405133624380528L;
+
+    private final String host;
+
+    public UpstreamSaturatedException( final String host, final String message )
+    {
+        super( message );
+        this.host = host;
+    }
+
+    /**
+     * Returns the upstream host that is saturated.
+     *
+     * @return the host, in form of {@code scheme://host:port}.
+     */
+    public String getHost()
+    {
+        return host;
+    }
+}
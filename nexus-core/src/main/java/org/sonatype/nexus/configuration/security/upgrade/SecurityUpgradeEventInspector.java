@@ -23,6 +23,7 @@ import org.sonatype.nexus.ApplicationStatusSource;
 import org.sonatype.nexus.SystemStatus;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.NexusStartedEvent;
 import org.sonatype.plexus.appevents.Event;
 import org.sonatype.security.configuration.SecurityConfigurationManager;
@@ -33,6 +34,7 @@ import org.sonatype.security.model.source.SecurityModelConfigurationSource;
 import org.sonatype.security.model.upgrade.SecurityDataUpgrader;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
+@HandlesEvents( NexusStartedEvent.class )
 @Component( role = EventInspector.class, hint = "SecurityUpgradeEventInspector" )
 public class SecurityUpgradeEventInspector
     extends AbstractEventInspector
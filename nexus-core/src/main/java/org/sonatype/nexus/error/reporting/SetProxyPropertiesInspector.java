@@ -25,6 +25,7 @@ import org.sonatype.nexus.configuration.application.GlobalHttpProxySettings;
 import org.sonatype.nexus.configuration.application.events.GlobalHttpProxySettingsChangedEvent;
 import org.sonatype.nexus.logging.AbstractLoggingComponent;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.NexusStartedEvent;
 import org.sonatype.nexus.proxy.repository.RemoteAuthenticationSettings;
 import org.sonatype.nexus.proxy.repository.UsernamePasswordRemoteAuthenticationSettings;
@@ -34,6 +35,7 @@ import org.sonatype.plexus.appevents.Event;
  * This inspector sets system properties according to the Nexus proxy settings.
  * Only username/password authentication is supported.
  */
+@HandlesEvents( { GlobalHttpProxySettingsChangedEvent.class, NexusStartedEvent.class } )
 @Named
 @Singleton
 public class SetProxyPropertiesInspector
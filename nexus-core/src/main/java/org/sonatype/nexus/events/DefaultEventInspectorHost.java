@@ -14,23 +14,34 @@ package org.sonatype.nexus.events;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.HashSet;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
-import org.slf4j.Logger;
+import org.sonatype.nexus.events.EventInspectorMailbox.OverflowPolicy;
 import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.plugins.events.PluginActivatedEvent;
+import org.sonatype.nexus.plugins.events.PluginDeactivatedEvent;
 import org.sonatype.nexus.proxy.events.AsynchronousEventInspector;
+import org.sonatype.nexus.proxy.events.AsynchronousEventInspectorWrapper;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.plexus.appevents.Event;
@@ -41,11 +52,19 @@ import com.google.common.eventbus.Subscribe;
 
 /**
  * A default implementation of EventInspectorHost, a component simply collecting all EventInspectors and re-emitting
- * events towards them in they wants to receive it. For ones implementing {@link AsynchronousEventInspector} a cached
- * thread pool is used to execute them in a separate thread. In case of pool saturation, the caller thread will execute
- * the async inspector (as if it would be non-async one). Host cannot assume and does not know which inspector is
- * "less important" (could be dropped without having data loss in case of excessive load for example), hence it applies
- * same rules to all inspectors.
+ * events towards them in they wants to receive it. For ones implementing {@link AsynchronousEventInspector} events are
+ * put into a bounded mailbox (one per inspector), drained by a small pool of worker threads, so each async inspector
+ * receives events in order they were fired, one at a time (or in batches, see
+ * {@link org.sonatype.nexus.proxy.events.BatchingEventInspector}). What happens when a mailbox is full is driven by
+ * the {@link OverflowPolicy}, that is {@link OverflowPolicy#BLOCK} by default, and might be set globally or per
+ * inspector (using the inspector name as suffix) using system properties. Host cannot assume and does not know which
+ * inspector is "less important" (could be dropped without having data loss in case of excessive load for example),
+ * hence it applies same rules to all inspectors unless told otherwise.
+ * <p>
+ * To not iterate over (and ask) all the inspectors for every event fired, host keeps a dispatch table, mapping event
+ * classes to the sync and async inspectors interested in them (see {@link HandlesEvents}). The table is built lazily
+ * and dropped when set of inspectors might change (plugin activated or deactivated). Events having no interested
+ * inspectors are simply not processed.
  * 
  * @author cstamas
  */
@@ -56,22 +75,74 @@ public class DefaultEventInspectorHost
     extends AbstractLoggingComponent
     implements EventInspectorHost, Disposable
 {
-    private final int HOST_THREAD_POOL_SIZE = SystemPropertiesHelper.getInteger(
-        "org.sonatype.nexus.events.DefaultEventInspectorHost.poolSize", 500 );
+    private static final String JMX_DOMAIN = "org.sonatype.nexus.events";
+
+    private static final String PROPERTY_PREFIX = "org.sonatype.nexus.events.DefaultEventInspectorHost.";
+
+    private final int MAX_BATCH_SIZE = SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "maxBatchSize", 100 );
+
+    private final int mailboxSize;
+
+    private final OverflowPolicy overflowPolicy;
 
     private final ThreadPoolExecutor hostThreadPool;
 
     private final Map<String, EventInspector> eventInspectors;
 
+    private final ConcurrentMap<EventInspector, EventInspectorMailbox> mailboxes;
+
+    private volatile DispatchTable dispatchTable;
+
+    private ObjectName jmxName;
+
     @Inject
-    public DefaultEventInspectorHost(final Map<String,EventInspector> eventInspectors)
+    public DefaultEventInspectorHost( final Map<String, EventInspector> eventInspectors )
+    {
+        this( eventInspectors, SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "workerCount",
+            Math.max( 2, Runtime.getRuntime().availableProcessors() ) ), SystemPropertiesHelper.getInteger(
+            PROPERTY_PREFIX + "mailboxSize", 10000 ), OverflowPolicy.valueOf( SystemPropertiesHelper.getString(
+            PROPERTY_PREFIX + "overflowPolicy", OverflowPolicy.BLOCK.name() ).toUpperCase() ) );
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param eventInspectors the inspectors.
+     * @param workerCount the count of threads delivering events to async inspectors.
+     * @param mailboxSize the capacity of one async inspector mailbox.
+     * @param overflowPolicy the default policy applied on full mailbox.
+     * @since 2.4
+     */
+    public DefaultEventInspectorHost( final Map<String, EventInspector> eventInspectors, final int workerCount,
+                                      final int mailboxSize, final OverflowPolicy overflowPolicy )
     {
         this.eventInspectors = checkNotNull( eventInspectors );
+        this.mailboxSize = mailboxSize;
+        this.overflowPolicy = checkNotNull( overflowPolicy );
+        this.mailboxes = new ConcurrentHashMap<EventInspector, EventInspectorMailbox>();
 
-        // direct hand-off used! Host pool will use caller thread to execute async inspectors when pool full!
+        // a mailbox is scheduled at most once at a time, so the queue is bounded by count of async inspectors
         this.hostThreadPool =
-            new ThreadPoolExecutor( 0, HOST_THREAD_POOL_SIZE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
-                new NexusThreadFactory( "nxevthost", "Event Inspector Host" ), new CallerRunsPolicy() );
+            new ThreadPoolExecutor( workerCount, workerCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NexusThreadFactory( "nxevthost", "Event Inspector Host" ) );
+        this.hostThreadPool.allowCoreThreadTimeOut( true );
+
+        try
+        {
+            jmxName = ObjectName.getInstance( JMX_DOMAIN, "name", EventInspectorHost.class.getSimpleName() );
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if ( server.isRegistered( jmxName ) )
+            {
+                getLogger().warn( "MBean already registered; replacing: {}", jmxName );
+                server.unregisterMBean( jmxName );
+            }
+            server.registerMBean( new DefaultEventInspectorHostMBean( this ), jmxName );
+        }
+        catch ( Exception e )
+        {
+            jmxName = null;
+            getLogger().warn( "Problem registering MBean for: " + getClass().getName(), e );
+        }
     }
 
     // == Disposable iface, to manage ExecutorService lifecycle
@@ -79,6 +150,22 @@ public class DefaultEventInspectorHost
     public void dispose()
     {
         shutdown();
+
+        if ( null != jmxName )
+        {
+            try
+            {
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if ( server.isRegistered( jmxName ) )
+                {
+                    server.unregisterMBean( jmxName );
+                }
+            }
+            catch ( final Exception e )
+            {
+                getLogger().warn( "Problem unregistering MBean for: " + getClass().getName(), e );
+            }
+        }
     }
 
     // == EventInspectorHost iface
@@ -86,22 +173,43 @@ public class DefaultEventInspectorHost
     public void shutdown()
     {
         // we need clean shutdown, wait all background event inspectors to finish to have consistent state
+        // events offered after this point are delivered by the caller thread
         hostThreadPool.shutdown();
     }
 
     public boolean isCalmPeriod()
     {
         // "calm period" is when we have no queued nor active threads
-        return hostThreadPool.getQueue().isEmpty() && hostThreadPool.getActiveCount() == 0;
+        if ( !hostThreadPool.getQueue().isEmpty() || hostThreadPool.getActiveCount() > 0 )
+        {
+            return false;
+        }
+        for ( EventInspectorMailbox mailbox : mailboxes.values() )
+        {
+            if ( mailbox.getDepth() > 0 )
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     @AllowConcurrentEvents
     @Subscribe
     public void onEvent( final Event<?> evt )
     {
+        if ( evt instanceof PluginActivatedEvent || evt instanceof PluginDeactivatedEvent )
+        {
+            // set of inspectors might have been changed
+            invalidateDispatchTable();
+        }
         try
         {
-            processEvent( evt, getEventInspectors() );
+            final Dispatch dispatch = getDispatchTable().getDispatch( evt.getClass() );
+            if ( !dispatch.isEmpty() )
+            {
+                processEvent( evt, dispatch );
+            }
         }
         catch ( IllegalStateException e )
         {
@@ -110,86 +218,245 @@ public class DefaultEventInspectorHost
         }
     }
 
+    // == JMX
+
+    int getWorkerCount()
+    {
+        return hostThreadPool.getMaximumPoolSize();
+    }
+
+    int getActiveWorkerCount()
+    {
+        return hostThreadPool.getActiveCount();
+    }
+
+    EventInspectorMailbox[] getMailboxes()
+    {
+        return mailboxes.values().toArray( new EventInspectorMailbox[0] );
+    }
+
     // ==
 
     protected Set<EventInspector> getEventInspectors()
     {
-        return new HashSet<EventInspector>( eventInspectors.values() );
+        return new LinkedHashSet<EventInspector>( eventInspectors.values() );
     }
 
-    protected void processEvent( final Event<?> evt, final Set<EventInspector> inspectors )
+    /**
+     * Drops the cached dispatch table, it will be rebuilt on next event from current set of inspectors.
+     * 
+     * @since 2.4
+     */
+    protected synchronized void invalidateDispatchTable()
     {
-        // 1st pass: sync ones (without handler)
-        for ( EventInspector ei : inspectors )
+        dispatchTable = null;
+    }
+
+    protected DispatchTable getDispatchTable()
+    {
+        DispatchTable table = dispatchTable;
+        if ( table == null )
         {
-            if ( !( ei instanceof AsynchronousEventInspector ) )
+            synchronized ( this )
             {
-                try
+                table = dispatchTable;
+                if ( table == null )
                 {
-                    if ( ei.accepts( evt ) )
-                    {
-                        ei.inspect( evt );
-                    }
+                    // if this throws, nothing is cached and next event will retry
+                    table = new DispatchTable( getEventInspectors() );
+                    // mailboxes of inspectors that are gone
+                    mailboxes.keySet().retainAll( table.getEventInspectors() );
+                    dispatchTable = table;
                 }
-                catch ( Exception e )
+            }
+        }
+        return table;
+    }
+
+    protected void processEvent( final Event<?> evt, final Dispatch dispatch )
+    {
+        // 1st pass: sync ones (without handler)
+        for ( EventInspector ei : dispatch.getSyncInspectors() )
+        {
+            try
+            {
+                if ( ei.accepts( evt ) )
                 {
-                    getLogger().warn( "EventInspector implementation={} had problem accepting an event={}",
-                        ei.getClass().getName(), evt.getClass(), e);
+                    ei.inspect( evt );
                 }
             }
+            catch ( Exception e )
+            {
+                getLogger().warn( "EventInspector implementation={} had problem accepting an event={}",
+                    ei.getClass().getName(), evt.getClass(), e );
+            }
         }
 
         // 2nd pass: async ones
-        for ( EventInspector ei : inspectors )
+        for ( EventInspector ei : dispatch.getAsyncInspectors() )
         {
-            if ( ei instanceof AsynchronousEventInspector )
+            try
             {
-                try
-                {
-                    if ( ei.accepts( evt ) )
-                    {
-                        final EventInspectorHandler handler = new EventInspectorHandler( getLogger(), ei, evt );
-
-                        hostThreadPool.execute( handler );
-                    }
-                }
-                catch ( Exception e )
+                if ( ei.accepts( evt ) )
                 {
-                    getLogger().warn( "Async EventInspector implementation={} had problem accepting an event={}",
-                        ei.getClass().getName(), evt.getClass(), e);
+                    getMailbox( ei ).offer( evt );
                 }
             }
+            catch ( Exception e )
+            {
+                getLogger().warn( "Async EventInspector implementation={} had problem accepting an event={}",
+                    ei.getClass().getName(), evt.getClass(), e );
+            }
+        }
+    }
+
+    protected EventInspectorMailbox getMailbox( final EventInspector ei )
+    {
+        EventInspectorMailbox mailbox = mailboxes.get( ei );
+        if ( mailbox == null )
+        {
+            final String name = getEventInspectorName( ei );
+            final OverflowPolicy policy =
+                OverflowPolicy.valueOf( SystemPropertiesHelper.getString( PROPERTY_PREFIX + "overflowPolicy." + name,
+                    overflowPolicy.name() ).toUpperCase() );
+            mailbox =
+                new EventInspectorMailbox( getLogger(), name, ei, hostThreadPool, mailboxSize, policy, MAX_BATCH_SIZE );
+            final EventInspectorMailbox existing = mailboxes.putIfAbsent( ei, mailbox );
+            if ( existing != null )
+            {
+                mailbox = existing;
+            }
+        }
+        return mailbox;
+    }
+
+    protected String getEventInspectorName( final EventInspector ei )
+    {
+        for ( Map.Entry<String, EventInspector> entry : eventInspectors.entrySet() )
+        {
+            if ( entry.getValue() == ei )
+            {
+                return entry.getKey();
+            }
         }
+        return ei.getClass().getName();
     }
 
     // ==
 
-    public static class EventInspectorHandler
-        implements Runnable
+    /**
+     * Returns the event classes declared by inspector using {@link HandlesEvents}, or {@code null} if inspector did
+     * not declare them (hence is interested in all events).
+     */
+    protected static Class<?>[] getHandledEvents( final EventInspector ei )
     {
-        private final Logger logger;
+        EventInspector inspector = ei;
+        while ( inspector instanceof AsynchronousEventInspectorWrapper )
+        {
+            inspector = ( (AsynchronousEventInspectorWrapper) inspector ).getEventInspector();
+        }
+        final HandlesEvents handlesEvents = inspector.getClass().getAnnotation( HandlesEvents.class );
+        return handlesEvents != null ? handlesEvents.value() : null;
+    }
 
-        private final EventInspector ei;
+    /**
+     * Inspectors to dispatch one event class to, split to sync and async ones.
+     */
+    protected static final class Dispatch
+    {
+        private final EventInspector[] syncInspectors;
 
-        private final Event<?> evt;
+        private final EventInspector[] asyncInspectors;
 
-        public EventInspectorHandler( final Logger logger, final EventInspector ei, final Event<?> evt )
+        private Dispatch( final List<EventInspector> syncInspectors, final List<EventInspector> asyncInspectors )
         {
-            this.logger = logger;
-            this.ei = ei;
-            this.evt = evt;
+            this.syncInspectors = syncInspectors.toArray( new EventInspector[syncInspectors.size()] );
+            this.asyncInspectors = asyncInspectors.toArray( new EventInspector[asyncInspectors.size()] );
         }
 
-        public void run()
+        public EventInspector[] getSyncInspectors()
         {
-            try
+            return syncInspectors;
+        }
+
+        public EventInspector[] getAsyncInspectors()
+        {
+            return asyncInspectors;
+        }
+
+        public boolean isEmpty()
+        {
+            return syncInspectors.length == 0 && asyncInspectors.length == 0;
+        }
+    }
+
+    /**
+     * Dispatch table for one set of inspectors, computing (and caching) the {@link Dispatch} of event classes as they
+     * are fired.
+     */
+    protected static final class DispatchTable
+    {
+        private final Map<EventInspector, Class<?>[]> inspectors;
+
+        private final ConcurrentMap<Class<?>, Dispatch> dispatches;
+
+        private DispatchTable( final Set<EventInspector> eventInspectors )
+        {
+            this.inspectors = new LinkedHashMap<EventInspector, Class<?>[]>( eventInspectors.size() );
+            for ( EventInspector ei : eventInspectors )
             {
-                ei.inspect( evt );
+                inspectors.put( ei, getHandledEvents( ei ) );
             }
-            catch ( Exception e )
+            this.dispatches = new ConcurrentHashMap<Class<?>, Dispatch>();
+        }
+
+        public Set<EventInspector> getEventInspectors()
+        {
+            return inspectors.keySet();
+        }
+
+        public Dispatch getDispatch( final Class<?> eventClass )
+        {
+            Dispatch dispatch = dispatches.get( eventClass );
+            if ( dispatch == null )
             {
-                logger.warn( "EventInspector implementation={} had problem accepting an event={}", ei.getClass().getName(), evt.getClass(), e);
+                final List<EventInspector> syncInspectors = new ArrayList<EventInspector>();
+                final List<EventInspector> asyncInspectors = new ArrayList<EventInspector>();
+                for ( Map.Entry<EventInspector, Class<?>[]> entry : inspectors.entrySet() )
+                {
+                    if ( handles( entry.getValue(), eventClass ) )
+                    {
+                        if ( entry.getKey() instanceof AsynchronousEventInspector )
+                        {
+                            asyncInspectors.add( entry.getKey() );
+                        }
+                        else
+                        {
+                            syncInspectors.add( entry.getKey() );
+                        }
+                    }
+                }
+                // racing threads would compute same thing, no need to guard it
+                dispatch = new Dispatch( syncInspectors, asyncInspectors );
+                dispatches.put( eventClass, dispatch );
+            }
+            return dispatch;
+        }
+
+        private static boolean handles( final Class<?>[] handledEvents, final Class<?> eventClass )
+        {
+            if ( handledEvents == null )
+            {
+                return true;
+            }
+            for ( Class<?> handledEvent : handledEvents )
+            {
+                if ( handledEvent.isAssignableFrom( eventClass ) )
+                {
+                    return true;
+                }
             }
+            return false;
         }
     }
 }
@@ -0,0 +1,82 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.events;
+
+import javax.management.StandardMBean;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The default implementation of MBean management interface for {@link DefaultEventInspectorHost}.
+ * 
+ * @since 2.4
+ */
+public class DefaultEventInspectorHostMBean
+    extends StandardMBean
+    implements EventInspectorHostMBean
+{
+    private final DefaultEventInspectorHost eventInspectorHost;
+
+    public DefaultEventInspectorHostMBean( final DefaultEventInspectorHost eventInspectorHost )
+    {
+        super( EventInspectorHostMBean.class, false );
+        this.eventInspectorHost =
+            Preconditions.checkNotNull( eventInspectorHost, "Managed DefaultEventInspectorHost cannot be null!" );
+    }
+
+    @Override
+    public int getWorkerCount()
+    {
+        return eventInspectorHost.getWorkerCount();
+    }
+
+    @Override
+    public int getActiveWorkerCount()
+    {
+        return eventInspectorHost.getActiveWorkerCount();
+    }
+
+    @Override
+    public int getQueueDepth()
+    {
+        int result = 0;
+        for ( EventInspectorMailbox mailbox : eventInspectorHost.getMailboxes() )
+        {
+            result += mailbox.getDepth();
+        }
+        return result;
+    }
+
+    @Override
+    public long getMaxLagMillis()
+    {
+        long result = 0;
+        for ( EventInspectorMailbox mailbox : eventInspectorHost.getMailboxes() )
+        {
+            result = Math.max( result, mailbox.getLagMillis() );
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getMailboxes()
+    {
+        final EventInspectorMailbox[] mailboxes = eventInspectorHost.getMailboxes();
+        final String[] result = new String[mailboxes.length];
+        for ( int i = 0; i < mailboxes.length; i++ )
+        {
+            result[i] = mailboxes[i].toString();
+        }
+        return result;
+    }
+}
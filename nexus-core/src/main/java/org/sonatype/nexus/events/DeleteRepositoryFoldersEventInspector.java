@@ -17,6 +17,7 @@ import org.codehaus.plexus.component.annotations.Requirement;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.AsynchronousEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventPostRemove;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.NexusScheduler;
@@ -28,6 +29,7 @@ import org.sonatype.plexus.appevents.Event;
  * 
  * @author cstamas
  */
+@HandlesEvents( RepositoryRegistryEventPostRemove.class )
 @Component( role = EventInspector.class, hint = "DeleteRepositoryFoldersEventInspector" )
 public class DeleteRepositoryFoldersEventInspector
     extends AbstractEventInspector
@@ -0,0 +1,56 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.events;
+
+/**
+ * The MBean management interface for {@link DefaultEventInspectorHost}.
+ * 
+ * @since 2.4
+ */
+public interface EventInspectorHostMBean
+{
+    /**
+     * Returns the count of worker threads delivering events to asynchronous inspectors.
+     * 
+     * @return
+     */
+    int getWorkerCount();
+
+    /**
+     * Returns the count of worker threads currently delivering events.
+     * 
+     * @return
+     */
+    int getActiveWorkerCount();
+
+    /**
+     * Returns the count of events waiting in all mailboxes of asynchronous inspectors.
+     * 
+     * @return
+     */
+    int getQueueDepth();
+
+    /**
+     * Returns the age of the oldest event waiting in any mailbox, in milliseconds.
+     * 
+     * @return
+     */
+    long getMaxLagMillis();
+
+    /**
+     * Returns the state of each asynchronous inspector mailbox (depth, lag, delivered, dropped and coalesced events).
+     * 
+     * @return
+     */
+    String[] getMailboxes();
+}
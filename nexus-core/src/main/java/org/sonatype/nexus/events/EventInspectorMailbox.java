@@ -0,0 +1,325 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.events;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.sonatype.nexus.proxy.events.BatchingEventInspector;
+import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.plexus.appevents.Event;
+
+import com.google.common.base.Objects;
+
+/**
+ * Bounded mailbox of one asynchronous event inspector. Events are delivered in order they were offered, and one
+ * mailbox is drained by at most one thread at a time.
+ * 
+ * @since 2.4
+ */
+public class EventInspectorMailbox
+    implements Runnable
+{
+    /**
+     * What to do when event is offered to a full mailbox.
+     */
+    public static enum OverflowPolicy
+    {
+        /**
+         * Caller waits until there is room in mailbox.
+         */
+        BLOCK,
+
+        /**
+         * Oldest event is dropped from mailbox.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Event is dropped if similar one (same class, sender and item path, if any) is already waiting in mailbox,
+         * otherwise caller waits as with {@link #BLOCK}.
+         */
+        COALESCE;
+    }
+
+    /**
+     * Threads delivering events never block on full mailbox, as inspector emitting events might end up waiting for
+     * itself.
+     */
+    private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<Boolean>();
+
+    private final Logger logger;
+
+    private final String name;
+
+    private final EventInspector eventInspector;
+
+    private final Executor executor;
+
+    private final int capacity;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int maxBatchSize;
+
+    private final ArrayDeque<Envelope> queue;
+
+    private boolean scheduled;
+
+    private final AtomicLong delivered = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    EventInspectorMailbox( final Logger logger, final String name, final EventInspector eventInspector,
+                           final Executor executor, final int capacity, final OverflowPolicy overflowPolicy,
+                           final int maxBatchSize )
+    {
+        this.logger = logger;
+        this.name = name;
+        this.eventInspector = eventInspector;
+        this.executor = executor;
+        this.capacity = Math.max( 1, capacity );
+        this.overflowPolicy = overflowPolicy;
+        this.maxBatchSize = Math.max( 1, maxBatchSize );
+        this.queue = new ArrayDeque<Envelope>();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public EventInspector getEventInspector()
+    {
+        return eventInspector;
+    }
+
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+
+    public synchronized int getDepth()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Returns the age of the oldest event waiting in mailbox, in milliseconds.
+     */
+    public synchronized long getLagMillis()
+    {
+        final Envelope head = queue.peek();
+        return head == null ? 0 : System.currentTimeMillis() - head.enqueued;
+    }
+
+    public long getDelivered()
+    {
+        return delivered.get();
+    }
+
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+
+    public long getCoalesced()
+    {
+        return coalesced.get();
+    }
+
+    /**
+     * Puts event into mailbox, applying the overflow policy if mailbox is full.
+     */
+    public void offer( final Event<?> evt )
+    {
+        synchronized ( this )
+        {
+            while ( queue.size() >= capacity )
+            {
+                if ( OverflowPolicy.DROP_OLDEST == overflowPolicy )
+                {
+                    queue.poll();
+                    dropped.incrementAndGet();
+                    break;
+                }
+                if ( OverflowPolicy.COALESCE == overflowPolicy && isQueuedSimilar( evt ) )
+                {
+                    coalesced.incrementAndGet();
+                    return;
+                }
+                if ( Boolean.TRUE.equals( DELIVERING.get() ) )
+                {
+                    break;
+                }
+                try
+                {
+                    wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            queue.add( new Envelope( evt ) );
+            if ( scheduled )
+            {
+                return;
+            }
+            scheduled = true;
+        }
+        schedule();
+    }
+
+    @Override
+    public void run()
+    {
+        final Boolean delivering = DELIVERING.get();
+        DELIVERING.set( Boolean.TRUE );
+        try
+        {
+            deliver( drain() );
+        }
+        finally
+        {
+            if ( delivering == null )
+            {
+                DELIVERING.remove();
+            }
+            final boolean reschedule;
+            synchronized ( this )
+            {
+                reschedule = !queue.isEmpty();
+                scheduled = reschedule;
+            }
+            if ( reschedule )
+            {
+                schedule();
+            }
+        }
+    }
+
+    // ==
+
+    protected void schedule()
+    {
+        try
+        {
+            executor.execute( this );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // host is shut down, deliver in caller thread
+            run();
+        }
+    }
+
+    protected synchronized List<Event<?>> drain()
+    {
+        final List<Event<?>> result = new ArrayList<Event<?>>( Math.min( queue.size(), maxBatchSize ) );
+        while ( result.size() < maxBatchSize && !queue.isEmpty() )
+        {
+            result.add( queue.poll().event );
+        }
+        notifyAll();
+        return result;
+    }
+
+    protected void deliver( final List<Event<?>> evts )
+    {
+        if ( eventInspector instanceof BatchingEventInspector )
+        {
+            try
+            {
+                ( (BatchingEventInspector) eventInspector ).inspect( evts );
+            }
+            catch ( Exception e )
+            {
+                logger.warn( "Async EventInspector implementation={} had problem accepting a batch of {} events",
+                    eventInspector.getClass().getName(), evts.size(), e );
+            }
+        }
+        else
+        {
+            for ( Event<?> evt : evts )
+            {
+                try
+                {
+                    eventInspector.inspect( evt );
+                }
+                catch ( Exception e )
+                {
+                    logger.warn( "Async EventInspector implementation={} had problem accepting an event={}",
+                        eventInspector.getClass().getName(), evt.getClass(), e );
+                }
+            }
+        }
+        delivered.addAndGet( evts.size() );
+    }
+
+    protected boolean isQueuedSimilar( final Event<?> evt )
+    {
+        final String path = getItemPath( evt );
+        for ( Iterator<Envelope> itr = queue.descendingIterator(); itr.hasNext(); )
+        {
+            final Event<?> queued = itr.next().event;
+            if ( queued.getClass() == evt.getClass() && queued.getEventSender() == evt.getEventSender()
+                && Objects.equal( path, getItemPath( queued ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected String getItemPath( final Event<?> evt )
+    {
+        if ( evt instanceof RepositoryItemEvent )
+        {
+            return ( (RepositoryItemEvent) evt ).getItem().getPath();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + "(depth=" + getDepth() + ", lagMillis=" + getLagMillis() + ", delivered=" + getDelivered()
+            + ", dropped=" + getDropped() + ", coalesced=" + getCoalesced() + ", policy=" + overflowPolicy + ")";
+    }
+
+    // ==
+
+    private static class Envelope
+    {
+        private final Event<?> event;
+
+        private final long enqueued;
+
+        private Envelope( final Event<?> event )
+        {
+            this.event = event;
+            this.enqueued = System.currentTimeMillis();
+        }
+    }
+}
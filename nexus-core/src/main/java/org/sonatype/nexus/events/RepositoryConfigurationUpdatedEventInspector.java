@@ -17,6 +17,7 @@ import org.codehaus.plexus.component.annotations.Requirement;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.AsynchronousEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
 import org.sonatype.nexus.scheduling.NexusScheduler;
 import org.sonatype.nexus.tasks.ExpireCacheTask;
@@ -26,6 +27,7 @@ import org.sonatype.plexus.appevents.Event;
  * Event inspector listening for configuration changes to expire caches when Local or Remote URL changed of the
  * repository.
  */
+@HandlesEvents( RepositoryConfigurationUpdatedEvent.class )
 @Component( role = EventInspector.class, hint = "RepositoryConfigurationUpdatedEventInspector" )
 public class RepositoryConfigurationUpdatedEventInspector
     extends AbstractEventInspector
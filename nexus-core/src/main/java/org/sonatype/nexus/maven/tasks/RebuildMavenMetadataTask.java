@@ -22,6 +22,7 @@ import org.sonatype.nexus.proxy.maven.MavenRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
 import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesPathAwareTask;
+import org.sonatype.nexus.scheduling.RepositoryTaskExecutor.RepositoryWork;
 import org.sonatype.scheduling.SchedulerTask;
 import org.sonatype.scheduling.TaskUtil;
 
@@ -50,24 +51,25 @@ public class RebuildMavenMetadataTask
     public Object doRun()
         throws Exception
     {
-        ResourceStoreRequest req = new ResourceStoreRequest( getResourceStorePath() );
+        final String path = getResourceStorePath();
+
+        ResourceStoreRequest req = new ResourceStoreRequest( path );
 
         // no repo id, then do all repos
         if ( StringUtils.isEmpty( getRepositoryId() ) )
         {
             List<MavenRepository> reposes = getRepositoryRegistry().getRepositoriesWithFacet( MavenRepository.class );
 
-            TaskUtil.getCurrentProgressListener().beginTask( "Recreating Maven Metadata on all Maven repositories",
-                reposes.size() );
-
-            for ( MavenRepository repo : reposes )
+            executeOnRepositories( "Recreating Maven Metadata", reposes, new RepositoryWork<Object>()
             {
-                TaskUtil.getCurrentProgressListener().working(
-                    RepositoryStringUtils.getFormattedMessage( "Recreating Maven Metadata on %s", repo ), 1 );
-                repo.recreateMavenMetadata( req );
-            }
-
-            TaskUtil.getCurrentProgressListener().endTask( "Done" );
+                @Override
+                public Object run( final Repository repository )
+                {
+                    repository.adaptToFacet( MavenRepository.class ).recreateMavenMetadata(
+                        new ResourceStoreRequest( path ) );
+                    return null;
+                }
+            } );
         }
         else
         {
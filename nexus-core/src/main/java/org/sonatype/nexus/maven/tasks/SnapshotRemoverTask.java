@@ -12,11 +12,19 @@
  */
 package org.sonatype.nexus.maven.tasks;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.util.StringUtils;
 import org.sonatype.nexus.maven.tasks.descriptors.SnapshotRemovalTaskDescriptor;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesTask;
+import org.sonatype.nexus.scheduling.RepositoryTaskExecutor.RepositoryWork;
 import org.sonatype.scheduling.SchedulerTask;
 
 /**
@@ -102,6 +110,11 @@ public class SnapshotRemoverTask
     public SnapshotRemovalResult doRun()
         throws Exception
     {
+        if ( getRepositoryId() == null && isParallel() )
+        {
+            return removeSnapshotsInParallel();
+        }
+
         SnapshotRemovalRequest req =
             new SnapshotRemovalRequest( getRepositoryId(), getMinSnapshotsToKeep(), getRemoveOlderThanDays(),
                 isRemoveIfReleaseExists(), isDeleteImmediately());
@@ -109,6 +122,60 @@ public class SnapshotRemoverTask
         return snapshotRemover.removeSnapshots( req );
     }
 
+    /**
+     * Removes snapshots from all (non-group) repositories using one removal request per repository, and aggregates
+     * the results of them.
+     */
+    protected SnapshotRemovalResult removeSnapshotsInParallel()
+        throws Exception
+    {
+        // groups are skipped, as their members are processed anyway
+        final List<Repository> repositories = new ArrayList<Repository>();
+        for ( Repository repository : getRepositoryRegistry().getRepositories() )
+        {
+            if ( repository.getRepositoryKind().isFacetAvailable( MavenRepository.class )
+                && !repository.getRepositoryKind().isFacetAvailable( ProxyRepository.class )
+                && !repository.getRepositoryKind().isFacetAvailable( GroupRepository.class ) )
+            {
+                repositories.add( repository );
+            }
+        }
+
+        final SnapshotRemovalResult result = new SnapshotRemovalResult();
+
+        for ( SnapshotRemovalResult repositoryResult : executeOnRepositories( "Removing snapshots", repositories,
+            new RepositoryWork<SnapshotRemovalResult>()
+            {
+                @Override
+                public SnapshotRemovalResult run( final Repository repository )
+                    throws Exception
+                {
+                    try
+                    {
+                        return snapshotRemover.removeSnapshots( new SnapshotRemovalRequest( repository.getId(),
+                            getMinSnapshotsToKeep(), getRemoveOlderThanDays(), isRemoveIfReleaseExists(),
+                            isDeleteImmediately() ) );
+                    }
+                    catch ( IllegalArgumentException e )
+                    {
+                        // not applicable to this repository (not maven2, out of service), sequential run skips it too
+                        return null;
+                    }
+                }
+            } ).values() )
+        {
+            if ( repositoryResult != null )
+            {
+                for ( SnapshotRemovalRepositoryResult processed : repositoryResult.getProcessedRepositories().values() )
+                {
+                    result.addResult( processed );
+                }
+            }
+        }
+
+        return result;
+    }
+
     @Override
     protected String getAction()
     {
@@ -75,6 +75,14 @@ public class RequestContext
      */
     public static final String CTX_AUTH_CHECK_ONLY = "request.auth.check.only";
 
+    /**
+     * Context flag to mark request as issued by prefetching (not by a client), hence it is not counted as retrieval
+     * and no retrieve event is fired for it.
+     * 
+     * @since 2.4
+     */
+    public static final String CTX_PREFETCH_FLAG = "request.prefetch";
+
     private RequestContext parent;
 
     public RequestContext()
@@ -17,6 +17,7 @@ import org.codehaus.plexus.component.annotations.Requirement;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.AsynchronousEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.NexusStartedEvent;
 import org.sonatype.plexus.appevents.Event;
 
@@ -25,6 +26,7 @@ import org.sonatype.plexus.appevents.Event;
  * 
  * @since 2.0
  */
+@HandlesEvents( NexusStartedEvent.class )
 @Component( role = EventInspector.class, hint = "AttributesUpgradeEventInspector" )
 public class AttributesUpgradeEventInspector
     extends AbstractEventInspector
@@ -16,6 +16,7 @@ import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
@@ -30,6 +31,7 @@ import org.sonatype.plexus.appevents.Event;
  * @author cstamas
  * @since 2.1
  */
+@HandlesEvents( RepositoryRegistryEventRemove.class )
 @Component( role = EventInspector.class, hint = "PathCacheEventInspector" )
 public class PathCacheEventInspector
     extends AbstractEventInspector
@@ -0,0 +1,448 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.circuitbreaker;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A circuit breaker guarding outbound calls to some remote peer. Outcomes of the last {@code windowSize} calls are
+ * kept in a sliding window, and the breaker opens once the window holds at least {@code minimumCalls} outcomes and
+ * either the failure rate or the slow call rate reaches its threshold. While open, no calls are permitted. There is
+ * no timer involved: once {@code openDurationMillis} elapsed, the next call asking for permission moves the breaker
+ * into half-open state, where only {@code halfOpenProbes} real calls are let through as probes. If all of them succeed
+ * the breaker closes, if any of them fails it opens again. Calls permitted in closed state that finish when the
+ * breaker is already open are not recorded.
+ * <p>
+ * Users should ask for permission using {@link #tryAcquirePermission()} and, if permitted, report the outcome of the
+ * call using exactly one of {@link #onSuccess(long)}, {@link #onFailure(long, Throwable)} or {@link #onIgnored()}.
+ * State transitions are reported to registered {@link Listener}s, outside of the breaker lock.
+ * 
+ * @since 2.4
+ */
+public class CircuitBreaker
+{
+    /**
+     * The states of circuit breaker.
+     */
+    public enum State
+    {
+        /**
+         * Calls are permitted and their outcomes recorded.
+         */
+        CLOSED,
+
+        /**
+         * Calls are short-circuited.
+         */
+        OPEN,
+
+        /**
+         * Limited count of calls are permitted as probes.
+         */
+        HALF_OPEN;
+    }
+
+    /**
+     * Listener of circuit breaker state transitions.
+     */
+    public interface Listener
+    {
+        /**
+         * Invoked when breaker made a state transition.
+         * 
+         * @param circuitBreaker the breaker.
+         * @param oldState the state before transition.
+         * @param newState the state after transition.
+         * @param cause the failure that caused the transition, or {@code null}.
+         */
+        void onStateChanged( CircuitBreaker circuitBreaker, State oldState, State newState, Throwable cause );
+    }
+
+    private static final byte OUTCOME_FAILED = 1;
+
+    private static final byte OUTCOME_SLOW = 2;
+
+    private final String name;
+
+    private final int minimumCalls;
+
+    private final int failureRateThreshold;
+
+    private final long slowCallDurationMillis;
+
+    private final int slowCallRateThreshold;
+
+    private final long openDurationMillis;
+
+    private final int halfOpenProbes;
+
+    private final List<Listener> listeners;
+
+    // == guarded by this
+
+    private final byte[] window;
+
+    private int windowPosition;
+
+    private int windowCalls;
+
+    private int windowFailures;
+
+    private int windowSlowCalls;
+
+    private State state;
+
+    private long stateChanged;
+
+    private int probesPermitted;
+
+    private int probesSucceeded;
+
+    private long successfulCalls;
+
+    private long failedCalls;
+
+    private long slowCalls;
+
+    private long rejectedCalls;
+
+    private long openedCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param name the name of this breaker (used for logging and reporting).
+     * @param windowSize the count of last call outcomes to calculate rates from.
+     * @param minimumCalls the count of recorded outcomes required before rates are considered.
+     * @param failureRateThreshold the failure rate (in percents) that opens the breaker.
+     * @param slowCallDurationMillis the duration above which a call is considered slow.
+     * @param slowCallRateThreshold the slow call rate (in percents) that opens the breaker.
+     * @param openDurationMillis the time to keep breaker open before probing.
+     * @param halfOpenProbes the count of calls permitted as probes in half-open state.
+     */
+    public CircuitBreaker( final String name, final int windowSize, final int minimumCalls,
+                           final int failureRateThreshold, final long slowCallDurationMillis,
+                           final int slowCallRateThreshold, final long openDurationMillis, final int halfOpenProbes )
+    {
+        checkArgument( windowSize > 0, "Window size must be positive!" );
+        checkArgument( minimumCalls > 0 && minimumCalls <= windowSize,
+            "Minimum calls must be in range 1..windowSize!" );
+        checkArgument( failureRateThreshold > 0 && failureRateThreshold <= 100,
+            "Failure rate threshold must be in range 1..100!" );
+        checkArgument( slowCallRateThreshold > 0 && slowCallRateThreshold <= 100,
+            "Slow call rate threshold must be in range 1..100!" );
+        checkArgument( openDurationMillis >= 0, "Open duration cannot be negative!" );
+        checkArgument( halfOpenProbes > 0, "Half-open probes must be positive!" );
+        this.name = checkNotNull( name );
+        this.window = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallDurationMillis = slowCallDurationMillis;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenProbes = halfOpenProbes;
+        this.listeners = new CopyOnWriteArrayList<Listener>();
+        this.state = State.CLOSED;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void addListener( final Listener listener )
+    {
+        listeners.add( checkNotNull( listener ) );
+    }
+
+    public void removeListener( final Listener listener )
+    {
+        listeners.remove( listener );
+    }
+
+    /**
+     * Asks for permission to perform a call. Moves an open breaker to half-open state if open duration elapsed.
+     * 
+     * @return {@code true} if call is permitted, {@code false} if it should be short-circuited.
+     */
+    public boolean tryAcquirePermission()
+    {
+        boolean permitted;
+        boolean transitioned = false;
+        synchronized ( this )
+        {
+            if ( state == State.OPEN && now() - stateChanged >= openDurationMillis )
+            {
+                transitionTo( State.HALF_OPEN );
+                transitioned = true;
+            }
+            if ( state == State.CLOSED )
+            {
+                permitted = true;
+            }
+            else if ( state == State.HALF_OPEN && probesPermitted < halfOpenProbes )
+            {
+                probesPermitted++;
+                permitted = true;
+            }
+            else
+            {
+                rejectedCalls++;
+                permitted = false;
+            }
+        }
+        if ( transitioned )
+        {
+            fireStateChanged( State.OPEN, State.HALF_OPEN, null );
+        }
+        return permitted;
+    }
+
+    /**
+     * Records a successful call.
+     * 
+     * @param durationMillis the duration of the call.
+     */
+    public void onSuccess( final long durationMillis )
+    {
+        record( durationMillis, null );
+    }
+
+    /**
+     * Records a failed call.
+     * 
+     * @param durationMillis the duration of the call.
+     * @param cause the failure.
+     */
+    public void onFailure( final long durationMillis, final Throwable cause )
+    {
+        record( durationMillis, checkNotNull( cause ) );
+    }
+
+    /**
+     * Releases a permission without recording any outcome, to be used when call was not performed or it's outcome does
+     * not tell anything about the health of remote peer.
+     */
+    public void onIgnored()
+    {
+        synchronized ( this )
+        {
+            if ( state == State.HALF_OPEN && probesPermitted > probesSucceeded )
+            {
+                probesPermitted--;
+            }
+        }
+    }
+
+    /**
+     * Forces the breaker into closed state with empty window.
+     */
+    public void reset()
+    {
+        State oldState;
+        synchronized ( this )
+        {
+            oldState = state;
+            if ( oldState != State.CLOSED )
+            {
+                transitionTo( State.CLOSED );
+            }
+        }
+        if ( oldState != State.CLOSED )
+        {
+            fireStateChanged( oldState, State.CLOSED, null );
+        }
+    }
+
+    public synchronized State getState()
+    {
+        return state;
+    }
+
+    /**
+     * Returns the failure rate (in percents) of calls in the sliding window, or -1 if less than minimum calls
+     * recorded.
+     */
+    public synchronized int getFailureRate()
+    {
+        return windowCalls < minimumCalls ? -1 : windowFailures * 100 / windowCalls;
+    }
+
+    /**
+     * Returns the slow call rate (in percents) of calls in the sliding window, or -1 if less than minimum calls
+     * recorded.
+     */
+    public synchronized int getSlowCallRate()
+    {
+        return windowCalls < minimumCalls ? -1 : windowSlowCalls * 100 / windowCalls;
+    }
+
+    public synchronized long getSuccessfulCalls()
+    {
+        return successfulCalls;
+    }
+
+    public synchronized long getFailedCalls()
+    {
+        return failedCalls;
+    }
+
+    public synchronized long getSlowCalls()
+    {
+        return slowCalls;
+    }
+
+    public synchronized long getRejectedCalls()
+    {
+        return rejectedCalls;
+    }
+
+    /**
+     * Returns how many times was this breaker opened.
+     */
+    public synchronized long getOpenedCount()
+    {
+        return openedCount;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return name + "{state=" + state + ", failureRate=" + getFailureRate() + ", slowCallRate=" + getSlowCallRate()
+            + ", successful=" + successfulCalls + ", failed=" + failedCalls + ", slow=" + slowCalls + ", rejected="
+            + rejectedCalls + ", opened=" + openedCount + "}";
+    }
+
+    // ==
+
+    /**
+     * Returns current time in milliseconds, overridable for tests.
+     */
+    protected long now()
+    {
+        return System.currentTimeMillis();
+    }
+
+    private void record( final long durationMillis, final Throwable failure )
+    {
+        final boolean slow = durationMillis > slowCallDurationMillis;
+        State oldState;
+        State newState;
+        synchronized ( this )
+        {
+            if ( failure == null )
+            {
+                successfulCalls++;
+            }
+            else
+            {
+                failedCalls++;
+            }
+            if ( slow )
+            {
+                slowCalls++;
+            }
+
+            oldState = state;
+            if ( state == State.CLOSED )
+            {
+                push( ( failure != null ? OUTCOME_FAILED : 0 ) | ( slow ? OUTCOME_SLOW : 0 ) );
+                if ( isOverThreshold() )
+                {
+                    transitionTo( State.OPEN );
+                }
+            }
+            else if ( state == State.HALF_OPEN )
+            {
+                if ( failure != null || slow )
+                {
+                    transitionTo( State.OPEN );
+                }
+                else if ( ++probesSucceeded >= halfOpenProbes )
+                {
+                    transitionTo( State.CLOSED );
+                }
+            }
+            newState = state;
+        }
+        if ( oldState != newState )
+        {
+            fireStateChanged( oldState, newState, failure );
+        }
+    }
+
+    private boolean isOverThreshold()
+    {
+        return windowCalls >= minimumCalls
+            && ( windowFailures * 100 >= failureRateThreshold * windowCalls
+                || windowSlowCalls * 100 >= slowCallRateThreshold * windowCalls );
+    }
+
+    private void push( final int outcome )
+    {
+        if ( windowCalls == window.length )
+        {
+            final byte evicted = window[windowPosition];
+            if ( ( evicted & OUTCOME_FAILED ) != 0 )
+            {
+                windowFailures--;
+            }
+            if ( ( evicted & OUTCOME_SLOW ) != 0 )
+            {
+                windowSlowCalls--;
+            }
+        }
+        else
+        {
+            windowCalls++;
+        }
+        window[windowPosition] = (byte) outcome;
+        windowPosition = ( windowPosition + 1 ) % window.length;
+        if ( ( outcome & OUTCOME_FAILED ) != 0 )
+        {
+            windowFailures++;
+        }
+        if ( ( outcome & OUTCOME_SLOW ) != 0 )
+        {
+            windowSlowCalls++;
+        }
+    }
+
+    private void transitionTo( final State newState )
+    {
+        if ( newState == State.OPEN )
+        {
+            openedCount++;
+        }
+        state = newState;
+        stateChanged = now();
+        probesPermitted = 0;
+        probesSucceeded = 0;
+        windowPosition = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+        windowSlowCalls = 0;
+    }
+
+    private void fireStateChanged( final State oldState, final State newState, final Throwable cause )
+    {
+        for ( Listener listener : listeners )
+        {
+            listener.onStateChanged( this, oldState, newState, cause );
+        }
+    }
+}
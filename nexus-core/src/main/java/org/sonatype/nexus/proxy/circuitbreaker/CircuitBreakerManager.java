@@ -0,0 +1,59 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.circuitbreaker;
+
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+
+/**
+ * Manages the {@link CircuitBreaker}s guarding remote calls of proxy repositories. Every proxy repository has it's own
+ * breaker, and optionally, calls are guarded by a breaker per upstream host too (shared by all proxy repositories
+ * pointing to same host).
+ * 
+ * @since 2.4
+ */
+public interface CircuitBreakerManager
+{
+    /**
+     * Returns {@code true} if circuit breakers are enabled. If not, {@code tryAcquire} always returns
+     * {@link CircuitBreakerPermit#UNTRACKED}.
+     */
+    boolean isEnabled();
+
+    /**
+     * Asks the breakers guarding the remote of given repository for permission to perform a remote call.
+     * 
+     * @param repository the proxy repository about to perform a remote call.
+     * @param listener the listener to register with the repository breaker when it is created, may be {@code null}.
+     * @return the permit, or {@code null} if the call should be short-circuited.
+     */
+    CircuitBreakerPermit tryAcquire( ProxyRepository repository, CircuitBreaker.Listener listener );
+
+    /**
+     * Returns the breaker of given repository, or {@code null} if none created yet.
+     */
+    CircuitBreaker getRepositoryCircuitBreaker( String repositoryId );
+
+    /**
+     * Returns all existing breakers, keyed by breaker name.
+     */
+    Map<String, CircuitBreaker> getCircuitBreakers();
+
+    /**
+     * Resets the breaker with given name into closed state, if exists.
+     * 
+     * @return {@code true} if breaker existed.
+     */
+    boolean reset( String name );
+}
@@ -0,0 +1,57 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.circuitbreaker;
+
+/**
+ * JMX interface of {@link CircuitBreakerManager}.
+ * 
+ * @since 2.4
+ */
+public interface CircuitBreakerManagerMBean
+{
+    /**
+     * Returns {@code true} if circuit breakers are enabled.
+     * 
+     * @return
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the count of breakers currently not closed.
+     * 
+     * @return
+     */
+    int getNotClosedCount();
+
+    /**
+     * Returns the count of calls short-circuited by all breakers.
+     * 
+     * @return
+     */
+    long getRejectedCalls();
+
+    /**
+     * Returns the state and metrics of each breaker.
+     * 
+     * @return
+     */
+    String[] getCircuitBreakers();
+
+    /**
+     * Resets the breaker with given name (as "repository:id" or "host:name:port") into closed state.
+     * 
+     * @param name
+     * @return
+     */
+    boolean reset( String name );
+}
@@ -0,0 +1,92 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.circuitbreaker;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Permission to perform one remote call, granted by all circuit breakers guarding it. The outcome of the call has to
+ * be reported using exactly one of {@link #success()}, {@link #failure(Throwable)} or {@link #release()}, further
+ * invocations are ignored, hence it is safe to invoke {@link #release()} in a finally block.
+ * 
+ * @since 2.4
+ */
+public class CircuitBreakerPermit
+{
+    /**
+     * Permit used when circuit breakers are disabled, it records nothing.
+     */
+    public static final CircuitBreakerPermit UNTRACKED =
+        new CircuitBreakerPermit( Collections.<CircuitBreaker> emptyList() );
+
+    private final List<CircuitBreaker> circuitBreakers;
+
+    private final long started;
+
+    private boolean done;
+
+    public CircuitBreakerPermit( final List<CircuitBreaker> circuitBreakers )
+    {
+        this.circuitBreakers = ImmutableList.copyOf( circuitBreakers );
+        this.started = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns {@code true} if this permit was granted by any circuit breaker, hence outcomes are recorded.
+     */
+    public boolean isTracked()
+    {
+        return !circuitBreakers.isEmpty();
+    }
+
+    public void success()
+    {
+        if ( !done )
+        {
+            done = true;
+            final long duration = System.currentTimeMillis() - started;
+            for ( CircuitBreaker circuitBreaker : circuitBreakers )
+            {
+                circuitBreaker.onSuccess( duration );
+            }
+        }
+    }
+
+    public void failure( final Throwable cause )
+    {
+        if ( !done )
+        {
+            done = true;
+            final long duration = System.currentTimeMillis() - started;
+            for ( CircuitBreaker circuitBreaker : circuitBreakers )
+            {
+                circuitBreaker.onFailure( duration, cause );
+            }
+        }
+    }
+
+    public void release()
+    {
+        if ( !done )
+        {
+            done = true;
+            for ( CircuitBreaker circuitBreaker : circuitBreakers )
+            {
+                circuitBreaker.onIgnored();
+            }
+        }
+    }
+}
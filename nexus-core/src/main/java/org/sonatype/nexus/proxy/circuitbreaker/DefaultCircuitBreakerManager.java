@@ -0,0 +1,305 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.circuitbreaker;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreaker.State;
+import org.sonatype.nexus.proxy.events.CircuitBreakerEventStateChanged;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Default {@link CircuitBreakerManager}, tuned by system properties. Breakers are created lazily, on first remote call
+ * of a repository (or to a host), and all of them share same settings. State transitions are logged and posted as
+ * {@link CircuitBreakerEventStateChanged} events, while breaker metrics are exposed over JMX.
+ * 
+ * @since 2.4
+ */
+@Named
+@Singleton
+@EventBus.Managed
+public class DefaultCircuitBreakerManager
+    extends AbstractLoggingComponent
+    implements CircuitBreakerManager, Disposable
+{
+    private static final String JMX_DOMAIN = "org.sonatype.nexus.proxy.circuitbreaker";
+
+    private static final String PROPERTY_PREFIX = "org.sonatype.nexus.proxy.circuitbreaker.CircuitBreakerManager.";
+
+    private static final String REPOSITORY_PREFIX = "repository:";
+
+    private static final String HOST_PREFIX = "host:";
+
+    private final EventBus eventBus;
+
+    private final boolean enabled;
+
+    private final boolean perHost;
+
+    private final int windowSize;
+
+    private final int minimumCalls;
+
+    private final int failureRateThreshold;
+
+    private final long slowCallDurationMillis;
+
+    private final int slowCallRateThreshold;
+
+    private final long openDurationMillis;
+
+    private final int halfOpenProbes;
+
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers;
+
+    private final CircuitBreaker.Listener eventPostingListener;
+
+    private ObjectName jmxName;
+
+    @Inject
+    public DefaultCircuitBreakerManager( final EventBus eventBus )
+    {
+        this( eventBus, SystemPropertiesHelper.getBoolean( PROPERTY_PREFIX + "enabled", true ),
+            SystemPropertiesHelper.getBoolean( PROPERTY_PREFIX + "perHost", false ),
+            SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "windowSize", 20 ),
+            SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "minimumCalls", 5 ),
+            SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "failureRateThreshold", 50 ),
+            SystemPropertiesHelper.getLong( PROPERTY_PREFIX + "slowCallDurationMillis", 30000L ),
+            SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "slowCallRateThreshold", 100 ),
+            SystemPropertiesHelper.getLong( PROPERTY_PREFIX + "openDurationMillis", 30000L ),
+            SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "halfOpenProbes", 3 ) );
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param eventBus the event bus to post state transitions to.
+     * @param enabled whether breakers are used at all.
+     * @param perHost whether calls are guarded by a per-host breaker too.
+     * @see CircuitBreaker#CircuitBreaker(String, int, int, int, long, int, long, int) for the rest of parameters.
+     */
+    public DefaultCircuitBreakerManager( final EventBus eventBus, final boolean enabled, final boolean perHost,
+                                         final int windowSize, final int minimumCalls,
+                                         final int failureRateThreshold, final long slowCallDurationMillis,
+                                         final int slowCallRateThreshold, final long openDurationMillis,
+                                         final int halfOpenProbes )
+    {
+        this.eventBus = checkNotNull( eventBus );
+        this.enabled = enabled;
+        this.perHost = perHost;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallDurationMillis = slowCallDurationMillis;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenProbes = halfOpenProbes;
+        this.circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+        this.eventPostingListener = new CircuitBreaker.Listener()
+        {
+            @Override
+            public void onStateChanged( final CircuitBreaker circuitBreaker, final State oldState,
+                                        final State newState, final Throwable cause )
+            {
+                if ( State.OPEN == newState )
+                {
+                    getLogger().warn( "Circuit breaker {} opened, short-circuiting remote calls: {}",
+                        circuitBreaker.getName(), cause == null ? "probe failed" : cause.getMessage() );
+                }
+                else
+                {
+                    getLogger().info( "Circuit breaker {} changed state {} -> {}",
+                        new Object[] { circuitBreaker.getName(), oldState, newState } );
+                }
+                DefaultCircuitBreakerManager.this.eventBus.post( new CircuitBreakerEventStateChanged( circuitBreaker,
+                    oldState, newState, cause ) );
+            }
+        };
+
+        try
+        {
+            jmxName = ObjectName.getInstance( JMX_DOMAIN, "name", CircuitBreakerManager.class.getSimpleName() );
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if ( server.isRegistered( jmxName ) )
+            {
+                getLogger().warn( "MBean already registered; replacing: {}", jmxName );
+                server.unregisterMBean( jmxName );
+            }
+            server.registerMBean( new DefaultCircuitBreakerManagerMBean( this ), jmxName );
+        }
+        catch ( Exception e )
+        {
+            jmxName = null;
+            getLogger().warn( "Problem registering MBean for: " + getClass().getName(), e );
+        }
+    }
+
+    public void dispose()
+    {
+        if ( null != jmxName )
+        {
+            try
+            {
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if ( server.isRegistered( jmxName ) )
+                {
+                    server.unregisterMBean( jmxName );
+                }
+            }
+            catch ( final Exception e )
+            {
+                getLogger().warn( "Problem unregistering MBean for: " + getClass().getName(), e );
+            }
+        }
+    }
+
+    @Subscribe
+    public void onEvent( final RepositoryRegistryEventRemove evt )
+    {
+        circuitBreakers.remove( REPOSITORY_PREFIX + evt.getRepository().getId() );
+    }
+
+    // == CircuitBreakerManager
+
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Override
+    public CircuitBreakerPermit tryAcquire( final ProxyRepository repository, final CircuitBreaker.Listener listener )
+    {
+        if ( !enabled )
+        {
+            return CircuitBreakerPermit.UNTRACKED;
+        }
+
+        final List<CircuitBreaker> permitting = new ArrayList<CircuitBreaker>( 2 );
+        final CircuitBreaker repositoryCircuitBreaker =
+            getCircuitBreaker( REPOSITORY_PREFIX + repository.getId(), listener );
+        if ( !repositoryCircuitBreaker.tryAcquirePermission() )
+        {
+            return null;
+        }
+        permitting.add( repositoryCircuitBreaker );
+
+        final String host = perHost ? getHost( repository.getRemoteUrl() ) : null;
+        if ( host != null )
+        {
+            final CircuitBreaker hostCircuitBreaker = getCircuitBreaker( HOST_PREFIX + host, null );
+            if ( !hostCircuitBreaker.tryAcquirePermission() )
+            {
+                repositoryCircuitBreaker.onIgnored();
+                return null;
+            }
+            permitting.add( hostCircuitBreaker );
+        }
+
+        return new CircuitBreakerPermit( permitting );
+    }
+
+    @Override
+    public CircuitBreaker getRepositoryCircuitBreaker( final String repositoryId )
+    {
+        return circuitBreakers.get( REPOSITORY_PREFIX + repositoryId );
+    }
+
+    @Override
+    public Map<String, CircuitBreaker> getCircuitBreakers()
+    {
+        return new TreeMap<String, CircuitBreaker>( circuitBreakers );
+    }
+
+    @Override
+    public boolean reset( final String name )
+    {
+        final CircuitBreaker circuitBreaker = circuitBreakers.get( name );
+        if ( circuitBreaker != null )
+        {
+            circuitBreaker.reset();
+            return true;
+        }
+        return false;
+    }
+
+    // ==
+
+    protected CircuitBreaker createCircuitBreaker( final String name )
+    {
+        return new CircuitBreaker( name, windowSize, minimumCalls, failureRateThreshold, slowCallDurationMillis,
+            slowCallRateThreshold, openDurationMillis, halfOpenProbes );
+    }
+
+    private CircuitBreaker getCircuitBreaker( final String name, final CircuitBreaker.Listener listener )
+    {
+        CircuitBreaker circuitBreaker = circuitBreakers.get( name );
+        if ( circuitBreaker == null )
+        {
+            final CircuitBreaker created = createCircuitBreaker( name );
+            created.addListener( eventPostingListener );
+            if ( listener != null )
+            {
+                created.addListener( listener );
+            }
+            circuitBreaker = circuitBreakers.putIfAbsent( name, created );
+            if ( circuitBreaker == null )
+            {
+                circuitBreaker = created;
+            }
+        }
+        return circuitBreaker;
+    }
+
+    private String getHost( final String remoteUrl )
+    {
+        if ( remoteUrl == null )
+        {
+            return null;
+        }
+        try
+        {
+            final URL url = new URL( remoteUrl );
+            final int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+            return url.getHost().toLowerCase() + ":" + port;
+        }
+        catch ( MalformedURLException e )
+        {
+            getLogger().debug( "Cannot determine host of remote URL {}", remoteUrl );
+            return null;
+        }
+    }
+}
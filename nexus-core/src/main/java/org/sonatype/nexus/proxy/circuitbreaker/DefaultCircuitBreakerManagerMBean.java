@@ -0,0 +1,97 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.circuitbreaker;
+
+import java.util.Collection;
+
+import javax.management.StandardMBean;
+
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreaker.State;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Default {@link CircuitBreakerManagerMBean} implementation.
+ * 
+ * @since 2.4
+ */
+public class DefaultCircuitBreakerManagerMBean
+    extends StandardMBean
+    implements CircuitBreakerManagerMBean
+{
+    private final CircuitBreakerManager circuitBreakerManager;
+
+    public DefaultCircuitBreakerManagerMBean( final CircuitBreakerManager circuitBreakerManager )
+    {
+        super( CircuitBreakerManagerMBean.class, false );
+        this.circuitBreakerManager =
+            Preconditions.checkNotNull( circuitBreakerManager, "Managed CircuitBreakerManager cannot be null!" );
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return circuitBreakerManager.isEnabled();
+    }
+
+    @Override
+    public int getNotClosedCount()
+    {
+        int result = 0;
+        for ( CircuitBreaker circuitBreaker : getAllCircuitBreakers() )
+        {
+            if ( State.CLOSED != circuitBreaker.getState() )
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long getRejectedCalls()
+    {
+        long result = 0;
+        for ( CircuitBreaker circuitBreaker : getAllCircuitBreakers() )
+        {
+            result += circuitBreaker.getRejectedCalls();
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getCircuitBreakers()
+    {
+        final Collection<CircuitBreaker> circuitBreakers = getAllCircuitBreakers();
+        final String[] result = new String[circuitBreakers.size()];
+        int i = 0;
+        for ( CircuitBreaker circuitBreaker : circuitBreakers )
+        {
+            result[i++] = circuitBreaker.toString();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean reset( final String name )
+    {
+        return circuitBreakerManager.reset( name );
+    }
+
+    // ==
+
+    protected Collection<CircuitBreaker> getAllCircuitBreakers()
+    {
+        return circuitBreakerManager.getCircuitBreakers().values();
+    }
+}
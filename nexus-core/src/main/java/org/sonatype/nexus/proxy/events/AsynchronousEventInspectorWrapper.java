@@ -33,6 +33,17 @@ public class AsynchronousEventInspectorWrapper
         this.eventInspector = Preconditions.checkNotNull( eventInspector );
     }
 
+    /**
+     * Returns the wrapped event inspector.
+     *
+     * @return the wrapped event inspector.
+     * @since 2.4
+     */
+    public EventInspector getEventInspector()
+    {
+        return eventInspector;
+    }
+
     @Override
     public boolean accepts( Event<?> evt )
     {
@@ -0,0 +1,31 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.events;
+
+import java.util.List;
+
+import org.sonatype.plexus.appevents.Event;
+
+/**
+ * An asynchronous event inspector that wants to receive the events it accepted in batches (in order they were
+ * fired), instead of one by one. Useful for inspectors that may do their work more efficiently when having more
+ * events at hand, like indexing or recording them. When implemented, event inspector host will never invoke
+ * {@link EventInspector#inspect(Event)}.
+ * 
+ * @since 2.4
+ */
+public interface BatchingEventInspector
+    extends AsynchronousEventInspector
+{
+    void inspect( List<Event<?>> evts );
+}
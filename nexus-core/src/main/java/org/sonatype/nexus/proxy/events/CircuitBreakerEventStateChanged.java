@@ -0,0 +1,71 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.events;
+
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreaker;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreaker.State;
+import org.sonatype.plexus.appevents.AbstractEvent;
+
+/**
+ * Event fired when a {@link CircuitBreaker} guarding remote calls made a state transition.
+ * 
+ * @since 2.4
+ */
+public class CircuitBreakerEventStateChanged
+    extends AbstractEvent<CircuitBreaker>
+{
+    private final State oldState;
+
+    private final State newState;
+
+    private final Throwable cause;
+
+    public CircuitBreakerEventStateChanged( final CircuitBreaker circuitBreaker, final State oldState,
+                                            final State newState, final Throwable cause )
+    {
+        super( circuitBreaker );
+        this.oldState = oldState;
+        this.newState = newState;
+        this.cause = cause;
+    }
+
+    public CircuitBreaker getCircuitBreaker()
+    {
+        return getEventSender();
+    }
+
+    public State getOldState()
+    {
+        return oldState;
+    }
+
+    public State getNewState()
+    {
+        return newState;
+    }
+
+    /**
+     * Returns the failure causing the transition, or {@code null}.
+     */
+    public Throwable getCause()
+    {
+        return cause;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "{" + "circuitBreaker=" + getCircuitBreaker().getName() + ", oldState="
+            + oldState + ", newState=" + newState + '}';
+    }
+}
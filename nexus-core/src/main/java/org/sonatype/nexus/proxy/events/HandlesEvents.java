@@ -0,0 +1,41 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.events;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Optional annotation for {@link EventInspector} implementations, declaring the event classes (and their subclasses)
+ * the inspector is interested in. Event inspector host uses it to build a dispatch table, and will not even ask the
+ * inspector about events not assignable to any of the listed classes. Events that are assignable are still subject of
+ * {@link EventInspector#accepts(org.sonatype.plexus.appevents.Event)}, so it is fine to declare a broader type here
+ * and keep fine grained filtering in the inspector. Inspectors not annotated receive all events, as before.
+ * 
+ * @since 2.4
+ */
+@Documented
+@Inherited
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+public @interface HandlesEvents
+{
+    /**
+     * The event classes handled by the annotated inspector.
+     */
+    Class<?>[] value();
+}
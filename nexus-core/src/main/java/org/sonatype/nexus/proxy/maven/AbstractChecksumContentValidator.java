@@ -99,6 +99,12 @@ public abstract class AbstractChecksumContentValidator
 
     protected String retrieveLocalHash( AbstractStorageItem item, String inspector )
     {
+        // prefer the digest calculated while the content was streamed into local storage
+        final Object digest = item.getItemContext().get( inspector );
+        if ( digest instanceof String )
+        {
+            return (String) digest;
+        }
         return item.getRepositoryItemAttributes().get( inspector );
     }
 
@@ -25,6 +25,7 @@ import org.sonatype.nexus.proxy.AccessDeniedException;
 import org.sonatype.nexus.proxy.IllegalOperationException;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.RemoteAccessException;
+import org.sonatype.nexus.proxy.RequestContext;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.StorageException;
 import org.sonatype.nexus.proxy.access.Action;
@@ -76,6 +77,9 @@ public abstract class AbstractMavenRepository
     @Requirement
     protected ProxyRequestFilter proxyRequestFilter;
 
+    @Requirement
+    private SiblingPrefetcher siblingPrefetcher;
+
     private MutableProxyRepositoryKind repositoryKind;
 
     private ArtifactStoreHelper artifactStoreHelper;
@@ -278,6 +282,26 @@ public abstract class AbstractMavenRepository
         getExternalConfiguration( true ).setRepositoryPolicy( repositoryPolicy );
     }
 
+    public boolean isPrefetchSiblings()
+    {
+        return getExternalConfiguration( false ).isPrefetchSiblings();
+    }
+
+    public void setPrefetchSiblings( boolean prefetchSiblings )
+    {
+        getExternalConfiguration( true ).setPrefetchSiblings( prefetchSiblings );
+    }
+
+    public boolean isPrefetchSources()
+    {
+        return getExternalConfiguration( false ).isPrefetchSources();
+    }
+
+    public void setPrefetchSources( boolean prefetchSources )
+    {
+        getExternalConfiguration( true ).setPrefetchSources( prefetchSources );
+    }
+
     public boolean isCleanseRepositoryMetadata()
     {
         return getExternalConfiguration( false ).isCleanseRepositoryMetadata();
@@ -484,7 +508,29 @@ public abstract class AbstractMavenRepository
             removeLocalChecksum( request );
         }
 
-        return super.doRetrieveRemoteItem( request );
+        final AbstractStorageItem item = super.doRetrieveRemoteItem( request );
+
+        if ( path.endsWith( ".pom" ) && isPrefetchSiblings()
+            && !request.getRequestContext().containsKey( RequestContext.CTX_PREFETCH_FLAG ) )
+        {
+            siblingPrefetcher.prefetchSiblings( this, item );
+        }
+
+        return item;
+    }
+
+    @Override
+    public StorageItem retrieveItem( boolean fromTask, ResourceStoreRequest request )
+        throws IllegalOperationException, ItemNotFoundException, StorageException
+    {
+        final StorageItem item = super.retrieveItem( fromTask, request );
+
+        if ( !request.getRequestContext().containsKey( RequestContext.CTX_PREFETCH_FLAG ) )
+        {
+            siblingPrefetcher.itemRetrieved( this, item );
+        }
+
+        return item;
     }
 
     private void removeLocalChecksum( ResourceStoreRequest request )
@@ -36,6 +36,10 @@ public abstract class AbstractMavenRepositoryConfiguration
 
     public static final String WL_DISCOVERY_INTERVAL = "wlDiscoveryInterval";
 
+    public static final String PREFETCH_SIBLINGS = "prefetchSiblings";
+
+    public static final String PREFETCH_SOURCES = "prefetchSources";
+
     public AbstractMavenRepositoryConfiguration( Xpp3Dom configuration )
     {
         super( configuration );
@@ -122,4 +126,24 @@ public abstract class AbstractMavenRepositoryConfiguration
     {
         setNodeValue( getRootNode(), WL_DISCOVERY_INTERVAL, String.valueOf( val ) );
     }
+
+    public boolean isPrefetchSiblings()
+    {
+        return Boolean.parseBoolean( getNodeValue( getRootNode(), PREFETCH_SIBLINGS, Boolean.FALSE.toString() ) );
+    }
+
+    public void setPrefetchSiblings( boolean val )
+    {
+        setNodeValue( getRootNode(), PREFETCH_SIBLINGS, Boolean.toString( val ) );
+    }
+
+    public boolean isPrefetchSources()
+    {
+        return Boolean.parseBoolean( getNodeValue( getRootNode(), PREFETCH_SOURCES, Boolean.FALSE.toString() ) );
+    }
+
+    public void setPrefetchSources( boolean val )
+    {
+        setNodeValue( getRootNode(), PREFETCH_SOURCES, Boolean.toString( val ) );
+    }
 }
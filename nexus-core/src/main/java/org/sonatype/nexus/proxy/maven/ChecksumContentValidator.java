@@ -13,8 +13,18 @@
 package org.sonatype.nexus.proxy.maven;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.codehaus.plexus.util.IOUtil;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.LocalStorageException;
 import org.sonatype.nexus.proxy.RemoteAccessException;
@@ -23,23 +33,89 @@ import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.access.Action;
 import org.sonatype.nexus.proxy.attributes.inspectors.DigestCalculatingInspector;
 import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.item.ByteArrayContentLocator;
 import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
 import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
 import org.sonatype.nexus.proxy.repository.ItemContentValidator;
+import org.sonatype.nexus.proxy.repository.PreparingItemContentValidator;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 
 /**
- * Maven checksum content validator.
+ * Maven checksum content validator. The remote checksum is fetched in parallel with the transfer of the item content
+ * (see {@link #prepareRemoteItemContentValidation}), and is compared with the digest calculated while the content was
+ * being cached.
  * 
  * @author cstamas
  */
 @Component( role = ItemContentValidator.class, hint = "ChecksumContentValidator" )
 public class ChecksumContentValidator
     extends AbstractChecksumContentValidator
-    implements ItemContentValidator
+    implements PreparingItemContentValidator, Disposable
 {
+    /**
+     * Item context key of the {@link Future} fetching the remote checksum.
+     * 
+     * @since 2.4
+     */
+    private static final String REMOTE_HASH_ITEM_KEY = ChecksumContentValidator.class.getName() + ".remoteHashItem";
+
+    /**
+     * Maximum count of remote checksums being fetched concurrently. When exhausted, the checksum is fetched once the
+     * item is cached (as without prefetching).
+     * 
+     * @since 2.4
+     */
+    private static final int PREFETCH_THREADS = SystemPropertiesHelper.getInteger(
+        ChecksumContentValidator.class.getName() + ".prefetchThreads", 20 );
+
+    private final ThreadPoolExecutor prefetchExecutor = new ThreadPoolExecutor( 0, PREFETCH_THREADS, 60L,
+        TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new NexusThreadFactory( "nxchecksum",
+            "Checksum prefetch" ), new ThreadPoolExecutor.AbortPolicy() );
+
+    @Override
+    public void dispose()
+    {
+        prefetchExecutor.shutdownNow();
+    }
+
+    @Override
+    public void prepareRemoteItemContentValidation( final ProxyRepository proxy, final ResourceStoreRequest request,
+                                                    final String baseUrl, final AbstractStorageItem item )
+    {
+        if ( getChecksumPolicy( proxy, item ) == null )
+        {
+            return;
+        }
+
+        // snapshot of the item context, as it keeps changing while the item content is being cached
+        final ResourceStoreRequest hashRequest =
+            new ResourceStoreRequest( item.getRepositoryItemUid().getPath(), true, false );
+        hashRequest.getRequestContext().putAll( item.getItemContext().flatten() );
+        hashRequest.getRequestContext().setRequestLocalOnly( true );
+        hashRequest.getRequestContext().setRequestRemoteOnly( false );
+        try
+        {
+            final Future<RemoteHashItem> remoteHashItem = prefetchExecutor.submit( new Callable<RemoteHashItem>()
+            {
+                @Override
+                public RemoteHashItem call()
+                    throws IOException
+                {
+                    return retrieveRemoteHashItem( proxy, hashRequest, true );
+                }
+            } );
+            item.getItemContext().put( REMOTE_HASH_ITEM_KEY, remoteHashItem );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            getLogger().debug( "Checksum prefetch saturated, will fetch checksum of {} after download",
+                item.getRepositoryItemUid() );
+        }
+    }
 
     @Override
     protected void cleanup( ProxyRepository proxy, RemoteHashResponse remoteHash, boolean contentValid )
@@ -99,38 +175,24 @@ public class ChecksumContentValidator
     {
         RepositoryItemUid uid = item.getRepositoryItemUid();
 
-        ResourceStoreRequest request = new ResourceStoreRequest( item );
+        RemoteHashItem remoteHashItem = getPrefetchedRemoteHashItem( item );
 
-        DefaultStorageFileItem hashItem = null;
-
-        String inspector;
-        // we prefer SHA1 ...
-        try
+        if ( remoteHashItem == null )
         {
-            inspector = DigestCalculatingInspector.DIGEST_SHA1_KEY;
-
-            request.pushRequestPath( uid.getPath() + ".sha1" );
-
-            hashItem = doRetriveRemoteChecksumItem( proxy, request );
-        }
-        catch ( ItemNotFoundException sha1e )
-        {
-            // ... but MD5 will do too
-            inspector = DigestCalculatingInspector.DIGEST_MD5_KEY;
+            // not prefetched (or prefetch failed), fetch it now
             try
             {
-                request.popRequestPath();
-
-                request.pushRequestPath( uid.getPath() + ".md5" );
-
-                hashItem = doRetriveRemoteChecksumItem( proxy, request );
+                remoteHashItem = retrieveRemoteHashItem( proxy, new ResourceStoreRequest( item ), false );
             }
-            catch ( ItemNotFoundException md5e )
+            catch ( IOException e )
             {
-                getLogger().debug( "Item checksums (SHA1, MD5) remotely unavailable " + uid.toString() );
+                // cannot happen, content is not read when not buffered
+                throw new LocalStorageException( "Cannot retrieve remote checksum of " + uid.toString(), e );
             }
         }
 
+        DefaultStorageFileItem hashItem = remoteHashItem.getHashItem();
+
         String remoteHash = null;
 
         if ( hashItem != null )
@@ -165,7 +227,95 @@ public class ChecksumContentValidator
             return null;
         }
 
-        return new RemoteHashResponse( inspector, remoteHash, hashItem );
+        return new RemoteHashResponse( remoteHashItem.getInspector(), remoteHash, hashItem );
+    }
+
+    /**
+     * Returns the remote hash item fetched in parallel with the item content, or {@code null} if it was not
+     * prefetched, or the prefetch failed.
+     */
+    private RemoteHashItem getPrefetchedRemoteHashItem( AbstractStorageItem item )
+    {
+        final Object prefetch = item.getItemContext().remove( REMOTE_HASH_ITEM_KEY );
+        if ( !( prefetch instanceof Future ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            return (RemoteHashItem) ( (Future<?>) prefetch ).get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            // make it unavailable, policy will decide what that means
+            return new RemoteHashItem( DigestCalculatingInspector.DIGEST_SHA1_KEY, null );
+        }
+        catch ( ExecutionException e )
+        {
+            getLogger().debug( "Checksum prefetch of {} failed", item.getRepositoryItemUid(), e.getCause() );
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the remote checksum item of item requested by given request, SHA1 preferred over MD5. The request is
+     * derived from the item, so it carries the context of the request the item was retrieved with. When
+     * {@code buffered}, the checksum content is read into memory, so no remote resources are held until it gets cached.
+     */
+    private RemoteHashItem retrieveRemoteHashItem( ProxyRepository proxy, ResourceStoreRequest request,
+                                                   boolean buffered )
+        throws IOException
+    {
+        final String path = request.getRequestPath();
+
+        DefaultStorageFileItem hashItem = null;
+
+        String inspector;
+        // we prefer SHA1 ...
+        try
+        {
+            inspector = DigestCalculatingInspector.DIGEST_SHA1_KEY;
+
+            request.pushRequestPath( path + ".sha1" );
+
+            hashItem = doRetriveRemoteChecksumItem( proxy, request );
+        }
+        catch ( ItemNotFoundException sha1e )
+        {
+            // ... but MD5 will do too
+            inspector = DigestCalculatingInspector.DIGEST_MD5_KEY;
+            try
+            {
+                request.popRequestPath();
+
+                request.pushRequestPath( path + ".md5" );
+
+                hashItem = doRetriveRemoteChecksumItem( proxy, request );
+            }
+            catch ( ItemNotFoundException md5e )
+            {
+                getLogger().debug( "Item checksums (SHA1, MD5) remotely unavailable " + proxy.getId() + ":" + path );
+            }
+        }
+
+        if ( buffered && hashItem != null )
+        {
+            final InputStream content = hashItem.getInputStream();
+            try
+            {
+                final byte[] bytes = IOUtil.toByteArray( content );
+                hashItem.setContentLocator( new ByteArrayContentLocator( bytes, hashItem.getMimeType() ) );
+                hashItem.setLength( bytes.length );
+            }
+            finally
+            {
+                IOUtil.close( content );
+            }
+        }
+
+        return new RemoteHashItem( inspector, hashItem );
     }
 
     private boolean isChecksum( String path )
@@ -189,4 +339,32 @@ public class ChecksumContentValidator
             throw new ItemNotFoundException( request, proxy, e );
         }
     }
+
+    // ==
+
+    /**
+     * Remote checksum item (if found) and the inspector it is to be checked against.
+     */
+    private static class RemoteHashItem
+    {
+        private final String inspector;
+
+        private final DefaultStorageFileItem hashItem;
+
+        private RemoteHashItem( final String inspector, final DefaultStorageFileItem hashItem )
+        {
+            this.inspector = inspector;
+            this.hashItem = hashItem;
+        }
+
+        public String getInspector()
+        {
+            return inspector;
+        }
+
+        public DefaultStorageFileItem getHashItem()
+        {
+            return hashItem;
+        }
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.gav.Gav;
+import org.sonatype.nexus.proxy.statistics.RetrieveStatisticsManager;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+/**
+ * Default {@link SiblingPrefetcher}. Prefetches run on a small bounded pool of low priority threads, and are dropped
+ * when the pool queue is full. Prefetching is a plain (flagged) retrieval from the repository, so it obeys the Not
+ * Found Cache, request processors and proxy mode, and it is serialized with any client retrieval of the same item by
+ * the item UID lock (whichever comes second finds the item already cached).
+ * 
+ * @since 2.4
+ */
+@Named
+@Singleton
+public class DefaultSiblingPrefetcher
+    extends AbstractLoggingComponent
+    implements SiblingPrefetcher, Disposable
+{
+    private static final String PROPERTY_PREFIX = "org.sonatype.nexus.proxy.maven.DefaultSiblingPrefetcher.";
+
+    private static final int THREADS = SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "threads", 2 );
+
+    private static final int QUEUE_SIZE = SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "queueSize", 500 );
+
+    /**
+     * Count of prefetched items remembered to detect prefetch hits.
+     */
+    private static final int TRACKED_PREFETCHES = SystemPropertiesHelper.getInteger( PROPERTY_PREFIX
+        + "trackedPrefetches", 10000 );
+
+    private final RetrieveStatisticsManager retrieveStatisticsManager;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Keys of prefetches scheduled but not yet done, to not schedule same prefetch twice.
+     */
+    private final ConcurrentMap<String, Boolean> scheduled;
+
+    /**
+     * Keys of prefetched items not yet retrieved by clients (LRU, bounded).
+     */
+    private final Map<String, Boolean> prefetched;
+
+    @Inject
+    public DefaultSiblingPrefetcher( final RetrieveStatisticsManager retrieveStatisticsManager )
+    {
+        this.retrieveStatisticsManager = checkNotNull( retrieveStatisticsManager );
+        this.executor =
+            new ThreadPoolExecutor( THREADS, THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(
+                QUEUE_SIZE ), new NexusThreadFactory( "nxprefetch", "Sibling prefetch", Thread.MIN_PRIORITY ),
+                new ThreadPoolExecutor.AbortPolicy() );
+        this.executor.allowCoreThreadTimeOut( true );
+        this.scheduled = new ConcurrentHashMap<String, Boolean>();
+        this.prefetched = Collections.synchronizedMap( new LinkedHashMap<String, Boolean>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, Boolean> eldest )
+            {
+                return size() > TRACKED_PREFETCHES;
+            }
+        } );
+    }
+
+    @Override
+    public void dispose()
+    {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void prefetchSiblings( final MavenProxyRepository repository, final StorageItem pom )
+    {
+        final String pomPath = pom.getRepositoryItemUid().getPath();
+        final Gav pomGav = repository.getGavCalculator().pathToGav( pomPath );
+        if ( pomGav == null || pomGav.isHash() || pomGav.isSignature() || !"pom".equals( pomGav.getExtension() ) )
+        {
+            return;
+        }
+
+        schedule( repository, pomPath + ".sha1" );
+
+        // POM is parsed in background too, to not delay the client
+        try
+        {
+            executor.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    scheduleArtifacts( repository, pom, pomGav );
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            getLogger().debug( "Prefetch queue full, not prefetching siblings of {}:{}", repository.getId(),
+                pomPath );
+        }
+    }
+
+    @Override
+    public void itemRetrieved( final MavenProxyRepository repository, final StorageItem item )
+    {
+        if ( !prefetched.isEmpty()
+            && prefetched.remove( key( repository, item.getRepositoryItemUid().getPath() ) ) != null )
+        {
+            retrieveStatisticsManager.recordPrefetchHit( repository.getId() );
+        }
+    }
+
+    // ==
+
+    protected void scheduleArtifacts( final MavenProxyRepository repository, final StorageItem pom, final Gav pomGav )
+    {
+        if ( !"jar".equals( repository.getArtifactPackagingMapper().getExtensionForPackaging(
+            readPackaging( repository, pom ) ) ) )
+        {
+            return;
+        }
+
+        final List<String> classifiers = new ArrayList<String>();
+        classifiers.add( null );
+        if ( repository.isPrefetchSources() )
+        {
+            classifiers.add( "sources" );
+        }
+        for ( String classifier : classifiers )
+        {
+            final String path =
+                repository.getGavCalculator().gavToPath(
+                    new Gav( pomGav.getGroupId(), pomGav.getArtifactId(), pomGav.getVersion(), classifier, "jar",
+                        pomGav.getSnapshotBuildNumber(), pomGav.getSnapshotTimeStamp(), null, false, null, false,
+                        null ) );
+            schedule( repository, path );
+            schedule( repository, path + ".sha1" );
+        }
+    }
+
+    protected String readPackaging( final MavenProxyRepository repository, final StorageItem pom )
+    {
+        String packaging = "jar";
+        if ( pom instanceof StorageFileItem )
+        {
+            Reader reader = null;
+            try
+            {
+                reader = new InputStreamReader( ( (StorageFileItem) pom ).getInputStream(), "UTF-8" );
+                final Xpp3Dom packagingNode = Xpp3DomBuilder.build( reader ).getChild( "packaging" );
+                if ( packagingNode != null && packagingNode.getValue() != null )
+                {
+                    packaging = packagingNode.getValue().trim();
+                }
+            }
+            catch ( Exception e )
+            {
+                getLogger().debug( "Could not read packaging of {}:{}, assuming jar", repository.getId(),
+                    pom.getRepositoryItemUid().getPath(), e );
+            }
+            finally
+            {
+                IOUtil.close( reader );
+            }
+        }
+        return packaging;
+    }
+
+    protected void schedule( final MavenProxyRepository repository, final String path )
+    {
+        if ( repository.getNotFoundCache().contains( path ) )
+        {
+            return;
+        }
+
+        final String key = key( repository, path );
+        if ( scheduled.putIfAbsent( key, Boolean.TRUE ) != null )
+        {
+            return;
+        }
+
+        try
+        {
+            executor.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        prefetch( repository, path, key );
+                    }
+                    finally
+                    {
+                        scheduled.remove( key );
+                    }
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            scheduled.remove( key );
+            getLogger().debug( "Prefetch queue full, not prefetching {}:{}", repository.getId(), path );
+        }
+    }
+
+    protected void prefetch( final MavenProxyRepository repository, final String path, final String key )
+    {
+        try
+        {
+            if ( !repository.getLocalStatus().shouldServiceRequest() || repository.getProxyMode() == null
+                || !repository.getProxyMode().shouldProxy() )
+            {
+                return;
+            }
+
+            final ResourceStoreRequest request = new ResourceStoreRequest( path );
+            request.getRequestContext().put( RequestContext.CTX_PREFETCH_FLAG, Boolean.TRUE );
+
+            if ( repository.getLocalStorage().containsItem( repository, request ) )
+            {
+                // already cached (or fetched by a client meanwhile)
+                return;
+            }
+
+            // recorded before the fetch, so a client asking for the item while it is being prefetched is a hit too
+            prefetched.put( key, Boolean.TRUE );
+            repository.retrieveItem( true, request );
+
+            retrieveStatisticsManager.recordPrefetch( repository.getId() );
+        }
+        catch ( ItemNotFoundException e )
+        {
+            // not there, NFC was updated by repository
+            prefetched.remove( key );
+        }
+        catch ( Exception e )
+        {
+            prefetched.remove( key );
+            getLogger().debug( "Could not prefetch {}:{}", repository.getId(), path, e );
+        }
+    }
+
+    protected String key( final MavenProxyRepository repository, final String path )
+    {
+        return repository.getId() + ":" + path;
+    }
+}
@@ -36,4 +36,28 @@ public interface MavenProxyRepository
     boolean isDownloadRemoteIndexes();
 
     void setDownloadRemoteIndexes( boolean download );
+
+    /**
+     * Returns {@code true} if siblings (checksums, main artifact) of POMs fetched from remote should be prefetched.
+     * 
+     * @since 2.4
+     */
+    boolean isPrefetchSiblings();
+
+    /**
+     * @since 2.4
+     */
+    void setPrefetchSiblings( boolean prefetchSiblings );
+
+    /**
+     * Returns {@code true} if sources should be prefetched too, when siblings are prefetched.
+     * 
+     * @since 2.4
+     */
+    boolean isPrefetchSources();
+
+    /**
+     * @since 2.4
+     */
+    void setPrefetchSources( boolean prefetchSources );
 }
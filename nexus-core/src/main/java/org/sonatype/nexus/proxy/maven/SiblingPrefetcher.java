@@ -0,0 +1,35 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven;
+
+import org.sonatype.nexus.proxy.item.StorageItem;
+
+/**
+ * Component prefetching the likely "siblings" of a POM fetched from remote by a Maven proxy repository (checksums,
+ * main artifact and optionally sources), as Maven will request them right after the POM. Prefetching happens in
+ * background, and is enabled per repository (see {@link MavenProxyRepository#isPrefetchSiblings()}).
+ * 
+ * @since 2.4
+ */
+public interface SiblingPrefetcher
+{
+    /**
+     * Schedules prefetching of siblings of given POM, that was just fetched from remote.
+     */
+    void prefetchSiblings( MavenProxyRepository repository, StorageItem pom );
+
+    /**
+     * Notifies the prefetcher that given item was retrieved by a client, used to record prefetch hits.
+     */
+    void itemRetrieved( MavenProxyRepository repository, StorageItem item );
+}
@@ -0,0 +1,202 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.wl.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.sonatype.nexus.proxy.IllegalOperationException;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.ContentLocator;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.item.PreparedContentLocator;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+import org.sonatype.nexus.proxy.maven.wl.internal.scrape.ScrapeCheckpoint;
+import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
+
+import com.google.common.io.Closeables;
+
+/**
+ * Utility class to persist remote scrape checkpoints. Similar to {@link PropfileDiscoveryStatusSource}, it uses
+ * {@link Properties} file stored in {@link MavenProxyRepository}'s local storage.
+ * 
+ * @since 2.4
+ */
+public class PropfileScrapeCheckpointSource
+{
+    private static final String SCRAPE_CHECKPOINT_FILE_PATH = "/.meta/scrape-checkpoint.txt";
+
+    private final MavenProxyRepository mavenProxyRepository;
+
+    /**
+     * Constructor.
+     * 
+     * @param mavenProxyRepository
+     */
+    public PropfileScrapeCheckpointSource( final MavenProxyRepository mavenProxyRepository )
+    {
+        this.mavenProxyRepository = checkNotNull( mavenProxyRepository );
+    }
+
+    /**
+     * Reads up the last scrape checkpoint.
+     * 
+     * @return last scrape checkpoint or {@code null} if none exists.
+     * @throws IOException
+     */
+    public ScrapeCheckpoint read()
+        throws IOException
+    {
+        final StorageFileItem file = getFileItem();
+        if ( file == null )
+        {
+            return null;
+        }
+
+        final Properties props = new Properties();
+        final InputStream inputStream = file.getInputStream();
+        try
+        {
+            props.load( inputStream );
+            return ScrapeCheckpoint.fromProperties( props );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // includes NumberFormatException
+            deleteFileItem();
+            return null;
+        }
+        finally
+        {
+            Closeables.closeQuietly( inputStream );
+        }
+    }
+
+    /**
+     * Persists the scrape checkpoint.
+     * 
+     * @param checkpoint
+     * @throws IOException
+     */
+    public void write( final ScrapeCheckpoint checkpoint )
+        throws IOException
+    {
+        checkNotNull( checkpoint );
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        checkpoint.toProperties().store( bos, "Nexus remote scrape checkpoint" );
+        putFileItem( new PreparedContentLocator( new ByteArrayInputStream( bos.toByteArray() ), "text/plain" ) );
+    }
+
+    /**
+     * Deletes the scrape checkpoint.
+     * 
+     * @throws IOException
+     */
+    public void delete()
+        throws IOException
+    {
+        deleteFileItem();
+    }
+
+    // ==
+
+    protected MavenProxyRepository getMavenProxyRepository()
+    {
+        return mavenProxyRepository;
+    }
+
+    protected StorageFileItem getFileItem()
+        throws IOException
+    {
+        try
+        {
+            final ResourceStoreRequest request = new ResourceStoreRequest( SCRAPE_CHECKPOINT_FILE_PATH );
+            request.setRequestLocalOnly( true );
+            request.setRequestGroupLocalOnly( true );
+            @SuppressWarnings( "deprecation" )
+            final StorageItem item = getMavenProxyRepository().retrieveItem( true, request );
+            if ( item instanceof StorageFileItem )
+            {
+                return (StorageFileItem) item;
+            }
+            else
+            {
+                return null;
+            }
+        }
+        catch ( IllegalOperationException e )
+        {
+            // eh?
+            return null;
+        }
+        catch ( ItemNotFoundException e )
+        {
+            // not present
+            return null;
+        }
+    }
+
+    protected void putFileItem( final ContentLocator content )
+        throws IOException
+    {
+        final ResourceStoreRequest request = new ResourceStoreRequest( SCRAPE_CHECKPOINT_FILE_PATH );
+        request.setRequestLocalOnly( true );
+        request.setRequestGroupLocalOnly( true );
+        final DefaultStorageFileItem file =
+            new DefaultStorageFileItem( getMavenProxyRepository(), request, true, true, content );
+        try
+        {
+            getMavenProxyRepository().storeItem( true, file );
+        }
+        catch ( UnsupportedStorageOperationException e )
+        {
+            // eh?
+        }
+        catch ( IllegalOperationException e )
+        {
+            // eh?
+        }
+    }
+
+    protected void deleteFileItem()
+        throws IOException
+    {
+        final ResourceStoreRequest request = new ResourceStoreRequest( SCRAPE_CHECKPOINT_FILE_PATH );
+        request.setRequestLocalOnly( true );
+        request.setRequestGroupLocalOnly( true );
+        try
+        {
+            getMavenProxyRepository().deleteItemWithChecksums( true, request );
+        }
+        catch ( ItemNotFoundException e )
+        {
+            // ignore
+        }
+        catch ( UnsupportedStorageOperationException e )
+        {
+            // ignore
+        }
+        catch ( IllegalOperationException e )
+        {
+            // ignore
+        }
+    }
+}
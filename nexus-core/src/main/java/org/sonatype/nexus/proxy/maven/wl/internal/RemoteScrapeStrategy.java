@@ -20,6 +20,13 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -29,19 +36,25 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.util.EntityUtils;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
 import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
 import org.sonatype.nexus.proxy.maven.wl.WLConfig;
 import org.sonatype.nexus.proxy.maven.wl.discovery.RemoteStrategy;
 import org.sonatype.nexus.proxy.maven.wl.discovery.StrategyFailedException;
 import org.sonatype.nexus.proxy.maven.wl.discovery.StrategyResult;
 import org.sonatype.nexus.proxy.maven.wl.internal.scrape.Page;
+import org.sonatype.nexus.proxy.maven.wl.internal.scrape.PageCrawler;
 import org.sonatype.nexus.proxy.maven.wl.internal.scrape.ScrapeContext;
 import org.sonatype.nexus.proxy.maven.wl.internal.scrape.Scraper;
 import org.sonatype.nexus.proxy.storage.remote.httpclient.HttpClientManager;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 
 /**
- * Remote scrape strategy.
+ * Remote scrape strategy. Pages are fetched by a {@link PageCrawler} with concurrency bounded per remote host (shared
+ * among scrapes of repositories pointing to same host), and scrape progress is checkpointed in proxy repository local
+ * storage.
  * 
  * @author cstamas
  */
@@ -49,16 +62,33 @@ import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
 @Singleton
 public class RemoteScrapeStrategy
     extends AbstractRemoteStrategy
-    implements RemoteStrategy
+    implements RemoteStrategy, Disposable
 {
     protected static final String ID = "scrape";
 
+    /**
+     * The count of threads fetching pages of all scrapes, 10 by default.
+     */
+    private static final int CRAWL_THREADS = SystemPropertiesHelper.getInteger( Scraper.class.getName()
+        + ".crawlThreads", 10 );
+
+    /**
+     * The maximum count of concurrent page fetches against one remote host, 4 by default. Setting it to 1 makes
+     * scrapes fetch pages one by one.
+     */
+    private static final int HOST_CONCURRENCY = SystemPropertiesHelper.getInteger( Scraper.class.getName()
+        + ".hostConcurrency", 4 );
+
     private final WLConfig config;
 
     private final HttpClientManager httpClientManager;
 
     private final List<Scraper> scrapers;
 
+    private final ThreadPoolExecutor crawlExecutor;
+
+    private final ConcurrentMap<String, Semaphore> hostPermits;
+
     /**
      * Constructor.
      * 
@@ -75,6 +105,17 @@ public class RemoteScrapeStrategy
         this.config = checkNotNull( config );
         this.httpClientManager = checkNotNull( httpClientManager );
         this.scrapers = checkNotNull( scrapers );
+        this.crawlExecutor =
+            new ThreadPoolExecutor( CRAWL_THREADS, CRAWL_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NexusThreadFactory( "nxscrape", "WL scrape crawler" ) );
+        this.crawlExecutor.allowCoreThreadTimeOut( true );
+        this.hostPermits = new ConcurrentHashMap<String, Semaphore>();
+    }
+
+    @Override
+    public void dispose()
+    {
+        crawlExecutor.shutdownNow();
     }
 
     @Override
@@ -86,9 +127,11 @@ public class RemoteScrapeStrategy
         // check does a proxy have a valid URL at all
         final String remoteRepositoryRootUrl = mavenProxyRepository.getRemoteUrl();
         boolean isValidHttpUrl;
+        String remoteHost = null;
         try
         {
             final URL remoteUrl = new URL( remoteRepositoryRootUrl );
+            remoteHost = remoteUrl.getHost().toLowerCase( Locale.ENGLISH ) + ":" + remoteUrl.getPort();
             isValidHttpUrl =
                 "http".equalsIgnoreCase( remoteUrl.getProtocol() )
                     || "https".equalsIgnoreCase( remoteUrl.getProtocol() );
@@ -107,7 +150,8 @@ public class RemoteScrapeStrategy
         final HttpClient httpClient =
             httpClientManager.create( mavenProxyRepository, mavenProxyRepository.getRemoteStorageContext() );
         final ScrapeContext context =
-            new ScrapeContext( mavenProxyRepository, httpClient, config.getRemoteScrapeDepth() );
+            new ScrapeContext( mavenProxyRepository, httpClient, config.getRemoteScrapeDepth(), getPageCrawler(
+                remoteHost ), true );
         if ( isMarkedForNoScrape( context ) )
         {
             getLogger().debug( "Remote {} marked as no-scrape, giving up.",
@@ -148,6 +192,21 @@ public class RemoteScrapeStrategy
 
     // ==
 
+    protected PageCrawler getPageCrawler( final String remoteHost )
+    {
+        Semaphore permits = hostPermits.get( remoteHost );
+        if ( permits == null )
+        {
+            final Semaphore newPermits = new Semaphore( HOST_CONCURRENCY, true );
+            permits = hostPermits.putIfAbsent( remoteHost, newPermits );
+            if ( permits == null )
+            {
+                permits = newPermits;
+            }
+        }
+        return new PageCrawler( crawlExecutor, permits, HOST_CONCURRENCY, PageCrawler.PAGE_SLEEP_TIME_MILLIS );
+    }
+
     protected boolean isMarkedForNoScrape( final ScrapeContext context )
         throws IOException
     {
@@ -13,11 +13,22 @@
 package org.sonatype.nexus.proxy.maven.wl.internal.scrape;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.sonatype.nexus.proxy.maven.wl.internal.scrape.Page.UnexpectedPageResponse;
+import org.sonatype.nexus.proxy.maven.wl.internal.scrape.ScrapeCheckpoint.Listing;
 import org.sonatype.nexus.proxy.walker.ParentOMatic;
 import org.sonatype.nexus.proxy.walker.ParentOMatic.Payload;
 import org.sonatype.nexus.util.Node;
@@ -35,6 +46,13 @@ import com.google.common.base.Throwables;
  * requests, this will "throttle" scraping, it would take around 5 minutes instead of 3 minutes for Central sized
  * repository, that is still acceptable, but would lessen pressure on remote server. Later we can design some more
  * smarter way to control throttling of scrape.
+ * <p>
+ * Index pages are fetched using {@link PageCrawler} of the context, hence pages of one level might be fetched
+ * concurrently (with bounded concurrency against the remote host). Scrape progress is recorded in a
+ * {@link ScrapeCheckpoint}, that allows to resume an interrupted scrape, and to make conditional requests for pages
+ * fetched by previous scrape. As "Last-Modified" of a directory index page changes only when it's direct entries
+ * change, recursion still descends into directories of a not modified page, but revalidates them too, and so unchanged
+ * subtrees cost only the "304 Not Modified" responses, while changed subtrees are fetched and parsed again.
  * 
  * @author cstamas
  */
@@ -42,19 +60,12 @@ public abstract class AbstractGeneratedIndexPageScraper
     extends AbstractScraper
 {
     /**
-     * Sleep time in millis that scraping thread will sleep between processing the page response (after processing page
-     * response and before making another one following a "deeper" link to be more precise). Goal of this sleep is to
-     * "throttle" a bit the scrape speed, to not suffocate remote server by index page generations and/or prevent Nexus
-     * to be seen as DoS attacker. This throttling sleep time is 200ms by default. Modifying it is possible using System
-     * properties using key "org.sonatype.nexus.proxy.maven.wl.internal.scrape.Scraper.pageSleepTimeMillis". An example
-     * of setting sleep time to 500 ms:
-     * 
-     * <pre>
-     * org.sonatype.nexus.proxy.maven.wl.internal.scrape.Scraper.pageSleepTimeMillis = 500
-     * </pre>
+     * The count of processed pages after which the scrape checkpoint is persisted, to be able to resume the scrape if
+     * it is interrupted. Modifying it is possible using System properties using key
+     * "org.sonatype.nexus.proxy.maven.wl.internal.scrape.Scraper.checkpointPages", 100 by default.
      */
-    private long pageSleepTimeMillis = SystemPropertiesHelper.getLong(
-        Scraper.class.getName() + ".pageSleepTimeMillis", 200 );
+    private static final int CHECKPOINT_PAGES = SystemPropertiesHelper.getInteger( Scraper.class.getName()
+        + ".checkpointPages", 100 );
 
     protected AbstractGeneratedIndexPageScraper( final int priority, final String id )
     {
@@ -101,7 +112,16 @@ public abstract class AbstractGeneratedIndexPageScraper
     {
         // we use the great and all-mighty ParentOMatic
         final ParentOMatic parentOMatic = new ParentOMatic();
-        diveIn( context, page, 0, parentOMatic, parentOMatic.getRoot() );
+        final ScrapeCheckpoint checkpoint = context.loadCheckpoint( getId() );
+        if ( checkpoint.size() > 0 )
+        {
+            getLogger().debug( "Scraping URL {} using checkpoint started at {} with {} pages (completed={})",
+                context.getRemoteRepositoryRootUrl(), new Date( checkpoint.getStarted() ), checkpoint.size(),
+                checkpoint.isCompleted() );
+        }
+        crawl( context, page, checkpoint, parentOMatic );
+        checkpoint.complete();
+        context.storeCheckpoint( checkpoint );
         // Special case: scraped with 0 entry, we consider this as an error
         // Remote repo empty? Why are you proxying it? Or worse, some scrape
         // exotic index page and we end up with 0 entries by mistake?
@@ -115,67 +135,241 @@ public abstract class AbstractGeneratedIndexPageScraper
         return entries;
     }
 
-    protected void diveIn( final ScrapeContext context, final Page page, final int currentDepth,
-                           final ParentOMatic parentOMatic, final Node<Payload> currentNode )
+    /**
+     * Crawls the remote starting from the root page, down to scrape depth. Only this (scraping) thread modifies the
+     * {@link ParentOMatic} and the checkpoint, the fetches running concurrently only fetch and parse the pages.
+     * 
+     * @param context
+     * @param rootPage
+     * @param checkpoint
+     * @param parentOMatic
+     * @throws IOException
+     */
+    protected void crawl( final ScrapeContext context, final Page rootPage, final ScrapeCheckpoint checkpoint,
+                          final ParentOMatic parentOMatic )
         throws IOException
     {
         // entry protection
-        if ( currentDepth >= context.getScrapeDepth() )
+        if ( context.getScrapeDepth() <= 0 )
         {
             return;
         }
-        // cancelation
-        CancelableUtil.checkInterruption();
+        final PageCrawler pageCrawler = context.getPageCrawler();
+        final CompletionService<Listing> completionService = pageCrawler.newCompletionService();
+        final Map<Future<Listing>, Node<Payload>> pending = new HashMap<Future<Listing>, Node<Payload>>();
+        final LinkedList<Node<Payload>> waiting = new LinkedList<Node<Payload>>();
+        final Node<Payload> root = parentOMatic.getRoot();
+        final Listing rootListing =
+            listPage( context, rootPage, root.getPathElements(), System.currentTimeMillis() );
+        checkpoint.putListing( root.getPath(), rootListing );
+        addEntries( context, parentOMatic, root, rootListing, waiting );
+        int processed = 1;
+        boolean finished = false;
+        try
+        {
+            while ( !waiting.isEmpty() || !pending.isEmpty() )
+            {
+                // cancelation
+                CancelableUtil.checkInterruption();
+                while ( !waiting.isEmpty() && pending.size() < pageCrawler.getConcurrency() )
+                {
+                    final Node<Payload> node = waiting.removeFirst();
+                    final Listing known = checkpoint.getListing( node.getPath() );
+                    if ( known != null && checkpoint.isCurrent( known ) )
+                    {
+                        // resuming interrupted scrape, this page was processed already
+                        addEntries( context, parentOMatic, node, known, waiting );
+                    }
+                    else
+                    {
+                        pending.put(
+                            pageCrawler.submit( completionService,
+                                new ListingFetch( context, node.getPathElements(), known ) ), node );
+                    }
+                }
+                if ( pending.isEmpty() )
+                {
+                    continue;
+                }
+                final Future<Listing> done = completionService.poll( 1, TimeUnit.SECONDS );
+                if ( done == null )
+                {
+                    continue;
+                }
+                final Node<Payload> node = pending.remove( done );
+                final Listing known = checkpoint.getListing( node.getPath() );
+                final Listing listing = getListing( done );
+                if ( listing == known )
+                {
+                    getLogger().debug( "Page of {} not modified", node.getPath() );
+                    checkpoint.revalidated( node.getPath(), System.currentTimeMillis() );
+                }
+                else
+                {
+                    checkpoint.putListing( node.getPath(), listing );
+                }
+                addEntries( context, parentOMatic, node, listing, waiting );
+                processed++;
+                if ( processed % CHECKPOINT_PAGES == 0 )
+                {
+                    context.storeCheckpoint( checkpoint );
+                }
+            }
+            finished = true;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            CancelableUtil.checkInterruption();
+            throw Throwables.propagate( e );
+        }
+        finally
+        {
+            if ( !finished )
+            {
+                for ( Future<Listing> future : pending.keySet() )
+                {
+                    future.cancel( true );
+                }
+                // save what we have, next scrape will resume from here
+                context.storeCheckpoint( checkpoint );
+            }
+        }
+    }
+
+    /**
+     * Adds the entries of listing as children of given node, and enqueues the directories that should be fetched.
+     * 
+     * @param context
+     * @param parentOMatic
+     * @param node
+     * @param listing
+     * @param waiting
+     */
+    protected void addEntries( final ScrapeContext context, final ParentOMatic parentOMatic,
+                               final Node<Payload> node, final Listing listing, final List<Node<Payload>> waiting )
+    {
+        final String currentPath = node.getPath();
+        // "cut" recursion preemptively to save remote fetch (and then stop recursion due to depth)
+        final boolean fetchDirectories = node.getDepth() + 1 < context.getScrapeDepth();
+        for ( String entry : listing.getEntries() )
+        {
+            final boolean directory = entry.endsWith( "/" );
+            final String name = directory ? entry.substring( 0, entry.length() - 1 ) : entry;
+            final Node<Payload> newSibling = parentOMatic.addPath( currentPath + "/" + name );
+            if ( directory && fetchDirectories )
+            {
+                waiting.add( newSibling );
+            }
+        }
+    }
+
+    /**
+     * Extracts the listing (links to deeper repository paths) from a fetched index page.
+     * 
+     * @param context
+     * @param page
+     * @param pathElements
+     * @param fetched
+     * @return the listing of page.
+     */
+    protected Listing listPage( final ScrapeContext context, final Page page, final List<String> pathElements,
+                                final long fetched )
+    {
         getLogger().debug( "Processing page response from URL {}", page.getUrl() );
         final Elements elements = page.getDocument().getElementsByTag( "a" );
-        final List<String> pathElements = currentNode.getPathElements();
-        final String currentPath = currentNode.getPath();
+        final List<String> entries = new ArrayList<String>();
         for ( Element element : elements )
         {
             if ( isDeeperRepoLink( context, pathElements, element ) )
             {
-                if ( element.text().startsWith( "." ) )
+                String name = element.text();
+                if ( name.startsWith( "." ) )
                 {
                     // skip hidden paths
                     continue;
                 }
-                final Node<Payload> newSibling = parentOMatic.addPath( currentPath + "/" + element.text() );
-                if ( element.absUrl( "href" ).endsWith( "/" ) )
+                while ( name.endsWith( "/" ) )
                 {
-                    // "cut" recursion preemptively to save remote fetch (and then stop recursion due to depth)
-                    final int siblingDepth = currentDepth + 1;
-                    if ( siblingDepth < context.getScrapeDepth() )
-                    {
-                        maySleepBeforeSubsequentFetch();
-                        final String newSiblingEncodedUrl =
-                            getRemoteUrlForRepositoryPath( context, newSibling.getPathElements() ) + "/";
-                        final Page siblingPage = Page.getPageFor( context, newSiblingEncodedUrl );
-                        if ( siblingPage.getHttpResponse().getStatusLine().getStatusCode() == 200 )
-                        {
-                            diveIn( context, siblingPage, siblingDepth, parentOMatic, newSibling );
-                        }
-                        else
-                        {
-                            // we do expect strictly 200 here
-                            throw new UnexpectedPageResponse( page.getUrl(), page.getHttpResponse().getStatusLine() );
-                        }
-                    }
+                    name = name.substring( 0, name.length() - 1 );
+                }
+                if ( name.length() == 0 )
+                {
+                    continue;
                 }
+                entries.add( element.absUrl( "href" ).endsWith( "/" ) ? name + "/" : name );
             }
         }
+        return new Listing( page.getHeaderValue( "Last-Modified" ), page.getHeaderValue( "ETag" ), entries,
+            fetched );
     }
 
-    protected void maySleepBeforeSubsequentFetch()
+    protected Listing getListing( final Future<Listing> future )
+        throws IOException
     {
-        if ( pageSleepTimeMillis > 0 )
+        try
         {
-            try
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            CancelableUtil.checkInterruption();
+            throw Throwables.propagate( e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwables.propagateIfPossible( e.getCause(), IOException.class );
+            throw new IOException( e.getCause() );
+        }
+    }
+
+    /**
+     * Fetches (conditionally, if page was fetched by a previous scrape) and lists an index page. Returns the known
+     * listing instance if remote reports page as not modified.
+     */
+    protected class ListingFetch
+        implements Callable<Listing>
+    {
+        private final ScrapeContext context;
+
+        private final List<String> pathElements;
+
+        private final Listing known;
+
+        public ListingFetch( final ScrapeContext context, final List<String> pathElements, final Listing known )
+        {
+            this.context = context;
+            this.pathElements = pathElements;
+            this.known = known;
+        }
+
+        @Override
+        public Listing call()
+            throws IOException
+        {
+            final String url = getRemoteUrlForRepositoryPath( context, pathElements ) + "/";
+            final Page page;
+            if ( known != null && known.isRevalidable() )
+            {
+                page = Page.getPageFor( context, url, known.getLastModified(), known.getEtag() );
+                if ( page.isNotModified() )
+                {
+                    return known;
+                }
+            }
+            else
+            {
+                page = Page.getPageFor( context, url );
+            }
+            if ( page.getHttpResponse().getStatusLine().getStatusCode() == 200 )
             {
-                Thread.sleep( pageSleepTimeMillis );
+                return listPage( context, page, pathElements, System.currentTimeMillis() );
             }
-            catch ( InterruptedException e )
+            else
             {
-                Throwables.propagate( e );
+                // we do expect strictly 200 here
+                throw new UnexpectedPageResponse( page.getUrl(), page.getHttpResponse().getStatusLine() );
             }
         }
     }
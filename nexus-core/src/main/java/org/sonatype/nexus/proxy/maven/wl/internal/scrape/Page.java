@@ -123,6 +123,30 @@ public class Page
         return header != null && header.getValue() != null && header.getValue().equals( value );
     }
 
+    /**
+     * Returns the value of first header with given name, or {@code null} if not present.
+     * 
+     * @param headerName
+     * @return the header value or {@code null}.
+     * @since 2.4
+     */
+    public String getHeaderValue( final String headerName )
+    {
+        final Header header = getHttpResponse().getFirstHeader( headerName );
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * Checks if this page was a response to a conditional request, telling that page is not modified since.
+     * 
+     * @return {@code true} if remote responded with "304 Not Modified".
+     * @since 2.4
+     */
+    public boolean isNotModified()
+    {
+        return getHttpResponse().getStatusLine().getStatusCode() == 304;
+    }
+
     // ==
 
     private static final Logger LOG = LoggerFactory.getLogger( Page.class );
@@ -137,11 +161,38 @@ public class Page
      */
     public static Page getPageFor( final ScrapeContext context, final String url )
         throws IOException
+    {
+        return getPageFor( context, url, null, null );
+    }
+
+    /**
+     * Returns a page for given URL, making the request conditional if any of the validators is given. If remote
+     * responds with "304 Not Modified", the returned page will have no document.
+     * 
+     * @param context
+     * @param url
+     * @param ifModifiedSince the value of "Last-Modified" header received for this URL last time, or {@code null}.
+     * @param ifNoneMatch the value of "ETag" header received for this URL last time, or {@code null}.
+     * @return the Page for given URL.
+     * @throws IOException
+     * @since 2.4
+     */
+    public static Page getPageFor( final ScrapeContext context, final String url, final String ifModifiedSince,
+                                   final String ifNoneMatch )
+        throws IOException
     {
         checkNotNull( context );
         checkNotNull( url );
         // TODO: detect redirects
         final HttpGet get = new HttpGet( url );
+        if ( ifModifiedSince != null )
+        {
+            get.addHeader( "If-Modified-Since", ifModifiedSince );
+        }
+        if ( ifNoneMatch != null )
+        {
+            get.addHeader( "If-None-Match", ifNoneMatch );
+        }
         LOG.debug( "Executing HTTP GET request against {}", url );
         final HttpResponse response = context.executeHttpRequest( get );
         try
@@ -0,0 +1,147 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.wl.internal.scrape;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Executes page fetches of a scrape, with bounded concurrency against remote host. The permits of remote host are
+ * shared by all the scrapes against same host (several proxy repositories might point to same remote server), so
+ * concurrent scrapes do not multiply the load put on it. The scraper should not have more fetches pending than
+ * {@link #getConcurrency()}, as fetches waiting for a permit occupy executor threads.
+ * <p>
+ * Connections are reused as long as scrapes use the HTTP client provided by Nexus (pooling connection manager) and
+ * consume the page responses, which {@link Page} does.
+ * 
+ * @since 2.4
+ */
+public class PageCrawler
+{
+    /**
+     * Sleep time in millis that fetching thread will sleep before making a request for a page. Goal of this sleep is
+     * to "throttle" a bit the scrape speed, to not suffocate remote server by index page generations and/or prevent
+     * Nexus to be seen as DoS attacker. As fetches of a scrape might be concurrent, this limits the request rate of
+     * each concurrent fetch. This throttling sleep time is 200ms by default. Modifying it is possible using System
+     * properties using key "org.sonatype.nexus.proxy.maven.wl.internal.scrape.Scraper.pageSleepTimeMillis". An example
+     * of setting sleep time to 500 ms:
+     * 
+     * <pre>
+     * org.sonatype.nexus.proxy.maven.wl.internal.scrape.Scraper.pageSleepTimeMillis = 500
+     * </pre>
+     */
+    public static final long PAGE_SLEEP_TIME_MILLIS = SystemPropertiesHelper.getLong( Scraper.class.getName()
+        + ".pageSleepTimeMillis", 200 );
+
+    private final ExecutorService executorService;
+
+    private final Semaphore hostPermits;
+
+    private final int concurrency;
+
+    private final long pageSleepTimeMillis;
+
+    /**
+     * Constructor.
+     * 
+     * @param executorService the executor to run fetches with.
+     * @param hostPermits the permits of remote host, shared among all crawlers against same host.
+     * @param concurrency the maximum count of pending fetches a scrape should have.
+     * @param pageSleepTimeMillis the sleep time before each fetch (throttling), 0 to not sleep.
+     */
+    public PageCrawler( final ExecutorService executorService, final Semaphore hostPermits, final int concurrency,
+                        final long pageSleepTimeMillis )
+    {
+        checkArgument( concurrency > 0, "Concurrency must be positive: %s", concurrency );
+        this.executorService = checkNotNull( executorService );
+        this.hostPermits = checkNotNull( hostPermits );
+        this.concurrency = concurrency;
+        this.pageSleepTimeMillis = pageSleepTimeMillis;
+    }
+
+    /**
+     * Returns the maximum count of pending fetches a scrape should have.
+     * 
+     * @return the count of fetches a scrape may have pending.
+     */
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    /**
+     * Creates a new completion service to submit fetches of one scrape to.
+     * 
+     * @return the completion service.
+     */
+    public <T> CompletionService<T> newCompletionService()
+    {
+        return new ExecutorCompletionService<T>( executorService );
+    }
+
+    /**
+     * Submits a fetch, that will be executed while holding a permit of remote host.
+     * 
+     * @param completionService the completion service created by {@link #newCompletionService()}.
+     * @param fetch
+     * @return the future of fetch.
+     */
+    public <T> Future<T> submit( final CompletionService<T> completionService, final Callable<T> fetch )
+    {
+        checkNotNull( fetch );
+        return completionService.submit( new Callable<T>()
+        {
+            @Override
+            public T call()
+                throws Exception
+            {
+                if ( pageSleepTimeMillis > 0 )
+                {
+                    Thread.sleep( pageSleepTimeMillis );
+                }
+                hostPermits.acquire();
+                try
+                {
+                    return fetch.call();
+                }
+                finally
+                {
+                    hostPermits.release();
+                }
+            }
+        } );
+    }
+
+    // ==
+
+    /**
+     * Creates a crawler that executes fetches in caller thread, one by one.
+     * 
+     * @return the sequential crawler.
+     */
+    public static PageCrawler sequential()
+    {
+        return new PageCrawler( MoreExecutors.sameThreadExecutor(), new Semaphore( 1 ), 1, PAGE_SLEEP_TIME_MILLIS );
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.wl.internal.scrape;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+/**
+ * State of a remote scrape: the listings of index pages already fetched, with validators ("Last-Modified" and "ETag"
+ * headers) the remote sent for them. Checkpoint serves two purposes: an interrupted scrape (like one killed by a
+ * timeout) can be resumed without fetching again pages it already processed, and a subsequent scrape can issue
+ * conditional requests, and reuse the listings of pages that were not modified since.
+ * <p>
+ * A listing is "current" if it was fetched (or revalidated) during the scrape this checkpoint belongs to, otherwise it
+ * is a leftover of a previous scrape and needs revalidation before being used. Instances are not thread safe, and are
+ * meant to be used by the scraping thread only.
+ * 
+ * @since 2.4
+ */
+public class ScrapeCheckpoint
+{
+    /**
+     * Listing of one index page.
+     */
+    public static class Listing
+    {
+        private final String lastModified;
+
+        private final String etag;
+
+        private final List<String> entries;
+
+        private long fetched;
+
+        /**
+         * Constructor.
+         * 
+         * @param lastModified the "Last-Modified" header value of the page or {@code null}.
+         * @param etag the "ETag" header value of the page or {@code null}.
+         * @param entries the names of entries linked from page, in page order, directory names suffixed with "/".
+         * @param fetched the timestamp when page was fetched or revalidated.
+         */
+        public Listing( final String lastModified, final String etag, final List<String> entries,
+                        final long fetched )
+        {
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.entries = Collections.unmodifiableList( new ArrayList<String>( checkNotNull( entries ) ) );
+            this.fetched = fetched;
+        }
+
+        public String getLastModified()
+        {
+            return lastModified;
+        }
+
+        public String getEtag()
+        {
+            return etag;
+        }
+
+        public List<String> getEntries()
+        {
+            return entries;
+        }
+
+        public long getFetched()
+        {
+            return fetched;
+        }
+
+        /**
+         * Returns {@code true} if page had any validator, hence conditional request can be made for it.
+         * 
+         * @return {@code true} if conditional request is possible.
+         */
+        public boolean isRevalidable()
+        {
+            return lastModified != null || etag != null;
+        }
+    }
+
+    private static final String SCRAPER_KEY = "scraper";
+
+    private static final String ROOT_URL_KEY = "rootUrl";
+
+    private static final String DEPTH_KEY = "depth";
+
+    private static final String STARTED_KEY = "started";
+
+    private static final String COMPLETED_KEY = "completed";
+
+    private static final String PAGE_PREFIX = "page.";
+
+    private static final String LAST_MODIFIED_PREFIX = "lastModified.";
+
+    private static final String ETAG_PREFIX = "etag.";
+
+    private static final String ENTRIES_PREFIX = "entries.";
+
+    /**
+     * Listed names are link texts, that never contain line breaks.
+     */
+    private static final char ENTRY_SEPARATOR = '\n';
+
+    private final String scraperId;
+
+    private final String rootUrl;
+
+    private final int depth;
+
+    private final long started;
+
+    private final Map<String, Listing> listings;
+
+    private boolean completed;
+
+    /**
+     * Constructor for a fresh checkpoint without any listing.
+     * 
+     * @param scraperId the ID of the {@link Scraper} that scrapes.
+     * @param rootUrl the scraped remote URL.
+     * @param depth the scrape depth.
+     * @param started the timestamp when scrape started.
+     */
+    public ScrapeCheckpoint( final String scraperId, final String rootUrl, final int depth, final long started )
+    {
+        this.scraperId = checkNotNull( scraperId );
+        this.rootUrl = checkNotNull( rootUrl );
+        this.depth = depth;
+        this.started = started;
+        this.listings = new LinkedHashMap<String, Listing>();
+        this.completed = false;
+    }
+
+    public String getScraperId()
+    {
+        return scraperId;
+    }
+
+    public String getRootUrl()
+    {
+        return rootUrl;
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public long getStarted()
+    {
+        return started;
+    }
+
+    public boolean isCompleted()
+    {
+        return completed;
+    }
+
+    /**
+     * Returns the count of listings in this checkpoint (current or not).
+     * 
+     * @return count of listings.
+     */
+    public int size()
+    {
+        return listings.size();
+    }
+
+    /**
+     * Returns the listing for given repository path, or {@code null} if no such listing.
+     * 
+     * @param path
+     * @return the listing or {@code null}.
+     */
+    public Listing getListing( final String path )
+    {
+        return listings.get( path );
+    }
+
+    /**
+     * Returns {@code true} if listing was fetched or revalidated during the scrape this checkpoint belongs to.
+     * 
+     * @param listing
+     * @return {@code true} if listing is current and may be used as is.
+     */
+    public boolean isCurrent( final Listing listing )
+    {
+        return listing.getFetched() >= started;
+    }
+
+    /**
+     * Records a freshly fetched listing for given repository path.
+     * 
+     * @param path
+     * @param listing
+     */
+    public void putListing( final String path, final Listing listing )
+    {
+        listings.put( checkNotNull( path ), checkNotNull( listing ) );
+    }
+
+    /**
+     * Marks the listing of given path as revalidated (remote reported it as not modified).
+     * 
+     * @param path
+     * @param timestamp
+     */
+    public void revalidated( final String path, final long timestamp )
+    {
+        final Listing listing = listings.get( path );
+        if ( listing != null )
+        {
+            listing.fetched = timestamp;
+        }
+    }
+
+    /**
+     * Marks this checkpoint as completed, and drops all the listings that were not reached during this scrape (as
+     * those belong to directories removed from remote).
+     */
+    public void complete()
+    {
+        for ( Iterator<Listing> iterator = listings.values().iterator(); iterator.hasNext(); )
+        {
+            if ( !isCurrent( iterator.next() ) )
+            {
+                iterator.remove();
+            }
+        }
+        completed = true;
+    }
+
+    // ==
+
+    /**
+     * Creates the checkpoint to be used with a new scrape. If previous checkpoint is for some other scrape (different
+     * scraper, remote URL or depth), it is discarded. If it is complete, it's listings are carried over for
+     * revalidation. If it is incomplete (the scrape was interrupted) and not older than given maximum age, it is
+     * continued as is, and the listings fetched so far will not be fetched again.
+     * 
+     * @param previous the checkpoint of previous scrape or {@code null}.
+     * @param scraperId
+     * @param rootUrl
+     * @param depth
+     * @param now
+     * @param maxResumeAgeMillis the maximum age of incomplete checkpoint that is still resumed.
+     * @return the checkpoint to use with new scrape.
+     */
+    public static ScrapeCheckpoint resume( final ScrapeCheckpoint previous, final String scraperId,
+                                           final String rootUrl, final int depth, final long now,
+                                           final long maxResumeAgeMillis )
+    {
+        if ( previous == null || !previous.getScraperId().equals( scraperId )
+            || !previous.getRootUrl().equals( rootUrl ) || previous.getDepth() != depth )
+        {
+            return new ScrapeCheckpoint( scraperId, rootUrl, depth, now );
+        }
+        if ( !previous.isCompleted() && now - previous.getStarted() <= maxResumeAgeMillis )
+        {
+            return previous;
+        }
+        final ScrapeCheckpoint result = new ScrapeCheckpoint( scraperId, rootUrl, depth, now );
+        result.listings.putAll( previous.listings );
+        return result;
+    }
+
+    /**
+     * Converts this checkpoint to {@link Properties}.
+     * 
+     * @return properties representing this checkpoint.
+     */
+    public Properties toProperties()
+    {
+        final Joiner joiner = Joiner.on( ENTRY_SEPARATOR );
+        final Properties props = new Properties();
+        props.put( SCRAPER_KEY, scraperId );
+        props.put( ROOT_URL_KEY, rootUrl );
+        props.put( DEPTH_KEY, Integer.toString( depth ) );
+        props.put( STARTED_KEY, Long.toString( started ) );
+        props.put( COMPLETED_KEY, Boolean.toString( completed ) );
+        for ( Map.Entry<String, Listing> entry : listings.entrySet() )
+        {
+            final String path = entry.getKey();
+            final Listing listing = entry.getValue();
+            props.put( PAGE_PREFIX + path, Long.toString( listing.getFetched() ) );
+            if ( listing.getLastModified() != null )
+            {
+                props.put( LAST_MODIFIED_PREFIX + path, listing.getLastModified() );
+            }
+            if ( listing.getEtag() != null )
+            {
+                props.put( ETAG_PREFIX + path, listing.getEtag() );
+            }
+            props.put( ENTRIES_PREFIX + path, joiner.join( listing.getEntries() ) );
+        }
+        return props;
+    }
+
+    /**
+     * Creates checkpoint out of {@link Properties} created by {@link #toProperties()}.
+     * 
+     * @param props
+     * @return the checkpoint.
+     * @throws IllegalArgumentException if properties are not a valid checkpoint.
+     */
+    public static ScrapeCheckpoint fromProperties( final Properties props )
+        throws IllegalArgumentException
+    {
+        final String scraperId = props.getProperty( SCRAPER_KEY );
+        final String rootUrl = props.getProperty( ROOT_URL_KEY );
+        if ( scraperId == null || rootUrl == null )
+        {
+            throw new IllegalArgumentException( "Not a scrape checkpoint" );
+        }
+        final ScrapeCheckpoint result =
+            new ScrapeCheckpoint( scraperId, rootUrl, Integer.parseInt( props.getProperty( DEPTH_KEY, "-1" ) ),
+                Long.parseLong( props.getProperty( STARTED_KEY, "-1" ) ) );
+        result.completed = Boolean.parseBoolean( props.getProperty( COMPLETED_KEY ) );
+        final Splitter splitter = Splitter.on( ENTRY_SEPARATOR ).omitEmptyStrings();
+        for ( String key : props.stringPropertyNames() )
+        {
+            if ( key.startsWith( PAGE_PREFIX ) )
+            {
+                final String path = key.substring( PAGE_PREFIX.length() );
+                final List<String> entries = new ArrayList<String>();
+                for ( String entry : splitter.split( props.getProperty( ENTRIES_PREFIX + path, "" ) ) )
+                {
+                    entries.add( entry );
+                }
+                result.listings.put( path, new Listing( props.getProperty( LAST_MODIFIED_PREFIX + path ),
+                    props.getProperty( ETAG_PREFIX + path ), entries, Long.parseLong( props.getProperty( key ) ) ) );
+            }
+        }
+        return result;
+    }
+}
@@ -21,9 +21,13 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.protocol.BasicHttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonatype.nexus.apachehttpclient.Hc4Provider;
 import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
 import org.sonatype.nexus.proxy.maven.wl.PrefixSource;
+import org.sonatype.nexus.proxy.maven.wl.internal.PropfileScrapeCheckpointSource;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 
 /**
  * Request for scraping.
@@ -32,6 +36,15 @@ import org.sonatype.nexus.proxy.maven.wl.PrefixSource;
  */
 public class ScrapeContext
 {
+    /**
+     * The maximum age of an incomplete scrape checkpoint that is still resumed, 24 hours by default. Older ones are
+     * used only to revalidate the pages they contain.
+     */
+    private static final long CHECKPOINT_MAX_RESUME_AGE_MILLIS = SystemPropertiesHelper.getLong(
+        Scraper.class.getName() + ".checkpointMaxResumeAgeMillis", 24L * 60L * 60L * 1000L );
+
+    private static final Logger LOG = LoggerFactory.getLogger( ScrapeContext.class );
+
     private final MavenProxyRepository remoteRepository;
     
     private final String remoteRepositoryRootUrl;
@@ -40,6 +53,10 @@ public class ScrapeContext
 
     private final int scrapeDepth;
 
+    private final PageCrawler pageCrawler;
+
+    private final PropfileScrapeCheckpointSource checkpointSource;
+
     private boolean stopped;
 
     private PrefixSource prefixSource;
@@ -55,11 +72,29 @@ public class ScrapeContext
      */
     public ScrapeContext( final MavenProxyRepository remoteRepository, final HttpClient httpClient,
                           final int scrapeDepth )
+    {
+        this( remoteRepository, httpClient, scrapeDepth, PageCrawler.sequential(), false );
+    }
+
+    /**
+     * Constructor, none of the parameters might be {@code null}.
+     * 
+     * @param remoteRepository
+     * @param httpClient
+     * @param scrapeDepth
+     * @param pageCrawler the crawler to fetch pages with.
+     * @param checkpointing {@code true} if scrape checkpoints should be persisted in repository local storage.
+     * @since 2.4
+     */
+    public ScrapeContext( final MavenProxyRepository remoteRepository, final HttpClient httpClient,
+                          final int scrapeDepth, final PageCrawler pageCrawler, final boolean checkpointing )
     {
         this.remoteRepository = checkNotNull( remoteRepository );
         this.remoteRepositoryRootUrl = checkNotNull( remoteRepository.getRemoteUrl() );
         this.httpClient = checkNotNull( httpClient );
         this.scrapeDepth = checkNotNull( scrapeDepth );
+        this.pageCrawler = checkNotNull( pageCrawler );
+        this.checkpointSource = checkpointing ? new PropfileScrapeCheckpointSource( remoteRepository ) : null;
         this.stopped = false;
     }
 
@@ -166,4 +201,64 @@ public class ScrapeContext
     {
         return scrapeDepth;
     }
+
+    /**
+     * The crawler to fetch pages with.
+     * 
+     * @return the page crawler.
+     * @since 2.4
+     */
+    public PageCrawler getPageCrawler()
+    {
+        return pageCrawler;
+    }
+
+    /**
+     * Returns the checkpoint to be used by given scraper: continues the interrupted scrape, or carries over the pages
+     * of previous scrape for revalidation. See {@link ScrapeCheckpoint#resume}.
+     * 
+     * @param scraperId the ID of the scraper.
+     * @return the checkpoint to use, never {@code null}.
+     * @since 2.4
+     */
+    public ScrapeCheckpoint loadCheckpoint( final String scraperId )
+    {
+        ScrapeCheckpoint previous = null;
+        if ( checkpointSource != null )
+        {
+            try
+            {
+                previous = checkpointSource.read();
+            }
+            catch ( IOException e )
+            {
+                LOG.debug( "Could not read scrape checkpoint of {}", remoteRepositoryRootUrl, e );
+            }
+        }
+        return ScrapeCheckpoint.resume( previous, scraperId, remoteRepositoryRootUrl, scrapeDepth,
+            System.currentTimeMillis(), CHECKPOINT_MAX_RESUME_AGE_MILLIS );
+    }
+
+    /**
+     * Persists the checkpoint, if checkpointing is enabled for this context. Failures are logged but otherwise
+     * ignored, as losing a checkpoint means only more work for next scrape.
+     * 
+     * @param checkpoint
+     * @since 2.4
+     */
+    public void storeCheckpoint( final ScrapeCheckpoint checkpoint )
+    {
+        checkNotNull( checkpoint );
+        if ( checkpointSource != null )
+        {
+            try
+            {
+                checkpointSource.write( checkpoint );
+            }
+            catch ( IOException e )
+            {
+                LOG.debug( "Could not write scrape checkpoint of {}", remoteRepositoryRootUrl, e );
+            }
+        }
+    }
 }
@@ -13,8 +13,12 @@
 package org.sonatype.nexus.proxy.mirror;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.sonatype.nexus.proxy.repository.Mirror;
 
@@ -33,17 +37,37 @@ public class DefaultDownloadMirrorSelector
     {
         this.dMirrors = dMirrors;
 
+        final List<Mirror> candidates = new ArrayList<Mirror>();
+        final Map<Mirror, Double> scores = new HashMap<Mirror, Double>();
+
         for ( Mirror mirror : dMirrors.getMirrors() )
         {
             if ( !dMirrors.isBlacklisted( mirror ) )
             {
-                mirrors.add( mirror );
+                final MirrorScore score = dMirrors.getMirrorScore( mirror );
+                candidates.add( mirror );
+                scores.put( mirror, score == null ? 0 : score.getScore( dMirrors.getBlacklistExpiration() ) );
             }
-            
+        }
+
+        // best scored first, sort is stable, so configured order is kept for equally scored ones
+        Collections.sort( candidates, new Comparator<Mirror>()
+        {
+            @Override
+            public int compare( final Mirror m1, final Mirror m2 )
+            {
+                return Double.compare( scores.get( m1 ), scores.get( m2 ) );
+            }
+        } );
+
+        for ( Mirror mirror : candidates )
+        {
             if ( mirrors.size() >= dMirrors.getMaxMirrors() )
             {
                 break;
             }
+
+            mirrors.add( mirror );
         }
     }
 
@@ -67,6 +91,27 @@ public class DefaultDownloadMirrorSelector
         failedMirrors.remove( mirror );
 
         this.success = true;
+
+        final MirrorScore score = dMirrors.getMirrorScore( mirror );
+        if ( score != null )
+        {
+            score.recordSuccess();
+        }
+    }
+
+    public void feedbackSuccess( Mirror mirror, long latencyMillis )
+    {
+        // XXX validate URL
+
+        failedMirrors.remove( mirror );
+
+        this.success = true;
+
+        final MirrorScore score = dMirrors.getMirrorScore( mirror );
+        if ( score != null )
+        {
+            score.recordSuccess( latencyMillis );
+        }
     }
 
     public void feedbackFailure( Mirror mirror )
@@ -74,5 +119,11 @@ public class DefaultDownloadMirrorSelector
         // XXX validate URL
 
         failedMirrors.add( mirror );
+
+        final MirrorScore score = dMirrors.getMirrorScore( mirror );
+        if ( score != null )
+        {
+            score.recordFailure();
+        }
     }
 }
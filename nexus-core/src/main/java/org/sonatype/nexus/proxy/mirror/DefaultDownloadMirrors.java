@@ -20,6 +20,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.sonatype.nexus.configuration.model.CMirror;
 import org.sonatype.nexus.configuration.model.CRepository;
@@ -40,6 +42,8 @@ public class DefaultDownloadMirrors
 
     private long blacklistExpiration = DEFAULT_EXPIRATION;
 
+    private final ConcurrentMap<String, MirrorScore> scores = new ConcurrentHashMap<String, MirrorScore>();
+
     public DefaultDownloadMirrors( CRepositoryCoreConfiguration configuration )
     {
         this.configuration = configuration;
@@ -88,6 +92,8 @@ public class DefaultDownloadMirrors
             getConfiguration( true ).getRemoteStorage().getMirrors().clear();
 
             blacklist.clear();
+
+            scores.clear();
         }
         else
         {
@@ -118,6 +124,17 @@ public class DefaultDownloadMirrors
                     i.remove();
                 }
             }
+
+            // same for scores
+            Iterator<String> s = scores.keySet().iterator();
+
+            while ( s.hasNext() )
+            {
+                if ( !existsMirrorWithId( true, s.next() ) )
+                {
+                    s.remove();
+                }
+            }
         }
     }
 
@@ -161,6 +178,25 @@ public class DefaultDownloadMirrors
         return false;
     }
 
+    public MirrorScore getMirrorScore( Mirror mirror )
+    {
+        MirrorScore score = scores.get( mirror.getId() );
+
+        if ( score == null && existsMirrorWithId( false, mirror.getId() ) )
+        {
+            final MirrorScore newScore = new MirrorScore();
+
+            score = scores.putIfAbsent( mirror.getId(), newScore );
+
+            if ( score == null )
+            {
+                score = newScore;
+            }
+        }
+
+        return score;
+    }
+
     /**
      * Adds specified mirror URLs to the black list.
      */
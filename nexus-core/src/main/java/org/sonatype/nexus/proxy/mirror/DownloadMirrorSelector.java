@@ -29,6 +29,14 @@ public interface DownloadMirrorSelector
      */
     void feedbackSuccess( Mirror mirror );
 
+    /**
+     * Requested item was successfully downloaded from specified mirror url, and the mirror responded in given time.
+     * 
+     * @param latencyMillis the time to first byte, in millis.
+     * @since 2.4
+     */
+    void feedbackSuccess( Mirror mirror, long latencyMillis );
+
     /**
      * There was a problem (like IOException or ItemNotFound) retrieving requested item from specified mirror url.
      * 
@@ -37,5 +37,12 @@ public interface DownloadMirrors
 
     boolean isBlacklisted( Mirror mirror );
 
+    /**
+     * Returns the score of the mirror, or {@code null} if no such mirror is configured.
+     * 
+     * @since 2.4
+     */
+    MirrorScore getMirrorScore( Mirror mirror );
+
     DownloadMirrorSelector openSelector( String requestPath );
 }
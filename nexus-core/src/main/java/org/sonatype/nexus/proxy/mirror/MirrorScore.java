@@ -0,0 +1,111 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.mirror;
+
+/**
+ * Score of a download mirror, made of exponentially weighted moving averages of the latency (time to first byte) and
+ * error rate of retrievals from it. Lower score is better.
+ * 
+ * @since 2.4
+ */
+public class MirrorScore
+{
+    /**
+     * Weight of the newest sample in the moving averages.
+     */
+    private static final double ALPHA = 0.3;
+
+    /**
+     * Latency penalty (in millis) of a mirror failing all the time.
+     */
+    private static final double ERROR_PENALTY = 10000;
+
+    private double latency;
+
+    private double errorRate;
+
+    private long latencySamples;
+
+    private long samples;
+
+    private long lastUpdated;
+
+    public synchronized void recordSuccess( final long latencyMillis )
+    {
+        latency = latencySamples == 0 ? latencyMillis : ALPHA * latencyMillis + ( 1 - ALPHA ) * latency;
+        latencySamples++;
+        record( 0 );
+    }
+
+    public synchronized void recordSuccess()
+    {
+        record( 0 );
+    }
+
+    public synchronized void recordFailure()
+    {
+        record( 1 );
+    }
+
+    private void record( final double error )
+    {
+        errorRate = samples == 0 ? error : ALPHA * error + ( 1 - ALPHA ) * errorRate;
+        samples++;
+        lastUpdated = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the average latency in millis, or -1 if not known.
+     */
+    public synchronized long getLatency()
+    {
+        return latencySamples == 0 ? -1 : Math.round( latency );
+    }
+
+    /**
+     * Returns the average error rate, between 0 (never fails) and 1 (always fails).
+     */
+    public synchronized double getErrorRate()
+    {
+        return errorRate;
+    }
+
+    public synchronized long getSamples()
+    {
+        return samples;
+    }
+
+    public synchronized long getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    /**
+     * Returns the score, that is 0 for mirrors without samples (hence they are tried first), or samples older than
+     * passed in max age (hence they are re-evaluated). Negative max age means samples never get stale.
+     */
+    public synchronized double getScore( final long maxAge )
+    {
+        if ( samples == 0 || ( maxAge >= 0 && lastUpdated + maxAge < System.currentTimeMillis() ) )
+        {
+            return 0;
+        }
+        return ( latencySamples == 0 ? 0 : latency ) + errorRate * ERROR_PENALTY;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "MirrorScore{latency=" + getLatency() + ", errorRate=" + errorRate + ", samples=" + samples + "}";
+    }
+}
@@ -31,7 +31,7 @@ import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
-import org.sonatype.nexus.proxy.repository.RepositoryStatusCheckerThread;
+import org.sonatype.nexus.proxy.repository.RepositoryStatusChecker;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
 import org.sonatype.plexus.appevents.EventListener;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
@@ -62,6 +62,9 @@ public class DefaultRepositoryRegistry
     @Requirement
     private RepositoryTypeRegistry repositoryTypeRegistry;
 
+    @Requirement
+    private RepositoryStatusChecker repositoryStatusChecker;
+
     public void addRepository( final Repository repository )
     {
         final RepositoryTypeDescriptor rtd =
@@ -192,7 +195,7 @@ public class DefaultRepositoryRegistry
 
     public void dispose()
     {
-        // kill the checker daemon threads
+        // stop the remote status checks
         for ( Repository repository : getRepositoriesMap().values() )
         {
             killMonitorThread( repository.adaptToFacet( ProxyRepository.class ) );
@@ -265,19 +268,7 @@ public class DefaultRepositoryRegistry
             {
                 final ProxyRepository proxy = repository.adaptToFacet( ProxyRepository.class );
 
-                killMonitorThread( proxy );
-
-                RepositoryStatusCheckerThread thread =
-                    new RepositoryStatusCheckerThread( LoggerFactory.getLogger( getClass().getName() + "-"
-                        + repository.getId() ), (ProxyRepository) repository );
-
-                proxy.setRepositoryStatusCheckerThread( thread );
-
-                thread.setRunning( true );
-
-                thread.setDaemon( true );
-
-                thread.start();
+                repositoryStatusChecker.register( proxy );
             }
         }
 
@@ -322,15 +313,6 @@ public class DefaultRepositoryRegistry
             return;
         }
 
-        if ( null != proxy.getRepositoryStatusCheckerThread() )
-        {
-            RepositoryStatusCheckerThread thread =
-                (RepositoryStatusCheckerThread) proxy.getRepositoryStatusCheckerThread();
-
-            thread.setRunning( false );
-
-            // and now interrupt it to die
-            thread.interrupt();
-        }
+        repositoryStatusChecker.unregister( proxy );
     }
 }
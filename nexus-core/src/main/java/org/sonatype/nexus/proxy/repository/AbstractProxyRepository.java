@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
 
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -41,6 +42,9 @@ import org.sonatype.nexus.proxy.RemoteStorageTransportException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.StorageException;
 import org.sonatype.nexus.proxy.access.Action;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreaker;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreakerManager;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreakerPermit;
 import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryEventEvictUnusedItems;
 import org.sonatype.nexus.proxy.events.RepositoryEventExpireProxyCaches;
@@ -103,14 +107,63 @@ public abstract class AbstractProxyRepository
      */
     private static final long AUTO_BLOCK_STATUS_MAX_RETAIN_TIME = 60L * 60L * 1000L;
 
+    /**
+     * Whether the top two candidate mirrors should be raced for paths matching {@link #MIRROR_RACE_PATTERN}, using the
+     * response that arrives first (and cancelling the other one). Disabled by default.
+     * 
+     * @since 2.4
+     */
+    private static final boolean MIRROR_RACE = SystemPropertiesHelper.getBoolean( "nexus.proxy.mirrors.race", false );
+
+    /**
+     * Paths of (small) files worth to race mirrors for.
+     * 
+     * @since 2.4
+     */
+    private static final Pattern MIRROR_RACE_PATTERN = Pattern.compile( SystemPropertiesHelper.getString(
+        "nexus.proxy.mirrors.racePattern", ".*\\.(pom|sha1|md5|asc|xml)$" ) );
+
+    /**
+     * Request context key marking requests that were not allowed to go remote by an open circuit breaker.
+     * 
+     * @since 2.4
+     */
+    private static final String CTX_SHORT_CIRCUITED = AbstractProxyRepository.class.getName() + ".shortCircuited";
+
     @Requirement
     private ThreadPoolManager poolManager;
 
     /**
-     * The remote status checker thread, used in Proxies for handling autoBlocking. Not to go into Pool above, is
-     * handled separately.
+     * The circuit breakers guarding remote calls, driving autoBlocking when enabled.
+     */
+    @Requirement
+    private CircuitBreakerManager circuitBreakerManager;
+
+    /**
+     * Reacts on transitions of the circuit breaker of this repository.
+     */
+    private final CircuitBreaker.Listener circuitBreakerListener = new CircuitBreaker.Listener()
+    {
+        @Override
+        public void onStateChanged( final CircuitBreaker circuitBreaker, final CircuitBreaker.State oldState,
+                                    final CircuitBreaker.State newState, final Throwable cause )
+        {
+            if ( CircuitBreaker.State.OPEN == newState && CircuitBreaker.State.CLOSED == oldState )
+            {
+                autoBlockProxying( cause );
+            }
+            else if ( CircuitBreaker.State.CLOSED == newState && CircuitBreaker.State.HALF_OPEN == oldState )
+            {
+                autoUnBlockProxying();
+            }
+        }
+    };
+
+    /**
+     * The remote status checker, used in Proxies for handling autoBlocking.
      */
-    private Thread repositoryStatusCheckerThread;
+    @Requirement
+    private RepositoryStatusChecker repositoryStatusChecker;
 
     /**
      * if remote url changed, need special handling after save
@@ -413,14 +466,40 @@ public abstract class AbstractProxyRepository
         getExternalConfiguration( true ).setAutoBlockActive( val );
     }
 
+    @Override
+    public int getRangedDownloadSegments()
+    {
+        return getExternalConfiguration( false ).getRangedDownloadSegments();
+    }
+
+    @Override
+    public void setRangedDownloadSegments( final int segments )
+    {
+        getExternalConfiguration( true ).setRangedDownloadSegments( segments );
+    }
+
+    @Override
+    public long getRangedDownloadThreshold()
+    {
+        return getExternalConfiguration( false ).getRangedDownloadThreshold();
+    }
+
+    @Override
+    public void setRangedDownloadThreshold( final long threshold )
+    {
+        getExternalConfiguration( true ).setRangedDownloadThreshold( threshold );
+    }
+
+    @Deprecated
     public Thread getRepositoryStatusCheckerThread()
     {
-        return repositoryStatusCheckerThread;
+        return null;
     }
 
+    @Deprecated
     public void setRepositoryStatusCheckerThread( Thread repositoryStatusCheckerThread )
     {
-        this.repositoryStatusCheckerThread = repositoryStatusCheckerThread;
+        // nothing, remote status is checked by RepositoryStatusChecker
     }
 
     public long getCurrentRemoteStatusRetainTime()
@@ -510,10 +589,10 @@ public abstract class AbstractProxyRepository
                         // make it step one
                         this.remoteStatusRetainTimeSequence.next();
 
-                        // ping the monitor thread
-                        if ( this.repositoryStatusCheckerThread != null )
+                        // ping the status checker, to start the backoff
+                        if ( this.repositoryStatusChecker != null )
                         {
-                            this.repositoryStatusCheckerThread.interrupt();
+                            this.repositoryStatusChecker.autoBlocked( this );
                         }
                     }
                 }
@@ -539,6 +618,8 @@ public abstract class AbstractProxyRepository
                     }
 
                     resetRemoteStatus();
+
+                    resetCircuitBreaker();
                 }
 
                 if ( sendNotification )
@@ -723,6 +804,77 @@ public abstract class AbstractProxyRepository
         // }
     }
 
+    /**
+     * Resets the circuit breaker of this repository (if any) into closed state.
+     * 
+     * @since 2.4
+     */
+    protected void resetCircuitBreaker()
+    {
+        final CircuitBreaker circuitBreaker = circuitBreakerManager.getRepositoryCircuitBreaker( getId() );
+        if ( circuitBreaker != null )
+        {
+            circuitBreaker.reset();
+        }
+    }
+
+    /**
+     * Returns {@code true} if this repository is auto blocked by it's circuit breaker, and the breaker may let this
+     * request through as a probe of remote health (the actual permission is decided when remote call is about to
+     * happen). This way, remote peer recovery is detected by real traffic, instead of waiting for status checker.
+     * 
+     * @since 2.4
+     */
+    protected boolean shouldProbeRemote( final ResourceStoreRequest request )
+    {
+        if ( request.isRequestLocalOnly() || !isAutoBlockActive() || !ProxyMode.BLOCKED_AUTO.equals( getProxyMode() ) )
+        {
+            return false;
+        }
+        final CircuitBreaker circuitBreaker = circuitBreakerManager.getRepositoryCircuitBreaker( getId() );
+        return circuitBreaker != null && CircuitBreaker.State.CLOSED != circuitBreaker.getState();
+    }
+
+    /**
+     * Returns the request context key marking the request as short-circuited by the circuit breaker of this
+     * repository. The key is per repository, as request context is shared when request is passed down to group
+     * members, and one member being short-circuited must not affect NFC of other members.
+     * 
+     * @since 2.4
+     */
+    protected String getShortCircuitedContextKey()
+    {
+        return CTX_SHORT_CIRCUITED + "." + getId();
+    }
+
+    /**
+     * Records a remote failure with circuit breakers, or with circuit breakers disabled, autoBlocks this repository
+     * immediately. Access denied and transport problems are not considered as failures of the remote peer.
+     * 
+     * @since 2.4
+     */
+    protected void recordRemoteFailure( final CircuitBreakerPermit permit, final RemoteStorageException ex )
+    {
+        if ( ex instanceof RemoteAccessDeniedException )
+        {
+            // NEXUS-4593 HTTP status 403 should not lead to autoblock, remote peer did respond
+            permit.success();
+        }
+        else if ( ex instanceof RemoteStorageTransportException )
+        {
+            // local transport problem, tells nothing about remote peer
+            permit.release();
+        }
+        else if ( permit.isTracked() )
+        {
+            permit.failure( ex );
+        }
+        else
+        {
+            autoBlockProxying( ex );
+        }
+    }
+
     /**
      * Best effort to extract reason why remote is not available.
      *
@@ -852,6 +1004,28 @@ public abstract class AbstractProxyRepository
         return remoteStatus;
     }
 
+    public RemoteStatus checkRemoteStatus( final ResourceStoreRequest request )
+    {
+        if ( getProxyMode() != null && !_remoteStatusChecking )
+        {
+            _remoteStatusChecking = true;
+
+            remoteStatus = RemoteStatus.UNKNOWN;
+
+            try
+            {
+                new RemoteStatusUpdateCallable( request ).call();
+            }
+            catch ( Exception e )
+            {
+                getLogger().debug( "Could not check remote status of {}",
+                    RepositoryStringUtils.getHumanizedNameString( this ), e );
+            }
+        }
+
+        return remoteStatus;
+    }
+
     private void setRemoteStatus( RemoteStatus remoteStatus, Throwable cause )
     {
         this.remoteStatus = remoteStatus;
@@ -1178,7 +1352,7 @@ public abstract class AbstractProxyRepository
         AbstractStorageItem remoteItem = null;
 
         // proxyMode and request.localOnly decides 1st
-        boolean shouldProxy = shouldTryRemote( request );
+        boolean shouldProxy = shouldTryRemote( request ) || shouldProbeRemote( request );
 
         if ( shouldProxy )
         {
@@ -1201,11 +1375,27 @@ public abstract class AbstractProxyRepository
             if ( localItem == null || request.isRequestAsExpired() || isOld( localItem ) )
             {
                 // we should go remote coz we have no local copy or it is old
+                // but only if circuit breaker permits it, otherwise act as we would not be allowed to go remote
+                // with autoBlock inactive, the breaker is bypassed, as it's sole purpose is driving autoBlock
+                final CircuitBreakerPermit permit =
+                    isAutoBlockActive() ? circuitBreakerManager.tryAcquire( this, circuitBreakerListener )
+                        : CircuitBreakerPermit.UNTRACKED;
                 try
                 {
                     boolean shouldGetRemote = false;
 
-                    if ( localItem != null )
+                    if ( permit == null )
+                    {
+                        if ( getLogger().isDebugEnabled() )
+                        {
+                            getLogger().debug(
+                                "Item " + request.toString()
+                                    + " not checked on remote storage, circuit breaker of repository is open." );
+                        }
+
+                        request.getRequestContext().put( getShortCircuitedContextKey(), Boolean.TRUE );
+                    }
+                    else if ( localItem != null )
                     {
                         if ( getLogger().isDebugEnabled() )
                         {
@@ -1242,12 +1432,7 @@ public abstract class AbstractProxyRepository
                         }
                         catch ( RemoteStorageException ex )
                         {
-                            // NEXUS-4593 HTTP status 403 should not lead to autoblock
-                            if ( !( ex instanceof RemoteAccessDeniedException )
-                                && !( ex instanceof RemoteStorageTransportException ) )
-                            {
-                                autoBlockProxying( ex );
-                            }
+                            recordRemoteFailure( permit, ex );
 
                             if ( ex instanceof RemoteStorageTransportException )
                             {
@@ -1260,6 +1445,8 @@ public abstract class AbstractProxyRepository
                         }
                         catch ( IOException ex )
                         {
+                            permit.release();
+
                             // do not go remote, but we did not mark it as "remote checked" also.
                             // let the user do proper setup and probably it will try again
                             shouldGetRemote = false;
@@ -1278,6 +1465,8 @@ public abstract class AbstractProxyRepository
                         {
                             remoteItem = doRetrieveRemoteItem( request );
 
+                            getRetrieveStatisticsManager().recordRemoteFetch( getId() );
+
                             if ( getLogger().isDebugEnabled() )
                             {
                                 getLogger().debug( "Item " + request.toString() + " found in remote storage." );
@@ -1285,12 +1474,13 @@ public abstract class AbstractProxyRepository
                         }
                         catch ( StorageException ex )
                         {
-                            if ( ex instanceof RemoteStorageException
-                                // NEXUS-4593 HTTP status 403 should not lead to autoblock
-                                && !( ex instanceof RemoteAccessDeniedException )
-                                && !( ex instanceof RemoteStorageTransportException ) )
+                            if ( ex instanceof RemoteStorageException )
+                            {
+                                recordRemoteFailure( permit, (RemoteStorageException) ex );
+                            }
+                            else
                             {
-                                autoBlockProxying( ex );
+                                permit.release();
                             }
 
                             if ( ex instanceof RemoteStorageTransportException )
@@ -1322,9 +1512,20 @@ public abstract class AbstractProxyRepository
                     {
                         remoteItem = null;
                     }
+
+                    if ( permit != null )
+                    {
+                        // no-op if failure was recorded above
+                        permit.success();
+                    }
                 }
                 catch ( ItemNotFoundException ex )
                 {
+                    if ( permit != null )
+                    {
+                        permit.success();
+                    }
+
                     if ( getLogger().isDebugEnabled() )
                     {
                         getLogger().debug( "Item " + request.toString() + " not found in remote storage." );
@@ -1332,6 +1533,13 @@ public abstract class AbstractProxyRepository
 
                     remoteItem = null;
                 }
+                finally
+                {
+                    if ( permit != null )
+                    {
+                        permit.release();
+                    }
+                }
             }
 
             if ( localItem == null && remoteItem == null )
@@ -1418,6 +1626,35 @@ public abstract class AbstractProxyRepository
         getAttributesHandler().touchItemCheckedRemotely( System.currentTimeMillis(), item );
     }
 
+    /**
+     * Lets the content validators prepare the validation of <code>item</code>, while it's content is not yet cached.
+     * Invoked by doRetrieveRemoteItem right after the item was retrieved from remote storage.
+     * 
+     * @since 2.4
+     */
+    protected void doPrepareRemoteItemContentValidation( ResourceStoreRequest req, String baseUrl,
+                                                         AbstractStorageItem item )
+    {
+        for ( Map.Entry<String, ItemContentValidator> icventry : getItemContentValidators().entrySet() )
+        {
+            if ( icventry.getValue() instanceof PreparingItemContentValidator )
+            {
+                try
+                {
+                    ( (PreparingItemContentValidator) icventry.getValue() ).prepareRemoteItemContentValidation( this,
+                        req, baseUrl, item );
+                }
+                catch ( RuntimeException e )
+                {
+                    // preparation is an optimization only, validation itself will do the work if needed
+                    getLogger().debug(
+                        String.format( "Could not prepare content validation of %s (validator=%s)",
+                            item.getRepositoryItemUid().toString(), icventry.getKey() ), e );
+                }
+            }
+        }
+    }
+
     /**
      * Validates integrity of content of <code>item</code>. Retruns <code>true</code> if item content is valid and
      * <code>false</code> if item content is corrupted. Note that this method is called doRetrieveRemoteItem, so
@@ -1534,8 +1771,25 @@ public abstract class AbstractProxyRepository
 
             Exception lastException = null;
 
+            RemoteItemRace race = null;
+
             try
             {
+                if ( MIRROR_RACE && mirrors.size() > 1
+                    && MIRROR_RACE_PATTERN.matcher( request.getRequestPath() ).matches() )
+                {
+                    race = new RemoteItemRace( this, request );
+                    race.start( poolManager.getRepositoryThreadPool( this ), mirrors.subList( 0, 2 ) );
+
+                    // the winner goes first, the loser will be released if not needed
+                    final Mirror winner = race.awaitWinner();
+                    if ( winner != null )
+                    {
+                        mirrors.remove( winner );
+                        mirrors.add( 0, winner );
+                    }
+                }
+
                 all_urls: for ( Mirror mirror : mirrors )
                 {
                     int retryCount = 1;
@@ -1574,18 +1828,36 @@ public abstract class AbstractProxyRepository
                         {
                             // events.clear();
 
-                            AbstractStorageItem remoteItem =
-                                getRemoteStorage().retrieveItem( this, request, mirror.getUrl() );
+                            AbstractStorageItem remoteItem;
+
+                            long latency;
+
+                            if ( race != null && race.isRaced( mirror ) )
+                            {
+                                remoteItem = race.take( mirror );
+
+                                latency = race.getLatency( mirror );
+                            }
+                            else
+                            {
+                                final long started = System.currentTimeMillis();
+
+                                remoteItem = getRemoteStorage().retrieveItem( this, request, mirror.getUrl() );
+
+                                latency = System.currentTimeMillis() - started;
+                            }
 
                             remoteItem.getItemContext().putAll( request.getRequestContext() );
 
+                            doPrepareRemoteItemContentValidation( request, mirror.getUrl(), remoteItem );
+
                             remoteItem = doCacheItem( remoteItem );
 
                             if ( doValidateRemoteItemContent( request, mirror.getUrl(), remoteItem, events ) )
                             {
                                 sendContentValidationEvents( request, events, true );
 
-                                selector.feedbackSuccess( mirror );
+                                selector.feedbackSuccess( mirror, latency );
 
                                 return remoteItem;
                             }
@@ -1697,6 +1969,11 @@ public abstract class AbstractProxyRepository
             }
             finally
             {
+                if ( race != null )
+                {
+                    race.close();
+                }
+
                 selector.close();
             }
 
@@ -1744,6 +2021,12 @@ public abstract class AbstractProxyRepository
         }
     }
 
+    @Override
+    public boolean isItemFresh( final StorageItem item )
+    {
+        return !isOld( item );
+    }
+
     /**
      * Checks if item is old with "default" maxAge.
      *
@@ -1863,7 +2146,8 @@ public abstract class AbstractProxyRepository
     }
 
     /**
-     * Beside original behavior, only add to NFC when we are not in BLOCKED mode.
+     * Beside original behavior, only add to NFC when we are not in BLOCKED mode, and the request was not short-circuited
+     * by an open circuit breaker.
      *
      * @since 2.0
      */
@@ -1873,7 +2157,9 @@ public abstract class AbstractProxyRepository
         boolean shouldAddToNFC = super.shouldAddToNotFoundCache( request );
         if ( shouldAddToNFC )
         {
-            shouldAddToNFC = getProxyMode() == null || getProxyMode().shouldProxy();
+            shouldAddToNFC =
+                ( getProxyMode() == null || getProxyMode().shouldProxy() )
+                    && !request.getRequestContext().containsKey( getShortCircuitedContextKey(), false );
             if ( !shouldAddToNFC && getLogger().isDebugEnabled() )
             {
                 getLogger().debug(
@@ -29,6 +29,10 @@ public abstract class AbstractProxyRepositoryConfiguration
     
     public static final String FILE_TYPE_VALIDATION = "fileTypeValidation";
 
+    private static final String RANGED_DOWNLOAD_SEGMENTS = "rangedDownloadSegments";
+
+    private static final String RANGED_DOWNLOAD_THRESHOLD = "rangedDownloadThreshold";
+
     public AbstractProxyRepositoryConfiguration( Xpp3Dom configuration )
     {
         super( configuration );
@@ -95,4 +99,36 @@ public abstract class AbstractProxyRepositoryConfiguration
     {
         setNodeValue( getRootNode(), AUTO_BLOCK_ACTIVE, Boolean.toString( value ) );
     }
+
+    /**
+     * @since 2.4
+     */
+    public int getRangedDownloadSegments()
+    {
+        return Integer.parseInt( getNodeValue( getRootNode(), RANGED_DOWNLOAD_SEGMENTS, "0" ) );
+    }
+
+    /**
+     * @since 2.4
+     */
+    public void setRangedDownloadSegments( int segments )
+    {
+        setNodeValue( getRootNode(), RANGED_DOWNLOAD_SEGMENTS, String.valueOf( segments ) );
+    }
+
+    /**
+     * @since 2.4
+     */
+    public long getRangedDownloadThreshold()
+    {
+        return Long.parseLong( getNodeValue( getRootNode(), RANGED_DOWNLOAD_THRESHOLD, "104857600" ) );
+    }
+
+    /**
+     * @since 2.4
+     */
+    public void setRangedDownloadThreshold( long threshold )
+    {
+        setNodeValue( getRootNode(), RANGED_DOWNLOAD_THRESHOLD, String.valueOf( threshold ) );
+    }
 }
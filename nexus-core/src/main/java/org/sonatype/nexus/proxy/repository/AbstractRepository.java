@@ -38,6 +38,7 @@ import org.sonatype.nexus.proxy.IllegalRequestException;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.LocalStorageException;
 import org.sonatype.nexus.proxy.RepositoryNotAvailableException;
+import org.sonatype.nexus.proxy.RequestContext;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.StorageException;
 import org.sonatype.nexus.proxy.access.AccessManager;
@@ -69,6 +70,7 @@ import org.sonatype.nexus.proxy.item.StorageCollectionItem;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.item.uid.RepositoryItemUidAttributeManager;
+import org.sonatype.nexus.proxy.statistics.RetrieveStatisticsManager;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
 import org.sonatype.nexus.proxy.storage.local.DefaultLocalStorageContext;
 import org.sonatype.nexus.proxy.storage.local.LocalRepositoryStorage;
@@ -141,6 +143,9 @@ public abstract class AbstractRepository
     @Requirement
     private AttributesHandler attributesHandler;
 
+    @Requirement
+    private RetrieveStatisticsManager retrieveStatisticsManager;
+
     /** Local storage context to store storage-wide configs. */
     private LocalStorageContext localStorageContext;
 
@@ -307,6 +312,17 @@ public abstract class AbstractRepository
         return repositoryItemUidFactory;
     }
 
+    /**
+     * Returns the retrieve statistics manager.
+     *
+     * @return
+     * @since 2.4
+     */
+    protected RetrieveStatisticsManager getRetrieveStatisticsManager()
+    {
+        return retrieveStatisticsManager;
+    }
+
     /**
      * Gets the not found cache.
      *
@@ -866,7 +882,15 @@ public abstract class AbstractRepository
                 }
             }
 
-            eventBus().post( new RepositoryItemEventRetrieve( this, item ) );
+            if ( !request.getRequestContext().containsKey( RequestContext.CTX_PREFETCH_FLAG ) )
+            {
+                getRetrieveStatisticsManager().recordRetrieve( getId(), item );
+
+                if ( getRetrieveStatisticsManager().shouldFireRetrieveEvent() )
+                {
+                    eventBus().post( new RepositoryItemEventRetrieve( this, item ) );
+                }
+            }
 
             if ( getLogger().isDebugEnabled() )
             {
@@ -1204,6 +1228,8 @@ public abstract class AbstractRepository
                                 + " is in NFC and still active, throwing ItemNotFoundException." );
                     }
 
+                    getRetrieveStatisticsManager().recordNotFoundCacheHit( getId() );
+
                     throw new ItemNotFoundException( request, this );
                 }
             }
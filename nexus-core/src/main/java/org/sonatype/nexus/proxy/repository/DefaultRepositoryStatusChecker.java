@@ -0,0 +1,278 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.repository;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang.time.DurationFormatUtils;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+/**
+ * Default {@link RepositoryStatusChecker} driving the checks of all proxy repositories using one scheduled executor.
+ * The count of executor threads caps the count of concurrent remote checks. To avoid all repositories hitting their
+ * remotes at same time (ie. after Nexus start), the 1st check of a repository is delayed by a random amount of time,
+ * and every period is prolonged by a per-repository random fraction of it. Periods are never shortened, so the
+ * auto-block backoff of repositories is kept.
+ * 
+ * @since 2.4
+ */
+@Named
+@Singleton
+public class DefaultRepositoryStatusChecker
+    extends AbstractLoggingComponent
+    implements RepositoryStatusChecker, Disposable
+{
+    private static final String PROPERTY_PREFIX = "org.sonatype.nexus.proxy.repository.DefaultRepositoryStatusChecker.";
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ConcurrentMap<String, StatusCheck> statusChecks;
+
+    private final long initialSpreadMillis;
+
+    private final int jitterPercent;
+
+    private final Random random;
+
+    public DefaultRepositoryStatusChecker()
+    {
+        this( SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "maxConcurrentChecks", 4 ),
+            SystemPropertiesHelper.getLong( PROPERTY_PREFIX + "initialSpreadMillis", 10000L ),
+            SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "jitterPercent", 10 ) );
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxConcurrentChecks the count of remote checks that might run concurrently.
+     * @param initialSpreadMillis the maximum delay of the 1st check of a repository.
+     * @param jitterPercent the maximum prolongation of a check period of a repository, in percents of it.
+     */
+    public DefaultRepositoryStatusChecker( final int maxConcurrentChecks, final long initialSpreadMillis,
+                                           final int jitterPercent )
+    {
+        checkArgument( maxConcurrentChecks > 0, "Count of concurrent checks must be positive!" );
+        checkArgument( initialSpreadMillis >= 0, "Initial spread must not be negative!" );
+        checkArgument( jitterPercent >= 0, "Jitter must not be negative!" );
+        this.scheduler =
+            new ScheduledThreadPoolExecutor( maxConcurrentChecks, new NexusThreadFactory( "nxrsc",
+                "Repository Status Checker", Thread.NORM_PRIORITY, true ) );
+        this.statusChecks = new ConcurrentHashMap<String, StatusCheck>();
+        this.initialSpreadMillis = initialSpreadMillis;
+        this.jitterPercent = jitterPercent;
+        this.random = new Random();
+    }
+
+    public void dispose()
+    {
+        for ( StatusCheck statusCheck : statusChecks.values() )
+        {
+            statusCheck.cancel();
+        }
+        statusChecks.clear();
+        scheduler.shutdownNow();
+    }
+
+    // == RepositoryStatusChecker
+
+    @Override
+    public void register( final ProxyRepository proxyRepository )
+    {
+        final StatusCheck statusCheck = new StatusCheck( proxyRepository, random.nextInt( jitterPercent + 1 ) );
+        final StatusCheck existing = statusChecks.put( proxyRepository.getId(), statusCheck );
+        if ( existing != null )
+        {
+            existing.cancel();
+        }
+        statusCheck.schedule( initialSpreadMillis > 0 ? (long) ( random.nextDouble() * initialSpreadMillis ) : 0 );
+    }
+
+    @Override
+    public void unregister( final ProxyRepository proxyRepository )
+    {
+        final StatusCheck statusCheck = statusChecks.get( proxyRepository.getId() );
+        // remove only if it is check of given instance
+        if ( statusCheck != null && statusCheck.getRepository() == proxyRepository
+            && statusChecks.remove( proxyRepository.getId(), statusCheck ) )
+        {
+            statusCheck.cancel();
+        }
+    }
+
+    @Override
+    public void autoBlocked( final ProxyRepository proxyRepository )
+    {
+        final StatusCheck statusCheck = statusChecks.get( proxyRepository.getId() );
+        if ( statusCheck != null && statusCheck.getRepository() == proxyRepository )
+        {
+            statusCheck.reschedule();
+        }
+    }
+
+    // ==
+
+    /**
+     * Periodic check of one repository, rescheduling itself after every run.
+     */
+    protected class StatusCheck
+        implements Runnable
+    {
+        private final ProxyRepository repository;
+
+        private final int jitterPercent;
+
+        private ScheduledFuture<?> future;
+
+        private boolean running;
+
+        private boolean cancelled;
+
+        public StatusCheck( final ProxyRepository repository, final int jitterPercent )
+        {
+            this.repository = repository;
+            this.jitterPercent = jitterPercent;
+        }
+
+        public ProxyRepository getRepository()
+        {
+            return repository;
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized ( this )
+            {
+                if ( cancelled )
+                {
+                    return;
+                }
+                running = true;
+            }
+            try
+            {
+                if ( repository.getProxyMode() == null )
+                {
+                    // not a proxy anymore
+                    cancel();
+                    return;
+                }
+                check();
+            }
+            catch ( Exception e )
+            {
+                getLogger().warn( "Could not check remote status of repository {}", repository.getId(), e );
+            }
+            finally
+            {
+                // atomically, so a concurrent reschedule() cannot schedule another successor in between
+                synchronized ( this )
+                {
+                    running = false;
+                    scheduleNext();
+                }
+            }
+        }
+
+        public synchronized void schedule( final long delayMillis )
+        {
+            if ( !cancelled )
+            {
+                future = scheduler.schedule( this, delayMillis, TimeUnit.MILLISECONDS );
+            }
+        }
+
+        public synchronized void reschedule()
+        {
+            // if running, the backoff will be picked up when it finishes
+            if ( !cancelled && !running )
+            {
+                if ( future != null )
+                {
+                    future.cancel( false );
+                }
+                scheduleNext();
+            }
+        }
+
+        public synchronized void cancel()
+        {
+            cancelled = true;
+            if ( future != null )
+            {
+                future.cancel( false );
+            }
+        }
+
+        protected void check()
+        {
+            // check only if repository is in service
+            if ( repository.getLocalStatus().shouldServiceRequest() )
+            {
+                final RepositoryStatusCheckMode repositoryStatusCheckMode = repository.getRepositoryStatusCheckMode();
+
+                if ( RepositoryStatusCheckMode.ALWAYS.equals( repositoryStatusCheckMode ) )
+                {
+                    // just do it, don't care for proxyMode
+                    repository.checkRemoteStatus( new ResourceStoreRequest( RepositoryItemUid.PATH_ROOT ) );
+                }
+                else if ( RepositoryStatusCheckMode.AUTO_BLOCKED_ONLY.equals( repositoryStatusCheckMode ) )
+                {
+                    // do it only if auto blocked
+                    if ( repository.getProxyMode().shouldAutoUnblock() )
+                    {
+                        repository.checkRemoteStatus( new ResourceStoreRequest( RepositoryItemUid.PATH_ROOT ) );
+                    }
+                }
+            }
+        }
+
+        protected synchronized void scheduleNext()
+        {
+            if ( cancelled )
+            {
+                return;
+            }
+
+            final long retainTime = repository.getNextRemoteStatusRetainTime();
+            final long delayMillis = retainTime + retainTime / 100 * jitterPercent;
+
+            // say this message only if repository is auto-blocked, regardless of repositoryStatusCheckMode
+            final ProxyMode proxyMode = repository.getProxyMode();
+            if ( proxyMode != null && proxyMode.shouldAutoUnblock() )
+            {
+                getLogger().info(
+                    "Next attempt to auto-unblock the \"" + repository.getName() + "\" (id=" + repository.getId()
+                        + ") repository by checking its remote peer health will occur in "
+                        + DurationFormatUtils.formatDurationWords( delayMillis, true, true ) + "." );
+            }
+
+            schedule( delayMillis );
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.repository;
+
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+
+/**
+ * Item content validator that is able to prepare the validation while the content of the remote item is still being
+ * transferred, for example by fetching remote checksums in parallel.
+ * 
+ * @since 2.4
+ */
+public interface PreparingItemContentValidator
+    extends ItemContentValidator
+{
+    /**
+     * Invoked when the remote item was retrieved (response was received, but the content is not yet cached), before
+     * {@link #isRemoteItemContentValid(ProxyRepository, ResourceStoreRequest, String, AbstractStorageItem, java.util.List)}
+     * is invoked for the very same item. Implementations must not block, and must not consume the item content.
+     * Anything prepared should be put into the item context, that is carried over to the cached item being validated.
+     * 
+     * @param proxy repository that was used to get this item
+     * @param request request that was used to get this item
+     * @param baseUrl baseUrl that was used to get this item
+     * @param item the retrieved item, with it's content not yet consumed
+     */
+    void prepareRemoteItemContentValidation( ProxyRepository proxy, ResourceStoreRequest request, String baseUrl,
+                                             AbstractStorageItem item );
+}
@@ -19,6 +19,7 @@ import org.sonatype.nexus.proxy.RemoteStorageException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.StorageException;
 import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.mirror.DownloadMirrors;
 import org.sonatype.nexus.proxy.storage.remote.RemoteRepositoryStorage;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
@@ -59,8 +60,26 @@ public interface ProxyRepository
      */
     RemoteStatus getRemoteStatus( ResourceStoreRequest request, boolean forceCheck );
 
+    /**
+     * Checks the remote status in the calling thread (unlike {@link #getRemoteStatus(ResourceStoreRequest, boolean)}
+     * that checks it in background), auto-blocking or auto-unblocking the repository as needed.
+     * 
+     * @param request the request to check remote with.
+     * @return the remote status after the check.
+     * @since 2.4
+     */
+    RemoteStatus checkRemoteStatus( ResourceStoreRequest request );
+
+    /**
+     * @deprecated Remote status is checked by {@link RepositoryStatusChecker}, this always returns {@code null}.
+     */
+    @Deprecated
     Thread getRepositoryStatusCheckerThread();
 
+    /**
+     * @deprecated Remote status is checked by {@link RepositoryStatusChecker}, this method does nothing.
+     */
+    @Deprecated
     void setRepositoryStatusCheckerThread( Thread thread );
 
     /**
@@ -149,6 +168,40 @@ public interface ProxyRepository
      */
     void setAutoBlockActive( boolean val );
 
+    /**
+     * Returns the count of parallel ranged requests a large remote item is downloaded with. Values below 2 disable
+     * ranged downloads.
+     * 
+     * @return the count of segments, or 0 if ranged downloads are disabled.
+     * @since 2.4
+     */
+    int getRangedDownloadSegments();
+
+    /**
+     * Sets the count of parallel ranged requests a large remote item is downloaded with.
+     * 
+     * @param segments the count of segments, 0 to disable ranged downloads.
+     * @since 2.4
+     */
+    void setRangedDownloadSegments( int segments );
+
+    /**
+     * Returns the size (in bytes) above which a remote item is downloaded with parallel ranged requests, if remote
+     * supports them.
+     * 
+     * @return the size threshold in bytes.
+     * @since 2.4
+     */
+    long getRangedDownloadThreshold();
+
+    /**
+     * Sets the size (in bytes) above which a remote item is downloaded with parallel ranged requests.
+     * 
+     * @param threshold the size threshold in bytes.
+     * @since 2.4
+     */
+    void setRangedDownloadThreshold( long threshold );
+
     /**
      * Returns the remote URL of this repository, if any.
      * 
@@ -238,6 +291,16 @@ public interface ProxyRepository
      */
     void setItemAgingActive( boolean value );
 
+    /**
+     * Returns {@code true} if the passed in locally cached item of this repository is fresh, hence it would be served
+     * without checking the remote peer.
+     * 
+     * @param item the locally cached item.
+     * @return
+     * @since 2.4
+     */
+    boolean isItemFresh( StorageItem item );
+
     // --
 
     /**
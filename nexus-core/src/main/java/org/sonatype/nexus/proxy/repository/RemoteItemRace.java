@@ -0,0 +1,264 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.RemoteAccessException;
+import org.sonatype.nexus.proxy.RemoteStorageException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+
+/**
+ * Races retrievals of the same item from multiple mirrors. Once a winner is known, the outcomes are handed out one by
+ * one with {@link #take(Mirror)}, and {@link #close()} releases the retrieved but not taken items (the losers).
+ * 
+ * @since 2.4
+ */
+class RemoteItemRace
+{
+    private final ProxyRepository repository;
+
+    private final ResourceStoreRequest request;
+
+    private final List<Mirror> started = new ArrayList<Mirror>();
+
+    private final Set<Mirror> taken = new HashSet<Mirror>();
+
+    private final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+    private final Map<Mirror, AbstractStorageItem> items = new LinkedHashMap<Mirror, AbstractStorageItem>();
+
+    private final Map<Mirror, Long> latencies = new HashMap<Mirror, Long>();
+
+    private final Map<Mirror, Exception> failures = new HashMap<Mirror, Exception>();
+
+    private boolean closed;
+
+    RemoteItemRace( final ProxyRepository repository, final ResourceStoreRequest request )
+    {
+        this.repository = repository;
+        this.request = request;
+    }
+
+    /**
+     * Starts the retrievals. If the executor runs the retrievals in caller thread (when saturated), no more retrievals
+     * are started once one succeeded. Mirrors not raced are to be retrieved as usual.
+     */
+    void start( final ExecutorService executorService, final List<Mirror> mirrors )
+    {
+        for ( final Mirror mirror : mirrors )
+        {
+            synchronized ( this )
+            {
+                if ( !items.isEmpty() )
+                {
+                    return;
+                }
+                started.add( mirror );
+            }
+            try
+            {
+                futures.add( executorService.submit( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        retrieve( mirror );
+                    }
+                } ) );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                synchronized ( this )
+                {
+                    started.remove( mirror );
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private void retrieve( final Mirror mirror )
+    {
+        final long begin = System.currentTimeMillis();
+        AbstractStorageItem item = null;
+        Exception failure = null;
+        try
+        {
+            // own request per racer, as retrievals populate request context concurrently
+            final ResourceStoreRequest racerRequest = new ResourceStoreRequest( request );
+            racerRequest.setRequestLocalOnly( request.isRequestLocalOnly() );
+            racerRequest.setRequestRemoteOnly( request.isRequestRemoteOnly() );
+            item = repository.getRemoteStorage().retrieveItem( repository, racerRequest, mirror.getUrl() );
+        }
+        catch ( Exception e )
+        {
+            failure = e;
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                if ( item != null && closed )
+                {
+                    release( item );
+                }
+                else if ( item != null )
+                {
+                    items.put( mirror, item );
+                    latencies.put( mirror, System.currentTimeMillis() - begin );
+                }
+                failures.put( mirror, failure );
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean isDone( final Mirror mirror )
+    {
+        return failures.containsKey( mirror );
+    }
+
+    /**
+     * Waits for the first successful retrieval, and returns the mirror it came from, or {@code null} if none of the
+     * retrievals succeeded.
+     */
+    synchronized Mirror awaitWinner()
+    {
+        try
+        {
+            while ( items.isEmpty() && failures.size() < started.size() )
+            {
+                wait();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        return items.isEmpty() ? null : items.keySet().iterator().next();
+    }
+
+    /**
+     * Returns {@code true} if given mirror was raced, and its outcome was not yet taken.
+     */
+    synchronized boolean isRaced( final Mirror mirror )
+    {
+        return started.contains( mirror ) && !taken.contains( mirror );
+    }
+
+    /**
+     * Returns the latency (time to first byte) of successful retrieval from given mirror, or -1 if unknown.
+     */
+    synchronized long getLatency( final Mirror mirror )
+    {
+        final Long latency = latencies.get( mirror );
+        return latency == null ? -1 : latency;
+    }
+
+    /**
+     * Takes the outcome of retrieval from given raced mirror, waiting for it if needed: the item is returned or the
+     * exception is thrown, as if the retrieval would have been done by caller.
+     */
+    synchronized AbstractStorageItem take( final Mirror mirror )
+        throws ItemNotFoundException, RemoteAccessException, RemoteStorageException
+    {
+        try
+        {
+            while ( !isDone( mirror ) )
+            {
+                wait();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RemoteStorageException( "Interrupted while retrieving " + request.getRequestPath() + " from "
+                + mirror.getUrl(), e );
+        }
+
+        taken.add( mirror );
+        final AbstractStorageItem item = items.remove( mirror );
+        if ( item != null )
+        {
+            return item;
+        }
+        final Exception failure = failures.get( mirror );
+        if ( failure instanceof ItemNotFoundException )
+        {
+            throw (ItemNotFoundException) failure;
+        }
+        else if ( failure instanceof RemoteAccessException )
+        {
+            throw (RemoteAccessException) failure;
+        }
+        else if ( failure instanceof RemoteStorageException )
+        {
+            throw (RemoteStorageException) failure;
+        }
+        else if ( failure instanceof RuntimeException )
+        {
+            throw (RuntimeException) failure;
+        }
+        throw new RemoteStorageException( "Could not retrieve " + request.getRequestPath() + " from "
+            + mirror.getUrl(), failure );
+    }
+
+    /**
+     * Cancels the retrievals still running, and releases the retrieved items not taken.
+     */
+    void close()
+    {
+        synchronized ( this )
+        {
+            closed = true;
+            for ( AbstractStorageItem item : items.values() )
+            {
+                release( item );
+            }
+            items.clear();
+        }
+        for ( Future<?> future : futures )
+        {
+            future.cancel( true );
+        }
+    }
+
+    private void release( final AbstractStorageItem item )
+    {
+        if ( item instanceof StorageFileItem )
+        {
+            try
+            {
+                ( (StorageFileItem) item ).getInputStream().close();
+            }
+            catch ( IOException e )
+            {
+                // ignore, we are not interested in it
+            }
+        }
+    }
+}
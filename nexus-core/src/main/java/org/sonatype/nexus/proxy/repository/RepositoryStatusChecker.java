@@ -0,0 +1,39 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.repository;
+
+/**
+ * Component periodically checking remote status of proxy repositories, auto-blocking and auto-unblocking them as
+ * needed (see {@link RepositoryStatusCheckMode}). Period of checks is driven by the repository, see
+ * {@link ProxyRepository#getNextRemoteStatusRetainTime()}.
+ * 
+ * @since 2.4
+ */
+public interface RepositoryStatusChecker
+{
+    /**
+     * Starts periodic checks of given repository, replacing any existing checks of it.
+     */
+    void register( ProxyRepository proxyRepository );
+
+    /**
+     * Stops periodic checks of given repository.
+     */
+    void unregister( ProxyRepository proxyRepository );
+
+    /**
+     * Notifies that the repository just got auto-blocked, hence the checks should be rescheduled obeying the backoff
+     * of the repository.
+     */
+    void autoBlocked( ProxyRepository proxyRepository );
+}
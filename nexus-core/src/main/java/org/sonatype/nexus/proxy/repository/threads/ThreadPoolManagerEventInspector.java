@@ -16,6 +16,7 @@ import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventAdd;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryRepositoryEvent;
@@ -26,6 +27,7 @@ import org.sonatype.plexus.appevents.Event;
  * 
  * @author cstamas
  */
+@HandlesEvents( RepositoryRegistryRepositoryEvent.class )
 @Component( role = EventInspector.class, hint = "ThreadPoolManagerEventInspector" )
 public class ThreadPoolManagerEventInspector
     extends AbstractEventInspector
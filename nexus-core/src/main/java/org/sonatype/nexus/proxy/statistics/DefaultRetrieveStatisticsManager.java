@@ -0,0 +1,266 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.statistics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Default {@link RetrieveStatisticsManager} keeping counters in memory, using {@link RetrieveCounters} per
+ * repository. Initial retrieve event mode and sampling rate (fire event for every Nth retrieval, counted per thread)
+ * might be set using system properties, and the mode might be changed in runtime over JMX.
+ * 
+ * @since 2.4
+ */
+@Named
+@Singleton
+@EventBus.Managed
+public class DefaultRetrieveStatisticsManager
+    extends AbstractLoggingComponent
+    implements RetrieveStatisticsManager, Disposable
+{
+    private static final String JMX_DOMAIN = "org.sonatype.nexus.proxy.statistics";
+
+    private static final String PROPERTY_PREFIX =
+        "org.sonatype.nexus.proxy.statistics.DefaultRetrieveStatisticsManager.";
+
+    private final int sampleRate;
+
+    private final ConcurrentMap<String, RetrieveCounters> counters;
+
+    private final ThreadLocal<int[]> sampleCounter;
+
+    private volatile RetrieveEventMode retrieveEventMode;
+
+    private ObjectName jmxName;
+
+    public DefaultRetrieveStatisticsManager()
+    {
+        this( RetrieveEventMode.valueOf( SystemPropertiesHelper.getString( PROPERTY_PREFIX + "retrieveEventMode",
+            RetrieveEventMode.ALL.name() ).toUpperCase() ), SystemPropertiesHelper.getInteger( PROPERTY_PREFIX
+            + "sampleRate", 100 ) );
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param retrieveEventMode the initial retrieve event mode.
+     * @param sampleRate the N in "fire event for every Nth retrieval" when mode is {@link RetrieveEventMode#SAMPLED}.
+     */
+    public DefaultRetrieveStatisticsManager( final RetrieveEventMode retrieveEventMode, final int sampleRate )
+    {
+        checkArgument( sampleRate > 0, "Sample rate must be positive!" );
+        this.retrieveEventMode = checkNotNull( retrieveEventMode );
+        this.sampleRate = sampleRate;
+        this.counters = new ConcurrentHashMap<String, RetrieveCounters>();
+        this.sampleCounter = new ThreadLocal<int[]>()
+        {
+            @Override
+            protected int[] initialValue()
+            {
+                return new int[1];
+            }
+        };
+
+        try
+        {
+            jmxName = ObjectName.getInstance( JMX_DOMAIN, "name", RetrieveStatisticsManager.class.getSimpleName() );
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if ( server.isRegistered( jmxName ) )
+            {
+                getLogger().warn( "MBean already registered; replacing: {}", jmxName );
+                server.unregisterMBean( jmxName );
+            }
+            server.registerMBean( new DefaultRetrieveStatisticsManagerMBean( this ), jmxName );
+        }
+        catch ( Exception e )
+        {
+            jmxName = null;
+            getLogger().warn( "Problem registering MBean for: " + getClass().getName(), e );
+        }
+    }
+
+    public void dispose()
+    {
+        if ( null != jmxName )
+        {
+            try
+            {
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if ( server.isRegistered( jmxName ) )
+                {
+                    server.unregisterMBean( jmxName );
+                }
+            }
+            catch ( final Exception e )
+            {
+                getLogger().warn( "Problem unregistering MBean for: " + getClass().getName(), e );
+            }
+        }
+    }
+
+    @Subscribe
+    public void onEvent( final RepositoryRegistryEventRemove evt )
+    {
+        resetStatistics( evt.getRepository().getId() );
+    }
+
+    // == RetrieveStatisticsManager
+
+    @Override
+    public void recordRetrieve( final String repositoryId, final StorageItem item )
+    {
+        final RetrieveCounters repositoryCounters = getCounters( repositoryId );
+        repositoryCounters.add( RetrieveCounters.HITS, 1 );
+        if ( item instanceof StorageFileItem )
+        {
+            final long length = ( (StorageFileItem) item ).getLength();
+            if ( length > 0 )
+            {
+                repositoryCounters.add( RetrieveCounters.BYTES, length );
+            }
+        }
+    }
+
+    @Override
+    public void recordRemoteFetch( final String repositoryId )
+    {
+        getCounters( repositoryId ).add( RetrieveCounters.REMOTE_FETCHES, 1 );
+    }
+
+    @Override
+    public void recordNotFoundCacheHit( final String repositoryId )
+    {
+        getCounters( repositoryId ).add( RetrieveCounters.NOT_FOUND_CACHE_HITS, 1 );
+    }
+
+    @Override
+    public void recordPrefetch( final String repositoryId )
+    {
+        getCounters( repositoryId ).add( RetrieveCounters.PREFETCHES, 1 );
+    }
+
+    @Override
+    public void recordPrefetchHit( final String repositoryId )
+    {
+        getCounters( repositoryId ).add( RetrieveCounters.PREFETCH_HITS, 1 );
+    }
+
+    @Override
+    public boolean shouldFireRetrieveEvent()
+    {
+        switch ( retrieveEventMode )
+        {
+            case NONE:
+                return false;
+            case SAMPLED:
+                final int[] count = sampleCounter.get();
+                if ( ++count[0] >= sampleRate )
+                {
+                    count[0] = 0;
+                    return true;
+                }
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public RetrieveEventMode getRetrieveEventMode()
+    {
+        return retrieveEventMode;
+    }
+
+    @Override
+    public void setRetrieveEventMode( final RetrieveEventMode retrieveEventMode )
+    {
+        getLogger().info( "Retrieve event mode set to {}", retrieveEventMode );
+        this.retrieveEventMode = checkNotNull( retrieveEventMode );
+    }
+
+    @Override
+    public RetrieveStatistics getStatistics( final String repositoryId )
+    {
+        final RetrieveCounters repositoryCounters = counters.get( repositoryId );
+        if ( repositoryCounters == null )
+        {
+            return new RetrieveStatistics( repositoryId, 0, 0, 0, 0, 0, 0 );
+        }
+        return toStatistics( repositoryId, repositoryCounters );
+    }
+
+    @Override
+    public Map<String, RetrieveStatistics> getStatistics()
+    {
+        final Map<String, RetrieveStatistics> result = new TreeMap<String, RetrieveStatistics>();
+        for ( Map.Entry<String, RetrieveCounters> entry : counters.entrySet() )
+        {
+            result.put( entry.getKey(), toStatistics( entry.getKey(), entry.getValue() ) );
+        }
+        return result;
+    }
+
+    @Override
+    public void resetStatistics( final String repositoryId )
+    {
+        counters.remove( repositoryId );
+    }
+
+    // ==
+
+    private RetrieveCounters getCounters( final String repositoryId )
+    {
+        RetrieveCounters repositoryCounters = counters.get( repositoryId );
+        if ( repositoryCounters == null )
+        {
+            repositoryCounters = new RetrieveCounters();
+            final RetrieveCounters existing = counters.putIfAbsent( repositoryId, repositoryCounters );
+            if ( existing != null )
+            {
+                repositoryCounters = existing;
+            }
+        }
+        return repositoryCounters;
+    }
+
+    private RetrieveStatistics toStatistics( final String repositoryId, final RetrieveCounters repositoryCounters )
+    {
+        return new RetrieveStatistics( repositoryId, repositoryCounters.sum( RetrieveCounters.HITS ),
+            repositoryCounters.sum( RetrieveCounters.BYTES ), repositoryCounters.sum( RetrieveCounters.REMOTE_FETCHES ),
+            repositoryCounters.sum( RetrieveCounters.NOT_FOUND_CACHE_HITS ),
+            repositoryCounters.sum( RetrieveCounters.PREFETCHES ),
+            repositoryCounters.sum( RetrieveCounters.PREFETCH_HITS ) );
+    }
+}
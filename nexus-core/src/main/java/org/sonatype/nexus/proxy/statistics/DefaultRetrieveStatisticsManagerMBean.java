@@ -0,0 +1,146 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.statistics;
+
+import java.util.Collection;
+
+import javax.management.StandardMBean;
+
+import org.sonatype.nexus.proxy.statistics.RetrieveStatisticsManager.RetrieveEventMode;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The default implementation of MBean management interface for {@link DefaultRetrieveStatisticsManager}.
+ * 
+ * @since 2.4
+ */
+public class DefaultRetrieveStatisticsManagerMBean
+    extends StandardMBean
+    implements RetrieveStatisticsManagerMBean
+{
+    private final DefaultRetrieveStatisticsManager retrieveStatisticsManager;
+
+    public DefaultRetrieveStatisticsManagerMBean( final DefaultRetrieveStatisticsManager retrieveStatisticsManager )
+    {
+        super( RetrieveStatisticsManagerMBean.class, false );
+        this.retrieveStatisticsManager =
+            Preconditions.checkNotNull( retrieveStatisticsManager,
+                "Managed DefaultRetrieveStatisticsManager cannot be null!" );
+    }
+
+    @Override
+    public long getHits()
+    {
+        long result = 0;
+        for ( RetrieveStatistics statistics : getAllStatistics() )
+        {
+            result += statistics.getHits();
+        }
+        return result;
+    }
+
+    @Override
+    public long getBytes()
+    {
+        long result = 0;
+        for ( RetrieveStatistics statistics : getAllStatistics() )
+        {
+            result += statistics.getBytes();
+        }
+        return result;
+    }
+
+    @Override
+    public long getRemoteFetches()
+    {
+        long result = 0;
+        for ( RetrieveStatistics statistics : getAllStatistics() )
+        {
+            result += statistics.getRemoteFetches();
+        }
+        return result;
+    }
+
+    @Override
+    public long getNotFoundCacheHits()
+    {
+        long result = 0;
+        for ( RetrieveStatistics statistics : getAllStatistics() )
+        {
+            result += statistics.getNotFoundCacheHits();
+        }
+        return result;
+    }
+
+    @Override
+    public long getPrefetches()
+    {
+        long result = 0;
+        for ( RetrieveStatistics statistics : getAllStatistics() )
+        {
+            result += statistics.getPrefetches();
+        }
+        return result;
+    }
+
+    @Override
+    public long getPrefetchHits()
+    {
+        long result = 0;
+        for ( RetrieveStatistics statistics : getAllStatistics() )
+        {
+            result += statistics.getPrefetchHits();
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getStatistics()
+    {
+        final Collection<RetrieveStatistics> statistics = getAllStatistics();
+        final String[] result = new String[statistics.size()];
+        int i = 0;
+        for ( RetrieveStatistics s : statistics )
+        {
+            result[i++] = s.toString();
+        }
+        return result;
+    }
+
+    @Override
+    public String getRetrieveEventMode()
+    {
+        return retrieveStatisticsManager.getRetrieveEventMode().name();
+    }
+
+    @Override
+    public void setRetrieveEventMode( final String retrieveEventMode )
+    {
+        retrieveStatisticsManager.setRetrieveEventMode(
+            RetrieveEventMode.valueOf( retrieveEventMode.trim().toUpperCase() ) );
+    }
+
+    @Override
+    public void resetStatistics( final String repositoryId )
+    {
+        retrieveStatisticsManager.resetStatistics( repositoryId );
+    }
+
+    // ==
+
+    protected Collection<RetrieveStatistics> getAllStatistics()
+    {
+        return retrieveStatisticsManager.getStatistics().values();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.statistics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped counters of one repository. Every thread increments the cell of "its own" stripe, and stripes are padded
+ * apart, so threads serving same repository concurrently do not contend on one memory location (or cache line). Sums
+ * are computed when read, which is rare compared to writes.
+ * 
+ * @since 2.4
+ */
+class RetrieveCounters
+{
+    static final int HITS = 0;
+
+    static final int BYTES = 1;
+
+    static final int REMOTE_FETCHES = 2;
+
+    static final int NOT_FOUND_CACHE_HITS = 3;
+
+    static final int PREFETCHES = 4;
+
+    static final int PREFETCH_HITS = 5;
+
+    /**
+     * Longs per stripe: one cache line on most platforms, with room for all the counters.
+     */
+    private static final int STRIPE_WIDTH = 8;
+
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells;
+
+    RetrieveCounters()
+    {
+        this.cells = new AtomicLongArray( STRIPES * STRIPE_WIDTH );
+    }
+
+    void add( final int counter, final long delta )
+    {
+        cells.addAndGet( stripe() * STRIPE_WIDTH + counter, delta );
+    }
+
+    long sum( final int counter )
+    {
+        long result = 0;
+        for ( int i = 0; i < STRIPES; i++ )
+        {
+            result += cells.get( i * STRIPE_WIDTH + counter );
+        }
+        return result;
+    }
+
+    // ==
+
+    private static int stripe()
+    {
+        // thread IDs are sequential, spread them
+        final long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) ( id >>> 32 ) & ( STRIPES - 1 );
+    }
+
+    private static int stripes()
+    {
+        final int target = Math.min( 64, 2 * Runtime.getRuntime().availableProcessors() );
+        int result = 1;
+        while ( result < target )
+        {
+            result <<= 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.statistics;
+
+/**
+ * Snapshot of retrieve statistics of one repository, as counted since Nexus start (or last reset).
+ * 
+ * @since 2.4
+ */
+public class RetrieveStatistics
+{
+    private final String repositoryId;
+
+    private final long hits;
+
+    private final long bytes;
+
+    private final long remoteFetches;
+
+    private final long notFoundCacheHits;
+
+    private final long prefetches;
+
+    private final long prefetchHits;
+
+    public RetrieveStatistics( final String repositoryId, final long hits, final long bytes,
+                               final long remoteFetches, final long notFoundCacheHits, final long prefetches,
+                               final long prefetchHits )
+    {
+        this.repositoryId = repositoryId;
+        this.hits = hits;
+        this.bytes = bytes;
+        this.remoteFetches = remoteFetches;
+        this.notFoundCacheHits = notFoundCacheHits;
+        this.prefetches = prefetches;
+        this.prefetchHits = prefetchHits;
+    }
+
+    /**
+     * The ID of the repository these statistics belong to.
+     */
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    /**
+     * Count of items successfully retrieved from repository.
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Sum of lengths of file items retrieved from repository (where length was known).
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Count of items fetched from remote, applies to proxy repositories only.
+     */
+    public long getRemoteFetches()
+    {
+        return remoteFetches;
+    }
+
+    /**
+     * Count of requests answered by Not Found Cache.
+     */
+    public long getNotFoundCacheHits()
+    {
+        return notFoundCacheHits;
+    }
+
+    /**
+     * Count of items fetched by prefetching, applies to proxy repositories only.
+     */
+    public long getPrefetches()
+    {
+        return prefetches;
+    }
+
+    /**
+     * Count of prefetched items that were retrieved afterwards.
+     */
+    public long getPrefetchHits()
+    {
+        return prefetchHits;
+    }
+
+    /**
+     * Ratio of prefetched items that were retrieved afterwards, 0 if nothing was prefetched.
+     */
+    public double getPrefetchHitRatio()
+    {
+        return prefetches == 0 ? 0 : (double) prefetchHits / prefetches;
+    }
+
+    @Override
+    public String toString()
+    {
+        return repositoryId + "{hits=" + hits + ", bytes=" + bytes + ", remoteFetches=" + remoteFetches
+            + ", notFoundCacheHits=" + notFoundCacheHits + ", prefetches=" + prefetches + ", prefetchHits="
+            + prefetchHits + "}";
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.statistics;
+
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.item.StorageItem;
+
+/**
+ * Component keeping low overhead per-repository retrieve counters, meant to be used instead of counting
+ * {@link org.sonatype.nexus.proxy.events.RepositoryItemEventRetrieve} events, and deciding whether those events are to
+ * be fired at all (see {@link RetrieveEventMode}).
+ * 
+ * @since 2.4
+ */
+public interface RetrieveStatisticsManager
+{
+    /**
+     * Modes of firing {@link org.sonatype.nexus.proxy.events.RepositoryItemEventRetrieve} events.
+     */
+    enum RetrieveEventMode
+    {
+        /**
+         * Event is fired for every retrieved item (default).
+         */
+        ALL,
+
+        /**
+         * Event is fired for every Nth retrieved item only.
+         */
+        SAMPLED,
+
+        /**
+         * Event is not fired.
+         */
+        NONE;
+    }
+
+    /**
+     * Records a successful retrieval of an item from a repository.
+     */
+    void recordRetrieve( String repositoryId, StorageItem item );
+
+    /**
+     * Records a fetch of an item from the remote of a proxy repository.
+     */
+    void recordRemoteFetch( String repositoryId );
+
+    /**
+     * Records a request answered by Not Found Cache of a repository.
+     */
+    void recordNotFoundCacheHit( String repositoryId );
+
+    /**
+     * Records a fetch of an item by prefetching, into a proxy repository.
+     */
+    void recordPrefetch( String repositoryId );
+
+    /**
+     * Records a retrieval of a prefetched item (first retrieval only).
+     */
+    void recordPrefetchHit( String repositoryId );
+
+    /**
+     * Returns {@code true} if {@link org.sonatype.nexus.proxy.events.RepositoryItemEventRetrieve} should be fired for
+     * current retrieval, as driven by current {@link RetrieveEventMode}.
+     */
+    boolean shouldFireRetrieveEvent();
+
+    RetrieveEventMode getRetrieveEventMode();
+
+    void setRetrieveEventMode( RetrieveEventMode retrieveEventMode );
+
+    /**
+     * Returns the statistics of given repository, never {@code null}.
+     */
+    RetrieveStatistics getStatistics( String repositoryId );
+
+    /**
+     * Returns the statistics of all repositories having any, keyed by repository ID.
+     */
+    Map<String, RetrieveStatistics> getStatistics();
+
+    /**
+     * Drops the statistics of given repository.
+     */
+    void resetStatistics( String repositoryId );
+}
@@ -0,0 +1,91 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.statistics;
+
+/**
+ * The MBean management interface for {@link DefaultRetrieveStatisticsManager}.
+ * 
+ * @since 2.4
+ */
+public interface RetrieveStatisticsManagerMBean
+{
+    /**
+     * Returns the count of items retrieved from all repositories.
+     * 
+     * @return
+     */
+    long getHits();
+
+    /**
+     * Returns the sum of lengths of file items retrieved from all repositories.
+     * 
+     * @return
+     */
+    long getBytes();
+
+    /**
+     * Returns the count of items fetched from remote by all proxy repositories.
+     * 
+     * @return
+     */
+    long getRemoteFetches();
+
+    /**
+     * Returns the count of requests answered by Not Found Cache of all repositories.
+     * 
+     * @return
+     */
+    long getNotFoundCacheHits();
+
+    /**
+     * Returns the count of items fetched by prefetching into all proxy repositories.
+     * 
+     * @return
+     */
+    long getPrefetches();
+
+    /**
+     * Returns the count of prefetched items retrieved afterwards from all proxy repositories.
+     * 
+     * @return
+     */
+    long getPrefetchHits();
+
+    /**
+     * Returns the statistics of each repository.
+     * 
+     * @return
+     */
+    String[] getStatistics();
+
+    /**
+     * Returns the name of current retrieve event mode.
+     * 
+     * @return
+     */
+    String getRetrieveEventMode();
+
+    /**
+     * Sets the retrieve event mode, one of "ALL", "SAMPLED" or "NONE".
+     * 
+     * @param retrieveEventMode
+     */
+    void setRetrieveEventMode( String retrieveEventMode );
+
+    /**
+     * Drops the statistics of given repository.
+     * 
+     * @param repositoryId
+     */
+    void resetStatistics( String repositoryId );
+}
@@ -0,0 +1,303 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.remote.httpclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Bounded buffer between the I/O reactor of the asynchronous HTTP client, filling it with response content as it
+ * arrives, and the reader of the content. When the buffer is full, the input of the connection is suspended (so the
+ * reactor thread is never blocked), and is requested again once the reader consumed some content. The reader is
+ * blocked only while no content is available.
+ *
+ * @since 2.4
+ */
+class AsyncContentBuffer
+{
+    private final ReentrantLock lock;
+
+    private final Condition condition;
+
+    // guarded by lock
+
+    private final ByteBuffer buffer;
+
+    private IOControl ioctrl;
+
+    private boolean suspended;
+
+    private boolean completed;
+
+    private boolean closed;
+
+    private IOException failure;
+
+    private Future<?> exchange;
+
+    AsyncContentBuffer( final int bufferSize )
+    {
+        this.lock = new ReentrantLock();
+        this.condition = lock.newCondition();
+        this.buffer = ByteBuffer.allocate( bufferSize );
+    }
+
+    /**
+     * Sets the future of the HTTP exchange filling this buffer, to be cancelled if reader closes the stream before
+     * all content was consumed.
+     */
+    void setExchange( final Future<?> exchange )
+    {
+        final boolean cancel;
+        lock.lock();
+        try
+        {
+            this.exchange = exchange;
+            cancel = closed && !completed;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        if ( cancel )
+        {
+            exchange.cancel( true );
+        }
+    }
+
+    /**
+     * Invoked by the reactor when content is available.
+     */
+    int consumeContent( final ContentDecoder decoder, final IOControl ioctrl )
+        throws IOException
+    {
+        lock.lock();
+        try
+        {
+            if ( closed )
+            {
+                throw new IOException( "Content reader closed the stream" );
+            }
+            this.ioctrl = ioctrl;
+            int total = 0;
+            int read;
+            while ( buffer.hasRemaining() && ( read = decoder.read( buffer ) ) > 0 )
+            {
+                total += read;
+            }
+            if ( decoder.isCompleted() )
+            {
+                completed = true;
+            }
+            else if ( !buffer.hasRemaining() )
+            {
+                ioctrl.suspendInput();
+                suspended = true;
+            }
+            condition.signalAll();
+            return total;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invoked when the response completed, content was fully received.
+     */
+    void complete()
+    {
+        lock.lock();
+        try
+        {
+            completed = true;
+            condition.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invoked when the exchange failed or was cancelled.
+     */
+    void fail( final Exception e )
+    {
+        lock.lock();
+        try
+        {
+            if ( !completed && failure == null )
+            {
+                failure = e instanceof IOException ? (IOException) e : new IOException( e.getMessage(), e );
+            }
+            condition.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    boolean isCompleted()
+    {
+        lock.lock();
+        try
+        {
+            return completed;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    InputStream getInputStream()
+    {
+        return new ContentInputStream();
+    }
+
+    // ==
+
+    private int read( final byte[] b, final int off, final int len )
+        throws IOException
+    {
+        lock.lock();
+        try
+        {
+            while ( buffer.position() == 0 )
+            {
+                if ( failure != null )
+                {
+                    throw failure;
+                }
+                if ( completed )
+                {
+                    return -1;
+                }
+                if ( closed )
+                {
+                    throw new IOException( "Stream closed" );
+                }
+                try
+                {
+                    condition.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new InterruptedIOException( "Interrupted while waiting for content" );
+                }
+            }
+            if ( failure != null )
+            {
+                throw failure;
+            }
+            buffer.flip();
+            final int count = Math.min( len, buffer.remaining() );
+            buffer.get( b, off, count );
+            buffer.compact();
+            if ( suspended )
+            {
+                suspended = false;
+                ioctrl.requestInput();
+            }
+            return count;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private int available()
+    {
+        lock.lock();
+        try
+        {
+            return buffer.position();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void close()
+    {
+        Future<?> toCancel = null;
+        lock.lock();
+        try
+        {
+            closed = true;
+            if ( !completed )
+            {
+                toCancel = exchange;
+            }
+            condition.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        // outside of lock, as cancellation calls back into this buffer
+        if ( toCancel != null )
+        {
+            toCancel.cancel( true );
+        }
+    }
+
+    private class ContentInputStream
+        extends InputStream
+    {
+        @Override
+        public int read()
+            throws IOException
+        {
+            final byte[] b = new byte[1];
+            final int read = read( b, 0, 1 );
+            return read == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            if ( len == 0 )
+            {
+                return 0;
+            }
+            return AsyncContentBuffer.this.read( b, off, len );
+        }
+
+        @Override
+        public int available()
+        {
+            return AsyncContentBuffer.this.available();
+        }
+
+        @Override
+        public void close()
+        {
+            AsyncContentBuffer.this.close();
+        }
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.remote.httpclient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.net.ssl.SSLException;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.params.ConnRouteParams;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.sonatype.nexus.ApplicationStatusSource;
+import org.sonatype.nexus.apachehttpclient.ClientConnectionOperatorSelector;
+import org.sonatype.nexus.apachehttpclient.Hc4Provider;
+import org.sonatype.nexus.apachehttpclient.UpstreamPermit;
+import org.sonatype.nexus.apachehttpclient.UpstreamSaturatedException;
+import org.sonatype.nexus.mime.MimeSupport;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.RemoteStorageException;
+import org.sonatype.nexus.proxy.RemoteStorageTransportOverloadedException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.repository.ClientSSLRemoteAuthenticationSettings;
+import org.sonatype.nexus.proxy.repository.NtlmRemoteAuthenticationSettings;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.repository.RemoteAuthenticationSettings;
+import org.sonatype.nexus.proxy.repository.RemoteProxySettings;
+import org.sonatype.nexus.proxy.repository.UsernamePasswordRemoteAuthenticationSettings;
+import org.sonatype.nexus.proxy.storage.remote.RemoteRepositoryStorage;
+import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
+import org.sonatype.nexus.proxy.storage.remote.http.QueryStringBuilder;
+import org.sonatype.nexus.proxy.utils.UserAgentBuilder;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.base.Preconditions;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Apache HTTP async client (4) {@link RemoteRepositoryStorage} implementation. Content is retrieved using a
+ * non-blocking, NIO based HTTP client: socket I/O of all remote transfers is driven by events on a few I/O reactor
+ * threads, content is handed back as a stream over a bounded buffer that is filled as content arrives (suspending the
+ * connection input while the reader is behind), and threads are only blocked while waiting for the response head, and
+ * while the reader waits for content not yet received. The async client is created by {@link Hc4Provider}, hence uses
+ * same connection pool and keep alive settings, and same per upstream host bulkheads as the blocking client, while
+ * timeouts and retries are applied as configured for the repository. Requests other than content retrieval, and
+ * repositories using NTLM or client SSL authentication, non proxy hosts, or connection operator selected by a
+ * {@link ClientConnectionOperatorSelector} (like repository specific SSL setup), are served by the blocking client as
+ * in {@link HttpClientRemoteStorage}. Select this provider per repository by using {@link #PROVIDER_STRING} as remote
+ * storage provider hint.
+ *
+ * @since 2.4
+ */
+@Named( HttpAsyncClientRemoteStorage.PROVIDER_STRING )
+@Singleton
+public class HttpAsyncClientRemoteStorage
+    extends HttpClientRemoteStorage
+{
+    /**
+     * ID of this provider.
+     */
+    public static final String PROVIDER_STRING = "apacheHttpAsyncClient4x";
+
+    /**
+     * Key for customizing the size of content buffer per transfer, in bytes. Value should be a positive integer.
+     */
+    private static final String CONTENT_BUFFER_SIZE_KEY = "nexus.apacheHttpAsyncClient4x.contentBufferSize";
+
+    private final Hc4Provider hc4Provider;
+
+    private final List<ClientConnectionOperatorSelector> selectors;
+
+    private final EventBus eventBus;
+
+    private DefaultHttpAsyncClient asyncClient;
+
+    @Inject
+    HttpAsyncClientRemoteStorage( final UserAgentBuilder userAgentBuilder,
+                                  final ApplicationStatusSource applicationStatusSource,
+                                  final MimeSupport mimeSupport, final QueryStringBuilder queryStringBuilder,
+                                  final HttpClientManager httpClientManager, final Hc4Provider hc4Provider,
+                                  final List<ClientConnectionOperatorSelector> selectors, final EventBus eventBus )
+    {
+        super( userAgentBuilder, applicationStatusSource, mimeSupport, queryStringBuilder, httpClientManager );
+        this.hc4Provider = Preconditions.checkNotNull( hc4Provider );
+        this.selectors =
+            selectors != null ? selectors : Collections.<ClientConnectionOperatorSelector> emptyList();
+        this.eventBus = eventBus;
+        this.eventBus.register( this );
+    }
+
+    @Override
+    public String getProviderId()
+    {
+        return PROVIDER_STRING;
+    }
+
+    @Override
+    public AbstractStorageItem retrieveItem( final ProxyRepository repository, final ResourceStoreRequest request,
+                                             final String baseUrl )
+        throws ItemNotFoundException, RemoteStorageException
+    {
+        final RemoteStorageContext ctx = getRemoteStorageContext( repository );
+        if ( !isAsyncCapable( ctx ) )
+        {
+            return super.retrieveItem( repository, request, baseUrl );
+        }
+
+        final URL remoteURL = getRetrieveUrl( repository, request, baseUrl );
+
+        final HttpGet method = new HttpGet( remoteURL.toExternalForm() );
+        method.setHeader( "Accept", "*/*" );
+        method.setHeader( "Accept-Language", "en-us" );
+        // content is not decoded by async client, but passed as-is into the buffer
+        method.setHeader( "Accept-Encoding", "identity" );
+        method.setHeader( "Cache-Control", "no-cache" );
+        configureRequest( repository, ctx, method.getParams() );
+
+        final HttpHost targetHost = URIUtils.extractHost( method.getURI() );
+        if ( isConnectionOperatorSelected( targetHost, createHttpContext( repository, ctx ), method.getParams() ) )
+        {
+            return super.retrieveItem( repository, request, baseUrl );
+        }
+
+        final int retryCount =
+            ctx.getRemoteConnectionSettings() != null ? ctx.getRemoteConnectionSettings().getRetrievalRetryCount()
+                : 0;
+        HttpResponse httpResponse = null;
+        for ( int attempt = 0; httpResponse == null; attempt++ )
+        {
+            try
+            {
+                httpResponse = execute( repository, request, remoteURL, targetHost, method, ctx );
+            }
+            catch ( IOException e )
+            {
+                if ( attempt >= retryCount || !isRetriable( e ) )
+                {
+                    throw new RemoteStorageException( "Transport error while executing GET method [repositoryId=\""
+                        + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                        + remoteURL + "\"]", e );
+                }
+                getLogger().debug( "I/O exception ({}) caught when executing GET method against {}: {}, retrying",
+                    e.getClass().getName(), remoteURL, e.getMessage() );
+            }
+        }
+
+        try
+        {
+            checkResponse( repository, method.getURI(), httpResponse );
+            if ( httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK )
+            {
+                handleUnexpectedRetrieveResponse( repository, request, remoteURL, httpResponse );
+            }
+            return createStorageItem( repository, request, remoteURL, httpResponse,
+                httpResponse.getEntity().getContent() );
+        }
+        catch ( ItemNotFoundException e )
+        {
+            discard( httpResponse );
+            throw e;
+        }
+        catch ( RemoteStorageException e )
+        {
+            discard( httpResponse );
+            throw e;
+        }
+        catch ( IOException e )
+        {
+            discard( httpResponse );
+            throw new RemoteStorageException( "IO Error during response stream handling [repositoryId=\""
+                + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                + remoteURL + "\"]!", e );
+        }
+        catch ( RuntimeException e )
+        {
+            discard( httpResponse );
+            throw e;
+        }
+    }
+
+    /**
+     * Shuts down the async client, if created. Invoking this method multiple times is safe.
+     */
+    public synchronized void shutdown()
+    {
+        if ( asyncClient != null )
+        {
+            try
+            {
+                asyncClient.shutdown();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                asyncClient = null;
+            }
+            getLogger().info( "{} stopped.", getClass().getSimpleName() );
+        }
+    }
+
+    @Subscribe
+    public void onEvent( final NexusStoppedEvent evt )
+    {
+        shutdown();
+        eventBus.unregister( this );
+    }
+
+    // ==
+
+    /**
+     * Returns {@code true} if the async client supports the remote settings of the repository. NTLM and client SSL
+     * authentication, and non proxy hosts are supported by the blocking client only.
+     */
+    protected boolean isAsyncCapable( final RemoteStorageContext ctx )
+    {
+        if ( !isAsyncCapable( ctx.getRemoteAuthenticationSettings() ) )
+        {
+            return false;
+        }
+        final RemoteProxySettings proxySettings = ctx.getRemoteProxySettings();
+        if ( proxySettings != null && proxySettings.isEnabled() )
+        {
+            return isAsyncCapable( proxySettings.getProxyAuthentication() )
+                && ( proxySettings.getNonProxyHosts() == null || proxySettings.getNonProxyHosts().isEmpty() );
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if any of {@link ClientConnectionOperatorSelector}s selects a connection operator for the
+     * request (for example a repository specific SSL setup). Such operators open blocking connections, hence requests
+     * they are selected for are supported by the blocking client only.
+     */
+    protected boolean isConnectionOperatorSelected( final HttpHost host, final HttpContext httpContext,
+                                                    final HttpParams params )
+    {
+        for ( ClientConnectionOperatorSelector selector : selectors )
+        {
+            if ( selector.get( host, httpContext, params ) != null )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the time in milliseconds to wait for the response head: the time to get a pooled connection, to connect
+     * and to read the response head, as configured by {@link Hc4Provider} and for the repository.
+     */
+    protected long getResponseHeadTimeout( final DefaultHttpAsyncClient client, final HttpParams params )
+    {
+        return client.getParams().getLongParameter( ClientPNames.CONN_MANAGER_TIMEOUT, 0 )
+            + HttpConnectionParams.getConnectionTimeout( params ) + HttpConnectionParams.getSoTimeout( params );
+    }
+
+    protected synchronized DefaultHttpAsyncClient getAsyncClient()
+        throws IOReactorException
+    {
+        if ( asyncClient == null )
+        {
+            final DefaultHttpAsyncClient client = (DefaultHttpAsyncClient) hc4Provider.createHttpAsyncClient();
+            // NEXUS-5125 do not redirect to index pages
+            client.setRedirectStrategy( new HttpClientManagerImpl.DoNotRedirectToIndexPagesStrategy() );
+            client.start();
+            asyncClient = client;
+            getLogger().info( "{} started.", getClass().getSimpleName() );
+        }
+        return asyncClient;
+    }
+
+    // ==
+
+    /**
+     * Executes the GET method once, returning the response as soon as its head arrived.
+     *
+     * @throws IOException on transport errors of the exchange, that might be retried.
+     */
+    private HttpResponse execute( final ProxyRepository repository, final ResourceStoreRequest request,
+                                  final URL remoteURL, final HttpHost targetHost, final HttpGet method,
+                                  final RemoteStorageContext ctx )
+        throws RemoteStorageException, IOException
+    {
+        final UpstreamPermit permit;
+        try
+        {
+            permit = hc4Provider.acquireUpstreamPermit( targetHost );
+        }
+        catch ( UpstreamSaturatedException e )
+        {
+            throw new RemoteStorageTransportOverloadedException( repository,
+                "Upstream saturated while executing GET method [repositoryId=\"" + repository.getId()
+                    + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\"" + remoteURL + "\"]: "
+                    + e.getMessage(), e );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RemoteStorageException( "Interrupted while executing GET method [repositoryId=\""
+                + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                + remoteURL + "\"]", e );
+        }
+
+        final StreamingResponseConsumer consumer =
+            new StreamingResponseConsumer( SystemPropertiesHelper.getInteger( CONTENT_BUFFER_SIZE_KEY, 64 * 1024 ),
+                permit );
+        final long responseHeadTimeout;
+        final Future<HttpResponse> exchange;
+        try
+        {
+            final DefaultHttpAsyncClient client = getAsyncClient();
+            responseHeadTimeout = getResponseHeadTimeout( client, method.getParams() );
+            exchange =
+                client.execute( HttpAsyncMethods.create( method ), consumer, createHttpContext( repository, ctx ),
+                    null );
+        }
+        catch ( IOReactorException e )
+        {
+            permit.release();
+            throw new RemoteStorageException( "Could not create HTTP async client instance!", e );
+        }
+        catch ( RuntimeException e )
+        {
+            permit.release();
+            throw e;
+        }
+        consumer.setExchange( exchange );
+
+        try
+        {
+            return consumer.getResponseHead().get( responseHeadTimeout, TimeUnit.MILLISECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            exchange.cancel( true );
+            permit.release();
+            Thread.currentThread().interrupt();
+            throw new RemoteStorageException( "Interrupted while executing GET method [repositoryId=\""
+                + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                + remoteURL + "\"]", e );
+        }
+        catch ( TimeoutException e )
+        {
+            exchange.cancel( true );
+            permit.release();
+            throw new RemoteStorageException( "No response received within " + responseHeadTimeout
+                + " ms while executing GET method [repositoryId=\"" + repository.getId() + "\", requestPath=\""
+                + request.getRequestPath() + "\", remoteUrl=\"" + remoteURL + "\"]", e );
+        }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof ConnectionPoolTimeoutException || cause instanceof TimeoutException )
+            {
+                throw new RemoteStorageTransportOverloadedException( repository,
+                    "Connection pool timeout error while executing GET method [repositoryId=\"" + repository.getId()
+                        + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\"" + remoteURL + "\"]",
+                    cause );
+            }
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            throw new RemoteStorageException( "Transport error while executing GET method [repositoryId=\""
+                + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                + remoteURL + "\"]", cause );
+        }
+    }
+
+    /**
+     * Returns {@code true} if the exchange failed with given exception might be retried. Same exceptions as with
+     * blocking client are not retried: timeouts, unknown hosts, refused connections and SSL errors.
+     */
+    private boolean isRetriable( final IOException e )
+    {
+        return !( e instanceof InterruptedIOException ) && !( e instanceof UnknownHostException )
+            && !( e instanceof ConnectException ) && !( e instanceof SSLException );
+    }
+
+    private boolean isAsyncCapable( final RemoteAuthenticationSettings ras )
+    {
+        return !( ras instanceof NtlmRemoteAuthenticationSettings )
+            && !( ras instanceof ClientSSLRemoteAuthenticationSettings );
+    }
+
+    private void configureRequest( final ProxyRepository repository, final RemoteStorageContext ctx,
+                                   final HttpParams params )
+    {
+        final int timeout =
+            ctx.getRemoteConnectionSettings() != null ? ctx.getRemoteConnectionSettings().getConnectionTimeout()
+                : 1000;
+        HttpProtocolParams.setUserAgent( params, formatUserAgentString( ctx, repository ) );
+        HttpConnectionParams.setConnectionTimeout( params, timeout );
+        HttpConnectionParams.setSoTimeout( params, timeout );
+
+        final RemoteProxySettings proxySettings = ctx.getRemoteProxySettings();
+        if ( proxySettings != null && proxySettings.isEnabled() )
+        {
+            ConnRouteParams.setDefaultProxy( params,
+                new HttpHost( proxySettings.getHostname(), proxySettings.getPort() ) );
+        }
+    }
+
+    private HttpContext createHttpContext( final ProxyRepository repository, final RemoteStorageContext ctx )
+    {
+        final BasicHttpContext httpContext = new BasicHttpContext();
+        httpContext.setAttribute( Hc4Provider.HTTP_CTX_KEY_REPOSITORY, repository );
+        httpContext.setAttribute( ClientContext.CREDS_PROVIDER, createCredentialsProvider( ctx ) );
+        return httpContext;
+    }
+
+    private CredentialsProvider createCredentialsProvider( final RemoteStorageContext ctx )
+    {
+        final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        if ( ctx.getRemoteAuthenticationSettings() instanceof UsernamePasswordRemoteAuthenticationSettings )
+        {
+            final UsernamePasswordRemoteAuthenticationSettings uras =
+                (UsernamePasswordRemoteAuthenticationSettings) ctx.getRemoteAuthenticationSettings();
+            credentialsProvider.setCredentials( AuthScope.ANY,
+                new UsernamePasswordCredentials( uras.getUsername(), uras.getPassword() ) );
+        }
+        final RemoteProxySettings proxySettings = ctx.getRemoteProxySettings();
+        if ( proxySettings != null && proxySettings.isEnabled()
+            && proxySettings.getProxyAuthentication() instanceof UsernamePasswordRemoteAuthenticationSettings )
+        {
+            final UsernamePasswordRemoteAuthenticationSettings uras =
+                (UsernamePasswordRemoteAuthenticationSettings) proxySettings.getProxyAuthentication();
+            credentialsProvider.setCredentials(
+                new AuthScope( proxySettings.getHostname(), proxySettings.getPort() ),
+                new UsernamePasswordCredentials( uras.getUsername(), uras.getPassword() ) );
+        }
+        return credentialsProvider;
+    }
+
+    /**
+     * Discards the response by closing its content stream, what cancels the exchange if content is still streaming.
+     */
+    private void discard( final HttpResponse httpResponse )
+    {
+        if ( httpResponse.getEntity() != null )
+        {
+            try
+            {
+                httpResponse.getEntity().getContent().close();
+            }
+            catch ( IOException e )
+            {
+                getLogger().warn( e.getMessage() );
+            }
+        }
+    }
+}
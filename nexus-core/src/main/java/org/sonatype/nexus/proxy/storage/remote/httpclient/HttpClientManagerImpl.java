@@ -116,17 +116,24 @@ public class HttpClientManagerImpl
                                                                    final RemoteStorageContext ctx )
     {
         // NEXUS-5125 do not redirect to index pages
-        final RedirectStrategy doNotRedirectToIndexPagesStrategy = new DefaultRedirectStrategy()
+        return new DoNotRedirectToIndexPagesStrategy();
+    }
+
+    /**
+     * Redirect strategy that does not redirect to index pages (collections), but accepts any other redirect.
+     *
+     * @since 2.4
+     */
+    static class DoNotRedirectToIndexPagesStrategy
+        extends DefaultRedirectStrategy
+    {
+        @Override
+        public boolean isRedirected( final HttpRequest request, final HttpResponse response,
+                                     final HttpContext context )
+            throws ProtocolException
         {
-            @Override
-            public boolean isRedirected( final HttpRequest request, final HttpResponse response,
-                                         final HttpContext context )
-                throws ProtocolException
-            {
-                return super.isRedirected( request, response, context )
-                    && !response.getFirstHeader( "location" ).getValue().endsWith( "/" );
-            }
-        };
-        return doNotRedirectToIndexPagesStrategy;
+            return super.isRedirected( request, response, context )
+                && !response.getFirstHeader( "location" ).getValue().endsWith( "/" );
+        }
     }
 }
@@ -12,11 +12,18 @@
  */
 package org.sonatype.nexus.proxy.storage.remote.httpclient;
 
+import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -40,11 +47,13 @@ import org.apache.http.impl.cookie.DateParseException;
 import org.apache.http.impl.cookie.DateUtils;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.util.EntityUtils;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
 import org.codehaus.plexus.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonatype.nexus.ApplicationStatusSource;
 import org.sonatype.nexus.apachehttpclient.Hc4Provider;
+import org.sonatype.nexus.apachehttpclient.UpstreamSaturatedException;
 import org.sonatype.nexus.mime.MimeSupport;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.RemoteAccessDeniedException;
@@ -54,11 +63,13 @@ import org.sonatype.nexus.proxy.RemoteStorageTransportOverloadedException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.item.AbstractStorageItem;
 import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.item.FileContentLocator;
 import org.sonatype.nexus.proxy.item.PreparedContentLocator;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
+import org.sonatype.nexus.proxy.storage.local.fs.DefaultFSLocalRepositoryStorage;
 import org.sonatype.nexus.proxy.storage.remote.AbstractHTTPRemoteRepositoryStorage;
 import org.sonatype.nexus.proxy.storage.remote.DefaultRemoteStorageContext.BooleanFlagHolder;
 import org.sonatype.nexus.proxy.storage.remote.RemoteItemNotFoundException;
@@ -66,6 +77,8 @@ import org.sonatype.nexus.proxy.storage.remote.RemoteRepositoryStorage;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.http.QueryStringBuilder;
 import org.sonatype.nexus.proxy.utils.UserAgentBuilder;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
@@ -79,7 +92,7 @@ import com.google.common.base.Stopwatch;
 @Singleton
 public class HttpClientRemoteStorage
     extends AbstractHTTPRemoteRepositoryStorage
-    implements RemoteRepositoryStorage
+    implements RemoteRepositoryStorage, Disposable
 {
 
     private static final Logger timingLog = LoggerFactory.getLogger( "remote.storage.timing" );
@@ -118,10 +131,59 @@ public class HttpClientRemoteStorage
      */
     private static final boolean CAN_WRITE = true;
 
+    /**
+     * Key for customizing how many times a failed segment of a ranged download is resumed before the download fails.
+     */
+    private static final String RANGED_DOWNLOAD_MAX_RESUMES_KEY = "nexus.apacheHttpClient4x.rangedDownloadMaxResumes";
+
+    /**
+     * Default ranged download maximum resumes of a segment: 3.
+     */
+    private static final int RANGED_DOWNLOAD_MAX_RESUMES_DEFAULT = 3;
+
+    /**
+     * Repository level tmp directory where ranged downloads are assembled, same one DefaultFSPeer uses for hidden
+     * targets, hence on same volume as the items are.
+     */
+    private static final String REPO_TMP_FOLDER = ".nexus/tmp";
+
+    /**
+     * Suffix of files ranged downloads are assembled into.
+     */
+    private static final String RANGED_DOWNLOAD_SUFFIX = ".nx-ranged";
+
+    /**
+     * Key for customizing the age (in milliseconds) after which an assembled ranged download, that was never consumed
+     * (ie. due to an error before the item got cached), is deleted.
+     */
+    private static final String RANGED_DOWNLOAD_STALE_AGE_KEY = "nexus.apacheHttpClient4x.rangedDownloadStaleAge";
+
+    /**
+     * Default ranged download stale age: 1 day.
+     */
+    private static final long RANGED_DOWNLOAD_STALE_AGE_DEFAULT = 24L * 60L * 60L * 1000L;
+
+    /**
+     * Key for customizing the count of threads executing segments of ranged downloads (shared by all downloads).
+     */
+    private static final String RANGED_DOWNLOAD_THREADS_KEY = "nexus.apacheHttpClient4x.rangedDownloadThreads";
+
+    /**
+     * Default ranged download threads: 20.
+     */
+    private static final int RANGED_DOWNLOAD_THREADS_DEFAULT = 20;
+
     private final QueryStringBuilder queryStringBuilder;
 
     private final HttpClientManager httpClientManager;
 
+    /**
+     * Executes the segments of ranged downloads (but the first one, that is executed by calling thread). The count of
+     * threads is bounded by {@link #RANGED_DOWNLOAD_THREADS_KEY}, segments above that wait in queue. Idle threads are
+     * daemons and die off.
+     */
+    private final ExecutorService rangedDownloadExecutor;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -134,12 +196,26 @@ public class HttpClientRemoteStorage
         super( userAgentBuilder, applicationStatusSource, mimeSupport );
         this.queryStringBuilder = queryStringBuilder;
         this.httpClientManager = httpClientManager;
+        final int threads =
+            Math.max( 1,
+                SystemPropertiesHelper.getInteger( RANGED_DOWNLOAD_THREADS_KEY, RANGED_DOWNLOAD_THREADS_DEFAULT ) );
+        final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NexusThreadFactory( "nxranged", "Ranged downloads", Thread.NORM_PRIORITY, true ) );
+        executor.allowCoreThreadTimeOut( true );
+        this.rangedDownloadExecutor = executor;
     }
 
     // ----------------------------------------------------------------------
     // Public methods
     // ----------------------------------------------------------------------
 
+    @Override
+    public void dispose()
+    {
+        rangedDownloadExecutor.shutdownNow();
+    }
+
     @Override
     public String getProviderId()
     {
@@ -151,95 +227,39 @@ public class HttpClientRemoteStorage
                                              final String baseUrl )
         throws ItemNotFoundException, RemoteStorageException
     {
-        final URL remoteURL =
-            appendQueryString( getAbsoluteUrlFromBase( baseUrl, request.getRequestPath() ), repository );
+        final URL remoteURL = getRetrieveUrl( repository, request, baseUrl );
 
-        final String url = remoteURL.toExternalForm();
-        if ( remoteURL.getPath().endsWith( "/" ) )
-        {
-            // NEXUS-5125 we do not want to fetch any collection
-            // Even though it is unlikely that we actually see a request for a collection here,
-            // requests for paths like this over the REST layer will be localOnly not trigger a remote request.
-            //
-            // The usual case is that there is a request for a directory that is redirected to '/', see below behavior
-            // for SC_MOVED_*
-            throw new RemoteItemNotFoundException(
-                "The remoteURL we got to looks like is a collection, and Nexus cannot fetch collections over plain HTTP (remoteUrl=\""
-                    + remoteURL.toString() + "\")", request, repository );
-        }
-
-        final HttpGet method = new HttpGet( url );
+        final HttpGet method = new HttpGet( remoteURL.toExternalForm() );
 
         final HttpResponse httpResponse = executeRequest( repository, request, method );
 
-        if ( httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_OK )
+        if ( httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK )
         {
-            InputStream is;
-            try
-            {
-                is = new InterruptableInputStream( method, httpResponse.getEntity().getContent() );
-
-                String mimeType = ContentType.getOrDefault( httpResponse.getEntity() ).getMimeType();
-                if ( mimeType == null )
-                {
-                    mimeType =
-                        getMimeSupport().guessMimeTypeFromPath( repository.getMimeRulesSource(),
-                            request.getRequestPath() );
-                }
-
-                final DefaultStorageFileItem httpItem =
-                    new DefaultStorageFileItem( repository, request, CAN_READ, CAN_WRITE, new PreparedContentLocator(
-                        is, mimeType ) );
+            release( httpResponse );
+            handleUnexpectedRetrieveResponse( repository, request, remoteURL, httpResponse );
+        }
 
-                if ( httpResponse.getEntity().getContentLength() != -1 )
-                {
-                    httpItem.setLength( httpResponse.getEntity().getContentLength() );
-                }
-                httpItem.setRemoteUrl( remoteURL.toString() );
-                httpItem.setModified( makeDateFromHeader( httpResponse.getFirstHeader( "last-modified" ) ) );
-                httpItem.setCreated( httpItem.getModified() );
-                httpItem.getItemContext().putAll( request.getRequestContext() );
+        if ( isRangedDownload( repository, httpResponse ) )
+        {
+            return retrieveItemRanged( repository, request, remoteURL, method, httpResponse );
+        }
 
-                return httpItem;
-            }
-            catch ( IOException ex )
-            {
-                release( httpResponse );
-                throw new RemoteStorageException( "IO Error during response stream handling [repositoryId=\""
-                    + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
-                    + remoteURL.toString() + "\"]!", ex );
-            }
-            catch ( RuntimeException ex )
-            {
-                release( httpResponse );
-                throw ex;
-            }
+        try
+        {
+            return createStorageItem( repository, request, remoteURL, httpResponse,
+                new InterruptableInputStream( method, httpResponse.getEntity().getContent() ) );
         }
-        else
+        catch ( IOException ex )
         {
             release( httpResponse );
-            if ( httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND )
-            {
-                throw new RemoteItemNotFoundException(
-                    "The remoteURL we requested does not exists on remote server (remoteUrl=\"" + remoteURL.toString()
-                        + "\", response code is 404)", request, repository );
-            }
-            else if ( httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_MOVED_TEMPORARILY
-                || httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_MOVED_PERMANENTLY )
-            {
-                // NEXUS-5125 unfollowed redirect means collection (path.endsWith("/"))
-                // see also HttpClientUtil#configure
-                throw new RemoteItemNotFoundException(
-                    "The remoteURL we got to looks like is a collection, and Nexus cannot fetch collections over plain HTTP (remoteUrl=\""
-                        + remoteURL.toString() + "\")", request, repository );
-            }
-            else
-            {
-                throw new RemoteStorageException( "The method execution returned result code "
-                    + httpResponse.getStatusLine().getStatusCode() + " (expected 200). [repositoryId=\""
-                    + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
-                    + remoteURL.toString() + "\"]" );
-            }
+            throw new RemoteStorageException( "IO Error during response stream handling [repositoryId=\""
+                + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                + remoteURL.toString() + "\"]!", ex );
+        }
+        catch ( RuntimeException ex )
+        {
+            release( httpResponse );
+            throw ex;
         }
     }
 
@@ -482,7 +502,11 @@ public class HttpClientRemoteStorage
 
         httpRequest.setHeader( "Accept", "*/*" );
         httpRequest.setHeader( "Accept-Language", "en-us" );
-        httpRequest.setHeader( "Accept-Encoding", "gzip,deflate,identity" );
+        if ( !httpRequest.containsHeader( "Accept-Encoding" ) )
+        {
+            // ranged requests ask for identity
+            httpRequest.setHeader( "Accept-Encoding", "gzip,deflate,identity" );
+        }
         httpRequest.setHeader( "Cache-Control", "no-cache" );
 
         HttpResponse httpResponse = null;
@@ -492,31 +516,8 @@ public class HttpClientRemoteStorage
             httpContext.setAttribute( Hc4Provider.HTTP_CTX_KEY_REPOSITORY, repository );
 
             httpResponse = httpClient.execute( httpRequest, httpContext );
-            final int statusCode = httpResponse.getStatusLine().getStatusCode();
-
-            final Header httpServerHeader = httpResponse.getFirstHeader( "server" );
-            checkForRemotePeerAmazonS3Storage( repository,
-                httpServerHeader == null ? null : httpServerHeader.getValue() );
-
-            Header proxyReturnedErrorHeader = httpResponse.getFirstHeader( NEXUS_MISSING_ARTIFACT_HEADER );
-            boolean proxyReturnedError =
-                proxyReturnedErrorHeader != null && Boolean.valueOf( proxyReturnedErrorHeader.getValue() );
 
-            if ( statusCode == HttpStatus.SC_FORBIDDEN )
-            {
-                throw new RemoteAccessDeniedException( repository, methodUri.toASCIIString(),
-                    httpResponse.getStatusLine().getReasonPhrase() );
-            }
-            else if ( statusCode == HttpStatus.SC_UNAUTHORIZED )
-            {
-                throw new RemoteAuthenticationNeededException( repository,
-                    httpResponse.getStatusLine().getReasonPhrase() );
-            }
-            else if ( statusCode == HttpStatus.SC_OK && proxyReturnedError )
-            {
-                throw new RemoteStorageException(
-                    "Invalid artifact found, most likely a proxy redirected to an HTML error page." );
-            }
+            checkResponse( repository, methodUri, httpResponse );
 
             return httpResponse;
         }
@@ -532,6 +533,14 @@ public class HttpClientRemoteStorage
                 + " method. [repositoryId=\"" + repository.getId() + "\", requestPath=\"" + request.getRequestPath()
                 + "\", remoteUrl=\"" + methodUri.toASCIIString() + "\"]", ex );
         }
+        catch ( UpstreamSaturatedException ex )
+        {
+            release( httpResponse );
+            throw new RemoteStorageTransportOverloadedException( repository,
+                "Upstream saturated while executing " + httpRequest.getMethod() + " method [repositoryId=\""
+                    + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                    + methodUri.toASCIIString() + "\"]: " + ex.getMessage(), ex );
+        }
         catch ( ConnectionPoolTimeoutException ex )
         {
             release( httpResponse );
@@ -549,6 +558,325 @@ public class HttpClientRemoteStorage
         }
     }
 
+    /**
+     * Returns the URL to retrieve the requested item from.
+     *
+     * @param repository the proxy repository
+     * @param request the request for the item
+     * @param baseUrl the base URL of remote repository
+     * @return the remote URL of the item, with repository query string appended
+     * @throws RemoteItemNotFoundException if the URL points to a collection
+     * @throws RemoteStorageException if query string could not be appended
+     * @since 2.4
+     */
+    URL getRetrieveUrl( final ProxyRepository repository, final ResourceStoreRequest request, final String baseUrl )
+        throws RemoteItemNotFoundException, RemoteStorageException
+    {
+        final URL remoteURL =
+            appendQueryString( getAbsoluteUrlFromBase( baseUrl, request.getRequestPath() ), repository );
+
+        if ( remoteURL.getPath().endsWith( "/" ) )
+        {
+            // NEXUS-5125 we do not want to fetch any collection
+            // Even though it is unlikely that we actually see a request for a collection here,
+            // requests for paths like this over the REST layer will be localOnly not trigger a remote request.
+            //
+            // The usual case is that there is a request for a directory that is redirected to '/', see below behavior
+            // for SC_MOVED_*
+            throw new RemoteItemNotFoundException(
+                "The remoteURL we got to looks like is a collection, and Nexus cannot fetch collections over plain HTTP (remoteUrl=\""
+                    + remoteURL.toString() + "\")", request, repository );
+        }
+        return remoteURL;
+    }
+
+    /**
+     * Creates the storage item out of a successful (200) response to retrieve request.
+     *
+     * @param repository the proxy repository
+     * @param request the request for the item
+     * @param remoteURL the remote URL of the item
+     * @param httpResponse the response
+     * @param is the stream of response content
+     * @return the item
+     * @since 2.4
+     */
+    DefaultStorageFileItem createStorageItem( final ProxyRepository repository, final ResourceStoreRequest request,
+                                              final URL remoteURL, final HttpResponse httpResponse,
+                                              final InputStream is )
+    {
+        String mimeType = ContentType.getOrDefault( httpResponse.getEntity() ).getMimeType();
+        if ( mimeType == null )
+        {
+            mimeType =
+                getMimeSupport().guessMimeTypeFromPath( repository.getMimeRulesSource(), request.getRequestPath() );
+        }
+
+        final DefaultStorageFileItem httpItem =
+            new DefaultStorageFileItem( repository, request, CAN_READ, CAN_WRITE, new PreparedContentLocator( is,
+                mimeType ) );
+
+        if ( httpResponse.getEntity().getContentLength() != -1 )
+        {
+            httpItem.setLength( httpResponse.getEntity().getContentLength() );
+        }
+        httpItem.setRemoteUrl( remoteURL.toString() );
+        httpItem.setModified( makeDateFromHeader( httpResponse.getFirstHeader( "last-modified" ) ) );
+        httpItem.setCreated( httpItem.getModified() );
+        httpItem.getItemContext().putAll( request.getRequestContext() );
+
+        return httpItem;
+    }
+
+    /**
+     * Returns {@code true} if the item of a successful (200) response to retrieve request should rather be downloaded
+     * using parallel ranged requests: ranged downloads are enabled for repository, the length of item is above the
+     * threshold of repository, and remote advertises byte ranges of unencoded content, having a validator to detect
+     * changes of the item with.
+     *
+     * @param repository the proxy repository
+     * @param httpResponse the response
+     * @return {@code true} if item should be downloaded with ranged requests
+     * @since 2.4
+     */
+    boolean isRangedDownload( final ProxyRepository repository, final HttpResponse httpResponse )
+    {
+        if ( repository.getRangedDownloadSegments() < 2 || httpResponse.getEntity() == null )
+        {
+            return false;
+        }
+        final long length = httpResponse.getEntity().getContentLength();
+        if ( length <= 0 || length < repository.getRangedDownloadThreshold() )
+        {
+            return false;
+        }
+        final Header acceptRanges = httpResponse.getFirstHeader( "Accept-Ranges" );
+        final Header contentEncoding = httpResponse.getFirstHeader( "Content-Encoding" );
+        return acceptRanges != null && acceptRanges.getValue().toLowerCase( Locale.ENGLISH ).contains( "bytes" )
+            && ( contentEncoding == null || "identity".equalsIgnoreCase( contentEncoding.getValue().trim() ) )
+            && getRangedDownloadValidator( httpResponse ) != null;
+    }
+
+    /**
+     * Downloads the item of a successful (200) response to retrieve request using parallel ranged requests, into a
+     * file preallocated in the tmp directory of repository. The returned item content is the assembled file, that is
+     * deleted once consumed (stored into local storage).
+     *
+     * @param repository the proxy repository
+     * @param request the request for the item
+     * @param remoteURL the remote URL of the item
+     * @param method the plain GET method of the item
+     * @param httpResponse the response
+     * @return the item
+     * @throws ItemNotFoundException if the item disappeared from remote while downloading
+     * @throws RemoteStorageException if download failed
+     * @since 2.4
+     */
+    AbstractStorageItem retrieveItemRanged( final ProxyRepository repository, final ResourceStoreRequest request,
+                                            final URL remoteURL, final HttpRequestBase method,
+                                            final HttpResponse httpResponse )
+        throws ItemNotFoundException, RemoteStorageException
+    {
+        final long length = httpResponse.getEntity().getContentLength();
+        final int segments = (int) Math.min( repository.getRangedDownloadSegments(), length );
+
+        File target = null;
+        try
+        {
+            target = createRangedDownloadTarget( repository, request );
+
+            getLogger().debug(
+                "Downloading " + length + " bytes from " + remoteURL + " using " + segments + " ranged requests" );
+
+            new RangedDownload( this, repository, request, remoteURL, length,
+                getRangedDownloadValidator( httpResponse ), getRangedDownloadMaxResumes() ).download( method,
+                httpResponse, rangedDownloadExecutor, segments, target );
+
+            return createStorageItem( repository, request, remoteURL, httpResponse,
+                new FileContentLocator.DeleteOnCloseFileInputStream( target ) );
+        }
+        catch ( RemoteStorageException ex )
+        {
+            throw ex;
+        }
+        catch ( IOException ex )
+        {
+            method.abort();
+            if ( target != null )
+            {
+                target.delete();
+            }
+            throw new RemoteStorageException( "IO Error during ranged download [repositoryId=\""
+                + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                + remoteURL.toString() + "\"]!", ex );
+        }
+    }
+
+    /**
+     * Creates the file to assemble a ranged download into, in the tmp directory of repository if local storage is
+     * file based (so the item is later moved within same volume), or in system tmp directory otherwise.
+     *
+     * @param repository the proxy repository
+     * @param request the request for the item
+     * @return the created file
+     * @throws IOException if file could not be created
+     * @since 2.4
+     */
+    File createRangedDownloadTarget( final ProxyRepository repository, final ResourceStoreRequest request )
+        throws IOException
+    {
+        File tmpDir = null;
+        if ( repository.getLocalStorage() instanceof DefaultFSLocalRepositoryStorage )
+        {
+            tmpDir =
+                new File( ( (DefaultFSLocalRepositoryStorage) repository.getLocalStorage() ).getBaseDir( repository,
+                    request ), REPO_TMP_FOLDER );
+            tmpDir.mkdirs();
+        }
+        // "nx-tmp" makes sure prefix is longer than 3 chars
+        final File target =
+            File.createTempFile( new File( request.getRequestPath() ).getName() + "nx-tmp", RANGED_DOWNLOAD_SUFFIX,
+                tmpDir );
+        deleteStaleRangedDownloads( target.getParentFile() );
+        return target;
+    }
+
+    /**
+     * Deletes the assembled ranged downloads that were never consumed, as the item failed to be cached.
+     *
+     * @param tmpDir the directory ranged downloads are assembled in
+     * @since 2.4
+     */
+    void deleteStaleRangedDownloads( final File tmpDir )
+    {
+        final long staleBefore =
+            System.currentTimeMillis()
+                - SystemPropertiesHelper.getLong( RANGED_DOWNLOAD_STALE_AGE_KEY, RANGED_DOWNLOAD_STALE_AGE_DEFAULT );
+        final File[] staleFiles = tmpDir.listFiles( new FileFilter()
+        {
+            @Override
+            public boolean accept( final File file )
+            {
+                return file.isFile() && file.getName().endsWith( RANGED_DOWNLOAD_SUFFIX )
+                    && file.lastModified() < staleBefore;
+            }
+        } );
+        if ( staleFiles != null )
+        {
+            for ( File staleFile : staleFiles )
+            {
+                getLogger().debug( "Deleting stale ranged download " + staleFile );
+                staleFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the value to send as "If-Range" with ranged requests: the strong ETag of item, or it's last modified
+     * date.
+     *
+     * @param httpResponse the response to plain GET of item
+     * @return the validator, or {@code null} if response has none
+     * @since 2.4
+     */
+    String getRangedDownloadValidator( final HttpResponse httpResponse )
+    {
+        final Header etag = httpResponse.getFirstHeader( "ETag" );
+        if ( etag != null && !etag.getValue().startsWith( "W/" ) )
+        {
+            return etag.getValue();
+        }
+        final Header lastModified = httpResponse.getFirstHeader( "Last-Modified" );
+        return lastModified == null ? null : lastModified.getValue();
+    }
+
+    /**
+     * @return how many times a failed segment of a ranged download is resumed before the download fails
+     * @since 2.4
+     */
+    int getRangedDownloadMaxResumes()
+    {
+        return SystemPropertiesHelper.getInteger( RANGED_DOWNLOAD_MAX_RESUMES_KEY,
+            RANGED_DOWNLOAD_MAX_RESUMES_DEFAULT );
+    }
+
+    /**
+     * Handles a non 200 response to retrieve request, by throwing the appropriate exception.
+     *
+     * @param repository the proxy repository
+     * @param request the request for the item
+     * @param remoteURL the remote URL of the item
+     * @param httpResponse the response
+     * @throws ItemNotFoundException if the item does not exist remotely
+     * @throws RemoteStorageException in any other case
+     * @since 2.4
+     */
+    void handleUnexpectedRetrieveResponse( final ProxyRepository repository, final ResourceStoreRequest request,
+                                           final URL remoteURL, final HttpResponse httpResponse )
+        throws ItemNotFoundException, RemoteStorageException
+    {
+        if ( httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND )
+        {
+            throw new RemoteItemNotFoundException(
+                "The remoteURL we requested does not exists on remote server (remoteUrl=\"" + remoteURL.toString()
+                    + "\", response code is 404)", request, repository );
+        }
+        else if ( httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_MOVED_TEMPORARILY
+            || httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_MOVED_PERMANENTLY )
+        {
+            // NEXUS-5125 unfollowed redirect means collection (path.endsWith("/"))
+            // see also HttpClientUtil#configure
+            throw new RemoteItemNotFoundException(
+                "The remoteURL we got to looks like is a collection, and Nexus cannot fetch collections over plain HTTP (remoteUrl=\""
+                    + remoteURL.toString() + "\")", request, repository );
+        }
+        else
+        {
+            throw new RemoteStorageException( "The method execution returned result code "
+                + httpResponse.getStatusLine().getStatusCode() + " (expected 200). [repositoryId=\""
+                + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+                + remoteURL.toString() + "\"]" );
+        }
+    }
+
+    /**
+     * Checks the response for conditions that are errors regardless of the method executed.
+     *
+     * @param repository the proxy repository
+     * @param methodUri the URI of executed request
+     * @param httpResponse the response
+     * @throws RemoteStorageException if response denotes access denied, authentication needed or a proxy error page
+     * @since 2.4
+     */
+    void checkResponse( final ProxyRepository repository, final URI methodUri, final HttpResponse httpResponse )
+        throws RemoteStorageException
+    {
+        final int statusCode = httpResponse.getStatusLine().getStatusCode();
+
+        final Header httpServerHeader = httpResponse.getFirstHeader( "server" );
+        checkForRemotePeerAmazonS3Storage( repository, httpServerHeader == null ? null : httpServerHeader.getValue() );
+
+        Header proxyReturnedErrorHeader = httpResponse.getFirstHeader( NEXUS_MISSING_ARTIFACT_HEADER );
+        boolean proxyReturnedError =
+            proxyReturnedErrorHeader != null && Boolean.valueOf( proxyReturnedErrorHeader.getValue() );
+
+        if ( statusCode == HttpStatus.SC_FORBIDDEN )
+        {
+            throw new RemoteAccessDeniedException( repository, methodUri.toASCIIString(),
+                httpResponse.getStatusLine().getReasonPhrase() );
+        }
+        else if ( statusCode == HttpStatus.SC_UNAUTHORIZED )
+        {
+            throw new RemoteAuthenticationNeededException( repository,
+                httpResponse.getStatusLine().getReasonPhrase() );
+        }
+        else if ( statusCode == HttpStatus.SC_OK && proxyReturnedError )
+        {
+            throw new RemoteStorageException(
+                "Invalid artifact found, most likely a proxy redirected to an HTML error page." );
+        }
+    }
+
     /**
      * Executes the HTTP request and automatically releases any related resources.
      *
@@ -573,7 +901,7 @@ public class HttpClientRemoteStorage
      * @param date the date
      * @return the long
      */
-    private long makeDateFromHeader( final Header date )
+    long makeDateFromHeader( final Header date )
     {
         long result = System.currentTimeMillis();
         if ( date != null )
@@ -637,7 +965,7 @@ public class HttpClientRemoteStorage
      *
      * @param httpResponse to be released
      */
-    private void release( final HttpResponse httpResponse )
+    void release( final HttpResponse httpResponse )
     {
         if ( httpResponse != null )
         {
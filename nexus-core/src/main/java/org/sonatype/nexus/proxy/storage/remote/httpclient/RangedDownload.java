@@ -0,0 +1,396 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.remote.httpclient;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.proxy.RemoteStorageException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.storage.remote.RemoteItemNotFoundException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Downloads a remote item using multiple connections, each fetching one segment (byte range) of it. Segments are
+ * written in parallel into a file preallocated to the full length of the item. The first segment is read from the
+ * response of the plain GET that discovered the item length, and a segment that fails is resumed from the position it
+ * reached with a new ranged request, without restarting the other segments or the whole item.
+ * 
+ * @since 2.4
+ */
+class RangedDownload
+{
+    private static final Logger log = LoggerFactory.getLogger( RangedDownload.class );
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final HttpClientRemoteStorage storage;
+
+    private final ProxyRepository repository;
+
+    private final ResourceStoreRequest request;
+
+    private final URL remoteURL;
+
+    private final long length;
+
+    private final String validator;
+
+    private final int maxResumes;
+
+    private volatile boolean aborted;
+
+    private volatile RemoteStorageException abortCause;
+
+    /**
+     * @param storage the storage executing the ranged requests
+     * @param repository the proxy repository
+     * @param request the request for the item
+     * @param remoteURL the remote URL of the item
+     * @param length the length of the item
+     * @param validator the ETag (or last modified date) of the item, sent as "If-Range" to detect remote changes
+     * @param maxResumes how many times a failed segment is resumed before the download fails
+     */
+    RangedDownload( final HttpClientRemoteStorage storage, final ProxyRepository repository,
+                    final ResourceStoreRequest request, final URL remoteURL, final long length,
+                    final String validator, final int maxResumes )
+    {
+        this.storage = Preconditions.checkNotNull( storage );
+        this.repository = Preconditions.checkNotNull( repository );
+        this.request = Preconditions.checkNotNull( request );
+        this.remoteURL = Preconditions.checkNotNull( remoteURL );
+        Preconditions.checkArgument( length > 0, "Length must be positive" );
+        this.length = length;
+        this.validator = validator;
+        this.maxResumes = maxResumes;
+    }
+
+    /**
+     * Downloads the item into target file. The passed in response (to a plain GET of the item) is consumed as first
+     * segment, and it's method aborted once the first segment is complete. Calling thread downloads the first segment,
+     * the other ones are downloaded using the passed in executor. On failure, target file is deleted.
+     * 
+     * @param method the plain GET method of the item
+     * @param httpResponse the 200 response to plain GET
+     * @param executor the executor to download segments with
+     * @param segments the count of segments
+     * @param target the file to download into
+     * @throws RemoteItemNotFoundException if the item disappeared from remote while downloading
+     * @throws RemoteStorageException if any segment failed, and could not be resumed
+     */
+    void download( final HttpRequestBase method, final HttpResponse httpResponse, final ExecutorService executor,
+                   final int segments, final File target )
+        throws RemoteItemNotFoundException, RemoteStorageException
+    {
+        Preconditions.checkArgument( segments > 1, "At least two segments needed" );
+        final long segmentLength = ( length + segments - 1 ) / segments;
+
+        RandomAccessFile file = null;
+        final List<Segment> others = new ArrayList<Segment>( segments - 1 );
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>( segments - 1 );
+        boolean success = false;
+        try
+        {
+            file = new RandomAccessFile( target, "rw" );
+            file.setLength( length );
+            final FileChannel channel = file.getChannel();
+
+            final Segment first = new Segment( channel, 0, Math.min( segmentLength, length ) - 1 );
+            for ( long start = segmentLength; start < length; start += segmentLength )
+            {
+                final Segment segment = new Segment( channel, start, Math.min( start + segmentLength, length ) - 1 );
+                others.add( segment );
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        segment.download( null, null );
+                        return null;
+                    }
+                } ) );
+            }
+
+            first.download( method, new InterruptableInputStream( method, httpResponse.getEntity().getContent() ) );
+            for ( Future<Void> future : futures )
+            {
+                future.get();
+            }
+            file.close();
+            file = null;
+
+            if ( target.length() != length )
+            {
+                throw new RemoteStorageException( "Ranged download of " + length + " bytes resulted in "
+                    + target.length() + " bytes " + describe() );
+            }
+            success = true;
+        }
+        catch ( ExecutionException e )
+        {
+            if ( abortCause != null )
+            {
+                throw abortCause;
+            }
+            if ( e.getCause() instanceof RemoteItemNotFoundException )
+            {
+                throw (RemoteItemNotFoundException) e.getCause();
+            }
+            if ( e.getCause() instanceof RemoteStorageException )
+            {
+                throw (RemoteStorageException) e.getCause();
+            }
+            throw new RemoteStorageException( "Ranged download failed " + describe(), e.getCause() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RemoteStorageException( "Ranged download interrupted " + describe(), e );
+        }
+        catch ( IOException e )
+        {
+            if ( abortCause != null )
+            {
+                // other segment aborted this one
+                throw abortCause;
+            }
+            if ( e instanceof RemoteStorageException )
+            {
+                throw (RemoteStorageException) e;
+            }
+            throw new RemoteStorageException( "IO Error during ranged download " + describe(), e );
+        }
+        finally
+        {
+            if ( !success )
+            {
+                aborted = true;
+                method.abort();
+                for ( Segment segment : others )
+                {
+                    segment.abort();
+                }
+                // wait for segments to stop writing before deleting the target
+                for ( Future<Void> future : futures )
+                {
+                    try
+                    {
+                        future.get();
+                    }
+                    catch ( Exception e )
+                    {
+                        // already failed or canceled
+                    }
+                }
+                closeQuietly( file );
+                target.delete();
+            }
+        }
+    }
+
+    private String describe()
+    {
+        return "[repositoryId=\"" + repository.getId() + "\", requestPath=\"" + request.getRequestPath()
+            + "\", remoteUrl=\"" + remoteURL.toString() + "\"]";
+    }
+
+    private void closeQuietly( final RandomAccessFile file )
+    {
+        if ( file != null )
+        {
+            try
+            {
+                file.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
+    }
+
+    // ==
+
+    /**
+     * One byte range of the item, inclusive on both ends.
+     */
+    private class Segment
+    {
+        private final FileChannel channel;
+
+        private final long end;
+
+        private long position;
+
+        private volatile HttpRequestBase current;
+
+        private Segment( final FileChannel channel, final long start, final long end )
+        {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * Downloads this segment, resuming it with ranged requests as needed.
+         * 
+         * @param initialMethod the method of initial stream, or {@code null}
+         * @param initialStream the stream positioned at start of this segment, or {@code null} to start with ranged
+         *            request
+         */
+        private void download( final HttpRequestBase initialMethod, final InputStream initialStream )
+            throws RemoteItemNotFoundException, IOException
+        {
+            HttpRequestBase method = initialMethod;
+            InputStream is = initialStream;
+            int resumes = 0;
+            while ( true )
+            {
+                boolean complete = false;
+                try
+                {
+                    if ( aborted )
+                    {
+                        throw new InterruptedIOException( "Ranged download aborted " + describe() );
+                    }
+                    if ( is == null )
+                    {
+                        method = new HttpGet( remoteURL.toExternalForm() );
+                        current = method;
+                        is = openRange( method );
+                    }
+                    transfer( is );
+                    complete = true;
+                    return;
+                }
+                catch ( IOException e )
+                {
+                    if ( aborted || resumes >= maxResumes || e instanceof InterruptedIOException )
+                    {
+                        throw e;
+                    }
+                    log.debug( "Resuming segment at {} of {}", position, describe(), e );
+                }
+                finally
+                {
+                    if ( method != null && ( !complete || method == initialMethod ) )
+                    {
+                        // initial response carries the rest of the item, do not drain it
+                        method.abort();
+                    }
+                    IOUtil.close( is );
+                    is = null;
+                }
+                resumes++;
+            }
+        }
+
+        /**
+         * Aborts the request in flight, if any.
+         */
+        private void abort()
+        {
+            final HttpRequestBase method = current;
+            if ( method != null )
+            {
+                method.abort();
+            }
+        }
+
+        private InputStream openRange( final HttpRequestBase method )
+            throws RemoteItemNotFoundException, IOException
+        {
+            method.setHeader( "Range", "bytes=" + position + "-" + end );
+            method.setHeader( "Accept-Encoding", "identity" );
+            if ( validator != null )
+            {
+                method.setHeader( "If-Range", validator );
+            }
+
+            final HttpResponse httpResponse = storage.executeRequest( repository, request, method );
+            final int statusCode = httpResponse.getStatusLine().getStatusCode();
+            final Header contentRange = httpResponse.getFirstHeader( "Content-Range" );
+            if ( statusCode == HttpStatus.SC_NOT_FOUND )
+            {
+                storage.release( httpResponse );
+                throw new RemoteItemNotFoundException( "The remoteURL we requested does not exists on remote server "
+                    + "any more (remoteUrl=\"" + remoteURL.toString() + "\", response code is 404)", request,
+                    repository );
+            }
+            if ( statusCode != HttpStatus.SC_PARTIAL_CONTENT || contentRange == null
+                || !contentRange.getValue().trim().startsWith( "bytes " + position + "-" ) )
+            {
+                // 200 means that remote ignored the range, or that item changed since the initial request: resuming
+                // would not help, abort the whole download
+                method.abort();
+                abortCause =
+                    new RemoteStorageException( "Unexpected response to ranged request of bytes " + position + "-"
+                        + end + ": " + httpResponse.getStatusLine() + ", Content-Range: "
+                        + ( contentRange == null ? null : contentRange.getValue() ) + " " + describe() );
+                aborted = true;
+                throw abortCause;
+            }
+            return new InterruptableInputStream( method, httpResponse.getEntity().getContent() );
+        }
+
+        private void transfer( final InputStream is )
+            throws IOException
+        {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while ( position <= end )
+            {
+                if ( aborted )
+                {
+                    throw new InterruptedIOException( "Ranged download aborted " + describe() );
+                }
+                final int read = is.read( buffer, 0, (int) Math.min( buffer.length, end - position + 1 ) );
+                if ( read == -1 )
+                {
+                    throw new EOFException( "Premature end of segment at " + position + " (expected " + end + ") "
+                        + describe() );
+                }
+                final ByteBuffer bb = ByteBuffer.wrap( buffer, 0, read );
+                long writePosition = position;
+                while ( bb.hasRemaining() )
+                {
+                    writePosition += channel.write( bb, writePosition );
+                }
+                position = writePosition;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.remote.httpclient;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.sonatype.nexus.apachehttpclient.UpstreamPermit;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Asynchronous response consumer that hands over the response as soon as its head arrived (see
+ * {@link #getResponseHead()}), with an entity streaming the content through an {@link AsyncContentBuffer}, as it is
+ * being received by the I/O reactor. The upstream permit the exchange was executed with is fed with the response and
+ * released once the exchange is done.
+ *
+ * @since 2.4
+ */
+class StreamingResponseConsumer
+    extends AbstractAsyncResponseConsumer<HttpResponse>
+{
+    private final AsyncContentBuffer buffer;
+
+    private final SettableFuture<HttpResponse> responseHead;
+
+    private final UpstreamPermit permit;
+
+    private volatile HttpResponse response;
+
+    StreamingResponseConsumer( final int bufferSize, final UpstreamPermit permit )
+    {
+        this.buffer = new AsyncContentBuffer( bufferSize );
+        this.responseHead = SettableFuture.create();
+        this.permit = permit;
+    }
+
+    /**
+     * Returns the future of response head, that is done once status line and headers were received, while the
+     * response entity might still be streaming in.
+     */
+    Future<HttpResponse> getResponseHead()
+    {
+        return responseHead;
+    }
+
+    /**
+     * Sets the future of the whole exchange, to be cancelled if content stream is closed prematurely.
+     */
+    void setExchange( final Future<HttpResponse> exchange )
+    {
+        buffer.setExchange( exchange );
+    }
+
+    @Override
+    protected void onResponseReceived( final HttpResponse response )
+        throws HttpException, IOException
+    {
+        this.response = response;
+        permit.responded( response.getStatusLine().getStatusCode() );
+    }
+
+    @Override
+    protected void onEntityEnclosed( final HttpEntity entity, final ContentType contentType )
+        throws IOException
+    {
+        final BasicHttpEntity streamingEntity = new BasicHttpEntity();
+        streamingEntity.setContent( buffer.getInputStream() );
+        streamingEntity.setContentLength( entity.getContentLength() );
+        streamingEntity.setContentType( entity.getContentType() );
+        streamingEntity.setContentEncoding( entity.getContentEncoding() );
+        response.setEntity( streamingEntity );
+        responseHead.set( response );
+    }
+
+    @Override
+    protected void onContentReceived( final ContentDecoder decoder, final IOControl ioctrl )
+        throws IOException
+    {
+        buffer.consumeContent( decoder, ioctrl );
+    }
+
+    @Override
+    protected HttpResponse buildResult( final HttpContext context )
+    {
+        buffer.complete();
+        // responses without entity
+        responseHead.set( response );
+        return response;
+    }
+
+    @Override
+    protected void releaseResources()
+    {
+        try
+        {
+            if ( !buffer.isCompleted() )
+            {
+                final Exception cause =
+                    getException() != null ? getException() : new IOException( "HTTP exchange cancelled" );
+                buffer.fail( cause );
+                responseHead.setException( cause );
+            }
+        }
+        finally
+        {
+            permit.release();
+        }
+    }
+}
@@ -22,11 +22,13 @@ import org.sonatype.configuration.ConfigurationException;
 import org.sonatype.nexus.configuration.application.ApplicationConfiguration;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.NexusStartedEvent;
 import org.sonatype.nexus.proxy.registry.ContentClass;
 import org.sonatype.nexus.proxy.registry.RepositoryTypeRegistry;
 import org.sonatype.plexus.appevents.Event;
 
+@HandlesEvents( NexusStartedEvent.class )
 @Component( role = EventInspector.class, hint = "DefaultTargetRegistryEventInspector" )
 public class DefaultTargetRegistryEventInspector
     extends AbstractEventInspector
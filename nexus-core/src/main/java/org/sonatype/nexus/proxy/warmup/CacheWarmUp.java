@@ -0,0 +1,254 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.warmup;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A cache warm-up in progress (or finished), reporting progress and failures. Instances are thread safe.
+ * 
+ * @since 2.4
+ */
+public class CacheWarmUp
+{
+    /**
+     * The states of cache warm-up.
+     */
+    public enum State
+    {
+        RUNNING, DONE, CANCELED;
+    }
+
+    /**
+     * Count of failures remembered (with reason) per warm-up, the rest is only counted.
+     */
+    static final int MAX_REPORTED_FAILURES = 100;
+
+    private final String id;
+
+    private final String repositoryId;
+
+    private final String userId;
+
+    private final int total;
+
+    private final long started;
+
+    private final AtomicInteger fetched;
+
+    private final AtomicInteger skipped;
+
+    private final AtomicInteger notFound;
+
+    private final AtomicInteger failed;
+
+    private final Map<String, String> failures;
+
+    private final CountDownLatch done;
+
+    private volatile boolean canceled;
+
+    private volatile long finished;
+
+    public CacheWarmUp( final String id, final String repositoryId, final int total )
+    {
+        this( id, repositoryId, null, total );
+    }
+
+    public CacheWarmUp( final String id, final String repositoryId, final String userId, final int total )
+    {
+        this.id = checkNotNull( id );
+        this.repositoryId = checkNotNull( repositoryId );
+        this.userId = userId;
+        this.total = total;
+        this.started = System.currentTimeMillis();
+        this.fetched = new AtomicInteger();
+        this.skipped = new AtomicInteger();
+        this.notFound = new AtomicInteger();
+        this.failed = new AtomicInteger();
+        this.failures = new LinkedHashMap<String, String>();
+        this.done = new CountDownLatch( 1 );
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    /**
+     * Returns the ID of user who started this warm-up, or {@code null} if not started by a user (but by a task).
+     */
+    public String getUserId()
+    {
+        return userId;
+    }
+
+    /**
+     * Returns the count of paths to warm up.
+     */
+    public int getTotal()
+    {
+        return total;
+    }
+
+    public long getStarted()
+    {
+        return started;
+    }
+
+    /**
+     * Returns the time this warm-up finished, or 0 if still running.
+     */
+    public long getFinished()
+    {
+        return finished;
+    }
+
+    public State getState()
+    {
+        if ( finished == 0 )
+        {
+            return State.RUNNING;
+        }
+        return canceled ? State.CANCELED : State.DONE;
+    }
+
+    /**
+     * Returns the count of items fetched from remote into cache.
+     */
+    public int getFetched()
+    {
+        return fetched.get();
+    }
+
+    /**
+     * Returns the count of items skipped, as they were already cached and fresh.
+     */
+    public int getSkipped()
+    {
+        return skipped.get();
+    }
+
+    /**
+     * Returns the count of items not found on any remote.
+     */
+    public int getNotFound()
+    {
+        return notFound.get();
+    }
+
+    /**
+     * Returns the count of items failed to fetch.
+     */
+    public int getFailed()
+    {
+        return failed.get();
+    }
+
+    /**
+     * Returns the count of items processed so far.
+     */
+    public int getProcessed()
+    {
+        return getFetched() + getSkipped() + getNotFound() + getFailed();
+    }
+
+    /**
+     * Returns a snapshot of failed paths with failure reasons (only the first {@value #MAX_REPORTED_FAILURES}).
+     */
+    public Map<String, String> getFailures()
+    {
+        synchronized ( failures )
+        {
+            return new LinkedHashMap<String, String>( failures );
+        }
+    }
+
+    /**
+     * Cancels this warm-up, items being fetched are finished, but no new fetch is started.
+     */
+    public void cancel()
+    {
+        canceled = true;
+    }
+
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+
+    /**
+     * Waits for this warm-up to finish.
+     * 
+     * @return {@code true} if warm-up finished, {@code false} if timeout elapsed.
+     */
+    public boolean await( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        return done.await( timeout, unit );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CacheWarmUp{id=" + id + ", repositoryId=" + repositoryId + ", state=" + getState() + ", total=" + total
+            + ", fetched=" + getFetched() + ", skipped=" + getSkipped() + ", notFound=" + getNotFound() + ", failed="
+            + getFailed() + "}";
+    }
+
+    // ==
+
+    void recordFetched()
+    {
+        fetched.incrementAndGet();
+    }
+
+    void recordSkipped()
+    {
+        skipped.incrementAndGet();
+    }
+
+    void recordNotFound()
+    {
+        notFound.incrementAndGet();
+    }
+
+    void recordFailure( final String path, final String reason )
+    {
+        failed.incrementAndGet();
+        synchronized ( failures )
+        {
+            if ( failures.size() < MAX_REPORTED_FAILURES )
+            {
+                failures.put( path, reason );
+            }
+        }
+    }
+
+    void finish()
+    {
+        finished = System.currentTimeMillis();
+        done.countDown();
+    }
+}
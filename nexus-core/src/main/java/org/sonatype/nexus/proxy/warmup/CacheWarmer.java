@@ -0,0 +1,74 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.warmup;
+
+import java.util.List;
+
+import org.sonatype.nexus.proxy.repository.Repository;
+
+/**
+ * Warms up proxy caches ahead of demand, by fetching lists of items into proxy repositories.
+ * 
+ * @since 2.4
+ */
+public interface CacheWarmer
+{
+    /**
+     * Resolves the passed in warm-up entries into repository paths. Entries are separated by new lines, and each entry
+     * is either a repository path (starting with "/"), or Maven coordinates in form of
+     * {@code groupId:artifactId[:type[:classifier]]:version[:scope]}, as found in {@code mvn dependency:tree} or
+     * {@code mvn dependency:list} output (hence such output can be passed in as is, lines not recognized are
+     * ignored). Coordinates resolve into the POM and the artifact (for type other than "pom") with their SHA1
+     * checksums, and are ignored if repository is not a Maven repository.
+     * 
+     * @param repository the proxy or group repository to warm up.
+     * @param entries the entries.
+     * @return the list of paths, without duplicates, never {@code null}.
+     */
+    List<String> resolvePaths( Repository repository, String entries );
+
+    /**
+     * Starts warming up the cache of given repository with the passed in paths. For a group, the paths are fetched
+     * into the proxy members of it, trying them in group order. Items already cached and fresh are skipped.
+     * 
+     * @param repository the proxy or group repository to warm up.
+     * @param paths the paths to fetch.
+     * @return the warm-up, that is started in background.
+     * @throws IllegalArgumentException if repository is neither a proxy, nor a group.
+     */
+    CacheWarmUp warmUp( Repository repository, List<String> paths )
+        throws IllegalArgumentException;
+
+    /**
+     * Starts warming up the cache of given repository with the passed in paths, on behalf of given user. See
+     * {@link #warmUp(Repository, List)}.
+     * 
+     * @param repository the proxy or group repository to warm up.
+     * @param paths the paths to fetch.
+     * @param userId the ID of user starting the warm-up, or {@code null} if not started by a user.
+     * @return the warm-up, that is started in background.
+     * @throws IllegalArgumentException if repository is neither a proxy, nor a group.
+     */
+    CacheWarmUp warmUp( Repository repository, List<String> paths, String userId )
+        throws IllegalArgumentException;
+
+    /**
+     * Returns the recently started warm-ups, latest first.
+     */
+    List<CacheWarmUp> getWarmUps();
+
+    /**
+     * Returns the warm-up with given ID, or {@code null} if no such warm-up is known.
+     */
+    CacheWarmUp getWarmUp( String id );
+}
@@ -0,0 +1,600 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.warmup;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+import org.sonatype.nexus.proxy.maven.gav.Gav;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+/**
+ * Default {@link CacheWarmer}. Each warm-up is driven by a coordinator thread, that skips the items already cached and
+ * fresh, and hands the rest to a shared pool of fetching threads, but only after it acquired a permit of the upstream
+ * host the item is about to be fetched from. Hence, the count of concurrent fetches from one upstream host is bounded
+ * (across all running warm-ups), and a warm-up hitting a slow upstream does not starve the others. Fetching is a plain
+ * (prefetch flagged) retrieval from the proxy repository, so the item is cached straight into local storage, the
+ * content is never read by the warmer.
+ * 
+ * @since 2.4
+ */
+@Named
+@Singleton
+public class DefaultCacheWarmer
+    extends AbstractLoggingComponent
+    implements CacheWarmer, Disposable
+{
+    private static final String PROPERTY_PREFIX = "org.sonatype.nexus.proxy.warmup.DefaultCacheWarmer.";
+
+    private static final int THREADS = SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "threads", 16 );
+
+    private static final int UPSTREAM_CONCURRENCY = SystemPropertiesHelper.getInteger( PROPERTY_PREFIX
+        + "upstreamConcurrency", 4 );
+
+    private static final int KEPT_WARM_UPS = SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "keptWarmUps", 20 );
+
+    private static final List<String> SCOPES = Arrays.asList( "compile", "provided", "runtime", "test", "system",
+        "import" );
+
+    private final int upstreamConcurrency;
+
+    private final ExecutorService coordinatorExecutor;
+
+    private final ThreadPoolExecutor fetchExecutor;
+
+    private final ConcurrentMap<String, Semaphore> upstreamPermits;
+
+    private final LinkedList<CacheWarmUp> warmUps;
+
+    private final AtomicInteger warmUpCounter;
+
+    public DefaultCacheWarmer()
+    {
+        this( THREADS, UPSTREAM_CONCURRENCY );
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param threads the count of fetching threads (shared by all warm-ups).
+     * @param upstreamConcurrency the maximum count of concurrent fetches from one upstream host.
+     */
+    public DefaultCacheWarmer( final int threads, final int upstreamConcurrency )
+    {
+        checkArgument( threads > 0, "Threads must be positive!" );
+        checkArgument( upstreamConcurrency > 0, "Upstream concurrency must be positive!" );
+        this.upstreamConcurrency = upstreamConcurrency;
+        this.coordinatorExecutor =
+            Executors.newCachedThreadPool( new NexusThreadFactory( "nxwarmup", "Cache warm-up", Thread.MIN_PRIORITY ) );
+        this.fetchExecutor =
+            new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NexusThreadFactory( "nxwarmupfetch", "Cache warm-up fetch", Thread.MIN_PRIORITY ) );
+        this.fetchExecutor.allowCoreThreadTimeOut( true );
+        this.upstreamPermits = new ConcurrentHashMap<String, Semaphore>();
+        this.warmUps = new LinkedList<CacheWarmUp>();
+        this.warmUpCounter = new AtomicInteger();
+    }
+
+    @Override
+    public void dispose()
+    {
+        synchronized ( warmUps )
+        {
+            for ( CacheWarmUp warmUp : warmUps )
+            {
+                warmUp.cancel();
+            }
+        }
+        coordinatorExecutor.shutdownNow();
+        fetchExecutor.shutdownNow();
+    }
+
+    // == CacheWarmer
+
+    @Override
+    public List<String> resolvePaths( final Repository repository, final String entries )
+    {
+        final Set<String> paths = new LinkedHashSet<String>();
+        if ( entries == null )
+        {
+            return new ArrayList<String>( paths );
+        }
+
+        MavenRepository mavenRepository = null;
+        if ( repository.getRepositoryKind().isFacetAvailable( MavenRepository.class ) )
+        {
+            mavenRepository = repository.adaptToFacet( MavenRepository.class );
+        }
+        for ( String line : entries.split( "\r?\n" ) )
+        {
+            final String entry = toEntry( line );
+            if ( entry == null )
+            {
+                continue;
+            }
+            if ( entry.startsWith( "/" ) )
+            {
+                paths.add( entry );
+            }
+            else if ( mavenRepository != null )
+            {
+                paths.addAll( coordinatesToPaths( mavenRepository, entry ) );
+            }
+            else
+            {
+                getLogger().debug( "Repository {} is not a Maven repository, ignoring coordinates {}",
+                    repository.getId(), entry );
+            }
+        }
+        return new ArrayList<String>( paths );
+    }
+
+    @Override
+    public CacheWarmUp warmUp( final Repository repository, final List<String> paths )
+        throws IllegalArgumentException
+    {
+        return warmUp( repository, paths, null );
+    }
+
+    @Override
+    public CacheWarmUp warmUp( final Repository repository, final List<String> paths, final String userId )
+        throws IllegalArgumentException
+    {
+        checkNotNull( paths );
+        final List<ProxyRepository> proxies = new ArrayList<ProxyRepository>();
+        final List<Repository> members = new ArrayList<Repository>();
+        if ( repository.getRepositoryKind().isFacetAvailable( ProxyRepository.class ) )
+        {
+            proxies.add( repository.adaptToFacet( ProxyRepository.class ) );
+            members.add( repository );
+        }
+        else if ( repository.getRepositoryKind().isFacetAvailable( GroupRepository.class ) )
+        {
+            final GroupRepository group = repository.adaptToFacet( GroupRepository.class );
+            for ( Repository member : group.getTransitiveMemberRepositories() )
+            {
+                members.add( member );
+                if ( member.getRepositoryKind().isFacetAvailable( ProxyRepository.class ) )
+                {
+                    proxies.add( member.adaptToFacet( ProxyRepository.class ) );
+                }
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Repository " + repository.getId()
+                + " is neither a proxy nor a group repository!" );
+        }
+
+        final CacheWarmUp warmUp =
+            new CacheWarmUp( repository.getId() + "-" + warmUpCounter.incrementAndGet(), repository.getId(), userId,
+                paths.size() );
+        synchronized ( warmUps )
+        {
+            warmUps.addFirst( warmUp );
+            while ( warmUps.size() > KEPT_WARM_UPS && warmUps.getLast().getFinished() > 0 )
+            {
+                warmUps.removeLast();
+            }
+        }
+        getLogger().info( "Starting cache warm-up {} of {} items", warmUp.getId(), paths.size() );
+        coordinatorExecutor.execute( new Coordinator( warmUp, new ArrayList<String>( paths ), members, proxies ) );
+        return warmUp;
+    }
+
+    @Override
+    public List<CacheWarmUp> getWarmUps()
+    {
+        synchronized ( warmUps )
+        {
+            return Collections.unmodifiableList( new ArrayList<CacheWarmUp>( warmUps ) );
+        }
+    }
+
+    @Override
+    public CacheWarmUp getWarmUp( final String id )
+    {
+        synchronized ( warmUps )
+        {
+            for ( CacheWarmUp warmUp : warmUps )
+            {
+                if ( warmUp.getId().equals( id ) )
+                {
+                    return warmUp;
+                }
+            }
+        }
+        return null;
+    }
+
+    // ==
+
+    /**
+     * Extracts the entry (path or coordinates) from a line, or returns {@code null} if line does not contain one.
+     * Handles the decorations of Maven build output, like log level prefix, tree branches and trailing remarks.
+     */
+    protected String toEntry( final String line )
+    {
+        String entry = line.trim();
+        if ( entry.startsWith( "[" ) && entry.indexOf( ']' ) > 0 )
+        {
+            // "[INFO] " prefix
+            entry = entry.substring( entry.indexOf( ']' ) + 1 ).trim();
+        }
+        if ( entry.startsWith( "---" ) )
+        {
+            // "--- maven-dependency-plugin:2.8:tree (default-cli) @ x ---" plugin execution header
+            return null;
+        }
+        int start = 0;
+        while ( start < entry.length() && "+-|\\ \t".indexOf( entry.charAt( start ) ) > -1 )
+        {
+            // tree branches
+            start++;
+        }
+        entry = entry.substring( start );
+        if ( entry.length() == 0 || entry.startsWith( "#" ) )
+        {
+            return null;
+        }
+        final int end = entry.indexOf( ' ' );
+        if ( end > 0 )
+        {
+            // " (optional)" and alike
+            entry = entry.substring( 0, end );
+        }
+        if ( entry.startsWith( "/" ) || ( entry.indexOf( '/' ) == -1 && entry.split( ":" ).length >= 3 ) )
+        {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Resolves coordinates in form of {@code groupId:artifactId[:type[:classifier]]:version[:scope]} into paths.
+     */
+    protected List<String> coordinatesToPaths( final MavenRepository repository, final String coordinates )
+    {
+        final List<String> parts = new ArrayList<String>( Arrays.asList( coordinates.split( ":" ) ) );
+        if ( parts.size() >= 5 && SCOPES.contains( parts.get( parts.size() - 1 ) ) )
+        {
+            parts.remove( parts.size() - 1 );
+        }
+        final String groupId = parts.get( 0 );
+        final String artifactId = parts.get( 1 );
+        final String version = parts.get( parts.size() - 1 );
+        String type = "jar";
+        String classifier = null;
+        if ( parts.size() == 4 )
+        {
+            type = parts.get( 2 );
+        }
+        else if ( parts.size() == 5 )
+        {
+            type = parts.get( 2 );
+            classifier = parts.get( 3 );
+        }
+        else if ( parts.size() != 3 )
+        {
+            getLogger().debug( "Ignoring unrecognized coordinates {}", coordinates );
+            return Collections.emptyList();
+        }
+        if ( "test-jar".equals( type ) && classifier == null )
+        {
+            classifier = "tests";
+        }
+
+        final List<String> paths = new ArrayList<String>( 4 );
+        addPath( paths, repository, new Gav( groupId, artifactId, version, null, "pom", null, null, null, false, null,
+            false, null ) );
+        final String extension = repository.getArtifactPackagingMapper().getExtensionForPackaging( type );
+        if ( !"pom".equals( extension ) )
+        {
+            addPath( paths, repository, new Gav( groupId, artifactId, version, classifier, extension, null, null, null,
+                false, null, false, null ) );
+        }
+        return paths;
+    }
+
+    protected void addPath( final List<String> paths, final MavenRepository repository, final Gav gav )
+    {
+        final String path = repository.getGavCalculator().gavToPath( gav );
+        paths.add( path );
+        paths.add( path + ".sha1" );
+    }
+
+    /**
+     * Returns {@code true} if any of the members has the item cached (or stored) locally, and it is fresh.
+     */
+    protected boolean isCachedAndFresh( final List<Repository> members, final String path )
+    {
+        for ( Repository member : members )
+        {
+            if ( !member.getLocalStatus().shouldServiceRequest() )
+            {
+                continue;
+            }
+            try
+            {
+                final StorageItem item =
+                    member.getLocalStorage().retrieveItem( member, new ResourceStoreRequest( path ) );
+                if ( !member.getRepositoryKind().isFacetAvailable( ProxyRepository.class )
+                    || member.adaptToFacet( ProxyRepository.class ).isItemFresh( item ) )
+                {
+                    return true;
+                }
+            }
+            catch ( ItemNotFoundException e )
+            {
+                // not here
+            }
+            catch ( Exception e )
+            {
+                getLogger().debug( "Could not check local item {}:{}", member.getId(), path, e );
+            }
+        }
+        return false;
+    }
+
+    protected boolean canFetch( final ProxyRepository proxy )
+    {
+        return proxy.getLocalStatus().shouldServiceRequest() && proxy.getProxyMode() != null
+            && proxy.getProxyMode().shouldProxy();
+    }
+
+    protected Semaphore getUpstreamPermits( final ProxyRepository proxy )
+    {
+        final String upstream = getUpstream( proxy );
+        Semaphore permits = upstreamPermits.get( upstream );
+        if ( permits == null )
+        {
+            permits = new Semaphore( upstreamConcurrency );
+            final Semaphore existing = upstreamPermits.putIfAbsent( upstream, permits );
+            if ( existing != null )
+            {
+                permits = existing;
+            }
+        }
+        return permits;
+    }
+
+    protected String getUpstream( final ProxyRepository proxy )
+    {
+        try
+        {
+            final URL url = new URL( proxy.getRemoteUrl() );
+            final int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+            return url.getHost().toLowerCase() + ":" + port;
+        }
+        catch ( MalformedURLException e )
+        {
+            // odd remote URL, limit the repository alone
+            return proxy.getId();
+        }
+    }
+
+    // ==
+
+    /**
+     * Drives one warm-up: skips fresh items, and submits fetches bounded by upstream permits.
+     */
+    protected class Coordinator
+        implements Runnable
+    {
+        private final CacheWarmUp warmUp;
+
+        private final List<String> paths;
+
+        private final List<Repository> members;
+
+        private final List<ProxyRepository> proxies;
+
+        public Coordinator( final CacheWarmUp warmUp, final List<String> paths, final List<Repository> members,
+                            final List<ProxyRepository> proxies )
+        {
+            this.warmUp = warmUp;
+            this.paths = paths;
+            this.members = members;
+            this.proxies = proxies;
+        }
+
+        @Override
+        public void run()
+        {
+            final List<Future<?>> fetches = new ArrayList<Future<?>>();
+            try
+            {
+                for ( String path : paths )
+                {
+                    if ( warmUp.isCanceled() )
+                    {
+                        break;
+                    }
+                    if ( isCachedAndFresh( members, path ) )
+                    {
+                        warmUp.recordSkipped();
+                        continue;
+                    }
+                    final int first = nextFetchingProxy( -1 );
+                    if ( first < 0 )
+                    {
+                        warmUp.recordFailure( path, "No proxy repository is allowed to fetch from remote" );
+                        continue;
+                    }
+                    final Semaphore permits = getUpstreamPermits( proxies.get( first ) );
+                    permits.acquire();
+                    try
+                    {
+                        fetches.add( fetchExecutor.submit( new Fetch( path, first ) ) );
+                    }
+                    catch ( RejectedExecutionException e )
+                    {
+                        // fetch will not run to release it (warmer is being disposed)
+                        permits.release();
+                        throw e;
+                    }
+                }
+                for ( Future<?> fetch : fetches )
+                {
+                    fetch.get();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                warmUp.cancel();
+                Thread.currentThread().interrupt();
+            }
+            catch ( ExecutionException e )
+            {
+                getLogger().warn( "Cache warm-up {} failed", warmUp.getId(), e.getCause() );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                // fetch executor shut down
+                warmUp.cancel();
+            }
+            finally
+            {
+                warmUp.finish();
+                getLogger().info( "Finished {}", warmUp );
+            }
+        }
+
+        protected int nextFetchingProxy( final int previous )
+        {
+            for ( int i = previous + 1; i < proxies.size(); i++ )
+            {
+                if ( canFetch( proxies.get( i ) ) )
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Fetches one item, trying the proxies in order until found. Holds the upstream permit of the first proxy
+         * (acquired by coordinator) on entry, and acquires permits of subsequent proxies on it's own.
+         */
+        protected class Fetch
+            implements Runnable
+        {
+            private final String path;
+
+            private final int first;
+
+            public Fetch( final String path, final int first )
+            {
+                this.path = path;
+                this.first = first;
+            }
+
+            @Override
+            public void run()
+            {
+                int current = first;
+                try
+                {
+                    while ( current >= 0 )
+                    {
+                        final ProxyRepository proxy = proxies.get( current );
+                        final Semaphore permits = getUpstreamPermits( proxy );
+                        if ( current != first )
+                        {
+                            permits.acquire();
+                        }
+                        try
+                        {
+                            if ( fetch( proxy ) )
+                            {
+                                warmUp.recordFetched();
+                                return;
+                            }
+                        }
+                        finally
+                        {
+                            permits.release();
+                        }
+                        current = warmUp.isCanceled() ? -1 : nextFetchingProxy( current );
+                    }
+                    warmUp.recordNotFound();
+                }
+                catch ( InterruptedException e )
+                {
+                    warmUp.recordFailure( path, "Interrupted" );
+                    Thread.currentThread().interrupt();
+                }
+                catch ( Exception e )
+                {
+                    getLogger().debug( "Could not warm up {}:{}", proxies.get( current ).getId(), path, e );
+                    warmUp.recordFailure( path, proxies.get( current ).getId() + ": " + e.getMessage() );
+                }
+            }
+
+            /**
+             * Fetches the item into the cache of proxy, returns {@code false} if item was not found.
+             */
+            protected boolean fetch( final ProxyRepository proxy )
+                throws Exception
+            {
+                final ResourceStoreRequest request = new ResourceStoreRequest( path );
+                request.getRequestContext().put( RequestContext.CTX_PREFETCH_FLAG, Boolean.TRUE );
+                try
+                {
+                    proxy.retrieveItem( true, request );
+                    return true;
+                }
+                catch ( ItemNotFoundException e )
+                {
+                    return false;
+                }
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.NexusStartedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventAdd;
@@ -45,6 +46,8 @@ import org.sonatype.nexus.repository.metadata.model.RepositoryMetadata;
 import org.sonatype.nexus.repository.metadata.model.RepositoryMirrorMetadata;
 import org.sonatype.plexus.appevents.Event;
 
+@HandlesEvents( { RepositoryRegistryEventAdd.class, RepositoryConfigurationUpdatedEvent.class,
+    NexusStartedEvent.class } )
 @Component( role = EventInspector.class, hint = "NexusRepositoryMetadataEventInspector" )
 public class NexusRepositoryMetadataEventInspector
     extends AbstractEventInspector
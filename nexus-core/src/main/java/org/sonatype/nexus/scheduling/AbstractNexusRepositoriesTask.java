@@ -26,6 +26,8 @@ import org.sonatype.nexus.proxy.NoSuchResourceStoreException;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.scheduling.RepositoryTaskExecutor.RepositoryWork;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.scheduling.DefaultScheduledTask;
 import org.sonatype.scheduling.ScheduledTask;
 import org.sonatype.scheduling.SchedulerTask;
@@ -33,11 +35,25 @@ import org.sonatype.scheduling.SchedulerTask;
 public abstract class AbstractNexusRepositoriesTask<T>
     extends AbstractNexusTask<T>
 {
+    /**
+     * Task parameter to execute the per-repository work of task in parallel, when task is run against multiple
+     * repositories. Defaults to the value of system property with same name prefixed by this class name.
+     * 
+     * @since 2.4
+     */
+    public static final String PARALLEL_KEY = "parallel";
+
+    private static final boolean DEFAULT_PARALLEL = SystemPropertiesHelper.getBoolean(
+        AbstractNexusRepositoriesTask.class.getName() + "." + PARALLEL_KEY, false );
+
     @Requirement
     private PlexusContainer plexusContainer;
     
     @Requirement
     private RepositoryRegistry repositoryRegistry;
+
+    @Requirement
+    private RepositoryTaskExecutor repositoryTaskExecutor;
     
     @Deprecated
     public static String getIdFromPrefixedString( String prefix, String prefixedString )
@@ -80,6 +96,47 @@ public abstract class AbstractNexusRepositoriesTask<T>
         }
     }
 
+    /**
+     * Returns {@code true} if the per-repository work of this task should be executed in parallel.
+     * 
+     * @since 2.4
+     */
+    public boolean isParallel()
+    {
+        final String parallel = getParameters().get( PARALLEL_KEY );
+        if ( StringUtils.isEmpty( parallel ) )
+        {
+            return DEFAULT_PARALLEL;
+        }
+        return Boolean.parseBoolean( parallel );
+    }
+
+    /**
+     * @since 2.4
+     */
+    public void setParallel( boolean parallel )
+    {
+        getParameters().put( PARALLEL_KEY, Boolean.toString( parallel ) );
+    }
+
+    /**
+     * Executes the work with all the passed in repositories, in parallel if {@link #isParallel()}, reporting progress
+     * and honoring cancellation of this task.
+     * 
+     * @param name the name of the work, used in progress messages.
+     * @param repositories the repositories to execute the work with.
+     * @param work the work.
+     * @return the results of work keyed by repository ID, in order of repositories.
+     * @since 2.4
+     */
+    protected <R> Map<String, R> executeOnRepositories( final String name,
+                                                        final List<? extends Repository> repositories,
+                                                        final RepositoryWork<R> work )
+        throws Exception
+    {
+        return repositoryTaskExecutor.execute( name, repositories, isParallel(), work );
+    }
+
     @Deprecated
     public String getRepositoryGroupId()
     {
@@ -0,0 +1,396 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.scheduling;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.nexus.util.task.CancelableRunnableSupport;
+import org.sonatype.nexus.util.task.LoggingProgressListener;
+import org.sonatype.scheduling.ProgressListener;
+import org.sonatype.scheduling.TaskUtil;
+
+/**
+ * Default {@link RepositoryTaskExecutor}. Repositories are assigned to storage volumes by the parent directory of
+ * their local storage: repositories using the default storage location share one volume, while repositories relocated
+ * to other directories (mounts) get a volume of their own. Every volume has a pool of bounded size, shared by all
+ * tasks, so a volume is never hit by more than that many repository walks at once, while separate volumes are walked
+ * in parallel.
+ * 
+ * @since 2.4
+ */
+@Named
+@Singleton
+public class DefaultRepositoryTaskExecutor
+    extends AbstractLoggingComponent
+    implements RepositoryTaskExecutor, Disposable
+{
+    private static final String PROPERTY_PREFIX = "org.sonatype.nexus.scheduling.DefaultRepositoryTaskExecutor.";
+
+    private static final String DEFAULT_VOLUME = "default";
+
+    private static final long WAIT_MILLIS = 500L;
+
+    private final int threadsPerVolume;
+
+    private final ConcurrentMap<String, ThreadPoolExecutor> volumeExecutors;
+
+    public DefaultRepositoryTaskExecutor()
+    {
+        this( SystemPropertiesHelper.getInteger( PROPERTY_PREFIX + "threadsPerVolume", 2 ) );
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param threadsPerVolume the count of repositories per volume that might be processed concurrently.
+     */
+    public DefaultRepositoryTaskExecutor( final int threadsPerVolume )
+    {
+        checkArgument( threadsPerVolume > 0, "Count of threads per volume must be positive!" );
+        this.threadsPerVolume = threadsPerVolume;
+        this.volumeExecutors = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+    }
+
+    @Override
+    public void dispose()
+    {
+        for ( ThreadPoolExecutor executor : volumeExecutors.values() )
+        {
+            executor.shutdownNow();
+        }
+        volumeExecutors.clear();
+    }
+
+    @Override
+    public <R> Map<String, R> execute( final String name, final List<? extends Repository> repositories,
+                                       final boolean parallel, final RepositoryWork<R> work )
+        throws Exception
+    {
+        checkNotNull( repositories );
+        checkNotNull( work );
+        final ProgressListener taskProgress = TaskUtil.getCurrentProgressListener();
+        taskProgress.beginTask( name, repositories.size() );
+        try
+        {
+            if ( parallel && repositories.size() > 1 )
+            {
+                return executeParallel( name, repositories, work, taskProgress );
+            }
+            else
+            {
+                return executeSequential( name, repositories, work, taskProgress );
+            }
+        }
+        finally
+        {
+            taskProgress.endTask( "Done" );
+        }
+    }
+
+    // ==
+
+    protected <R> Map<String, R> executeSequential( final String name, final List<? extends Repository> repositories,
+                                                    final RepositoryWork<R> work, final ProgressListener taskProgress )
+        throws Exception
+    {
+        final Map<String, R> results = new LinkedHashMap<String, R>();
+        for ( Repository repository : repositories )
+        {
+            TaskUtil.checkInterruption();
+            results.put( repository.getId(), work.run( repository ) );
+            taskProgress.working( RepositoryStringUtils.getFormattedMessage( name + " on %s done", repository ), 1 );
+        }
+        return results;
+    }
+
+    protected <R> Map<String, R> executeParallel( final String name, final List<? extends Repository> repositories,
+                                                  final RepositoryWork<R> work, final ProgressListener taskProgress )
+        throws Exception
+    {
+        final Subject subject = ThreadContext.getSubject();
+        final List<RepositoryJob<R>> jobs = new ArrayList<RepositoryJob<R>>( repositories.size() );
+        for ( Repository repository : repositories )
+        {
+            final RepositoryJob<R> job = new RepositoryJob<R>( name, repository, work, taskProgress, subject );
+            job.future = getVolumeExecutor( getVolume( repository ) ).submit( job );
+            jobs.add( job );
+        }
+
+        try
+        {
+            for ( RepositoryJob<R> job : jobs )
+            {
+                await( job, jobs, taskProgress );
+                taskProgress.working(
+                    RepositoryStringUtils.getFormattedMessage( name + " on %s " + job.getState(), job.repository ), 1 );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            cancel( jobs );
+            throw e;
+        }
+
+        // aggregate
+        final Map<String, R> results = new LinkedHashMap<String, R>();
+        Exception failure = null;
+        for ( RepositoryJob<R> job : jobs )
+        {
+            if ( job.failure != null )
+            {
+                if ( failure == null )
+                {
+                    failure = job.failure;
+                }
+                else
+                {
+                    getLogger().warn(
+                        RepositoryStringUtils.getFormattedMessage( name + " on %s failed", job.repository ),
+                        job.failure );
+                }
+            }
+            else if ( job.done )
+            {
+                results.put( job.repository.getId(), job.result );
+            }
+        }
+        // canceled tasks bail out with TaskInterruptedException, as sequential execution would do
+        TaskUtil.checkInterruption();
+        if ( failure != null )
+        {
+            throw failure;
+        }
+        return results;
+    }
+
+    protected void await( final RepositoryJob<?> job, final List<? extends RepositoryJob<?>> jobs,
+                          final ProgressListener taskProgress )
+        throws InterruptedException
+    {
+        while ( true )
+        {
+            if ( taskProgress.isCanceled() )
+            {
+                cancel( jobs );
+            }
+            try
+            {
+                job.future.get( WAIT_MILLIS, TimeUnit.MILLISECONDS );
+                return;
+            }
+            catch ( TimeoutException e )
+            {
+                // check cancellation and wait again
+            }
+            catch ( CancellationException e )
+            {
+                return;
+            }
+            catch ( ExecutionException e )
+            {
+                // job catches all exceptions, should not happen
+                job.failure = e;
+                return;
+            }
+        }
+    }
+
+    protected void cancel( final List<? extends RepositoryJob<?>> jobs )
+    {
+        for ( RepositoryJob<?> job : jobs )
+        {
+            if ( !job.isCanceled() )
+            {
+                job.cancel();
+                // jobs still waiting in pool queue will not even start
+                job.future.cancel( false );
+            }
+        }
+    }
+
+    protected ThreadPoolExecutor getVolumeExecutor( final String volume )
+    {
+        ThreadPoolExecutor executor = volumeExecutors.get( volume );
+        if ( executor == null )
+        {
+            final ThreadPoolExecutor newExecutor =
+                new ThreadPoolExecutor( threadsPerVolume, threadsPerVolume, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new NexusThreadFactory( "nxrte", "Repository Task Executor" ) );
+            newExecutor.allowCoreThreadTimeOut( true );
+            executor = volumeExecutors.putIfAbsent( volume, newExecutor );
+            if ( executor == null )
+            {
+                getLogger().debug( "Created executor for storage volume {}", volume );
+                executor = newExecutor;
+            }
+            else
+            {
+                newExecutor.shutdown();
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the key of storage volume the repository local storage resides on.
+     */
+    protected String getVolume( final Repository repository )
+    {
+        try
+        {
+            final String localUrl = repository.getLocalUrl();
+            if ( localUrl != null )
+            {
+                final File baseDir =
+                    localUrl.startsWith( "file:" ) ? new File( new URL( localUrl ).toURI() ) : new File( localUrl );
+                final File parent = baseDir.getCanonicalFile().getParentFile();
+                if ( parent != null )
+                {
+                    return parent.getPath();
+                }
+            }
+        }
+        catch ( Exception e )
+        {
+            getLogger().debug(
+                RepositoryStringUtils.getFormattedMessage( "Could not determine storage volume of %s", repository ),
+                e );
+        }
+        return DEFAULT_VOLUME;
+    }
+
+    // ==
+
+    /**
+     * Task's work with one repository, reporting it's own progress. Cancellation of the task cancels the job, and the
+     * task's progress listener is made current on job thread too, so work checking
+     * {@link TaskUtil#checkInterruption()} notices the cancellation as it would when running on task thread.
+     */
+    protected static class RepositoryJob<R>
+        extends CancelableRunnableSupport
+    {
+        private final String workName;
+
+        private final Repository repository;
+
+        private final RepositoryWork<R> work;
+
+        private final ProgressListener taskProgress;
+
+        private final Subject subject;
+
+        private volatile Future<?> future;
+
+        private volatile boolean done;
+
+        private volatile R result;
+
+        private volatile Exception failure;
+
+        protected RepositoryJob( final String workName, final Repository repository, final RepositoryWork<R> work,
+                                 final ProgressListener taskProgress, final Subject subject )
+        {
+            super( new LoggingProgressListener( RepositoryJob.class ), repository.getId() + " " + workName );
+            this.workName = workName;
+            this.repository = repository;
+            this.work = work;
+            this.taskProgress = taskProgress;
+            this.subject = subject;
+        }
+
+        @Override
+        protected void doRun()
+        {
+            CurrentTaskProgress.set( taskProgress );
+            if ( subject != null )
+            {
+                ThreadContext.bind( subject );
+            }
+            try
+            {
+                getProgressListener().beginTask(
+                    RepositoryStringUtils.getFormattedMessage( workName + " on %s", repository ), 1 );
+                result = work.run( repository );
+                done = true;
+                getProgressListener().endTask( "Done" );
+            }
+            catch ( Exception e )
+            {
+                failure = e;
+                getProgressListener().endTask( "Failed: " + e );
+            }
+            finally
+            {
+                ThreadContext.unbindSubject();
+                CurrentTaskProgress.set( null );
+            }
+        }
+
+        protected String getState()
+        {
+            if ( done )
+            {
+                return "done";
+            }
+            else if ( isCanceled() )
+            {
+                return "canceled";
+            }
+            else
+            {
+                return "failed";
+            }
+        }
+    }
+
+    /**
+     * Sets the current {@link ProgressListener} of {@link TaskUtil} on worker threads.
+     */
+    private static class CurrentTaskProgress
+        extends TaskUtil
+    {
+        private static void set( final ProgressListener progressListener )
+        {
+            setCurrent( progressListener );
+        }
+    }
+}
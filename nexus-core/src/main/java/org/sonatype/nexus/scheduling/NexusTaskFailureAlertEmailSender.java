@@ -18,6 +18,7 @@ import org.sonatype.nexus.email.NexusPostOffice;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.AsynchronousEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.scheduling.events.NexusTaskEventStoppedFailed;
 import org.sonatype.plexus.appevents.Event;
 
@@ -26,6 +27,7 @@ import org.sonatype.plexus.appevents.Event;
  * 
  * @author Alin Dreghiciu
  */
+@HandlesEvents( NexusTaskEventStoppedFailed.class )
 @Component( role = EventInspector.class, hint = "nexusTaskFailureAlertEmailSender" )
 public class NexusTaskFailureAlertEmailSender
     extends AbstractEventInspector
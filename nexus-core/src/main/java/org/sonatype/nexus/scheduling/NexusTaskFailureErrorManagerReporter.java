@@ -19,6 +19,7 @@ import org.sonatype.nexus.error.reporting.ErrorReportingManager;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.AsynchronousEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.scheduling.events.NexusTaskEventStoppedFailed;
 import org.sonatype.plexus.appevents.Event;
 
@@ -27,6 +28,7 @@ import org.sonatype.plexus.appevents.Event;
  * 
  * @author cstamas
  */
+@HandlesEvents( NexusTaskEventStoppedFailed.class )
 @Component( role = EventInspector.class, hint = "NexusTaskFailureErrorManagerReporter" )
 public class NexusTaskFailureErrorManagerReporter
     extends AbstractEventInspector
@@ -0,0 +1,52 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.scheduling;
+
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.repository.Repository;
+
+/**
+ * Executes the per-repository work of repository tasks, either sequentially on the task thread, or fanned out in
+ * parallel on bounded pools, one pool per storage volume. Must be invoked from the thread of a running task, as it
+ * reports the progress to, and honors cancellation of the current task.
+ * 
+ * @since 2.4
+ */
+public interface RepositoryTaskExecutor
+{
+    /**
+     * The work to be done with one repository.
+     */
+    interface RepositoryWork<R>
+    {
+        R run( Repository repository )
+            throws Exception;
+    }
+
+    /**
+     * Executes the work with every repository. When executing in parallel, work with all repositories is finished
+     * (or canceled) before returning or throwing.
+     * 
+     * @param name the name of the work, used in progress messages.
+     * @param repositories the repositories to execute the work with.
+     * @param parallel {@code true} to execute the work in parallel.
+     * @param work the work.
+     * @return the results of work keyed by repository ID, in order of repositories.
+     * @throws Exception the 1st failure of work, if any.
+     */
+    <R> Map<String, R> execute( String name, List<? extends Repository> repositories, boolean parallel,
+                                RepositoryWork<R> work )
+        throws Exception;
+}
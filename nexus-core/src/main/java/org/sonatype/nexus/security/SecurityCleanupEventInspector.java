@@ -23,6 +23,7 @@ import org.sonatype.nexus.jsecurity.realms.TargetPrivilegeRepositoryPropertyDesc
 import org.sonatype.nexus.jsecurity.realms.TargetPrivilegeRepositoryTargetPropertyDescriptor;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
 import org.sonatype.nexus.proxy.events.TargetRegistryEventRemove;
 import org.sonatype.plexus.appevents.Event;
@@ -33,6 +34,7 @@ import org.sonatype.security.authorization.Privilege;
 import org.sonatype.security.authorization.xml.SecurityXmlAuthorizationManager;
 import org.sonatype.security.realms.tools.ConfigurationManager;
 
+@HandlesEvents( { RepositoryRegistryEventRemove.class, TargetRegistryEventRemove.class } )
 @Component( role = EventInspector.class, hint = "SecurityCleanupEventInspector" )
 public class SecurityCleanupEventInspector
     extends AbstractEventInspector
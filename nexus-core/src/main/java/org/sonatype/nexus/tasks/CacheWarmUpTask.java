@@ -0,0 +1,195 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+import org.sonatype.nexus.configuration.application.ApplicationConfiguration;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.warmup.CacheWarmUp;
+import org.sonatype.nexus.proxy.warmup.CacheWarmer;
+import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesTask;
+import org.sonatype.nexus.tasks.descriptors.CacheWarmUpTaskDescriptor;
+import org.sonatype.scheduling.ProgressListener;
+import org.sonatype.scheduling.SchedulerTask;
+import org.sonatype.scheduling.TaskInterruptedException;
+import org.sonatype.scheduling.TaskUtil;
+
+/**
+ * Warms up the caches of a proxy repository or group, fetching the listed items ahead of demand. Progress is reported
+ * as task progress, and canceling the task cancels the warm-up.
+ * 
+ * @since 2.4
+ */
+@Component( role = SchedulerTask.class, hint = CacheWarmUpTaskDescriptor.ID, instantiationStrategy = "per-lookup" )
+public class CacheWarmUpTask
+    extends AbstractNexusRepositoriesTask<Object>
+{
+    /**
+     * System event action: warm up cache
+     */
+    public static final String ACTION = "WARM_UP_CACHE";
+
+    /**
+     * Directory under the Nexus work directory that entries files are resolved against.
+     */
+    public static final String WARM_UP_DIR = "warmup";
+
+    @Requirement
+    private CacheWarmer cacheWarmer;
+
+    @Requirement
+    private ApplicationConfiguration applicationConfiguration;
+
+    @Override
+    protected String getRepositoryFieldId()
+    {
+        return CacheWarmUpTaskDescriptor.REPO_OR_GROUP_FIELD_ID;
+    }
+
+    public String getEntries()
+    {
+        return getParameters().get( CacheWarmUpTaskDescriptor.ENTRIES_FIELD_ID );
+    }
+
+    public void setEntries( final String entries )
+    {
+        getParameters().put( CacheWarmUpTaskDescriptor.ENTRIES_FIELD_ID, entries );
+    }
+
+    public String getEntriesFile()
+    {
+        return getParameters().get( CacheWarmUpTaskDescriptor.ENTRIES_FILE_FIELD_ID );
+    }
+
+    public void setEntriesFile( final String entriesFile )
+    {
+        getParameters().put( CacheWarmUpTaskDescriptor.ENTRIES_FILE_FIELD_ID, entriesFile );
+    }
+
+    @Override
+    protected Object doRun()
+        throws Exception
+    {
+        if ( getRepositoryId() == null )
+        {
+            throw new IllegalArgumentException( "Cache warm-up needs a proxy repository or group!" );
+        }
+        final Repository repository = getRepositoryRegistry().getRepository( getRepositoryId() );
+
+        final StringBuilder entries = new StringBuilder();
+        if ( !StringUtils.isBlank( getEntries() ) )
+        {
+            entries.append( getEntries() ).append( '\n' );
+        }
+        if ( !StringUtils.isBlank( getEntriesFile() ) )
+        {
+            entries.append( FileUtils.fileRead( resolveEntriesFile( getEntriesFile() ), "UTF-8" ) );
+        }
+        final List<String> paths = cacheWarmer.resolvePaths( repository, entries.toString() );
+
+        final ProgressListener progress = TaskUtil.getCurrentProgressListener();
+        progress.beginTask( "Warming up caches of " + repository.getId(), paths.size() );
+        final CacheWarmUp warmUp = cacheWarmer.warmUp( repository, paths );
+        try
+        {
+            int reported = 0;
+            while ( !warmUp.await( 1, TimeUnit.SECONDS ) )
+            {
+                TaskUtil.checkInterruption();
+                final int processed = warmUp.getProcessed();
+                progress.working( processed + " of " + paths.size() + " items processed", processed - reported );
+                reported = processed;
+            }
+        }
+        catch ( TaskInterruptedException e )
+        {
+            warmUp.cancel();
+            throw e;
+        }
+        catch ( InterruptedException e )
+        {
+            warmUp.cancel();
+            throw e;
+        }
+        finally
+        {
+            progress.endTask( warmUp.toString() );
+        }
+
+        if ( warmUp.getFailed() > 0 )
+        {
+            final StringBuilder sb = new StringBuilder();
+            for ( Map.Entry<String, String> failure : warmUp.getFailures().entrySet() )
+            {
+                sb.append( "\n  " ).append( failure.getKey() ).append( ": " ).append( failure.getValue() );
+            }
+            getLogger().warn(
+                "Cache warm-up of " + repository.getId() + " failed to fetch " + warmUp.getFailed() + " items:" + sb );
+        }
+
+        return null;
+    }
+
+    /**
+     * Resolves the entries file against the {@link #WARM_UP_DIR} directory of the Nexus work directory, refusing
+     * absolute paths and paths that would escape it.
+     */
+    protected File resolveEntriesFile( final String entriesFile )
+        throws IOException
+    {
+        final String path = entriesFile.trim().replace( '\\', '/' );
+        if ( new File( path ).isAbsolute() || path.startsWith( "/" ) )
+        {
+            throw new IllegalArgumentException( "Items file must be relative to the \"" + WARM_UP_DIR
+                + "\" work directory, absolute path not allowed: " + entriesFile );
+        }
+        for ( String segment : path.split( "/" ) )
+        {
+            if ( "..".equals( segment ) )
+            {
+                throw new IllegalArgumentException( "Items file must be relative to the \"" + WARM_UP_DIR
+                    + "\" work directory, \"..\" not allowed: " + entriesFile );
+            }
+        }
+
+        final File baseDir = applicationConfiguration.getWorkingDirectory( WARM_UP_DIR ).getCanonicalFile();
+        final File file = new File( baseDir, path ).getCanonicalFile();
+        if ( !file.getPath().startsWith( baseDir.getPath() + File.separator ) )
+        {
+            throw new IllegalArgumentException( "Items file must be within the \"" + WARM_UP_DIR
+                + "\" work directory: " + entriesFile );
+        }
+        return file;
+    }
+
+    @Override
+    protected String getAction()
+    {
+        return ACTION;
+    }
+
+    @Override
+    protected String getMessage()
+    {
+        return "Warming up caches of repository " + getRepositoryName();
+    }
+}
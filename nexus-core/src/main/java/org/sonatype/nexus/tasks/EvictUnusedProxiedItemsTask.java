@@ -14,11 +14,13 @@ package org.sonatype.nexus.tasks;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesTask;
+import org.sonatype.nexus.scheduling.RepositoryTaskExecutor.RepositoryWork;
 import org.sonatype.nexus.tasks.descriptors.EvictUnusedItemsTaskDescriptor;
 import org.sonatype.scheduling.SchedulerTask;
 
@@ -57,21 +59,31 @@ public class EvictUnusedProxiedItemsTask
     protected Collection<String> doRun()
         throws Exception
     {
-        ResourceStoreRequest req = new ResourceStoreRequest( "/" );
-
-        long olderThan = System.currentTimeMillis() - ( getEvictOlderCacheItemsThen() * A_DAY );
+        final long olderThan = System.currentTimeMillis() - ( getEvictOlderCacheItemsThen() * A_DAY );
 
         if ( getRepositoryId() != null )
         {
-            return getRepositoryRegistry().getRepository( getRepositoryId() ).evictUnusedItems( req, olderThan );
+            return getRepositoryRegistry().getRepository( getRepositoryId() ).evictUnusedItems(
+                new ResourceStoreRequest( "/" ), olderThan );
         }
         else
         {
             ArrayList<String> result = new ArrayList<String>();
 
-            for ( Repository repository : getRepositoryRegistry().getRepositories() )
+            final Map<String, Collection<String>> evicted =
+                executeOnRepositories( "Evicting unused proxied items", getRepositoryRegistry().getRepositories(),
+                    new RepositoryWork<Collection<String>>()
+                    {
+                        @Override
+                        public Collection<String> run( final Repository repository )
+                        {
+                            return repository.evictUnusedItems( new ResourceStoreRequest( "/" ), olderThan );
+                        }
+                    } );
+
+            for ( Collection<String> paths : evicted.values() )
             {
-                result.addAll( repository.evictUnusedItems( req, olderThan ) );
+                result.addAll( paths );
             }
 
             return result;
@@ -12,10 +12,14 @@
  */
 package org.sonatype.nexus.tasks;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.codehaus.plexus.component.annotations.Component;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesPathAwareTask;
+import org.sonatype.nexus.scheduling.RepositoryTaskExecutor.RepositoryWork;
 import org.sonatype.nexus.tasks.descriptors.ExpireCacheTaskDescriptor;
 import org.sonatype.scheduling.SchedulerTask;
 
@@ -49,21 +53,33 @@ public class ExpireCacheTask
     public Object doRun()
         throws Exception
     {
-        ResourceStoreRequest req = new ResourceStoreRequest( getResourceStorePath() );
+        final String path = getResourceStorePath();
 
         if ( getRepositoryId() != null )
         {
-            getRepositoryRegistry().getRepository( getRepositoryId() ).expireCaches( req );
+            getRepositoryRegistry().getRepository( getRepositoryId() ).expireCaches( new ResourceStoreRequest( path ) );
         }
         else
         {
+            final List<Repository> repositories = new ArrayList<Repository>();
             for ( Repository repository : getRepositoryRegistry().getRepositories() )
             {
                 if ( repository.getLocalStatus().shouldServiceRequest() )
                 {
-                    repository.expireCaches( req );
+                    repositories.add( repository );
                 }
             }
+
+            executeOnRepositories( "Expiring caches", repositories, new RepositoryWork<Object>()
+            {
+                @Override
+                public Object run( final Repository repository )
+                {
+                    // requests are not thread safe, one per repository
+                    repository.expireCaches( new ResourceStoreRequest( path ) );
+                    return null;
+                }
+            } );
         }
 
         return null;
@@ -20,6 +20,7 @@ import org.codehaus.plexus.component.annotations.Component;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesPathAwareTask;
+import org.sonatype.nexus.scheduling.RepositoryTaskExecutor.RepositoryWork;
 import org.sonatype.nexus.tasks.descriptors.RebuildAttributesTaskDescriptor;
 import org.sonatype.scheduling.SchedulerTask;
 
@@ -53,22 +54,28 @@ public class RebuildAttributesTask
     public Object doRun()
         throws Exception
     {
-        ResourceStoreRequest req = new ResourceStoreRequest( getResourceStorePath() );
+        final String path = getResourceStorePath();
 
         Map<String, String> initialData = new HashMap<String, String>();
 
         if ( getRepositoryId() != null )
         {
-            getRepositoryRegistry().getRepository( getRepositoryId() ).recreateAttributes( req, initialData );
+            getRepositoryRegistry().getRepository( getRepositoryId() ).recreateAttributes(
+                new ResourceStoreRequest( path ), initialData );
         }
         else
         {
             List<Repository> reposes = getRepositoryRegistry().getRepositories();
 
-            for ( Repository repo : reposes )
+            executeOnRepositories( "Rebuilding attributes", reposes, new RepositoryWork<Object>()
             {
-                repo.recreateAttributes( req, null );
-            }
+                @Override
+                public Object run( final Repository repository )
+                {
+                    repository.recreateAttributes( new ResourceStoreRequest( path ), null );
+                    return null;
+                }
+            } );
         }
 
         return null;
@@ -0,0 +1,79 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.tasks.descriptors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.component.annotations.Component;
+import org.sonatype.nexus.formfields.FormField;
+import org.sonatype.nexus.formfields.RepoOrGroupComboFormField;
+import org.sonatype.nexus.formfields.StringTextFormField;
+import org.sonatype.nexus.formfields.TextAreaFormField;
+
+/**
+ * Descriptor of {@link org.sonatype.nexus.tasks.CacheWarmUpTask}.
+ * 
+ * @since 2.4
+ */
+@Component( role = ScheduledTaskDescriptor.class, hint = "CacheWarmUp", description = "Warm Up Repository Caches" )
+public class CacheWarmUpTaskDescriptor
+    extends AbstractScheduledTaskDescriptor
+{
+    public static final String ID = "CacheWarmUpTask";
+
+    public static final String REPO_OR_GROUP_FIELD_ID = "repositoryId";
+
+    public static final String ENTRIES_FIELD_ID = "entries";
+
+    public static final String ENTRIES_FILE_FIELD_ID = "entriesFile";
+
+    private final RepoOrGroupComboFormField repoField = new RepoOrGroupComboFormField( REPO_OR_GROUP_FIELD_ID,
+        RepoOrGroupComboFormField.DEFAULT_LABEL, "Select the proxy repository or group to warm up the caches of.",
+        FormField.MANDATORY );
+
+    private final TextAreaFormField entriesField =
+        new TextAreaFormField(
+                               ENTRIES_FIELD_ID,
+                               "Items",
+                               "Enter the items to fetch, one per line: repository paths (ie. \"/org/apache/maven/maven-core/3.0.4/maven-core-3.0.4.jar\"), coordinates (ie. \"org.apache.maven:maven-core:3.0.4\") or the output of \"mvn dependency:tree\".",
+                               FormField.OPTIONAL );
+
+    private final StringTextFormField entriesFileField =
+        new StringTextFormField(
+                                 ENTRIES_FILE_FIELD_ID,
+                                 "Items file",
+                                 "Enter the path of a file containing the items to fetch, in same format as above. The path is relative to the \"warmup\" directory of the Nexus work directory (ie. \"sonatype-work/nexus/warmup\"), absolute paths and \"..\" are not allowed.",
+                                 FormField.OPTIONAL );
+
+    public String getId()
+    {
+        return ID;
+    }
+
+    public String getName()
+    {
+        return "Warm Up Repository Caches";
+    }
+
+    public List<FormField> formFields()
+    {
+        List<FormField> fields = new ArrayList<FormField>();
+
+        fields.add( repoField );
+        fields.add( entriesField );
+        fields.add( entriesFileField );
+
+        return fields;
+    }
+}
@@ -17,6 +17,7 @@ import org.codehaus.plexus.component.annotations.Requirement;
 import org.sonatype.nexus.plugins.events.PluginActivatedEvent;
 import org.sonatype.nexus.proxy.events.AbstractEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.plexus.appevents.Event;
 
 /**
@@ -24,6 +25,7 @@ import org.sonatype.plexus.appevents.Event;
  * 
  * @author cstamas
  */
+@HandlesEvents( PluginActivatedEvent.class )
 @Component( role = EventInspector.class, hint = "PluginActivatedTemplateEventInspector" )
 public class PluginActivatedTemplateEventInspector
     extends AbstractEventInspector
@@ -0,0 +1,118 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class UpstreamBulkheadTest
+    extends TestSupport
+{
+    @Test
+    public void requestsOverLimitFailFast()
+        throws Exception
+    {
+        final UpstreamBulkhead bulkhead = new UpstreamBulkhead( "http://repo.example.com:80", 1, 2, 0, 1000 );
+        bulkhead.acquire( 100 );
+        bulkhead.acquire( 100 );
+        try
+        {
+            bulkhead.acquire( 100 );
+            fail( "Bulkhead should be saturated" );
+        }
+        catch ( UpstreamSaturatedException e )
+        {
+            assertThat( e.getHost(), equalTo( "http://repo.example.com:80" ) );
+        }
+        assertThat( bulkhead.getRejectedCount(), equalTo( 1L ) );
+
+        bulkhead.release();
+        bulkhead.acquire( 100 );
+        assertThat( bulkhead.getInFlight(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void queuedRequestTimesOut()
+        throws Exception
+    {
+        final UpstreamBulkhead bulkhead = new UpstreamBulkhead( "http://repo.example.com:80", 1, 1, 1, 1000 );
+        bulkhead.acquire( 100 );
+        final long started = System.currentTimeMillis();
+        try
+        {
+            bulkhead.acquire( 100 );
+            fail( "Bulkhead should be saturated" );
+        }
+        catch ( UpstreamSaturatedException e )
+        {
+            // good
+        }
+        assertThat( System.currentTimeMillis() - started >= 100, equalTo( true ) );
+        assertThat( bulkhead.getQueued(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void queuedRequestGetsReleasedPermit()
+        throws Exception
+    {
+        final UpstreamBulkhead bulkhead = new UpstreamBulkhead( "http://repo.example.com:80", 1, 1, 1, 1000 );
+        bulkhead.acquire( 100 );
+        final Thread releaser = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep( 50 );
+                }
+                catch ( InterruptedException e )
+                {
+                    // nothing
+                }
+                bulkhead.release();
+            }
+        };
+        releaser.start();
+        bulkhead.acquire( 5000 );
+        releaser.join();
+        assertThat( bulkhead.getInFlight(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void limitIsAdditivelyIncreasedAndMultiplicativelyDecreased()
+    {
+        final UpstreamBulkhead bulkhead = new UpstreamBulkhead( "http://repo.example.com:80", 2, 16, 0, 1000 );
+        assertThat( bulkhead.getLimit(), equalTo( 16 ) );
+
+        bulkhead.onFailure();
+        assertThat( bulkhead.getLimit(), equalTo( 8 ) );
+        // same congestion episode, not decreased again
+        bulkhead.onSuccess( 5000 );
+        bulkhead.onFailure();
+        assertThat( bulkhead.getLimit(), equalTo( 8 ) );
+        assertThat( bulkhead.getSlowCount(), equalTo( 1L ) );
+        assertThat( bulkhead.getFailureCount(), equalTo( 2L ) );
+
+        // roughly one per "limit" fast successes
+        for ( int i = 0; i < 9; i++ )
+        {
+            bulkhead.onSuccess( 10 );
+        }
+        assertThat( bulkhead.getLimit(), equalTo( 9 ) );
+    }
+}
@@ -13,16 +13,30 @@
 package org.sonatype.nexus.events;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
+import org.sonatype.nexus.events.EventInspectorMailbox.OverflowPolicy;
+import org.sonatype.nexus.plugins.NexusPluginManager;
+import org.sonatype.nexus.plugins.events.PluginActivatedEvent;
+import org.sonatype.nexus.proxy.events.AsynchronousEventInspector;
 import org.sonatype.nexus.proxy.events.AsynchronousEventInspectorWrapper;
+import org.sonatype.nexus.proxy.events.BatchingEventInspector;
 import org.sonatype.nexus.proxy.events.EventInspector;
+import org.sonatype.nexus.proxy.events.HandlesEvents;
 import org.sonatype.nexus.proxy.events.NexusStartedEvent;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
 import org.sonatype.plexus.appevents.Event;
 
 public class DefaultEventInspectorHostTest
@@ -55,8 +69,229 @@ public class DefaultEventInspectorHostTest
         assertThat( asyncEI.getInspectInvoked() - syncEI.getInspectInvoked(), greaterThanOrEqualTo( 100L ) );
     }
 
+    @Test
+    public void testAsyncOrderIsKeptPerInspector()
+        throws Exception
+    {
+        // wrapper is not batching, events are delivered one by one
+        final RecordingEventInspector asyncEI = new RecordingEventInspector();
+        final HashMap<String, EventInspector> map = new HashMap<String, EventInspector>( 1 );
+        map.put( "async", new AsynchronousEventInspectorWrapper( asyncEI ) );
+        final DefaultEventInspectorHost host = new DefaultEventInspectorHost( map, 4, 10, OverflowPolicy.BLOCK );
+
+        final List<Event<?>> fired = new ArrayList<Event<?>>();
+        for ( int i = 0; i < 200; i++ )
+        {
+            final Event<?> evt = new NexusStartedEvent( this );
+            fired.add( evt );
+            host.onEvent( evt );
+        }
+        awaitCalmPeriod( host );
+
+        assertThat( asyncEI.getInspected(), equalTo( fired ) );
+        host.shutdown();
+    }
+
+    @Test
+    public void testBatchDelivery()
+        throws Exception
+    {
+        final RecordingEventInspector batchingEI = new RecordingEventInspector();
+        final HashMap<String, EventInspector> map = new HashMap<String, EventInspector>( 1 );
+        map.put( "batching", batchingEI );
+        final DefaultEventInspectorHost host = new DefaultEventInspectorHost( map, 1, 1000, OverflowPolicy.BLOCK );
+
+        // block the worker with 1st event, so the rest piles up
+        batchingEI.block();
+        final List<Event<?>> fired = new ArrayList<Event<?>>();
+        for ( int i = 0; i < 50; i++ )
+        {
+            final Event<?> evt = new NexusStartedEvent( this );
+            fired.add( evt );
+            host.onEvent( evt );
+        }
+        batchingEI.unblock();
+        awaitCalmPeriod( host );
+
+        assertThat( batchingEI.getInspected(), equalTo( fired ) );
+        assertThat( batchingEI.getBatches(), lessThan( 50 ) );
+        host.shutdown();
+    }
+
+    @Test
+    public void testDropOldestOverflow()
+        throws Exception
+    {
+        final RecordingEventInspector asyncEI = new RecordingEventInspector();
+        final HashMap<String, EventInspector> map = new HashMap<String, EventInspector>( 1 );
+        map.put( "async", asyncEI );
+        final DefaultEventInspectorHost host = new DefaultEventInspectorHost( map, 1, 2, OverflowPolicy.DROP_OLDEST );
+
+        asyncEI.block();
+        final Event<?> first = new NexusStartedEvent( this );
+        host.onEvent( first );
+        // wait for worker to take the 1st event out from mailbox
+        while ( host.getMailboxes()[0].getDepth() > 0 )
+        {
+            Thread.sleep( 10 );
+        }
+        final List<Event<?>> fired = new ArrayList<Event<?>>();
+        for ( int i = 0; i < 5; i++ )
+        {
+            final Event<?> evt = new NexusStartedEvent( this );
+            fired.add( evt );
+            host.onEvent( evt );
+        }
+        assertThat( host.getMailboxes()[0].getDepth(), equalTo( 2 ) );
+        asyncEI.unblock();
+        awaitCalmPeriod( host );
+
+        assertThat( asyncEI.getInspected(), contains( first, fired.get( 3 ), fired.get( 4 ) ) );
+        assertThat( host.getMailboxes()[0].getDropped(), equalTo( 3L ) );
+        host.shutdown();
+    }
+
+    @Test
+    public void testDeclaredEventClassesAreDispatchedOnly()
+        throws Exception
+    {
+        final StartedEventInspector declaredEI = new StartedEventInspector();
+        final HashMap<String, EventInspector> map = new HashMap<String, EventInspector>( 2 );
+        map.put( "declared", declaredEI );
+        map.put( "declared-async", new AsynchronousEventInspectorWrapper( new StartedEventInspector() ) );
+        final DefaultEventInspectorHost host = new DefaultEventInspectorHost( map );
+
+        final Event<?> started = new NexusStartedEvent( this );
+        host.onEvent( new NexusStoppedEvent( this ) );
+        host.onEvent( started );
+        host.onEvent( new NexusStoppedEvent( this ) );
+
+        // not even asked about events it did not declare
+        assertThat( declaredEI.getAccepted(), contains( started ) );
+        assertThat( host.getDispatchTable().getDispatch( NexusStoppedEvent.class ).isEmpty(), equalTo( true ) );
+        assertThat( host.getDispatchTable().getDispatch( NexusStartedEvent.class ).getSyncInspectors().length,
+            equalTo( 1 ) );
+        assertThat( host.getDispatchTable().getDispatch( NexusStartedEvent.class ).getAsyncInspectors().length,
+            equalTo( 1 ) );
+        host.shutdown();
+    }
+
+    @Test
+    public void testDispatchTableRebuiltOnPluginActivation()
+        throws Exception
+    {
+        final HashMap<String, EventInspector> map = new HashMap<String, EventInspector>( 2 );
+        map.put( "first", new StartedEventInspector() );
+        final DefaultEventInspectorHost host = new DefaultEventInspectorHost( map );
+        host.onEvent( new NexusStartedEvent( this ) );
+
+        // table is cached, new inspector is not seen yet
+        final StartedEventInspector lateEI = new StartedEventInspector();
+        map.put( "late", lateEI );
+        host.onEvent( new NexusStartedEvent( this ) );
+        assertThat( lateEI.getAccepted().size(), equalTo( 0 ) );
+
+        host.onEvent( new PluginActivatedEvent( mock( NexusPluginManager.class ), null ) );
+        final Event<?> started = new NexusStartedEvent( this );
+        host.onEvent( started );
+        assertThat( lateEI.getAccepted(), contains( started ) );
+        host.shutdown();
+    }
+
+    protected void awaitCalmPeriod( final DefaultEventInspectorHost host )
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10000L;
+        while ( !host.isCalmPeriod() && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+    }
+
     // ==
 
+    public static class RecordingEventInspector
+        implements EventInspector, AsynchronousEventInspector, BatchingEventInspector
+    {
+        private final List<Event<?>> inspected = Collections.synchronizedList( new ArrayList<Event<?>>() );
+
+        private volatile int batches;
+
+        private volatile CountDownLatch blocker = new CountDownLatch( 0 );
+
+        public void block()
+        {
+            blocker = new CountDownLatch( 1 );
+        }
+
+        public void unblock()
+        {
+            blocker.countDown();
+        }
+
+        public List<Event<?>> getInspected()
+        {
+            return new ArrayList<Event<?>>( inspected );
+        }
+
+        public int getBatches()
+        {
+            return batches;
+        }
+
+        @Override
+        public boolean accepts( Event<?> evt )
+        {
+            return true;
+        }
+
+        @Override
+        public void inspect( Event<?> evt )
+        {
+            inspect( Collections.<Event<?>> singletonList( evt ) );
+        }
+
+        @Override
+        public void inspect( List<Event<?>> evts )
+        {
+            batches++;
+            inspected.addAll( evts );
+            try
+            {
+                blocker.await();
+            }
+            catch ( InterruptedException e )
+            {
+                // nothing
+            }
+        }
+    }
+
+    @HandlesEvents( NexusStartedEvent.class )
+    public static class StartedEventInspector
+        implements EventInspector
+    {
+        private final List<Event<?>> accepted = Collections.synchronizedList( new ArrayList<Event<?>>() );
+
+        public List<Event<?>> getAccepted()
+        {
+            return new ArrayList<Event<?>>( accepted );
+        }
+
+        @Override
+        public boolean accepts( Event<?> evt )
+        {
+            accepted.add( evt );
+            return true;
+        }
+
+        @Override
+        public void inspect( Event<?> evt )
+        {
+            // nothing
+        }
+    }
+
     public static class InvocationTimestampEventInspector
         implements EventInspector
     {
@@ -0,0 +1,185 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.circuitbreaker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreaker.State;
+
+public class CircuitBreakerTest
+{
+    private long now;
+
+    private List<String> transitions;
+
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void prepare()
+    {
+        now = 1000L;
+        transitions = new ArrayList<String>();
+        // window 10, 4 calls minimum, 50% failures, 100ms is slow, 50% slow calls, open for 5s, 2 probes
+        circuitBreaker = new CircuitBreaker( "test", 10, 4, 50, 100L, 50, 5000L, 2 )
+        {
+            @Override
+            protected long now()
+            {
+                return now;
+            }
+        };
+        circuitBreaker.addListener( new CircuitBreaker.Listener()
+        {
+            @Override
+            public void onStateChanged( final CircuitBreaker circuitBreaker, final State oldState,
+                                        final State newState, final Throwable cause )
+            {
+                transitions.add( oldState + "->" + newState );
+            }
+        } );
+    }
+
+    @Test
+    public void opensOnFailureRate()
+    {
+        call( true, 10L );
+        call( false, 10L );
+        call( true, 10L );
+        assertThat( circuitBreaker.getState(), equalTo( State.CLOSED ) );
+        // 4th call reaches minimum calls with 50% failures
+        call( false, 10L );
+        assertThat( circuitBreaker.getState(), equalTo( State.OPEN ) );
+        assertThat( transitions, contains( "CLOSED->OPEN" ) );
+
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( false ) );
+        assertThat( circuitBreaker.getRejectedCalls(), equalTo( 1L ) );
+        assertThat( circuitBreaker.getOpenedCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void slidingWindowForgetsOldFailures()
+    {
+        for ( int i = 0; i < 3; i++ )
+        {
+            call( true, 10L );
+            call( true, 10L );
+            call( false, 10L );
+        }
+        call( true, 10L );
+        assertThat( circuitBreaker.getFailureRate(), equalTo( 30 ) );
+        for ( int i = 0; i < 10; i++ )
+        {
+            call( true, 10L );
+        }
+        assertThat( circuitBreaker.getFailureRate(), equalTo( 0 ) );
+        assertThat( circuitBreaker.getState(), equalTo( State.CLOSED ) );
+    }
+
+    @Test
+    public void opensOnSlowCallRate()
+    {
+        call( true, 500L );
+        call( true, 10L );
+        call( true, 500L );
+        call( true, 10L );
+        assertThat( circuitBreaker.getState(), equalTo( State.OPEN ) );
+        assertThat( circuitBreaker.getSlowCalls(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void halfOpenProbesClose()
+    {
+        open();
+
+        now += 4999L;
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( false ) );
+
+        // first request after open duration is a probe
+        now += 1L;
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( true ) );
+        assertThat( circuitBreaker.getState(), equalTo( State.HALF_OPEN ) );
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( true ) );
+        // only 2 probes at once
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( false ) );
+
+        circuitBreaker.onSuccess( 10L );
+        assertThat( circuitBreaker.getState(), equalTo( State.HALF_OPEN ) );
+        circuitBreaker.onSuccess( 10L );
+        assertThat( circuitBreaker.getState(), equalTo( State.CLOSED ) );
+        assertThat( transitions, contains( "CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED" ) );
+
+        // closed breaker starts with empty window
+        assertThat( circuitBreaker.getFailureRate(), equalTo( -1 ) );
+    }
+
+    @Test
+    public void halfOpenProbeFailureReopens()
+    {
+        open();
+        now += 5000L;
+
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( true ) );
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( true ) );
+        // ignored outcome releases the probe
+        circuitBreaker.onIgnored();
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( true ) );
+
+        circuitBreaker.onFailure( 10L, new IOException( "still down" ) );
+        assertThat( circuitBreaker.getState(), equalTo( State.OPEN ) );
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( false ) );
+        assertThat( transitions, contains( "CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN" ) );
+        assertThat( circuitBreaker.getOpenedCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void reset()
+    {
+        open();
+        circuitBreaker.reset();
+        assertThat( circuitBreaker.getState(), equalTo( State.CLOSED ) );
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( true ) );
+        assertThat( transitions, contains( "CLOSED->OPEN", "OPEN->CLOSED" ) );
+    }
+
+    // ==
+
+    private void open()
+    {
+        for ( int i = 0; i < 4; i++ )
+        {
+            call( false, 10L );
+        }
+        assertThat( circuitBreaker.getState(), equalTo( State.OPEN ) );
+    }
+
+    private void call( final boolean success, final long duration )
+    {
+        assertThat( circuitBreaker.tryAcquirePermission(), equalTo( true ) );
+        if ( success )
+        {
+            circuitBreaker.onSuccess( duration );
+        }
+        else
+        {
+            circuitBreaker.onFailure( duration, new IOException( "failed" ) );
+        }
+    }
+}
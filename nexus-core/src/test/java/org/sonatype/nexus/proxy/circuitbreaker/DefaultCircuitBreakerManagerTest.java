@@ -0,0 +1,93 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.circuitbreaker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreaker.State;
+import org.sonatype.nexus.proxy.events.CircuitBreakerEventStateChanged;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class DefaultCircuitBreakerManagerTest
+    extends TestSupport
+{
+    @Mock
+    private EventBus eventBus;
+
+    @Mock
+    private ProxyRepository central;
+
+    @Mock
+    private ProxyRepository centralMirror;
+
+    private DefaultCircuitBreakerManager manager;
+
+    @After
+    public void dispose()
+    {
+        if ( manager != null )
+        {
+            manager.dispose();
+        }
+    }
+
+    @Test
+    public void disabled()
+    {
+        manager = new DefaultCircuitBreakerManager( eventBus, false, true, 10, 2, 50, 1000L, 100, 5000L, 1 );
+        when( central.getId() ).thenReturn( "central" );
+        assertThat( manager.tryAcquire( central, null ), equalTo( CircuitBreakerPermit.UNTRACKED ) );
+        assertThat( manager.getCircuitBreakers().size(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void hostBreakerSharedByRepositories()
+    {
+        manager = new DefaultCircuitBreakerManager( eventBus, true, true, 10, 2, 50, 1000L, 100, 5000L, 1 );
+        when( central.getId() ).thenReturn( "central" );
+        when( central.getRemoteUrl() ).thenReturn( "http://repo1.maven.org/maven2/" );
+        when( centralMirror.getId() ).thenReturn( "central-mirror" );
+        when( centralMirror.getRemoteUrl() ).thenReturn( "http://REPO1.maven.org:80/other/" );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            manager.tryAcquire( central, null ).failure( new IOException( "failed" ) );
+        }
+
+        assertThat( manager.getRepositoryCircuitBreaker( "central" ).getState(), equalTo( State.OPEN ) );
+        assertThat( manager.getCircuitBreakers().get( "host:repo1.maven.org:80" ).getState(), equalTo( State.OPEN ) );
+        // two breakers opened
+        verify( eventBus, times( 2 ) ).post( any( CircuitBreakerEventStateChanged.class ) );
+
+        // other repository is short-circuited by host breaker, but it's own breaker is not affected
+        assertThat( manager.tryAcquire( centralMirror, null ), nullValue() );
+        assertThat( manager.getRepositoryCircuitBreaker( "central-mirror" ).getState(), equalTo( State.CLOSED ) );
+
+        assertThat( manager.reset( "host:repo1.maven.org:80" ), equalTo( true ) );
+        assertThat( manager.tryAcquire( centralMirror, null ), notNullValue() );
+    }
+}
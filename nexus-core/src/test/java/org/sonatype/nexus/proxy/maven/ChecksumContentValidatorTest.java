@@ -0,0 +1,185 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.attributes.inspectors.DigestCalculatingInspector;
+import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
+import org.sonatype.nexus.proxy.item.StringContentLocator;
+import org.sonatype.nexus.proxy.repository.RepositoryKind;
+import org.sonatype.nexus.proxy.storage.remote.RemoteRepositoryStorage;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class ChecksumContentValidatorTest
+    extends TestSupport
+{
+    private static final String PATH = "/org/foo/bar/1.0/bar-1.0.jar";
+
+    private static final String SHA1 = "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12";
+
+    private static final String CONTEXT_KEY = "test.key";
+
+    @Mock
+    private MavenProxyRepository proxy;
+
+    @Mock
+    private RepositoryKind repositoryKind;
+
+    @Mock
+    private RemoteRepositoryStorage remoteStorage;
+
+    private ChecksumContentValidator validator;
+
+    private final List<Object> seenContextValues = new ArrayList<Object>();
+
+    private final List<Thread> fetchingThreads = new ArrayList<Thread>();
+
+    @Before
+    public void prepare()
+        throws Exception
+    {
+        when( proxy.getId() ).thenReturn( "central" );
+        when( proxy.getRepositoryKind() ).thenReturn( repositoryKind );
+        when( repositoryKind.isFacetAvailable( MavenProxyRepository.class ) ).thenReturn( true );
+        when( proxy.adaptToFacet( MavenProxyRepository.class ) ).thenReturn( proxy );
+        when( proxy.getChecksumPolicy() ).thenReturn( ChecksumPolicy.STRICT );
+        when( proxy.getRemoteStorage() ).thenReturn( remoteStorage );
+        when( proxy.createUid( anyString() ) ).thenAnswer( new Answer<RepositoryItemUid>()
+        {
+            @Override
+            public RepositoryItemUid answer( final InvocationOnMock invocation )
+            {
+                return uid( (String) invocation.getArguments()[0] );
+            }
+        } );
+        when( proxy.doCacheItem( any( AbstractStorageItem.class ) ) ).thenAnswer( new Answer<AbstractStorageItem>()
+        {
+            @Override
+            public AbstractStorageItem answer( final InvocationOnMock invocation )
+            {
+                return (AbstractStorageItem) invocation.getArguments()[0];
+            }
+        } );
+        when( remoteStorage.retrieveItem( eq( proxy ), any( ResourceStoreRequest.class ), anyString() ) ).thenAnswer(
+            new Answer<AbstractStorageItem>()
+            {
+                @Override
+                public AbstractStorageItem answer( final InvocationOnMock invocation )
+                {
+                    final ResourceStoreRequest request = (ResourceStoreRequest) invocation.getArguments()[1];
+                    synchronized ( seenContextValues )
+                    {
+                        seenContextValues.add( request.getRequestContext().get( CONTEXT_KEY ) );
+                        fetchingThreads.add( Thread.currentThread() );
+                    }
+                    return new DefaultStorageFileItem( proxy, request, true, true, new StringContentLocator( SHA1 ) );
+                }
+            } );
+
+        validator = new ChecksumContentValidator();
+    }
+
+    @After
+    public void dispose()
+    {
+        validator.dispose();
+    }
+
+    @Test
+    public void prefetchedChecksumRequestSeesRequestContext()
+        throws Exception
+    {
+        final DefaultStorageFileItem item = item();
+
+        validator.prepareRemoteItemContentValidation( proxy, item.getResourceStoreRequest(), null, item );
+        final RemoteHashResponse response = validator.retrieveRemoteHash( item, proxy, null );
+
+        assertThat( response.getRemoteHash(), equalTo( SHA1 ) );
+        assertThat( response.getInspector(), equalTo( DigestCalculatingInspector.DIGEST_SHA1_KEY ) );
+        verify( remoteStorage, times( 1 ) ).retrieveItem( eq( proxy ), any( ResourceStoreRequest.class ),
+            anyString() );
+        assertThat( seenContextValues.get( 0 ), equalTo( (Object) "value" ) );
+        // fetched by the prefetch thread, not by the thread validating the content
+        assertThat( fetchingThreads.get( 0 ), not( sameInstance( Thread.currentThread() ) ) );
+    }
+
+    @Test
+    public void checksumRequestSeesRequestContext()
+        throws Exception
+    {
+        final DefaultStorageFileItem item = item();
+
+        final RemoteHashResponse response = validator.retrieveRemoteHash( item, proxy, null );
+
+        assertThat( response.getRemoteHash(), equalTo( SHA1 ) );
+        assertThat( seenContextValues.get( 0 ), equalTo( (Object) "value" ) );
+        assertThat( fetchingThreads.get( 0 ), sameInstance( Thread.currentThread() ) );
+    }
+
+    @Test
+    public void localHashPrefersItemContextDigest()
+    {
+        final DefaultStorageFileItem item = item();
+        item.getRepositoryItemAttributes().put( DigestCalculatingInspector.DIGEST_SHA1_KEY, "attribute" );
+
+        assertThat( validator.retrieveLocalHash( item, DigestCalculatingInspector.DIGEST_SHA1_KEY ),
+            equalTo( "attribute" ) );
+
+        item.getItemContext().put( DigestCalculatingInspector.DIGEST_SHA1_KEY, "context" );
+
+        assertThat( validator.retrieveLocalHash( item, DigestCalculatingInspector.DIGEST_SHA1_KEY ),
+            equalTo( "context" ) );
+    }
+
+    // ==
+
+    private DefaultStorageFileItem item()
+    {
+        final ResourceStoreRequest request = new ResourceStoreRequest( PATH );
+        request.getRequestContext().put( CONTEXT_KEY, "value" );
+        return new DefaultStorageFileItem( proxy, request, true, true, new StringContentLocator( "content" ) );
+    }
+
+    private RepositoryItemUid uid( final String path )
+    {
+        final RepositoryItemUid uid = mock( RepositoryItemUid.class );
+        when( uid.getPath() ).thenReturn( path );
+        when( uid.getRepository() ).thenReturn( proxy );
+        when( uid.getLock() ).thenReturn( mock( RepositoryItemUidLock.class ) );
+        return uid;
+    }
+}
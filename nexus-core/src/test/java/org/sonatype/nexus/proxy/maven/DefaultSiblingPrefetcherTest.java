@@ -0,0 +1,200 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.cache.PathCache;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.gav.M2GavCalculator;
+import org.sonatype.nexus.proxy.maven.packaging.ArtifactPackagingMapper;
+import org.sonatype.nexus.proxy.repository.LocalStatus;
+import org.sonatype.nexus.proxy.repository.ProxyMode;
+import org.sonatype.nexus.proxy.statistics.RetrieveStatisticsManager;
+import org.sonatype.nexus.proxy.storage.local.LocalRepositoryStorage;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class DefaultSiblingPrefetcherTest
+    extends TestSupport
+{
+    @Mock
+    private RetrieveStatisticsManager retrieveStatisticsManager;
+
+    @Mock
+    private MavenProxyRepository repository;
+
+    @Mock
+    private ArtifactPackagingMapper artifactPackagingMapper;
+
+    @Mock
+    private PathCache notFoundCache;
+
+    @Mock
+    private LocalRepositoryStorage localStorage;
+
+    private DefaultSiblingPrefetcher prefetcher;
+
+    @Before
+    public void prepare()
+        throws Exception
+    {
+        when( repository.getId() ).thenReturn( "central" );
+        when( repository.getGavCalculator() ).thenReturn( new M2GavCalculator() );
+        when( repository.getArtifactPackagingMapper() ).thenReturn( artifactPackagingMapper );
+        when( repository.getNotFoundCache() ).thenReturn( notFoundCache );
+        when( repository.getLocalStatus() ).thenReturn( LocalStatus.IN_SERVICE );
+        when( repository.getProxyMode() ).thenReturn( ProxyMode.ALLOW );
+        when( repository.getLocalStorage() ).thenReturn( localStorage );
+        when( artifactPackagingMapper.getExtensionForPackaging( "jar" ) ).thenReturn( "jar" );
+        when( artifactPackagingMapper.getExtensionForPackaging( "pom" ) ).thenReturn( "pom" );
+
+        prefetcher = new DefaultSiblingPrefetcher( retrieveStatisticsManager );
+    }
+
+    @After
+    public void dispose()
+    {
+        prefetcher.dispose();
+    }
+
+    @Test
+    public void prefetchJarSiblingsAndCountHits()
+        throws Exception
+    {
+        when( repository.isPrefetchSources() ).thenReturn( true );
+
+        prefetcher.prefetchSiblings( repository, pom( "/org/foo/bar/1.0/bar-1.0.pom", "jar" ) );
+
+        final ArgumentCaptor<ResourceStoreRequest> requests = ArgumentCaptor.forClass( ResourceStoreRequest.class );
+        verify( retrieveStatisticsManager, timeout( 5000 ).times( 5 ) ).recordPrefetch( "central" );
+        verify( repository, times( 5 ) ).retrieveItem( eq( true ), requests.capture() );
+        final List<String> paths = new ArrayList<String>();
+        for ( ResourceStoreRequest request : requests.getAllValues() )
+        {
+            paths.add( request.getRequestPath() );
+        }
+        assertThat( paths, containsInAnyOrder( "/org/foo/bar/1.0/bar-1.0.pom.sha1", "/org/foo/bar/1.0/bar-1.0.jar",
+            "/org/foo/bar/1.0/bar-1.0.jar.sha1", "/org/foo/bar/1.0/bar-1.0-sources.jar",
+            "/org/foo/bar/1.0/bar-1.0-sources.jar.sha1" ) );
+
+        // first retrieval of prefetched item is a hit, others are not
+        prefetcher.itemRetrieved( repository, item( "/org/foo/bar/1.0/bar-1.0.jar" ) );
+        prefetcher.itemRetrieved( repository, item( "/org/foo/bar/1.0/bar-1.0.jar" ) );
+        prefetcher.itemRetrieved( repository, item( "/org/foo/bar/1.0/bar-1.0.pom" ) );
+        verify( retrieveStatisticsManager, times( 1 ) ).recordPrefetchHit( "central" );
+    }
+
+    @Test
+    public void cachedAndNotFoundSiblingsAreNotPrefetched()
+        throws Exception
+    {
+        when( notFoundCache.contains( "/org/foo/bar/1.0/bar-1.0.jar" ) ).thenReturn( true );
+        when( localStorage.containsItem( eq( repository ), any( ResourceStoreRequest.class ) ) ).thenReturn( true );
+
+        prefetcher.prefetchSiblings( repository, pom( "/org/foo/bar/1.0/bar-1.0.pom", "jar" ) );
+
+        // pom.sha1 and jar.sha1 are looked up, but are cached already
+        verify( localStorage, timeout( 5000 ).times( 2 ) ).containsItem( eq( repository ),
+            any( ResourceStoreRequest.class ) );
+        verify( repository, never() ).retrieveItem( eq( true ), any( ResourceStoreRequest.class ) );
+        verify( retrieveStatisticsManager, never() ).recordPrefetch( anyString() );
+    }
+
+    @Test
+    public void retrievalDuringPrefetchIsHit()
+        throws Exception
+    {
+        final String path = "/org/foo/bar/1.0/bar-1.0.jar";
+        final StorageItem item = item( path );
+        when( repository.retrieveItem( eq( true ), any( ResourceStoreRequest.class ) ) ).thenAnswer(
+            new Answer<StorageItem>()
+            {
+                @Override
+                public StorageItem answer( final InvocationOnMock invocation )
+                {
+                    // a client asks for the item while the prefetch is still fetching it
+                    prefetcher.itemRetrieved( repository, item );
+                    return item;
+                }
+            } );
+
+        prefetcher.prefetch( repository, path, prefetcher.key( repository, path ) );
+
+        verify( retrieveStatisticsManager ).recordPrefetch( "central" );
+        verify( retrieveStatisticsManager ).recordPrefetchHit( "central" );
+    }
+
+    @Test
+    public void failedPrefetchIsNotHit()
+        throws Exception
+    {
+        final String path = "/org/foo/bar/1.0/bar-1.0.jar";
+        doThrow( new ItemNotFoundException( path ) ).when( repository ).retrieveItem( eq( true ),
+            any( ResourceStoreRequest.class ) );
+
+        prefetcher.prefetch( repository, path, prefetcher.key( repository, path ) );
+        prefetcher.itemRetrieved( repository, item( path ) );
+
+        verify( retrieveStatisticsManager, never() ).recordPrefetch( anyString() );
+        verify( retrieveStatisticsManager, never() ).recordPrefetchHit( anyString() );
+    }
+
+    // ==
+
+    private StorageItem item( final String path )
+    {
+        final RepositoryItemUid uid = mock( RepositoryItemUid.class );
+        when( uid.getPath() ).thenReturn( path );
+        final StorageItem item = mock( StorageItem.class );
+        when( item.getRepositoryItemUid() ).thenReturn( uid );
+        return item;
+    }
+
+    private StorageFileItem pom( final String path, final String packaging )
+        throws Exception
+    {
+        final RepositoryItemUid uid = mock( RepositoryItemUid.class );
+        when( uid.getPath() ).thenReturn( path );
+        final StorageFileItem pom = mock( StorageFileItem.class );
+        when( pom.getRepositoryItemUid() ).thenReturn( uid );
+        final String content = "<project><packaging>" + packaging + "</packaging></project>";
+        when( pom.getInputStream() ).thenReturn( new ByteArrayInputStream( content.getBytes( "UTF-8" ) ) );
+        return pom;
+    }
+}
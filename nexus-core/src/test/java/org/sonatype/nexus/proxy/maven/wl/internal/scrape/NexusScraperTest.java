@@ -22,9 +22,13 @@ import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.codehaus.plexus.interpolation.InterpolationException;
 import org.codehaus.plexus.interpolation.Interpolator;
 import org.codehaus.plexus.interpolation.MapBasedValueSource;
@@ -414,6 +418,35 @@ public class NexusScraperTest
         }
     }
 
+    @Test
+    public void simple200Crawled()
+        throws Exception
+    {
+        final Server server = prepareServer( 200, RemoteType.HOSTED );
+        server.start();
+        final ExecutorService executorService = Executors.newFixedThreadPool( 3 );
+        try
+        {
+            final HttpClient httpClient = new DefaultHttpClient( new PoolingClientConnectionManager() );
+            final String repoRoot = server.getUrl().toString() + "/nexus/content/repositories/central/";
+            when( mavenProxyRepository.getRemoteUrl() ).thenReturn( repoRoot );
+            final PageCrawler pageCrawler = new PageCrawler( executorService, new Semaphore( 2 ), 2, 0 );
+            final ScrapeContext context =
+                new ScrapeContext( mavenProxyRepository, httpClient, 3, pageCrawler, false );
+            final Page page = Page.getPageFor( context, repoRoot );
+            getScraper().scrape( context, page );
+            assertThat( context.isStopped(), is( true ) );
+            assertThat( context.isSuccessful(), is( true ) );
+            final List<String> entries = context.getPrefixSource().readEntries();
+            assertThat( entries, contains( "/archetype-catalog.xml", "/org/sonatype/nexus" ) );
+        }
+        finally
+        {
+            executorService.shutdownNow();
+            server.stop();
+        }
+    }
+
     @Test
     public void simple200Proxy()
         throws Exception
@@ -0,0 +1,118 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.wl.internal.scrape;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.sonatype.nexus.proxy.maven.wl.internal.scrape.ScrapeCheckpoint.Listing;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class ScrapeCheckpointTest
+    extends TestSupport
+{
+    private static final String ROOT_URL = "http://localhost/repo/";
+
+    private static final long DAY = 24L * 60L * 60L * 1000L;
+
+    @Test
+    public void roundTrip()
+    {
+        final ScrapeCheckpoint checkpoint = new ScrapeCheckpoint( "nexus", ROOT_URL, 2, 1000L );
+        checkpoint.putListing( "/", new Listing( "Tue, 19 Feb 2013 12:12:50 GMT", null, Arrays.asList(
+            "archetype-catalog.xml", "org/" ), 1000L ) );
+        checkpoint.putListing( "/org", new Listing( null, "\"abc\"", Arrays.asList( "sonatype/", "my file.txt" ),
+            1001L ) );
+        checkpoint.putListing( "/com", new Listing( null, null, Collections.<String> emptyList(), 1002L ) );
+
+        final ScrapeCheckpoint read = ScrapeCheckpoint.fromProperties( checkpoint.toProperties() );
+        assertThat( read.getScraperId(), equalTo( "nexus" ) );
+        assertThat( read.getRootUrl(), equalTo( ROOT_URL ) );
+        assertThat( read.getDepth(), equalTo( 2 ) );
+        assertThat( read.getStarted(), equalTo( 1000L ) );
+        assertThat( read.isCompleted(), is( false ) );
+        assertThat( read.size(), equalTo( 3 ) );
+        final Listing root = read.getListing( "/" );
+        assertThat( root.getLastModified(), equalTo( "Tue, 19 Feb 2013 12:12:50 GMT" ) );
+        assertThat( root.getEtag(), nullValue() );
+        assertThat( root.getEntries(), contains( "archetype-catalog.xml", "org/" ) );
+        final Listing org = read.getListing( "/org" );
+        assertThat( org.getEtag(), equalTo( "\"abc\"" ) );
+        assertThat( org.getEntries(), contains( "sonatype/", "my file.txt" ) );
+        assertThat( org.getFetched(), equalTo( 1001L ) );
+        final Listing com = read.getListing( "/com" );
+        assertThat( com.getEntries().isEmpty(), is( true ) );
+        assertThat( com.isRevalidable(), is( false ) );
+    }
+
+    @Test
+    public void resumeIncomplete()
+    {
+        final ScrapeCheckpoint previous = new ScrapeCheckpoint( "nexus", ROOT_URL, 2, 1000L );
+        previous.putListing( "/org", new Listing( "date", null, Arrays.asList( "sonatype/" ), 1500L ) );
+
+        final ScrapeCheckpoint resumed = ScrapeCheckpoint.resume( previous, "nexus", ROOT_URL, 2, 2000L, DAY );
+        assertThat( resumed, sameInstance( previous ) );
+        assertThat( resumed.isCurrent( resumed.getListing( "/org" ) ), is( true ) );
+
+        // too old, listings are only revalidated
+        final ScrapeCheckpoint restarted =
+            ScrapeCheckpoint.resume( previous, "nexus", ROOT_URL, 2, 1000L + DAY + 1L, DAY );
+        assertThat( restarted, not( sameInstance( previous ) ) );
+        assertThat( restarted.getListing( "/org" ), notNullValue() );
+        assertThat( restarted.isCurrent( restarted.getListing( "/org" ) ), is( false ) );
+    }
+
+    @Test
+    public void resumeCompleted()
+    {
+        final ScrapeCheckpoint previous = new ScrapeCheckpoint( "nexus", ROOT_URL, 2, 1000L );
+        previous.putListing( "/org", new Listing( "date", null, Arrays.asList( "sonatype/" ), 1500L ) );
+        previous.putListing( "/com", new Listing( "date", null, Arrays.asList( "sonatype/" ), 1500L ) );
+        previous.complete();
+
+        final ScrapeCheckpoint next = ScrapeCheckpoint.resume( previous, "nexus", ROOT_URL, 2, 2000L, DAY );
+        assertThat( next.isCompleted(), is( false ) );
+        assertThat( next.getStarted(), equalTo( 2000L ) );
+        assertThat( next.isCurrent( next.getListing( "/org" ) ), is( false ) );
+
+        // "/org" revalidated, "/com" not reached anymore
+        next.revalidated( "/org", 2500L );
+        next.complete();
+        assertThat( next.size(), equalTo( 1 ) );
+        assertThat( next.getListing( "/org" ).getFetched(), equalTo( 2500L ) );
+        assertThat( next.getListing( "/com" ), nullValue() );
+    }
+
+    @Test
+    public void resumeOtherScrape()
+    {
+        final ScrapeCheckpoint previous = new ScrapeCheckpoint( "nexus", ROOT_URL, 2, 1000L );
+        previous.putListing( "/org", new Listing( "date", null, Arrays.asList( "sonatype/" ), 1500L ) );
+
+        assertThat( ScrapeCheckpoint.resume( previous, "httpd-index", ROOT_URL, 2, 2000L, DAY ).size(),
+            equalTo( 0 ) );
+        assertThat( ScrapeCheckpoint.resume( previous, "nexus", ROOT_URL, 3, 2000L, DAY ).size(), equalTo( 0 ) );
+        assertThat( ScrapeCheckpoint.resume( null, "nexus", ROOT_URL, 2, 2000L, DAY ).size(), equalTo( 0 ) );
+    }
+}
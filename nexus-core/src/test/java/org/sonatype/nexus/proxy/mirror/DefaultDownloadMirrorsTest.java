@@ -204,4 +204,37 @@ public class DefaultDownloadMirrorsTest
 
         assertEquals( false, dMirrors.isBlacklisted( mirrors[0] ) );
     }
+
+    @Test
+    public void testLatencyScoredSelection()
+    {
+        Mirror[] mirrors = new Mirror[] { new Mirror( "1", "mirror1" ), new Mirror( "2", "mirror2" ) };
+
+        DefaultDownloadMirrors dMirrors = newDefaultDownloadMirrors( mirrors );
+
+        dMirrors.setMaxMirrors( 2 );
+
+        DownloadMirrorSelector selector = dMirrors.openSelector( null );
+
+        selector.feedbackSuccess( mirrors[0], 500L );
+
+        selector.feedbackSuccess( mirrors[1], 50L );
+
+        selector.close();
+
+        // faster mirror goes first
+        List<Mirror> _mirrors = dMirrors.openSelector( null ).getMirrors();
+        assertEquals( mirrors[1], _mirrors.get( 0 ) );
+        assertEquals( mirrors[0], _mirrors.get( 1 ) );
+        assertEquals( 50L, dMirrors.getMirrorScore( mirrors[1] ).getLatency() );
+
+        // failing mirror goes last
+        selector = dMirrors.openSelector( null );
+
+        selector.feedbackFailure( mirrors[1] );
+
+        selector.close();
+
+        assertEquals( mirrors[0], dMirrors.openSelector( null ).getMirrors().get( 0 ) );
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+
+public class DefaultRepositoryStatusCheckerTest
+{
+    private DefaultRepositoryStatusChecker checker;
+
+    @After
+    public void dispose()
+    {
+        if ( checker != null )
+        {
+            checker.dispose();
+        }
+    }
+
+    @Test
+    public void testPeriodicChecksUntilUnregistered()
+        throws Exception
+    {
+        checker = new DefaultRepositoryStatusChecker( 1, 0, 0 );
+        final CountDownLatch checked = new CountDownLatch( 3 );
+        final AtomicInteger checks = new AtomicInteger();
+        final ProxyRepository repository = mockRepository( "proxy", new Answer<RemoteStatus>()
+        {
+            @Override
+            public RemoteStatus answer( final InvocationOnMock invocation )
+            {
+                checks.incrementAndGet();
+                checked.countDown();
+                return RemoteStatus.AVAILABLE;
+            }
+        } );
+
+        checker.register( repository );
+        assertThat( checked.await( 5, TimeUnit.SECONDS ), equalTo( true ) );
+
+        checker.unregister( repository );
+        Thread.sleep( 100 );
+        final int checksAfterUnregister = checks.get();
+        Thread.sleep( 200 );
+        assertThat( checks.get(), equalTo( checksAfterUnregister ) );
+    }
+
+    @Test
+    public void testConcurrentChecksAreCapped()
+        throws Exception
+    {
+        checker = new DefaultRepositoryStatusChecker( 2, 0, 0 );
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch checked = new CountDownLatch( 6 );
+        final Answer<RemoteStatus> slowCheck = new Answer<RemoteStatus>()
+        {
+            @Override
+            public RemoteStatus answer( final InvocationOnMock invocation )
+                throws Exception
+            {
+                final int current = running.incrementAndGet();
+                synchronized ( maxRunning )
+                {
+                    maxRunning.set( Math.max( maxRunning.get(), current ) );
+                }
+                Thread.sleep( 50 );
+                running.decrementAndGet();
+                checked.countDown();
+                return RemoteStatus.AVAILABLE;
+            }
+        };
+
+        for ( int i = 0; i < 6; i++ )
+        {
+            checker.register( mockRepository( "proxy" + i, slowCheck ) );
+        }
+        assertThat( checked.await( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( maxRunning.get(), lessThanOrEqualTo( 2 ) );
+        assertThat( maxRunning.get(), greaterThanOrEqualTo( 1 ) );
+    }
+
+    @Test
+    public void testRescheduleDoesNotForkCheckChain()
+        throws Exception
+    {
+        checker = new DefaultRepositoryStatusChecker( 4, 0, 0 );
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final ProxyRepository repository = mockRepository( "proxy", new Answer<RemoteStatus>()
+        {
+            @Override
+            public RemoteStatus answer( final InvocationOnMock invocation )
+                throws Exception
+            {
+                final int current = running.incrementAndGet();
+                synchronized ( maxRunning )
+                {
+                    maxRunning.set( Math.max( maxRunning.get(), current ) );
+                }
+                Thread.sleep( 5 );
+                running.decrementAndGet();
+                return RemoteStatus.AVAILABLE;
+            }
+        } );
+        when( repository.getNextRemoteStatusRetainTime() ).thenReturn( 1L );
+
+        checker.register( repository );
+        // auto-blocking while checks come and go must not start a second chain of checks
+        final long deadline = System.currentTimeMillis() + 500;
+        while ( System.currentTimeMillis() < deadline )
+        {
+            checker.autoBlocked( repository );
+            Thread.sleep( 1 );
+        }
+        Thread.sleep( 100 );
+
+        assertThat( maxRunning.get(), equalTo( 1 ) );
+    }
+
+    protected ProxyRepository mockRepository( final String id, final Answer<RemoteStatus> check )
+    {
+        final ProxyRepository repository = mock( ProxyRepository.class );
+        when( repository.getId() ).thenReturn( id );
+        when( repository.getName() ).thenReturn( id );
+        when( repository.getLocalStatus() ).thenReturn( LocalStatus.IN_SERVICE );
+        when( repository.getProxyMode() ).thenReturn( ProxyMode.ALLOW );
+        when( repository.getRepositoryStatusCheckMode() ).thenReturn( RepositoryStatusCheckMode.ALWAYS );
+        when( repository.getNextRemoteStatusRetainTime() ).thenReturn( 20L );
+        when( repository.checkRemoteStatus( any( ResourceStoreRequest.class ) ) ).thenAnswer( check );
+        return repository;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonatype.nexus.configuration.model.CLocalStorage;
+import org.sonatype.nexus.configuration.model.CRemoteConnectionSettings;
+import org.sonatype.nexus.configuration.model.CRemoteStorage;
+import org.sonatype.nexus.configuration.model.CRepository;
+import org.sonatype.nexus.configuration.model.DefaultCRepository;
+import org.sonatype.nexus.proxy.AbstractNexusTestEnvironment;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.RemoteStorageException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreaker;
+import org.sonatype.nexus.proxy.circuitbreaker.CircuitBreakerManager;
+import org.sonatype.nexus.proxy.item.ByteArrayContentLocator;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.ChecksumPolicy;
+import org.sonatype.nexus.proxy.maven.RepositoryPolicy;
+import org.sonatype.nexus.proxy.maven.maven2.M2Repository;
+import org.sonatype.nexus.proxy.maven.maven2.M2RepositoryConfiguration;
+import org.sonatype.nexus.proxy.storage.local.LocalRepositoryStorage;
+import org.sonatype.nexus.proxy.storage.remote.RemoteProviderHintFactory;
+import org.sonatype.nexus.proxy.storage.remote.RemoteRepositoryStorage;
+
+/**
+ * Tests for circuit breaker guarding remote calls of proxy repository, and driving it's auto blocking.
+ */
+public class ProxyRepositoryCircuitBreakerTest
+    extends AbstractNexusTestEnvironment
+{
+    private static final String PROPERTY_PREFIX = "org.sonatype.nexus.proxy.circuitbreaker.CircuitBreakerManager.";
+
+    private static final long OPEN_DURATION = 1000L;
+
+    private final AtomicInteger remoteCalls = new AtomicInteger();
+
+    private volatile boolean remoteHealthy;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        // one failure opens the breaker, and one successful probe closes it
+        System.setProperty( PROPERTY_PREFIX + "minimumCalls", "1" );
+        System.setProperty( PROPERTY_PREFIX + "openDurationMillis", String.valueOf( OPEN_DURATION ) );
+        System.setProperty( PROPERTY_PREFIX + "halfOpenProbes", "1" );
+
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        try
+        {
+            super.tearDown();
+        }
+        finally
+        {
+            System.clearProperty( PROPERTY_PREFIX + "minimumCalls" );
+            System.clearProperty( PROPERTY_PREFIX + "openDurationMillis" );
+            System.clearProperty( PROPERTY_PREFIX + "halfOpenProbes" );
+        }
+    }
+
+    @Test
+    public void openBreakerAutoBlocksAndShortCircuitsWithoutNfc()
+        throws Exception
+    {
+        final M2Repository repo = createM2Repository( true );
+
+        assertNotFound( repo, "/first.txt" );
+        final int callsBeforeOpen = remoteCalls.get();
+        assertThat( callsBeforeOpen, greaterThan( 0 ) );
+        assertThat( repo.getProxyMode(), equalTo( ProxyMode.BLOCKED_AUTO ) );
+        assertThat( lookup( CircuitBreakerManager.class ).getRepositoryCircuitBreaker( repo.getId() ).getState(),
+            equalTo( CircuitBreaker.State.OPEN ) );
+
+        // open breaker does not let the request remote, and short-circuited path must not land in NFC
+        remoteHealthy = true;
+        assertNotFound( repo, "/second.txt" );
+        assertThat( remoteCalls.get(), equalTo( callsBeforeOpen ) );
+        assertThat( repo.getNotFoundCache().contains( "/second.txt" ), equalTo( false ) );
+    }
+
+    @Test
+    public void successfulProbeAutoUnblocks()
+        throws Exception
+    {
+        final M2Repository repo = createM2Repository( true );
+
+        assertNotFound( repo, "/first.txt" );
+        assertThat( repo.getProxyMode(), equalTo( ProxyMode.BLOCKED_AUTO ) );
+
+        // once open duration passes, real request probes the remote and closes the breaker
+        remoteHealthy = true;
+        Thread.sleep( OPEN_DURATION + 200L );
+        final StorageItem item = repo.retrieveItem( new ResourceStoreRequest( "/second.txt", false ) );
+        assertThat( item, notNullValue() );
+        assertThat( repo.getProxyMode(), equalTo( ProxyMode.ALLOW ) );
+        assertThat( lookup( CircuitBreakerManager.class ).getRepositoryCircuitBreaker( repo.getId() ).getState(),
+            equalTo( CircuitBreaker.State.CLOSED ) );
+    }
+
+    @Test
+    public void breakerBypassedWhenAutoBlockInactive()
+        throws Exception
+    {
+        final M2Repository repo = createM2Repository( false );
+
+        assertNotFound( repo, "/first.txt" );
+        final int callsAfterFirst = remoteCalls.get();
+        assertThat( repo.getProxyMode(), equalTo( ProxyMode.ALLOW ) );
+
+        // no breaker was involved, so next request goes remote and may land in NFC as usual
+        assertNotFound( repo, "/second.txt" );
+        assertThat( remoteCalls.get(), greaterThan( callsAfterFirst ) );
+        assertThat( repo.getProxyMode(), equalTo( ProxyMode.ALLOW ) );
+        assertThat( lookup( CircuitBreakerManager.class ).getRepositoryCircuitBreaker( repo.getId() ), nullValue() );
+    }
+
+    // ==
+
+    private void assertNotFound( final M2Repository repo, final String path )
+        throws Exception
+    {
+        try
+        {
+            repo.retrieveItem( new ResourceStoreRequest( path, false ) );
+            fail( "Item " + path + " should not be found" );
+        }
+        catch ( ItemNotFoundException e )
+        {
+            // expected
+        }
+    }
+
+    private M2Repository createM2Repository( final boolean autoBlockActive )
+        throws Exception
+    {
+        final M2Repository repo = (M2Repository) getContainer().lookup( Repository.class, "maven2" );
+
+        final CRepository repoConf = new DefaultCRepository();
+        repoConf.setProviderRole( Repository.class.getName() );
+        repoConf.setProviderHint( "maven2" );
+        repoConf.setId( "repo" );
+
+        repoConf.setLocalStorage( new CLocalStorage() );
+        repoConf.getLocalStorage().setProvider( "file" );
+
+        repoConf.setRemoteStorage( new CRemoteStorage() );
+        repoConf.getRemoteStorage().setProvider(
+            lookup( RemoteProviderHintFactory.class ).getDefaultHttpRoleHint() );
+        repoConf.getRemoteStorage().setUrl( "http://remote-url/" );
+        repoConf.getRemoteStorage().setConnectionSettings( new CRemoteConnectionSettings() );
+
+        final Xpp3Dom exRepo = new Xpp3Dom( "externalConfiguration" );
+        repoConf.setExternalConfiguration( exRepo );
+        final M2RepositoryConfiguration exRepoConf = new M2RepositoryConfiguration( exRepo );
+        exRepoConf.setRepositoryPolicy( RepositoryPolicy.RELEASE );
+        exRepoConf.setChecksumPolicy( ChecksumPolicy.IGNORE );
+        exRepoConf.setAutoBlockActive( autoBlockActive );
+
+        repo.configure( repoConf );
+        repo.getNotFoundCache().purge();
+
+        final LocalRepositoryStorage localStorage = mock( LocalRepositoryStorage.class );
+        doReturn( "dummy" ).when( localStorage ).getProviderId();
+        doThrow( new ItemNotFoundException( new ResourceStoreRequest( "/" ) ) ).when( localStorage ).retrieveItem(
+            any( Repository.class ), any( ResourceStoreRequest.class ) );
+        repo.setLocalStorage( localStorage );
+
+        final RemoteRepositoryStorage remoteStorage = mock( RemoteRepositoryStorage.class );
+        doReturn( "dummy" ).when( remoteStorage ).getProviderId();
+        doAnswer( new Answer<StorageItem>()
+        {
+            @Override
+            public StorageItem answer( final InvocationOnMock invocation )
+                throws Throwable
+            {
+                remoteCalls.incrementAndGet();
+                final ResourceStoreRequest request = (ResourceStoreRequest) invocation.getArguments()[1];
+                if ( !remoteHealthy )
+                {
+                    throw new RemoteStorageException( "Remote is down: " + request.getRequestPath() );
+                }
+                return new DefaultStorageFileItem( repo, new ResourceStoreRequest( request.getRequestPath() ), true,
+                    false, new ByteArrayContentLocator( "content".getBytes( "UTF-8" ), "text/plain" ) );
+            }
+        } ).when( remoteStorage ).retrieveItem( same( repo ), any( ResourceStoreRequest.class ), anyString() );
+        // keep status checker in line with remote state
+        doAnswer( new Answer<Boolean>()
+        {
+            @Override
+            public Boolean answer( final InvocationOnMock invocation )
+            {
+                return remoteHealthy;
+            }
+        } ).when( remoteStorage ).isReachable( same( repo ), any( ResourceStoreRequest.class ) );
+        repo.setRemoteStorage( remoteStorage );
+
+        return repo;
+    }
+}
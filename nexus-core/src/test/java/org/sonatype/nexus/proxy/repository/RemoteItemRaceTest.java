@@ -0,0 +1,201 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mockito.stubbing.OngoingStubbing;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.RemoteAccessDeniedException;
+import org.sonatype.nexus.proxy.RemoteAccessException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.storage.remote.RemoteRepositoryStorage;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class RemoteItemRaceTest
+    extends TestSupport
+{
+    private static final Mirror MIRROR_A = new Mirror( "a", "http://a/", "http://central/" );
+
+    private static final Mirror MIRROR_B = new Mirror( "b", "http://b/", "http://central/" );
+
+    @Mock
+    private ProxyRepository repository;
+
+    @Mock
+    private RemoteRepositoryStorage remoteStorage;
+
+    private ExecutorService executor;
+
+    private RemoteItemRace race;
+
+    @Before
+    public void prepare()
+    {
+        when( repository.getRemoteStorage() ).thenReturn( remoteStorage );
+        executor = Executors.newFixedThreadPool( 2 );
+        race = new RemoteItemRace( repository, new ResourceStoreRequest( "/org/foo/bar/1.0/bar-1.0.jar" ) );
+    }
+
+    @After
+    public void dispose()
+    {
+        race.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void firstSuccessWinsAndIsTheOnlyItemHandedOut()
+        throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AbstractStorageItem itemA = item();
+        final AbstractStorageItem itemB = item();
+        whenRetrieving( MIRROR_A ).thenAnswer( new Answer<AbstractStorageItem>()
+        {
+            @Override
+            public AbstractStorageItem answer( final InvocationOnMock invocation )
+                throws Exception
+            {
+                release.await();
+                return itemA;
+            }
+        } );
+        whenRetrieving( MIRROR_B ).thenReturn( itemB );
+
+        race.start( executor, Arrays.asList( MIRROR_A, MIRROR_B ) );
+
+        assertThat( race.awaitWinner(), equalTo( MIRROR_B ) );
+        assertThat( race.take( MIRROR_B ), sameInstance( itemB ) );
+        assertThat( race.isRaced( MIRROR_B ), equalTo( false ) );
+        assertThat( race.getLatency( MIRROR_B ) >= 0, equalTo( true ) );
+
+        // the loser completes later, and is released instead of being kept for hand out
+        release.countDown();
+        race.close();
+        verify( itemA.getInputStream(), timeout( 5000 ) ).close();
+        verify( itemB.getInputStream(), never() ).close();
+    }
+
+    @Test
+    public void losersAreCancelledAndReleased()
+        throws Exception
+    {
+        final CountDownLatch interrupted = new CountDownLatch( 1 );
+        final AbstractStorageItem itemB = item();
+        whenRetrieving( MIRROR_A ).thenAnswer( new Answer<AbstractStorageItem>()
+        {
+            @Override
+            public AbstractStorageItem answer( final InvocationOnMock invocation )
+                throws Exception
+            {
+                try
+                {
+                    new CountDownLatch( 1 ).await();
+                    return null;
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted.countDown();
+                    throw e;
+                }
+            }
+        } );
+        whenRetrieving( MIRROR_B ).thenReturn( itemB );
+
+        race.start( executor, Arrays.asList( MIRROR_A, MIRROR_B ) );
+
+        assertThat( race.awaitWinner(), equalTo( MIRROR_B ) );
+
+        // winner not taken: it is released on close, while the still running loser is cancelled
+        race.close();
+        assertThat( interrupted.await( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        verify( itemB.getInputStream() ).close();
+    }
+
+    @Test
+    public void failuresPropagateWhenAllRacersFail()
+        throws Exception
+    {
+        final ItemNotFoundException notFound = new ItemNotFoundException( "/org/foo/bar/1.0/bar-1.0.jar" );
+        final RemoteAccessException denied = new RemoteAccessDeniedException( repository, "http://b/", "Forbidden" );
+        whenRetrieving( MIRROR_A ).thenThrow( notFound );
+        whenRetrieving( MIRROR_B ).thenThrow( denied );
+
+        race.start( executor, Arrays.asList( MIRROR_A, MIRROR_B ) );
+
+        assertThat( race.awaitWinner(), nullValue() );
+        try
+        {
+            race.take( MIRROR_A );
+            fail( "ItemNotFoundException expected" );
+        }
+        catch ( ItemNotFoundException e )
+        {
+            assertThat( e, sameInstance( notFound ) );
+        }
+        try
+        {
+            race.take( MIRROR_B );
+            fail( "RemoteAccessException expected" );
+        }
+        catch ( RemoteAccessException e )
+        {
+            assertThat( (Exception) e, sameInstance( (Exception) denied ) );
+        }
+    }
+
+    // ==
+
+    private OngoingStubbing<AbstractStorageItem> whenRetrieving( final Mirror mirror )
+        throws Exception
+    {
+        return when( remoteStorage.retrieveItem( eq( repository ), any( ResourceStoreRequest.class ),
+            eq( mirror.getUrl() ) ) );
+    }
+
+    private AbstractStorageItem item()
+        throws Exception
+    {
+        final InputStream content = mock( InputStream.class );
+        final DefaultStorageFileItem item = mock( DefaultStorageFileItem.class );
+        when( item.getInputStream() ).thenReturn( content );
+        return item;
+    }
+}
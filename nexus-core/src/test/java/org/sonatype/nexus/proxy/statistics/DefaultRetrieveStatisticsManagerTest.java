@@ -0,0 +1,110 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.statistics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.statistics.RetrieveStatisticsManager.RetrieveEventMode;
+
+public class DefaultRetrieveStatisticsManagerTest
+{
+    private DefaultRetrieveStatisticsManager manager;
+
+    @After
+    public void dispose()
+    {
+        if ( manager != null )
+        {
+            manager.dispose();
+        }
+    }
+
+    @Test
+    public void testCounting()
+        throws Exception
+    {
+        manager = new DefaultRetrieveStatisticsManager( RetrieveEventMode.ALL, 1 );
+        final StorageFileItem file = mock( StorageFileItem.class );
+        when( file.getLength() ).thenReturn( 10L );
+        final StorageCollectionItem collection = mock( StorageCollectionItem.class );
+
+        final int threads = 8;
+        final CountDownLatch done = new CountDownLatch( threads );
+        for ( int i = 0; i < threads; i++ )
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int j = 0; j < 1000; j++ )
+                    {
+                        manager.recordRetrieve( "central", file );
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        manager.recordRetrieve( "central", collection );
+        manager.recordRemoteFetch( "central" );
+        manager.recordNotFoundCacheHit( "central" );
+        manager.recordNotFoundCacheHit( "releases" );
+
+        final RetrieveStatistics central = manager.getStatistics( "central" );
+        assertThat( central.getHits(), equalTo( 8001L ) );
+        assertThat( central.getBytes(), equalTo( 80000L ) );
+        assertThat( central.getRemoteFetches(), equalTo( 1L ) );
+        assertThat( central.getNotFoundCacheHits(), equalTo( 1L ) );
+        assertThat( manager.getStatistics().size(), equalTo( 2 ) );
+
+        manager.resetStatistics( "central" );
+        assertThat( manager.getStatistics( "central" ).getHits(), equalTo( 0L ) );
+        assertThat( manager.getStatistics().size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void testRetrieveEventModes()
+    {
+        manager = new DefaultRetrieveStatisticsManager( RetrieveEventMode.ALL, 10 );
+        assertThat( countFired( 100 ), equalTo( 100 ) );
+
+        manager.setRetrieveEventMode( RetrieveEventMode.SAMPLED );
+        assertThat( countFired( 100 ), equalTo( 10 ) );
+
+        manager.setRetrieveEventMode( RetrieveEventMode.NONE );
+        assertThat( countFired( 100 ), equalTo( 0 ) );
+    }
+
+    protected int countFired( final int retrievals )
+    {
+        int result = 0;
+        for ( int i = 0; i < retrievals; i++ )
+        {
+            if ( manager.shouldFireRetrieveEvent() )
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.remote.httpclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class AsyncContentBufferTest
+    extends TestSupport
+{
+    @Mock
+    private IOControl ioctrl;
+
+    @Test
+    public void inputSuspendedWhenFullAndRequestedWhenConsumed()
+        throws IOException
+    {
+        final AsyncContentBuffer buffer = new AsyncContentBuffer( 4 );
+        final InputStream is = buffer.getInputStream();
+
+        buffer.consumeContent( decoder( "abcdef", false ), ioctrl );
+        verify( ioctrl ).suspendInput();
+
+        final byte[] b = new byte[10];
+        assertThat( is.read( b, 0, 10 ), equalTo( 4 ) );
+        assertThat( new String( b, 0, 4 ), equalTo( "abcd" ) );
+        verify( ioctrl ).requestInput();
+
+        buffer.consumeContent( decoder( "ef", true ), ioctrl );
+        assertThat( is.read( b, 0, 10 ), equalTo( 2 ) );
+        assertThat( new String( b, 0, 2 ), equalTo( "ef" ) );
+        assertThat( is.read( b, 0, 10 ), equalTo( -1 ) );
+    }
+
+    @Test
+    public void failureIsPropagatedToReader()
+        throws IOException
+    {
+        final AsyncContentBuffer buffer = new AsyncContentBuffer( 4 );
+        final InputStream is = buffer.getInputStream();
+        buffer.consumeContent( decoder( "ab", false ), ioctrl );
+        buffer.fail( new IOException( "connection reset" ) );
+        try
+        {
+            is.read();
+            fail( "Failure should be propagated" );
+        }
+        catch ( IOException e )
+        {
+            assertThat( e.getMessage(), equalTo( "connection reset" ) );
+        }
+    }
+
+    @Test
+    public void closingIncompleteStreamCancelsExchange()
+        throws IOException
+    {
+        final AsyncContentBuffer buffer = new AsyncContentBuffer( 4 );
+        final Future<?> exchange = mock( Future.class );
+        buffer.setExchange( exchange );
+        buffer.consumeContent( decoder( "ab", false ), ioctrl );
+        buffer.getInputStream().close();
+        verify( exchange ).cancel( true );
+
+        try
+        {
+            buffer.consumeContent( decoder( "cd", false ), ioctrl );
+            fail( "Closed buffer should not accept content" );
+        }
+        catch ( IOException e )
+        {
+            // good
+        }
+    }
+
+    @Test
+    public void closingCompleteStreamDoesNotCancelExchange()
+        throws IOException
+    {
+        final AsyncContentBuffer buffer = new AsyncContentBuffer( 4 );
+        final Future<?> exchange = mock( Future.class );
+        buffer.setExchange( exchange );
+        buffer.consumeContent( decoder( "ab", true ), ioctrl );
+        buffer.getInputStream().close();
+        verify( exchange, never() ).cancel( true );
+    }
+
+    // ==
+
+    private ContentDecoder decoder( final String content, final boolean lastChunk )
+        throws IOException
+    {
+        final ByteBuffer source = ByteBuffer.wrap( content.getBytes( "UTF-8" ) );
+        final ContentDecoder decoder = mock( ContentDecoder.class );
+        when( decoder.read( any( ByteBuffer.class ) ) ).thenAnswer( new Answer<Integer>()
+        {
+            @Override
+            public Integer answer( final InvocationOnMock invocation )
+            {
+                final ByteBuffer dst = (ByteBuffer) invocation.getArguments()[0];
+                if ( !source.hasRemaining() )
+                {
+                    return lastChunk ? -1 : 0;
+                }
+                int count = 0;
+                while ( source.hasRemaining() && dst.hasRemaining() )
+                {
+                    dst.put( source.get() );
+                    count++;
+                }
+                return count;
+            }
+        } );
+        when( decoder.isCompleted() ).thenAnswer( new Answer<Boolean>()
+        {
+            @Override
+            public Boolean answer( final InvocationOnMock invocation )
+            {
+                return lastChunk && !source.hasRemaining();
+            }
+        } );
+        return decoder;
+    }
+}
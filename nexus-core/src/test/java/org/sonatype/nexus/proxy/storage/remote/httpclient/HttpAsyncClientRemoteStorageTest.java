@@ -0,0 +1,227 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.remote.httpclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.ApplicationStatusSource;
+import org.sonatype.nexus.apachehttpclient.ClientConnectionOperatorSelector;
+import org.sonatype.nexus.apachehttpclient.Hc4ProviderImpl;
+import org.sonatype.nexus.apachehttpclient.PoolingClientConnectionManagerMBeanInstaller;
+import org.sonatype.nexus.configuration.application.ApplicationConfiguration;
+import org.sonatype.nexus.mime.MimeSupport;
+import org.sonatype.nexus.proxy.RemoteStorageException;
+import org.sonatype.nexus.proxy.RemoteStorageTransportOverloadedException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.repository.DefaultRemoteConnectionSettings;
+import org.sonatype.nexus.proxy.repository.DefaultRemoteProxySettings;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.storage.remote.DefaultRemoteStorageContext;
+import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
+import org.sonatype.nexus.proxy.storage.remote.http.QueryStringBuilder;
+import org.sonatype.nexus.proxy.utils.UserAgentBuilder;
+import org.sonatype.sisu.goodies.common.Time;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+import org.sonatype.tests.http.server.fluent.Behaviours;
+import org.sonatype.tests.http.server.fluent.Server;
+
+/**
+ * {@link HttpAsyncClientRemoteStorage} UTs, against a real HTTP server.
+ * 
+ * @since 2.4
+ */
+public class HttpAsyncClientRemoteStorageTest
+    extends TestSupport
+{
+    private static final String CONTENT = "foobar123";
+
+    private static final long PAUSE_MILLIS = 5000L;
+
+    private Server server;
+
+    private Hc4ProviderImpl hc4Provider;
+
+    private HttpAsyncClientRemoteStorage underTest;
+
+    private DefaultRemoteConnectionSettings connectionSettings;
+
+    private ProxyRepository repository;
+
+    @Before
+    public void prepare()
+        throws Exception
+    {
+        System.setProperty( "nexus.apacheHttpClient4x.connectionPoolSize", "1" );
+        System.setProperty( "nexus.apacheHttpClient4x.bulkheadMinLimit", "1" );
+
+        server = Server.withPort( 0 );
+        server.serve( "/content/*" ).withBehaviours( Behaviours.content( CONTENT ) );
+        server.serve( "/pause/*" ).withBehaviours( Behaviours.pause( Time.millis( PAUSE_MILLIS ) ) );
+        server.start();
+
+        final RemoteStorageContext globalRemoteStorageContext = new DefaultRemoteStorageContext( null );
+        globalRemoteStorageContext.setRemoteConnectionSettings( new DefaultRemoteConnectionSettings() );
+        globalRemoteStorageContext.setRemoteProxySettings( new DefaultRemoteProxySettings() );
+        final ApplicationConfiguration applicationConfiguration = mock( ApplicationConfiguration.class );
+        when( applicationConfiguration.getGlobalRemoteStorageContext() ).thenReturn( globalRemoteStorageContext );
+
+        hc4Provider =
+            new Hc4ProviderImpl( applicationConfiguration, mock( UserAgentBuilder.class ), mock( EventBus.class ),
+                mock( PoolingClientConnectionManagerMBeanInstaller.class ), null );
+        underTest =
+            new HttpAsyncClientRemoteStorage( mock( UserAgentBuilder.class ), mock( ApplicationStatusSource.class ),
+                mock( MimeSupport.class ), mock( QueryStringBuilder.class ), new HttpClientManagerImpl( hc4Provider,
+                    mock( UserAgentBuilder.class ) ), hc4Provider,
+                Collections.<ClientConnectionOperatorSelector> emptyList(), mock( EventBus.class ) );
+
+        final RemoteStorageContext proxyContext = new DefaultRemoteStorageContext( globalRemoteStorageContext );
+        connectionSettings = new DefaultRemoteConnectionSettings();
+        connectionSettings.setRetrievalRetryCount( 0 );
+        proxyContext.setRemoteConnectionSettings( connectionSettings );
+        repository = mock( ProxyRepository.class );
+        when( repository.getId() ).thenReturn( "foo" );
+        when( repository.getName() ).thenReturn( "foo" );
+        when( repository.getRemoteStorageContext() ).thenReturn( proxyContext );
+    }
+
+    @After
+    public void cleanup()
+        throws Exception
+    {
+        try
+        {
+            underTest.shutdown();
+            hc4Provider.shutdown();
+            server.stop();
+        }
+        finally
+        {
+            System.clearProperty( "nexus.apacheHttpClient4x.connectionPoolSize" );
+            System.clearProperty( "nexus.apacheHttpClient4x.bulkheadMinLimit" );
+        }
+    }
+
+    /**
+     * Content is streamed from the server, and the upstream permit is released once it is received, so subsequent
+     * requests pass the bulkhead allowing one request in flight only.
+     */
+    @Test
+    public void retrieveItem()
+        throws Exception
+    {
+        for ( int i = 0; i < 3; i++ )
+        {
+            final AbstractStorageItem item = retrieve( "/content/foo.jar" );
+            assertThat( item, instanceOf( StorageFileItem.class ) );
+            final InputStream content = ( (StorageFileItem) item ).getInputStream();
+            try
+            {
+                assertThat( IOUtils.toString( content ), equalTo( CONTENT ) );
+            }
+            finally
+            {
+                content.close();
+            }
+        }
+    }
+
+    /**
+     * When no response arrives within timeouts of the repository, the retrieval fails instead of waiting forever.
+     */
+    @Test
+    public void retrieveItemTimesOut()
+        throws Exception
+    {
+        connectionSettings.setConnectionTimeout( 500 );
+        final long started = System.currentTimeMillis();
+        try
+        {
+            retrieve( "/pause/foo.jar" );
+            throw new AssertionError( "RemoteStorageException expected!" );
+        }
+        catch ( RemoteStorageException e )
+        {
+            assertThat( e, not( instanceOf( RemoteStorageTransportOverloadedException.class ) ) );
+        }
+        assertThat( System.currentTimeMillis() - started, lessThan( PAUSE_MILLIS ) );
+    }
+
+    /**
+     * Async requests obey same per upstream host bulkhead as the blocking client: with one request allowed in flight,
+     * a request made while another one is pending longer than the bulkhead queue timeout fails with
+     * {@link RemoteStorageTransportOverloadedException}.
+     */
+    @Test
+    public void retrieveItemObeysBulkhead()
+        throws Exception
+    {
+        connectionSettings.setConnectionTimeout( 4000 );
+        final Thread pending = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    retrieve( "/pause/foo.jar" );
+                }
+                catch ( Exception e )
+                {
+                    // expected, request times out
+                }
+            }
+        } );
+        pending.start();
+        try
+        {
+            // give some time to thread above
+            Thread.sleep( 500 );
+            try
+            {
+                retrieve( "/content/foo.jar" );
+                throw new AssertionError( "RemoteStorageTransportOverloadedException expected!" );
+            }
+            catch ( RemoteStorageTransportOverloadedException e )
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            pending.join();
+        }
+    }
+
+    private AbstractStorageItem retrieve( final String path )
+        throws Exception
+    {
+        return underTest.retrieveItem( repository, new ResourceStoreRequest( path ),
+            "http://localhost:" + server.getPort() + "/" );
+    }
+}
@@ -18,9 +18,12 @@ import junit.framework.Assert;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -241,6 +244,48 @@ public class HttpClientRemoteStorageTest
         }
     }
 
+    /**
+     * Ranged download is used only when enabled for repository, above threshold, and when remote advertises byte ranges
+     * of unencoded content with a validator.
+     */
+    @Test
+    public void rangedDownloadOnlyWhenApplicable()
+        throws Exception
+    {
+        final HttpClientRemoteStorage underTest =
+            new HttpClientRemoteStorage( mock( UserAgentBuilder.class ), mock( ApplicationStatusSource.class ),
+                mock( MimeSupport.class ), mock( QueryStringBuilder.class ), mock( HttpClientManager.class ) );
+        final ProxyRepository repository = mock( ProxyRepository.class );
+        when( repository.getRangedDownloadThreshold() ).thenReturn( 1000L );
+
+        final BasicHttpResponse httpResponse = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        httpResponse.setEntity( new ByteArrayEntity( new byte[2000] ) );
+        httpResponse.setHeader( "Accept-Ranges", "bytes" );
+        httpResponse.setHeader( "ETag", "\"1234\"" );
+
+        // disabled by default
+        Assert.assertFalse( underTest.isRangedDownload( repository, httpResponse ) );
+
+        when( repository.getRangedDownloadSegments() ).thenReturn( 4 );
+        Assert.assertTrue( underTest.isRangedDownload( repository, httpResponse ) );
+
+        when( repository.getRangedDownloadThreshold() ).thenReturn( 3000L );
+        Assert.assertFalse( underTest.isRangedDownload( repository, httpResponse ) );
+        when( repository.getRangedDownloadThreshold() ).thenReturn( 1000L );
+
+        httpResponse.setHeader( "Content-Encoding", "gzip" );
+        Assert.assertFalse( underTest.isRangedDownload( repository, httpResponse ) );
+        httpResponse.removeHeaders( "Content-Encoding" );
+
+        httpResponse.setHeader( "ETag", "W/\"1234\"" );
+        Assert.assertFalse( underTest.isRangedDownload( repository, httpResponse ) );
+        httpResponse.setHeader( "Last-Modified", "Tue, 15 Nov 1994 12:45:26 GMT" );
+        Assert.assertTrue( underTest.isRangedDownload( repository, httpResponse ) );
+
+        httpResponse.setHeader( "Accept-Ranges", "none" );
+        Assert.assertFalse( underTest.isRangedDownload( repository, httpResponse ) );
+    }
+
     protected void setParameters()
     {
         System.setProperty( "nexus.apacheHttpClient4x.connectionPoolMaxSize", "1" );
@@ -0,0 +1,215 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.remote.httpclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.ApplicationStatusSource;
+import org.sonatype.nexus.mime.MimeSupport;
+import org.sonatype.nexus.proxy.RemoteStorageException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.storage.remote.http.QueryStringBuilder;
+import org.sonatype.nexus.proxy.utils.UserAgentBuilder;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+/**
+ * {@link RangedDownload} UTs.
+ * 
+ * @since 2.4
+ */
+public class RangedDownloadTest
+    extends TestSupport
+{
+    private static final String ETAG = "\"1234\"";
+
+    private final byte[] content = new byte[100003];
+
+    private final AtomicInteger rangedRequests = new AtomicInteger();
+
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    private volatile boolean ignoreRanges;
+
+    private ExecutorService executor;
+
+    private HttpClientRemoteStorage storage;
+
+    private ProxyRepository repository;
+
+    private File target;
+
+    @Before
+    public void prepare()
+        throws Exception
+    {
+        new Random( 1 ).nextBytes( content );
+        executor = Executors.newCachedThreadPool();
+        repository = mock( ProxyRepository.class );
+        when( repository.getId() ).thenReturn( "central" );
+        target = File.createTempFile( "ranged", ".tmp" );
+
+        // remote serving ranges of content, failing the first failuresLeft segment requests halfway
+        storage =
+            new HttpClientRemoteStorage( mock( UserAgentBuilder.class ), mock( ApplicationStatusSource.class ),
+                mock( MimeSupport.class ), mock( QueryStringBuilder.class ), mock( HttpClientManager.class ) )
+            {
+                @Override
+                HttpResponse executeRequest( final ProxyRepository repository, final ResourceStoreRequest request,
+                                             final HttpUriRequest httpRequest )
+                    throws RemoteStorageException
+                {
+                    rangedRequests.incrementAndGet();
+                    assertThat( httpRequest.getFirstHeader( "If-Range" ).getValue(), equalTo( ETAG ) );
+                    if ( ignoreRanges )
+                    {
+                        final BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+                        response.setEntity( new ByteArrayEntity( content ) );
+                        return response;
+                    }
+
+                    final String[] range = httpRequest.getFirstHeader( "Range" ).getValue().substring( 6 ).split( "-" );
+                    final int start = Integer.parseInt( range[0] );
+                    final int end = Integer.parseInt( range[1] );
+                    final byte[] part = Arrays.copyOfRange( content, start, end + 1 );
+                    final BasicHttpResponse response =
+                        new BasicHttpResponse( HttpVersion.HTTP_1_1, 206, "Partial Content" );
+                    response.setHeader( "Content-Range", "bytes " + start + "-" + end + "/" + content.length );
+                    if ( failuresLeft.getAndDecrement() > 0 )
+                    {
+                        response.setEntity( new InputStreamEntity( new FailingInputStream( part, part.length / 2 ),
+                            part.length ) );
+                    }
+                    else
+                    {
+                        response.setEntity( new ByteArrayEntity( part ) );
+                    }
+                    return response;
+                }
+            };
+    }
+
+    @After
+    public void cleanup()
+        throws IOException
+    {
+        executor.shutdownNow();
+        if ( target.exists() )
+        {
+            FileUtils.forceDelete( target );
+        }
+    }
+
+    @Test
+    public void downloadAssemblesSegments()
+        throws Exception
+    {
+        download( 4 );
+
+        assertThat( rangedRequests.get(), equalTo( 3 ) );
+        assertThat( Arrays.equals( FileUtils.fileReadBytes( target ), content ), equalTo( true ) );
+    }
+
+    @Test
+    public void failedSegmentIsResumed()
+        throws Exception
+    {
+        failuresLeft.set( 2 );
+
+        download( 4 );
+
+        assertThat( rangedRequests.get(), equalTo( 5 ) );
+        assertThat( Arrays.equals( FileUtils.fileReadBytes( target ), content ), equalTo( true ) );
+    }
+
+    @Test
+    public void downloadFailsWhenRemoteIgnoresRanges()
+        throws Exception
+    {
+        ignoreRanges = true;
+
+        try
+        {
+            download( 4 );
+            fail( "Download should fail" );
+        }
+        catch ( RemoteStorageException e )
+        {
+            assertThat( e.getMessage(), startsWith( "Unexpected response to ranged request" ) );
+        }
+        assertThat( target.exists(), equalTo( false ) );
+    }
+
+    private void download( final int segments )
+        throws Exception
+    {
+        final BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        response.setEntity( new ByteArrayEntity( content ) );
+
+        new RangedDownload( storage, repository, new ResourceStoreRequest( "/big.zip" ), new URL(
+            "http://repo.example.com/big.zip" ), content.length, ETAG, 3 ).download(
+            new HttpGet( "http://repo.example.com/big.zip" ), response, executor, segments, target );
+    }
+
+    private static class FailingInputStream
+        extends InputStream
+    {
+        private final InputStream delegate;
+
+        private int remaining;
+
+        private FailingInputStream( final byte[] buf, final int failAt )
+        {
+            this.delegate = new ByteArrayInputStream( buf );
+            this.remaining = failAt;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            if ( remaining-- <= 0 )
+            {
+                throw new IOException( "Connection reset" );
+            }
+            return delegate.read();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.warmup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+import org.sonatype.nexus.proxy.maven.gav.M2GavCalculator;
+import org.sonatype.nexus.proxy.maven.packaging.ArtifactPackagingMapper;
+import org.sonatype.nexus.proxy.repository.LocalStatus;
+import org.sonatype.nexus.proxy.repository.ProxyMode;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.repository.RepositoryKind;
+import org.sonatype.nexus.proxy.storage.local.LocalRepositoryStorage;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class DefaultCacheWarmerTest
+    extends TestSupport
+{
+    @Mock
+    private MavenRepository mavenRepository;
+
+    @Mock
+    private ProxyRepository proxyRepository;
+
+    @Mock
+    private RepositoryKind repositoryKind;
+
+    @Mock
+    private ArtifactPackagingMapper artifactPackagingMapper;
+
+    @Mock
+    private LocalRepositoryStorage localStorage;
+
+    @Mock
+    private AbstractStorageItem cachedItem;
+
+    private DefaultCacheWarmer cacheWarmer;
+
+    @Before
+    public void prepare()
+        throws Exception
+    {
+        when( repositoryKind.isFacetAvailable( MavenRepository.class ) ).thenReturn( true );
+        when( repositoryKind.isFacetAvailable( ProxyRepository.class ) ).thenReturn( true );
+        when( mavenRepository.getId() ).thenReturn( "central" );
+        when( mavenRepository.getRepositoryKind() ).thenReturn( repositoryKind );
+        when( mavenRepository.adaptToFacet( MavenRepository.class ) ).thenReturn( mavenRepository );
+        when( mavenRepository.adaptToFacet( ProxyRepository.class ) ).thenReturn( proxyRepository );
+        when( mavenRepository.getGavCalculator() ).thenReturn( new M2GavCalculator() );
+        when( mavenRepository.getArtifactPackagingMapper() ).thenReturn( artifactPackagingMapper );
+        when( artifactPackagingMapper.getExtensionForPackaging( anyString() ) ).thenReturn( "jar" );
+        when( artifactPackagingMapper.getExtensionForPackaging( "pom" ) ).thenReturn( "pom" );
+
+        when( proxyRepository.getId() ).thenReturn( "central" );
+        when( proxyRepository.getRepositoryKind() ).thenReturn( repositoryKind );
+        when( proxyRepository.adaptToFacet( ProxyRepository.class ) ).thenReturn( proxyRepository );
+        when( proxyRepository.getLocalStatus() ).thenReturn( LocalStatus.IN_SERVICE );
+        when( proxyRepository.getProxyMode() ).thenReturn( ProxyMode.ALLOW );
+        when( proxyRepository.getRemoteUrl() ).thenReturn( "http://repo1.maven.org/maven2/" );
+        when( proxyRepository.getLocalStorage() ).thenReturn( localStorage );
+        when( proxyRepository.isItemFresh( cachedItem ) ).thenReturn( true );
+
+        cacheWarmer = new DefaultCacheWarmer( 2, 1 );
+    }
+
+    @After
+    public void dispose()
+    {
+        cacheWarmer.dispose();
+    }
+
+    @Test
+    public void resolvePathsFromMixedEntries()
+    {
+        final String entries =
+            "# comment\n" //
+                + "/org/foo/foo/1.0/foo-1.0.jar\n" //
+                + "org.bar:bar:2.0\n" //
+                + "[INFO] --- maven-dependency-plugin:2.8:tree (default-cli) @ x ---\n" //
+                + "[INFO] org.sample:app:jar:1.0-SNAPSHOT\n" //
+                + "[INFO] +- junit:junit:jar:4.10:test\n" //
+                + "[INFO] |  \\- org.hamcrest:hamcrest-core:jar:1.1:test (scope managed from compile)\n" //
+                + "[INFO] \\- org.baz:baz:pom:3.0:compile\n" //
+                + "[INFO] BUILD SUCCESS\n" //
+                + "org.bar:bar:2.0\n";
+
+        final List<String> paths = cacheWarmer.resolvePaths( mavenRepository, entries );
+
+        assertThat( paths, contains( "/org/foo/foo/1.0/foo-1.0.jar", //
+            "/org/bar/bar/2.0/bar-2.0.pom", "/org/bar/bar/2.0/bar-2.0.pom.sha1", //
+            "/org/bar/bar/2.0/bar-2.0.jar", "/org/bar/bar/2.0/bar-2.0.jar.sha1", //
+            "/org/sample/app/1.0-SNAPSHOT/app-1.0-SNAPSHOT.pom", //
+            "/org/sample/app/1.0-SNAPSHOT/app-1.0-SNAPSHOT.pom.sha1", //
+            "/org/sample/app/1.0-SNAPSHOT/app-1.0-SNAPSHOT.jar", //
+            "/org/sample/app/1.0-SNAPSHOT/app-1.0-SNAPSHOT.jar.sha1", //
+            "/junit/junit/4.10/junit-4.10.pom", "/junit/junit/4.10/junit-4.10.pom.sha1", //
+            "/junit/junit/4.10/junit-4.10.jar", "/junit/junit/4.10/junit-4.10.jar.sha1", //
+            "/org/hamcrest/hamcrest-core/1.1/hamcrest-core-1.1.pom", //
+            "/org/hamcrest/hamcrest-core/1.1/hamcrest-core-1.1.pom.sha1", //
+            "/org/hamcrest/hamcrest-core/1.1/hamcrest-core-1.1.jar", //
+            "/org/hamcrest/hamcrest-core/1.1/hamcrest-core-1.1.jar.sha1", //
+            "/org/baz/baz/3.0/baz-3.0.pom", "/org/baz/baz/3.0/baz-3.0.pom.sha1" ) );
+    }
+
+    @Test
+    public void resolvePathsWithClassifier()
+    {
+        final List<String> paths =
+            cacheWarmer.resolvePaths( mavenRepository, "org.foo:foo:test-jar:1.0\norg.foo:foo:jar:sources:1.0" );
+
+        assertThat( paths, contains( "/org/foo/foo/1.0/foo-1.0.pom", "/org/foo/foo/1.0/foo-1.0.pom.sha1", //
+            "/org/foo/foo/1.0/foo-1.0-tests.jar", "/org/foo/foo/1.0/foo-1.0-tests.jar.sha1", //
+            "/org/foo/foo/1.0/foo-1.0-sources.jar", "/org/foo/foo/1.0/foo-1.0-sources.jar.sha1" ) );
+    }
+
+    @Test
+    public void warmUpSkipsFetchesAndReportsNotFound()
+        throws Exception
+    {
+        when( localStorage.retrieveItem( eq( proxyRepository ), any( ResourceStoreRequest.class ) ) ).thenAnswer(
+            new Answer<AbstractStorageItem>()
+            {
+                @Override
+                public AbstractStorageItem answer( final InvocationOnMock invocation )
+                    throws Throwable
+                {
+                    final ResourceStoreRequest request = (ResourceStoreRequest) invocation.getArguments()[1];
+                    if ( "/cached".equals( request.getRequestPath() ) )
+                    {
+                        return cachedItem;
+                    }
+                    throw new ItemNotFoundException( request );
+                }
+            } );
+        when( proxyRepository.retrieveItem( eq( true ), any( ResourceStoreRequest.class ) ) ).thenAnswer(
+            new Answer<AbstractStorageItem>()
+            {
+                @Override
+                public AbstractStorageItem answer( final InvocationOnMock invocation )
+                    throws Throwable
+                {
+                    final ResourceStoreRequest request = (ResourceStoreRequest) invocation.getArguments()[1];
+                    if ( "/missing".equals( request.getRequestPath() ) )
+                    {
+                        throw new ItemNotFoundException( request );
+                    }
+                    if ( "/broken".equals( request.getRequestPath() ) )
+                    {
+                        throw new IllegalStateException( "boom" );
+                    }
+                    return cachedItem;
+                }
+            } );
+
+        final CacheWarmUp warmUp =
+            cacheWarmer.warmUp( proxyRepository, Arrays.asList( "/cached", "/fetched", "/missing", "/broken" ) );
+        assertThat( warmUp.await( 10, TimeUnit.SECONDS ), equalTo( true ) );
+
+        assertThat( warmUp.getState(), equalTo( CacheWarmUp.State.DONE ) );
+        assertThat( warmUp.getTotal(), equalTo( 4 ) );
+        assertThat( warmUp.getSkipped(), equalTo( 1 ) );
+        assertThat( warmUp.getFetched(), equalTo( 1 ) );
+        assertThat( warmUp.getNotFound(), equalTo( 1 ) );
+        assertThat( warmUp.getFailed(), equalTo( 1 ) );
+        assertThat( warmUp.getFailures().keySet(), contains( "/broken" ) );
+        assertThat( cacheWarmer.getWarmUps(), hasSize( 1 ) );
+        assertThat( cacheWarmer.getWarmUp( warmUp.getId() ), equalTo( warmUp ) );
+        verify( proxyRepository, times( 3 ) ).retrieveItem( eq( true ), any( ResourceStoreRequest.class ) );
+    }
+}
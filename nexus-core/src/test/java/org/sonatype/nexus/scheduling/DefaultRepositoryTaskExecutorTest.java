@@ -0,0 +1,175 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.scheduling;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.scheduling.RepositoryTaskExecutor.RepositoryWork;
+import org.sonatype.scheduling.CancellableProgressListenerWrapper;
+import org.sonatype.scheduling.TaskInterruptedException;
+import org.sonatype.scheduling.TaskUtil;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class DefaultRepositoryTaskExecutorTest
+    extends TestSupport
+{
+    private DefaultRepositoryTaskExecutor executor;
+
+    private List<Repository> repositories;
+
+    @Before
+    public void prepare()
+    {
+        new TaskUtil()
+        {
+            {
+                setCurrent( new CancellableProgressListenerWrapper( null ) );
+            }
+        };
+        executor = new DefaultRepositoryTaskExecutor( 2 );
+        repositories = Arrays.asList( repository( "r1" ), repository( "r2" ), repository( "r3" ) );
+    }
+
+    @After
+    public void cleanup()
+    {
+        executor.dispose();
+        new TaskUtil()
+        {
+            {
+                setCurrent( null );
+            }
+        };
+    }
+
+    @Test
+    public void parallelResultsAreAggregatedInOrder()
+        throws Exception
+    {
+        // two repositories of same volume must be processed concurrently to pass the barrier
+        final CyclicBarrier barrier = new CyclicBarrier( 2 );
+        final Map<String, String> results =
+            executor.execute( "Test", repositories, true, new RepositoryWork<String>()
+            {
+                @Override
+                public String run( final Repository repository )
+                    throws Exception
+                {
+                    if ( !"r3".equals( repository.getId() ) )
+                    {
+                        barrier.await( 5, TimeUnit.SECONDS );
+                    }
+                    return repository.getId().toUpperCase();
+                }
+            } );
+
+        assertThat( results.keySet(), contains( "r1", "r2", "r3" ) );
+        assertThat( results.get( "r2" ), equalTo( "R2" ) );
+    }
+
+    @Test
+    public void failureIsThrownAfterAllRepositoriesProcessed()
+        throws Exception
+    {
+        final AtomicInteger processed = new AtomicInteger();
+        final IOException failure = new IOException( "disk on fire" );
+        try
+        {
+            executor.execute( "Test", repositories, true, new RepositoryWork<Object>()
+            {
+                @Override
+                public Object run( final Repository repository )
+                    throws Exception
+                {
+                    processed.incrementAndGet();
+                    if ( "r1".equals( repository.getId() ) )
+                    {
+                        throw failure;
+                    }
+                    return null;
+                }
+            } );
+            fail( "Failure should be propagated" );
+        }
+        catch ( IOException e )
+        {
+            assertThat( e, sameInstance( failure ) );
+        }
+        assertThat( processed.get(), equalTo( 3 ) );
+    }
+
+    @Test( expected = TaskInterruptedException.class )
+    public void taskCancellationPropagatesToWorkers()
+        throws Exception
+    {
+        executor = new DefaultRepositoryTaskExecutor( 1 );
+        executor.execute( "Test", repositories, true, new RepositoryWork<Object>()
+        {
+            @Override
+            public Object run( final Repository repository )
+            {
+                // task progress listener is current on worker threads too
+                TaskUtil.getCurrentProgressListener().cancel();
+                TaskUtil.checkInterruption();
+                return null;
+            }
+        } );
+    }
+
+    @Test
+    public void sequentialRunsOnTaskThread()
+        throws Exception
+    {
+        final Thread taskThread = Thread.currentThread();
+        final Map<String, Boolean> results =
+            executor.execute( "Test", repositories, false, new RepositoryWork<Boolean>()
+            {
+                @Override
+                public Boolean run( final Repository repository )
+                {
+                    return Thread.currentThread() == taskThread;
+                }
+            } );
+
+        assertThat( results.values(), contains( true, true, true ) );
+    }
+
+    // ==
+
+    private Repository repository( final String id )
+    {
+        final Repository repository = mock( Repository.class );
+        when( repository.getId() ).thenReturn( id );
+        when( repository.getName() ).thenReturn( id );
+        when( repository.getLocalUrl() ).thenReturn( util.resolveFile( "target/storage/" + id ).toURI().toString() );
+        return repository;
+    }
+}
@@ -92,6 +92,26 @@ public class LogbackLoggingEvent
         }
     }
 
+    /**
+     * Constructor for events not originating from Logback, like summaries of coalesced events.
+     * 
+     * @param loggerName the name of the logger the event is about.
+     * @param level the level.
+     * @param message the message.
+     * @param throwable the throwable, may be {@code null}.
+     * @since 2.4
+     */
+    public LogbackLoggingEvent( String loggerName, Level level, String message, Throwable throwable )
+    {
+        super( loggerName );
+
+        this.level = level;
+
+        this.message = message;
+
+        this.throwable = throwable;
+    }
+
     /**
      * {@inheritDoc}
      */
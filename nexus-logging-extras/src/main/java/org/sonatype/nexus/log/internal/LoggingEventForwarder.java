@@ -0,0 +1,418 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.log.internal;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.logging.LoggingEvent.Level;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Forwards logging events to {@link EventBus} asynchronously, without ever blocking the logging thread. Events are put
+ * into a bounded lock-free queue, drained and posted by a single daemon thread. To survive floods (like an upstream
+ * outage producing thousands of warnings per second):
+ * <ul>
+ * <li>identical events (same level, logger, message and throwable type) are coalesced: only the first one in a
+ * window is forwarded, followed by one summary event telling how many times it was repeated;</li>
+ * <li>the count of events forwarded per second is limited;</li>
+ * <li>when the queue is full, events are dropped, WARN events before ERROR events.</li>
+ * </ul>
+ * Dropped events are counted, and periodically reported as a WARN event of their own.
+ * 
+ * @since 2.4
+ */
+public class LoggingEventForwarder
+{
+    private static final String PREFIX = LoggingEventForwarder.class.getName() + ".";
+
+    private static final int QUEUE_SIZE = SystemPropertiesHelper.getInteger( PREFIX + "queueSize", 1024 );
+
+    private static final int MAX_EVENTS_PER_SECOND = SystemPropertiesHelper.getInteger( PREFIX
+        + "maxEventsPerSecond", 100 );
+
+    private static final long COALESCE_WINDOW_MILLIS = SystemPropertiesHelper.getLong( PREFIX
+        + "coalesceWindowMillis", TimeUnit.SECONDS.toMillis( 10 ) );
+
+    private static final int MAX_COALESCED_KEYS = SystemPropertiesHelper.getInteger( PREFIX + "maxCoalescedKeys",
+        1000 );
+
+    private static final long DRAIN_INTERVAL_MILLIS = SystemPropertiesHelper.getLong( PREFIX + "drainIntervalMillis",
+        100 );
+
+    private static final long REPORT_INTERVAL_MILLIS = SystemPropertiesHelper.getLong( PREFIX
+        + "reportIntervalMillis", TimeUnit.MINUTES.toMillis( 1 ) );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final EventBus eventBus;
+
+    private final int queueSize;
+
+    private final int warnQueueSize;
+
+    private final int maxEventsPerSecond;
+
+    private final long coalesceWindowMillis;
+
+    private final Queue<LogbackLoggingEvent> queue;
+
+    private final AtomicInteger queued;
+
+    private final ConcurrentMap<String, Occurrence> occurrences;
+
+    private final AtomicLong rateSecond;
+
+    private final AtomicInteger rateCount;
+
+    private final AtomicLong droppedCount;
+
+    private final AtomicLong rateLimitedCount;
+
+    private final AtomicLong coalescedCount;
+
+    private volatile Thread drainer;
+
+    private volatile boolean running;
+
+    private long lastSweep;
+
+    private long lastReport;
+
+    private long reportedDrops;
+
+    public LoggingEventForwarder( final EventBus eventBus )
+    {
+        this( eventBus, QUEUE_SIZE, MAX_EVENTS_PER_SECOND, COALESCE_WINDOW_MILLIS );
+    }
+
+    public LoggingEventForwarder( final EventBus eventBus, final int queueSize, final int maxEventsPerSecond,
+                                  final long coalesceWindowMillis )
+    {
+        Preconditions.checkArgument( queueSize > 0, "Queue size must be positive!" );
+        this.eventBus = Preconditions.checkNotNull( eventBus );
+        this.queueSize = queueSize;
+        // keep the last eighth of the queue for ERROR events
+        this.warnQueueSize = queueSize - queueSize / 8;
+        this.maxEventsPerSecond = maxEventsPerSecond;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.queue = new ConcurrentLinkedQueue<LogbackLoggingEvent>();
+        this.queued = new AtomicInteger( 0 );
+        this.occurrences = new ConcurrentHashMap<String, Occurrence>();
+        this.rateSecond = new AtomicLong( 0 );
+        this.rateCount = new AtomicInteger( 0 );
+        this.droppedCount = new AtomicLong( 0 );
+        this.rateLimitedCount = new AtomicLong( 0 );
+        this.coalescedCount = new AtomicLong( 0 );
+    }
+
+    /**
+     * Starts the thread posting the events.
+     */
+    public synchronized void start()
+    {
+        if ( drainer == null )
+        {
+            running = true;
+            drainer =
+                new NexusThreadFactory( "nxlog", "Logging Event Forwarder", Thread.NORM_PRIORITY, true ).newThread(
+                    new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            while ( running )
+                            {
+                                drain( System.currentTimeMillis() );
+                                LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( DRAIN_INTERVAL_MILLIS ) );
+                            }
+                            drain( System.currentTimeMillis() );
+                        }
+                    } );
+            drainer.start();
+        }
+    }
+
+    /**
+     * Stops the thread posting the events, events queued so far are posted before it exits.
+     */
+    public synchronized void stop()
+    {
+        final Thread thread = drainer;
+        if ( thread != null )
+        {
+            running = false;
+            drainer = null;
+            LockSupport.unpark( thread );
+
+            try
+            {
+                thread.join( TimeUnit.SECONDS.toMillis( 1 ) );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Accepts a logging event for forwarding. Never blocks.
+     * 
+     * @param event the logging event.
+     * @return {@code true} if event was queued, {@code false} if it was coalesced or dropped.
+     */
+    public boolean forward( final ILoggingEvent event )
+    {
+        return forward( new LogbackLoggingEvent( event ), System.currentTimeMillis() );
+    }
+
+    /**
+     * Returns the count of events dropped because the queue was full.
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the count of events dropped because of the rate limit.
+     */
+    public long getRateLimitedCount()
+    {
+        return rateLimitedCount.get();
+    }
+
+    /**
+     * Returns the count of events coalesced into a preceding identical event.
+     */
+    public long getCoalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+    // ==
+
+    @VisibleForTesting
+    boolean forward( final LogbackLoggingEvent event, final long now )
+    {
+        if ( coalesce( event, now ) )
+        {
+            coalescedCount.incrementAndGet();
+            return false;
+        }
+        if ( !acquirePermit( now ) )
+        {
+            rateLimitedCount.incrementAndGet();
+            return false;
+        }
+        return enqueue( event );
+    }
+
+    /**
+     * Returns {@code true} if an identical event was already forwarded in the current coalescing window.
+     */
+    private boolean coalesce( final LogbackLoggingEvent event, final long now )
+    {
+        if ( coalesceWindowMillis <= 0 )
+        {
+            return false;
+        }
+        final String key = keyOf( event );
+        final Occurrence occurrence = occurrences.get( key );
+        if ( occurrence != null && now - occurrence.since < coalesceWindowMillis )
+        {
+            occurrence.repeated.incrementAndGet();
+            return true;
+        }
+        if ( occurrence == null )
+        {
+            // do not let a flood of distinct messages grow the map, the sweep will make room again
+            if ( occurrences.size() < MAX_COALESCED_KEYS
+                && occurrences.putIfAbsent( key, new Occurrence( event, now ) ) != null )
+            {
+                return coalesce( event, now );
+            }
+            return false;
+        }
+        if ( occurrences.replace( key, occurrence, new Occurrence( event, now ) ) )
+        {
+            // window of previous occurrence is over, summarize it, if needed
+            summarize( occurrence, now, true );
+            return false;
+        }
+        // lost the race, some other thread opened a new window
+        return coalesce( event, now );
+    }
+
+    protected boolean acquirePermit( final long now )
+    {
+        if ( maxEventsPerSecond <= 0 )
+        {
+            return true;
+        }
+        final long second = now / 1000;
+        final long current = rateSecond.get();
+        if ( current != second && rateSecond.compareAndSet( current, second ) )
+        {
+            rateCount.set( 0 );
+        }
+        return rateCount.incrementAndGet() <= maxEventsPerSecond;
+    }
+
+    protected boolean enqueue( final LogbackLoggingEvent event )
+    {
+        final int limit = Level.ERROR == event.getLevel() ? queueSize : warnQueueSize;
+        final int size = queued.incrementAndGet();
+        if ( size > limit )
+        {
+            queued.decrementAndGet();
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        queue.offer( event );
+        if ( size == 1 )
+        {
+            final Thread thread = drainer;
+            if ( thread != null )
+            {
+                LockSupport.unpark( thread );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Posts the queued events, summarizes coalesced events whose window is over, and reports drops. Invoked by the
+     * drainer thread only.
+     */
+    @VisibleForTesting
+    void drain( final long now )
+    {
+        LogbackLoggingEvent event;
+        while ( ( event = queue.poll() ) != null )
+        {
+            queued.decrementAndGet();
+            post( event );
+        }
+
+        if ( now - lastSweep >= Math.min( coalesceWindowMillis, 1000L ) )
+        {
+            lastSweep = now;
+            for ( Iterator<Map.Entry<String, Occurrence>> itr = occurrences.entrySet().iterator(); itr.hasNext(); )
+            {
+                final Map.Entry<String, Occurrence> entry = itr.next();
+                final Occurrence occurrence = entry.getValue();
+                if ( now - occurrence.since >= coalesceWindowMillis
+                    && occurrences.remove( entry.getKey(), occurrence ) )
+                {
+                    summarize( occurrence, now, false );
+                }
+            }
+        }
+
+        final long drops = droppedCount.get() + rateLimitedCount.get();
+        if ( drops > reportedDrops && now - lastReport >= REPORT_INTERVAL_MILLIS )
+        {
+            final String message =
+                String.format( "Dropped %s logging events since last report (%s total dropped as queue was full,"
+                    + " %s total dropped by rate limit).", drops - reportedDrops, droppedCount.get(),
+                    rateLimitedCount.get() );
+            logger.info( message );
+            post( new LogbackLoggingEvent( LoggingEventForwarder.class.getName(), Level.WARN, message, null ) );
+            reportedDrops = drops;
+            lastReport = now;
+        }
+    }
+
+    private void summarize( final Occurrence occurrence, final long now, final boolean enqueue )
+    {
+        final int repeated = occurrence.repeated.get();
+        if ( repeated > 0 )
+        {
+            final LogbackLoggingEvent event = occurrence.event;
+            final LogbackLoggingEvent summary =
+                new LogbackLoggingEvent( event.getEventSender(), event.getLevel(), String.format(
+                    "%s [repeated %s more times in %s seconds]", event.getMessage(), repeated,
+                    TimeUnit.MILLISECONDS.toSeconds( now - occurrence.since ) ), event.getThrowable() );
+            if ( enqueue )
+            {
+                enqueue( summary );
+            }
+            else
+            {
+                post( summary );
+            }
+        }
+    }
+
+    protected void post( final LogbackLoggingEvent event )
+    {
+        try
+        {
+            eventBus.post( event );
+        }
+        catch ( Exception e )
+        {
+            // do not use WARN and above, it would loop back here
+            logger.debug( "Could not post logging event {}", event, e );
+        }
+    }
+
+    protected String keyOf( final LogbackLoggingEvent event )
+    {
+        final StringBuilder key = new StringBuilder();
+        key.append( event.getLevel() ).append( '|' ).append( event.getEventSender() ).append( '|' );
+        key.append( event.getMessage() );
+        if ( event.getThrowable() != null )
+        {
+            key.append( '|' ).append( event.getThrowable().getClass().getName() );
+        }
+        return key.toString();
+    }
+
+    // ==
+
+    private static class Occurrence
+    {
+        private final LogbackLoggingEvent event;
+
+        private final long since;
+
+        private final AtomicInteger repeated;
+
+        private Occurrence( final LogbackLoggingEvent event, final long since )
+        {
+            this.event = event;
+            this.since = since;
+            this.repeated = new AtomicInteger( 0 );
+        }
+    }
+}
@@ -12,6 +12,8 @@
  */
 package org.sonatype.nexus.log.internal;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.inject.Inject;
 
 import org.sonatype.sisu.goodies.eventbus.EventBus;
@@ -20,7 +22,8 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.UnsynchronizedAppenderBase;
 
 /**
- * Logback appender that will post the logging event.
+ * Logback appender that will post the logging event. Events are posted asynchronously using a
+ * {@link LoggingEventForwarder}, so logging threads are never blocked by event subscribers.
  * 
  * @author adreghiciu@gmail.com
  */
@@ -31,15 +34,42 @@ public class NexusEventSystemAppender
     @Inject
     private EventBus eventBus;
 
+    private final AtomicReference<LoggingEventForwarder> forwarder = new AtomicReference<LoggingEventForwarder>();
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected void append( ILoggingEvent eventObject )
     {
-        if ( eventBus != null )
+        LoggingEventForwarder current = forwarder.get();
+        if ( current == null && eventBus != null )
+        {
+            // event bus is injected after appender was started
+            current = new LoggingEventForwarder( eventBus );
+            if ( forwarder.compareAndSet( null, current ) )
+            {
+                current.start();
+            }
+            else
+            {
+                current = forwarder.get();
+            }
+        }
+        if ( current != null )
+        {
+            current.forward( eventObject );
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        super.stop();
+        final LoggingEventForwarder current = forwarder.getAndSet( null );
+        if ( current != null )
         {
-            eventBus.post( new LogbackLoggingEvent( eventObject ) );
+            current.stop();
         }
     }
 
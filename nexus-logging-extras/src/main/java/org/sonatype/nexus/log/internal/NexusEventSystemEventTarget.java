@@ -14,31 +14,61 @@ package org.sonatype.nexus.log.internal;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Initializable;
 import org.sonatype.nexus.logback.EventTarget;
-import org.sonatype.plexus.appevents.ApplicationEventMulticaster;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 
 /**
- * {@link EventTarget} that will post the incoming logging event to {@link EventBus}.
+ * {@link EventTarget} that will post the incoming logging event to {@link EventBus}. Posting happens asynchronously
+ * using a {@link LoggingEventForwarder}, so logging threads are never blocked by event subscribers.
  * 
  * @author cstamas
  * @since 2.2
  */
 @Component( role = EventTarget.class )
 public class NexusEventSystemEventTarget
-    implements EventTarget
+    implements EventTarget, Initializable, Disposable
 {
     @Requirement
     private EventBus eventBus;
 
+    private LoggingEventForwarder forwarder;
+
+    @Override
+    public void initialize()
+    {
+        forwarder = new LoggingEventForwarder( eventBus );
+        forwarder.start();
+    }
+
+    @Override
+    public void dispose()
+    {
+        if ( forwarder != null )
+        {
+            forwarder.stop();
+        }
+    }
+
     @Override
     public void onEvent( final ILoggingEvent eventObject )
     {
-        if ( eventBus != null )
+        if ( forwarder != null )
         {
-            eventBus.post( new LogbackLoggingEvent( eventObject ) );
+            forwarder.forward( eventObject );
         }
     }
+
+    /**
+     * Returns the forwarder used to post events, to access it's statistics.
+     * 
+     * @since 2.4
+     */
+    public LoggingEventForwarder getForwarder()
+    {
+        return forwarder;
+    }
 }
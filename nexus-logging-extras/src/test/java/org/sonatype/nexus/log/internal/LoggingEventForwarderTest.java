@@ -0,0 +1,120 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.log.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.sonatype.nexus.logging.LoggingEvent.Level;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class LoggingEventForwarderTest
+    extends TestSupport
+{
+    @Mock
+    private EventBus eventBus;
+
+    @Test
+    public void identicalEventsAreCoalesced()
+    {
+        final LoggingEventForwarder forwarder = new LoggingEventForwarder( eventBus, 16, 0, 1000L );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            forwarder.forward( event( Level.WARN, "Remote peer unavailable" ), 100L + i );
+        }
+        forwarder.drain( 200L );
+        forwarder.drain( 1200L );
+
+        final List<LogbackLoggingEvent> posted = posted();
+        assertThat( posted, hasSize( 2 ) );
+        assertThat( posted.get( 0 ).getMessage(), equalTo( "Remote peer unavailable" ) );
+        assertThat( posted.get( 1 ).getMessage(), containsString( "repeated 4 more times" ) );
+        assertThat( forwarder.getCoalescedCount(), equalTo( 4L ) );
+    }
+
+    @Test
+    public void eventsOverRateAreDropped()
+    {
+        final LoggingEventForwarder forwarder = new LoggingEventForwarder( eventBus, 16, 2, 0L );
+
+        assertThat( forwarder.forward( event( Level.WARN, "one" ), 1000L ), equalTo( true ) );
+        assertThat( forwarder.forward( event( Level.WARN, "two" ), 1100L ), equalTo( true ) );
+        assertThat( forwarder.forward( event( Level.WARN, "three" ), 1200L ), equalTo( false ) );
+        assertThat( forwarder.forward( event( Level.WARN, "four" ), 2000L ), equalTo( true ) );
+
+        assertThat( forwarder.getRateLimitedCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void fullQueueDropsWarningsBeforeErrors()
+    {
+        final LoggingEventForwarder forwarder = new LoggingEventForwarder( eventBus, 8, 0, 0L );
+
+        for ( int i = 0; i < 7; i++ )
+        {
+            assertThat( forwarder.forward( event( Level.WARN, "warn " + i ), 0L ), equalTo( true ) );
+        }
+        assertThat( forwarder.forward( event( Level.WARN, "warn 7" ), 0L ), equalTo( false ) );
+        assertThat( forwarder.forward( event( Level.ERROR, "error 0" ), 0L ), equalTo( true ) );
+        assertThat( forwarder.forward( event( Level.ERROR, "error 1" ), 0L ), equalTo( false ) );
+
+        assertThat( forwarder.getDroppedCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void dropsAreReported()
+    {
+        final LoggingEventForwarder forwarder = new LoggingEventForwarder( eventBus, 1, 0, 0L );
+
+        forwarder.forward( event( Level.ERROR, "error 0" ), 0L );
+        forwarder.forward( event( Level.ERROR, "error 1" ), 0L );
+        forwarder.drain( 3600000L );
+
+        final List<LogbackLoggingEvent> posted = posted();
+        assertThat( posted, hasSize( 2 ) );
+        assertThat( posted.get( 0 ).getMessage(), equalTo( "error 0" ) );
+        assertThat( posted.get( 1 ).getLevel(), equalTo( Level.WARN ) );
+        assertThat( posted.get( 1 ).getMessage(), containsString( "Dropped 1 logging events" ) );
+    }
+
+    // ==
+
+    private LogbackLoggingEvent event( final Level level, final String message )
+    {
+        return new LogbackLoggingEvent( "org.sonatype.Test", level, message, null );
+    }
+
+    private List<LogbackLoggingEvent> posted()
+    {
+        final ArgumentCaptor<Object> captor = ArgumentCaptor.forClass( Object.class );
+        verify( eventBus, atLeastOnce() ).post( captor.capture() );
+        final List<LogbackLoggingEvent> result = new ArrayList<LogbackLoggingEvent>();
+        for ( Object event : captor.getAllValues() )
+        {
+            result.add( (LogbackLoggingEvent) event );
+        }
+        return result;
+    }
+}
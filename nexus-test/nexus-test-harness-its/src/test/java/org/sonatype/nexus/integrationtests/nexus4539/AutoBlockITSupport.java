@@ -57,6 +57,9 @@ public abstract class AutoBlockITSupport
 
     protected static final String REPO = "basic";
 
+    protected static final String CIRCUIT_BREAKER_MINIMUM_CALLS =
+        "org.sonatype.nexus.proxy.circuitbreaker.CircuitBreakerManager.minimumCalls";
+
     protected ControlledServer server;
 
     protected Integer sleepTime;
@@ -112,7 +115,8 @@ public abstract class AutoBlockITSupport
     }
 
     /**
-     * Just request anything so if request is processed and error happens, it will auto block immediately
+     * Just request anything so if request is processed and error happens, it will auto block immediately (circuit
+     * breakers are set up by {@link #fixAutoblockTime()} to open on first failure).
      */
     protected void shakeNexus()
         throws IOException
@@ -249,12 +253,15 @@ public abstract class AutoBlockITSupport
     {
         // NEXUS-4539 - to get test faster reduced autoblock check from 5 minutes to 30 seconds
         System.setProperty( "plexus.autoblock.remote.status.retain.time", String.valueOf( 30 * 1000 ) );
+        // circuit breakers need minimumCalls outcomes before opening (and auto blocking), make one failure enough
+        System.setProperty( CIRCUIT_BREAKER_MINIMUM_CALLS, "1" );
     }
 
     @AfterClass
     public static void restoreAutoblockTime()
     {
         System.clearProperty( "plexus.autoblock.remote.status.retain.time" );
+        System.clearProperty( CIRCUIT_BREAKER_MINIMUM_CALLS );
     }
 
 }
@@ -14,7 +14,9 @@ package org.sonatype.nexus.integrationtests.proxy.nexus1111;
 
 import static org.sonatype.tests.http.server.fluent.Behaviours.error;
 
+import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.restlet.data.MediaType;
@@ -36,11 +38,28 @@ public class Nexus1111ProxyRemote500ErrorIT
     extends AbstractNexusProxyIntegrationTest
 {
 
+    private static final String CIRCUIT_BREAKER_MINIMUM_CALLS =
+        "org.sonatype.nexus.proxy.circuitbreaker.CircuitBreakerManager.minimumCalls";
+
     public Nexus1111ProxyRemote500ErrorIT()
     {
         super( "release-proxy-repo-1" );
     }
 
+    @BeforeClass
+    public static void openCircuitBreakerOnFirstFailure()
+    {
+        // repository is auto blocked once it's circuit breaker opens, and by default the breaker needs 5 recorded
+        // outcomes to consider failure rate, while this test expects one HTTP 500 to auto block the repository
+        System.setProperty( CIRCUIT_BREAKER_MINIMUM_CALLS, "1" );
+    }
+
+    @AfterClass
+    public static void restoreCircuitBreakerMinimumCalls()
+    {
+        System.clearProperty( CIRCUIT_BREAKER_MINIMUM_CALLS );
+    }
+
     @Test @Category( PROXY.class )
     public void remote500Error()
         throws Exception
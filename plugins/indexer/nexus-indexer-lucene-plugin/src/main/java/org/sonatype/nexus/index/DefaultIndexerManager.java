@@ -12,26 +12,37 @@
  */
 package org.sonatype.nexus.index;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -47,7 +58,10 @@ import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.MMapDirectory;
@@ -80,6 +94,7 @@ import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index.context.MergedIndexingContext;
 import org.apache.maven.index.context.StaticContextMemberProvider;
 import org.apache.maven.index.expr.SearchExpression;
+import org.apache.maven.index.incremental.IncrementalHandler;
 import org.apache.maven.index.packer.IndexPacker;
 import org.apache.maven.index.packer.IndexPackingRequest;
 import org.apache.maven.index.packer.IndexPackingRequest.IndexFormat;
@@ -87,6 +102,7 @@ import org.apache.maven.index.treeview.IndexTreeView;
 import org.apache.maven.index.treeview.TreeNode;
 import org.apache.maven.index.treeview.TreeNodeFactory;
 import org.apache.maven.index.treeview.TreeViewRequest;
+import org.apache.maven.index.updater.IndexDataWriter;
 import org.apache.maven.index.updater.IndexUpdateRequest;
 import org.apache.maven.index.updater.IndexUpdateResult;
 import org.apache.maven.index.updater.IndexUpdater;
@@ -97,6 +113,8 @@ import org.codehaus.plexus.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonatype.nexus.configuration.application.NexusConfiguration;
+import org.sonatype.nexus.index.IndexChangeTracker.PublishMode;
+import org.sonatype.nexus.index.treeview.IndexTreeNodeCache;
 import org.sonatype.nexus.maven.tasks.SnapshotRemover;
 import org.sonatype.nexus.mime.MimeSupport;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
@@ -125,7 +143,9 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.repository.ShadowRepository;
 import org.sonatype.nexus.proxy.storage.local.fs.DefaultFSLocalRepositoryStorage;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.nexus.util.CompositeException;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.scheduling.TaskInterruptedException;
 import org.sonatype.scheduling.TaskUtil;
 
@@ -188,6 +208,13 @@ public class DefaultIndexerManager
 {
     private static final String ARTIFICIAL_EXCEPTION = "This is an artificial exception that provides caller backtrace.";
 
+    /**
+     * Maximum count of SHA1s kept in in-memory SHA1 index, about 32 bytes of heap each. Setting it to 0 disables the
+     * SHA1 index, all checksum lookups will go to Lucene.
+     */
+    private static final int SHA1_INDEX_MAX_ENTRIES = SystemPropertiesHelper.getInteger(
+        "org.sonatype.nexus.index.DefaultIndexerManager.sha1IndexMaxEntries", 2000000 );
+
     /** The key used in working directory. */
     public static final String INDEXER_WORKING_DIRECTORY_KEY = "indexer";
 
@@ -250,6 +277,9 @@ public class DefaultIndexerManager
     @Inject
     private IndexPacker indexPacker;
 
+    @Inject
+    private IncrementalHandler incrementalHandler;
+
     @Inject
     private NexusConfiguration nexusConfiguration;
 
@@ -275,6 +305,9 @@ public class DefaultIndexerManager
     @Inject
     private IndexTreeView indexTreeView;
 
+    @Inject
+    private IndexTreeNodeCache indexTreeNodeCache;
+
     @Inject
     private Scanner scanner;
 
@@ -301,6 +334,28 @@ public class DefaultIndexerManager
     @Named( "${nexus.indexer.locktimeout:-60}" )
     private int lockTimeoutSeconds;
 
+    /**
+     * When true, indexing contexts of non-group repositories are only registered when added, and opened on first use.
+     */
+    @Inject
+    @Named( "${nexus.indexer.lazyContexts:-true}" )
+    private boolean lazyContextsEnabled;
+
+    /**
+     * Time, in seconds, after which lazily opened indexing context that was not used is closed.
+     */
+    @Inject
+    @Named( "${nexus.indexer.contextIdleTimeout:-1800}" )
+    private int contextIdleTimeoutSeconds;
+
+    /**
+     * Maximum number of lazily opened indexing contexts kept open, least recently used idle contexts above this number
+     * are closed even before their idle timeout.
+     */
+    @Inject
+    @Named( "${nexus.indexer.maxOpenContexts:-50}" )
+    private int maxOpenContexts;
+
     /**
      * Locks that protect access to repository index. Item-level add/remove and search operations must acquire read
      * lock. Index-level add/remove/reindex must acquire exclusive lock.
@@ -325,6 +380,62 @@ public class DefaultIndexerManager
      */
     private final ConcurrentMap<String, Thread> deleteThreads = new ConcurrentHashMap<String, Thread>();
 
+    /**
+     * Repositories with lazily opened indexing contexts, keyed by repository id. Presence in this map means the context
+     * is registered, it is open if it is present in the NexusIndexer too. Guarded by the repository locks: contexts are
+     * opened holding at least shared lock and are closed holding exclusive lock.
+     */
+    private final ConcurrentMap<String, LazyContext> lazyContexts = new ConcurrentHashMap<String, LazyContext>();
+
+    /**
+     * Periodically closes idle lazily opened indexing contexts.
+     */
+    private final ScheduledThreadPoolExecutor contextCloser;
+
+    /**
+     * Changes of repository indexes since they were last published, used to decide between skipping the publish,
+     * publishing incremental chunk only and full repack.
+     */
+    private final IndexChangeTracker indexChangeTracker = new IndexChangeTracker();
+
+    /**
+     * In-memory SHA1 index of all repositories, used to answer checksum lookups of not indexed SHA1s without searching
+     * the indexes. Replaced as whole when rebuilt.
+     */
+    private volatile Sha1Index sha1Index = new Sha1Index( 0, SHA1_INDEX_MAX_ENTRIES );
+
+    /**
+     * Loads SHA1s of repository indexes into {@link #sha1Index} in background.
+     */
+    private final ThreadPoolExecutor sha1IndexLoader;
+
+    public DefaultIndexerManager()
+    {
+        this.sha1IndexLoader =
+            new ThreadPoolExecutor( 1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<java.lang.Runnable>(),
+                new NexusThreadFactory( "nxindexer", "SHA1 Index Loader" ) );
+        this.sha1IndexLoader.allowCoreThreadTimeOut( true );
+
+        this.contextCloser =
+            new ScheduledThreadPoolExecutor( 1, new NexusThreadFactory( "nxindexer", "Idle Context Closer",
+                Thread.NORM_PRIORITY, true ) );
+        this.contextCloser.scheduleWithFixedDelay( new java.lang.Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    closeIdleContexts();
+                }
+                catch ( Exception e )
+                {
+                    logger.warn( "Could not close idle indexing contexts", e );
+                }
+            }
+        }, 1, 1, TimeUnit.MINUTES );
+    }
+
     private File workingDirectory;
 
     private File tempDirectory;
@@ -341,6 +452,12 @@ public class DefaultIndexerManager
         this.scanner = scanner;
     }
 
+    @VisibleForTesting
+    protected void setContextIdleTimeoutSeconds( final int contextIdleTimeoutSeconds )
+    {
+        this.contextIdleTimeoutSeconds = contextIdleTimeoutSeconds;
+    }
+
     protected File getWorkingDirectory()
     {
         if ( workingDirectory == null )
@@ -368,11 +485,29 @@ public class DefaultIndexerManager
     {
         logger.info( "Shutting down Nexus IndexerManager" );
 
+        contextCloser.shutdownNow();
+
+        // stop loading SHA1s before contexts are removed below
+        sha1IndexLoader.shutdownNow();
+        try
+        {
+            if ( !sha1IndexLoader.awaitTermination( 5L, TimeUnit.SECONDS ) )
+            {
+                logger.warn( "SHA1 index loader did not terminate in time" );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+
         for ( IndexingContext ctx : mavenIndexer.getIndexingContexts().values() )
         {
             mavenIndexer.removeIndexingContext( ctx, false );
         }
 
+        lazyContexts.clear();
+
         synchronized ( repositoryLocks )
         {
             repositoryLocks.clear();
@@ -445,37 +580,166 @@ public class DefaultIndexerManager
             return;
         }
 
-        IndexingContext ctx = null;
-
-        File indexDirectory = getRepositoryIndexDirectory( repository );
-
-        final File repoRoot = getRepositoryLocalStorageAsFile( repository );
-
         if ( repository.getRepositoryKind().isFacetAvailable( GroupRepository.class ) )
         {
             // this is a marker context, it is not used for anything useful
-            ctx =
+            IndexingContext ctx =
                 mavenIndexer.addMergedIndexingContext( getContextId( repository.getId() ), repository.getId(),
-                                                       repoRoot, indexDirectory, repository.isSearchable(),
+                                                       getRepositoryLocalStorageAsFile( repository ),
+                                                       getRepositoryIndexDirectory( repository ),
+                                                       repository.isSearchable(),
                                                        Collections.<IndexingContext> emptyList() );
+            ctx.setSearchable( repository.isSearchable() );
+        }
+        else if ( lazyContextsEnabled )
+        {
+            // just register, context is opened on first use
+            lazyContexts.put( repository.getId(), new LazyContext( repository ) );
         }
         else
         {
             // add context for repository
-            ctx = new NexusIndexingContext( getContextId( repository.getId() ), // id
-                                              repository.getId(), // repositoryId
-                                              repoRoot, // repository
-                                              openFSDirectory( indexDirectory ), // indexDirectory
-                                              null, // repositoryUrl
-                                              null, // indexUpdateUrl
-                                              indexCreators, //
-                                              true, // reclaimIndex
-                                              ISPROXY( repository ) );
-            mavenIndexer.addIndexingContext( ctx );
+            mavenIndexer.addIndexingContext( createRepositoryIndexContext( repository ) );
         }
+
+        indexChangeTracker.forget( repository.getId() );
+        indexTreeNodeCache.invalidate( repository.getId() );
+        loadSha1Index( repository );
+
+        logger.debug( "Added indexing context {} for repository {}", getContextId( repository.getId() ),
+                      repository.getId() );
+    }
+
+    private IndexingContext createRepositoryIndexContext( final Repository repository )
+        throws IOException
+    {
+        final IndexingContext ctx =
+            new NexusIndexingContext( getContextId( repository.getId() ), // id
+                                      repository.getId(), // repositoryId
+                                      getRepositoryLocalStorageAsFile( repository ), // repository
+                                      openFSDirectory( getRepositoryIndexDirectory( repository ) ), // indexDirectory
+                                      null, // repositoryUrl
+                                      null, // indexUpdateUrl
+                                      indexCreators, //
+                                      true, // reclaimIndex
+                                      ISPROXY( repository ) );
         ctx.setSearchable( repository.isSearchable() );
+        return ctx;
+    }
 
-        logger.debug( "Added indexing context {} for repository {}", ctx.getId(), repository.getId() );
+    /**
+     * Opens lazily registered indexing context. Caller must hold at least shared repository lock.
+     */
+    private IndexingContext openLazyContext( final LazyContext lazy )
+    {
+        synchronized ( lazy )
+        {
+            final String repositoryId = lazy.repository.getId();
+            IndexingContext context = mavenIndexer.getIndexingContexts().get( getContextId( repositoryId ) );
+            if ( context == null && lazyContexts.get( repositoryId ) == lazy )
+            {
+                try
+                {
+                    context = createRepositoryIndexContext( lazy.repository );
+                    mavenIndexer.addIndexingContext( context );
+                    logger.debug( "Opened indexing context for repository {}", repositoryId );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( "Could not open indexing context for repository {}", repositoryId, e );
+                }
+            }
+            return context;
+        }
+    }
+
+    /**
+     * Closes lazily registered indexing context if it is open and not in use, it stays registered.
+     * 
+     * @return true if the context was closed.
+     */
+    private boolean closeLazyContext( final LazyContext lazy )
+    {
+        final String repositoryId = lazy.repository.getId();
+
+        // never wait, context in use is not idle
+        final Lock lock = tryExclusiveRepositoryLock( lazy.repository );
+        if ( lock == null )
+        {
+            return false;
+        }
+
+        try
+        {
+            final IndexingContext context = mavenIndexer.getIndexingContexts().get( getContextId( repositoryId ) );
+            if ( context == null || lazyContexts.get( repositoryId ) != lazy )
+            {
+                return false;
+            }
+            mavenIndexer.removeIndexingContext( context, false );
+            logger.debug( "Closed idle indexing context for repository {}", repositoryId );
+            return true;
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Could not close idle indexing context for repository {}", repositoryId, e );
+            return false;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes lazily opened contexts that were not used for idle timeout, and least recently used ones above the cap of
+     * open contexts.
+     */
+    @VisibleForTesting
+    protected void closeIdleContexts()
+    {
+        final long idleSince = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis( contextIdleTimeoutSeconds );
+
+        // snapshot of last use times, they change while we work
+        final List<Map.Entry<LazyContext, Long>> open = new ArrayList<Map.Entry<LazyContext, Long>>();
+        for ( LazyContext lazy : lazyContexts.values() )
+        {
+            if ( mavenIndexer.getIndexingContexts().containsKey( getContextId( lazy.repository.getId() ) ) )
+            {
+                open.add( new AbstractMap.SimpleEntry<LazyContext, Long>( lazy, lazy.lastUsed ) );
+            }
+        }
+        Collections.sort( open, new Comparator<Map.Entry<LazyContext, Long>>()
+        {
+            @Override
+            public int compare( final Map.Entry<LazyContext, Long> o1, final Map.Entry<LazyContext, Long> o2 )
+            {
+                return o1.getValue().compareTo( o2.getValue() );
+            }
+        } );
+
+        int excess = open.size() - maxOpenContexts;
+        for ( Map.Entry<LazyContext, Long> entry : open )
+        {
+            if ( excess <= 0 && entry.getValue().longValue() > idleSince )
+            {
+                // sorted, all the rest is used recently
+                break;
+            }
+            if ( closeLazyContext( entry.getKey() ) )
+            {
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * Returns true if repository has indexing context, either open or registered to be opened lazily.
+     */
+    private boolean hasRepositoryIndexContext( final Repository repository )
+    {
+        return lazyContexts.containsKey( repository.getId() )
+            || mavenIndexer.getIndexingContexts().containsKey( getContextId( repository.getId() ) );
     }
 
     private File getRepositoryIndexDirectory( final Repository repository )
@@ -542,12 +806,19 @@ public class DefaultIndexerManager
                                                      final IndexingContext context )
         throws IOException
     {
+        lazyContexts.remove( repository.getId() );
+
         if ( context != null )
         {
             logger.debug( "Removing indexing context for repository {} deleteFiles={}", repository.getId(), deleteFiles );
 
             mavenIndexer.removeIndexingContext( context, deleteFiles );
 
+            indexChangeTracker.forget( repository.getId() );
+            indexTreeNodeCache.invalidate( repository.getId() );
+            // SHA1s of removed repository would stay in SHA1 index forever
+            rebuildSha1Index();
+
             logger.debug( "Removed indexing context {} for repository {}", context.getId(), repository.getId() );
         }
         else
@@ -623,14 +894,45 @@ public class DefaultIndexerManager
     }
 
     /**
-     * Returns "raw" unprotected repository IndexingContext. Most clients should use shared() or exclusive() methods to
-     * manipulate repository indexes.
+     * Returns "raw" unprotected repository IndexingContext, opening lazily registered context if needed. Most clients
+     * should use shared() or exclusive() methods to manipulate repository indexes.
      *
      * @noreference this method is public for test purposes only
      */
     public IndexingContext getRepositoryIndexContext( Repository repository )
     {
-        return mavenIndexer.getIndexingContexts().get( getContextId( repository.getId() ) );
+        return getRepositoryIndexContext( repository.getId() );
+    }
+
+    /**
+     * Returns the index generation of the repository, a number that changes whenever the repository index changes. For
+     * groups, it changes whenever index of the group or of any of its members changes, and whenever (transitive)
+     * members of the group change. Meant to validate caches of data derived from repository index, the value is only
+     * meant to be compared for equality, and has no meaning across Nexus restarts.
+     *
+     * @since 2.4
+     */
+    public long getIndexGeneration( final Repository repository )
+    {
+        long generation = indexChangeTracker.getGeneration( repository.getId() );
+
+        if ( ISGROUP( repository ) )
+        {
+            final Map<String, Repository> members =
+                addGroupMembers( new HashMap<String, Repository>(), repository.adaptToFacet( GroupRepository.class ) );
+
+            for ( String memberId : members.keySet() )
+            {
+                generation = Math.max( generation, indexChangeTracker.getGeneration( memberId ) );
+            }
+
+            // removing a member does not change the max, nor does adding a member that did not change lately
+            final List<String> memberIds = new ArrayList<String>( members.keySet() );
+            Collections.sort( memberIds );
+            generation = 31 * generation + memberIds.hashCode();
+        }
+
+        return generation;
     }
 
     /**
@@ -771,8 +1073,22 @@ public class DefaultIndexerManager
                 }
             }
 
+            // tree view only needs to drop parent nodes if a new artifact appears
+            final boolean structural = ac != null && !isIndexed( context, ac.getArtifactInfo().getUinfo() );
+
             // and finally: index it
             getNexusIndexer().addArtifactToIndex( ac, context );
+
+            if ( ac != null )
+            {
+                indexChangeTracker.itemChanged( repository.getId() );
+                indexTreeNodeCache.invalidate( repository.getId(), item.getRepositoryItemUid().getPath(), structural );
+                if ( ac.getArtifactInfo().sha1 != null )
+                {
+                    // read after index update, so adds racing with rebuild land in rebuilt SHA1 index
+                    sha1Index.add( repository.getId(), ac.getArtifactInfo().sha1 );
+                }
+            }
         }
         finally
         {
@@ -780,6 +1096,23 @@ public class DefaultIndexerManager
         }
     }
 
+    /**
+     * Returns {@code true} if the index of the context already contains document with given UINFO.
+     */
+    private boolean isIndexed( final IndexingContext context, final String uinfo )
+        throws IOException
+    {
+        final IndexSearcher indexSearcher = context.acquireIndexSearcher();
+        try
+        {
+            return indexSearcher.search( new TermQuery( new Term( ArtifactInfo.UINFO, uinfo ) ), 1 ).totalHits > 0;
+        }
+        finally
+        {
+            context.releaseIndexSearcher( indexSearcher );
+        }
+    }
+
     public void removeItemFromIndex( final Repository repository, final StorageItem item )
         throws IOException
     {
@@ -865,6 +1198,14 @@ public class DefaultIndexerManager
             try
             {
                 getNexusIndexer().deleteArtifactFromIndex( ac, context );
+
+                indexChangeTracker.itemChanged( repository.getId() );
+                indexTreeNodeCache.invalidate( repository.getId(), item.getRepositoryItemUid().getPath(), true );
+                sha1Index.removed();
+                if ( sha1Index.isRebuildNeeded() )
+                {
+                    rebuildSha1Index();
+                }
             }
             finally
             {
@@ -1047,6 +1388,10 @@ public class DefaultIndexerManager
                 {
                     // scans directly into "real" ctx
                     sharedSingle( repository, runnable );
+                    // scanned documents are timestamped, they will be picked up by incremental publish
+                    indexChangeTracker.itemChanged( repository.getId() );
+                    indexTreeNodeCache.invalidate( repository.getId() );
+                    loadSha1Index( repository );
                 }
 
                 logger.debug( "Reindexed repository {}", repository.getId() );
@@ -1266,6 +1611,11 @@ public class DefaultIndexerManager
 
             if ( hasRemoteIndexUpdate )
             {
+                // merged remote documents carry remote timestamps, incremental chunk would miss them
+                indexChangeTracker.indexChanged( repository.getId() );
+                indexTreeNodeCache.invalidate( repository.getId() );
+                loadSha1Index( repository );
+
                 logger.info(
                     RepositoryStringUtils.getFormattedMessage(
                         "Remote indexes updated successfully for repository %s", repository ) );
@@ -1357,7 +1707,13 @@ public class DefaultIndexerManager
     public void publishAllIndex()
         throws IOException
     {
-        logger.debug( "Publishing indexes for all repositories" );
+        publishAllIndex( true );
+    }
+
+    public void publishAllIndex( final boolean fullRepack )
+        throws IOException
+    {
+        logger.debug( "Publishing indexes for all repositories fullRepack={}", fullRepack );
 
         final List<Repository> reposes = repositoryRegistry.getRepositories();
         final ArrayList<IOException> exceptions = new ArrayList<IOException>();
@@ -1366,7 +1722,7 @@ public class DefaultIndexerManager
         {
             try
             {
-                publishRepositoryIndex( repository );
+                publishRepositoryIndex( repository, fullRepack );
             }
             catch ( IOException e )
             {
@@ -1382,12 +1738,19 @@ public class DefaultIndexerManager
 
     public void publishRepositoryIndex( final String repositoryId )
         throws IOException, NoSuchRepositoryException
+    {
+        publishRepositoryIndex( repositoryId, true );
+    }
+
+    public void publishRepositoryIndex( final String repositoryId, final boolean fullRepack )
+        throws IOException, NoSuchRepositoryException
     {
         final Repository repository = repositoryRegistry.getRepository( repositoryId );
-        publishRepositoryIndex( repository, new HashSet<String>() );
+        publishRepositoryIndex( repository, fullRepack, new HashSet<String>() );
     }
 
-    protected void publishRepositoryIndex( final Repository repository, Set<String> processedRepositoryIds )
+    protected void publishRepositoryIndex( final Repository repository, final boolean fullRepack,
+                                           final Set<String> processedRepositoryIds )
         throws IOException
     {
         if ( !processedRepositoryIds.add( repository.getId() ) )
@@ -1406,18 +1769,30 @@ public class DefaultIndexerManager
                 {
                     TaskUtil.checkInterruption();
 
-                    publishRepositoryIndex( member, processedRepositoryIds );
+                    publishRepositoryIndex( member, fullRepack, processedRepositoryIds );
                 }
             }
         }
 
         TaskUtil.checkInterruption();
 
-        publishRepositoryIndex( repository );
+        publishRepositoryIndex( repository, fullRepack );
     }
 
     protected void publishRepositoryIndex( final Repository repository )
         throws IOException
+    {
+        publishRepositoryIndex( repository, true );
+    }
+
+    /**
+     * Publishes repository index. Unless full repack is requested, documents changed since last publish are published
+     * as a new incremental chunk (with refreshed full index file), and nothing is published at all if the index did
+     * not change. Full repack is still performed if the index changed in bulk since last publish, if there is no
+     * published index to build upon or if the repository is a group (group index changes with its members).
+     */
+    protected void publishRepositoryIndex( final Repository repository, final boolean fullRepack )
+        throws IOException
     {
         if ( !INDEXABLE( repository ) || !INSERVICE( repository ) )
         {
@@ -1427,8 +1802,41 @@ public class DefaultIndexerManager
         ForceableReentrantLock reindexLock = getReindexLock( repository );
         if ( reindexLock.tryLock() )
         {
+            final PublishMode mode = indexChangeTracker.take( repository.getId() );
+            boolean published = false;
             try
             {
+                if ( !fullRepack && !ISGROUP( repository ) && mode != PublishMode.FULL )
+                {
+                    if ( mode == PublishMode.NONE )
+                    {
+                        logger.debug( "Index of repository {} did not change since last publish, skipping",
+                                      repository.getId() );
+                        published = true;
+                        return;
+                    }
+
+                    final Properties publishedProperties = readPublishedIndexProperties( repository );
+                    if ( publishedProperties != null )
+                    {
+                        final boolean[] chunked = new boolean[1];
+                        sharedSingle( repository, new Runnable()
+                        {
+                            @Override
+                            public void run( IndexingContext context )
+                                throws IOException
+                            {
+                                chunked[0] = publishRepositoryIndexChunk( repository, context, publishedProperties );
+                            }
+                        } );
+                        if ( chunked[0] )
+                        {
+                            published = true;
+                            return;
+                        }
+                    }
+                }
+
                 shared( repository, new Runnable()
                 {
                     @Override
@@ -1438,9 +1846,15 @@ public class DefaultIndexerManager
                         publishRepositoryIndex( repository, context );
                     }
                 } );
+                published = true;
             }
             finally
             {
+                if ( !published )
+                {
+                    // hand back the pending work, so next publish does not lose it
+                    indexChangeTracker.escalate( repository.getId(), mode );
+                }
                 reindexLock.unlock();
             }
         }
@@ -1464,15 +1878,19 @@ public class DefaultIndexerManager
 
             logger.info( "Publishing index for repository " + repository.getId() );
 
-            targetDir = new File( getTempDirectory(), "nx-index-" + Long.toHexString( System.nanoTime() ) );
+            targetDir = createPublishingTempDirectory();
 
-            if ( !targetDir.mkdirs() )
+            // packer continues the chunk chain of the published index, as it may have been extended by
+            // incremental publishing since last full repack
+            final Properties publishedProperties = readPublishedIndexProperties( repository );
+            if ( publishedProperties != null )
             {
-                throw new IOException( "Could not create temp dir for packing indexes: " + targetDir );
+                writeIndexProperties( publishedProperties, targetDir );
             }
 
             IndexPackingRequest packReq = new IndexPackingRequest( context, targetDir );
             packReq.setCreateIncrementalChunks( true );
+            packReq.setUseTargetProperties( true );
 
             // not publishing legacy format anymore
             packReq.setFormats( Arrays.asList( IndexFormat.FORMAT_V1 ) );
@@ -1494,32 +1912,193 @@ public class DefaultIndexerManager
         }
         finally
         {
-            Exception lastException = null;
+            deletePublishingTempDirectory( targetDir );
+        }
+    }
 
-            if ( targetDir != null )
+    /**
+     * Publishes documents changed since the published index was created (or last extended) as new incremental chunk,
+     * without repacking the whole index (no legacy format, no packer). The full index file is rewritten as well, as
+     * consumers doing full download record the timestamp and chunk counter of published properties, and would miss the
+     * documents of the chunk if the full index file lagged behind.
+     *
+     * @return false if published index properties cannot be used to extend the chunk chain, true otherwise.
+     */
+    private boolean publishRepositoryIndexChunk( final Repository repository, final IndexingContext context,
+                                                 final Properties properties )
+        throws IOException
+    {
+        File targetDir = null;
+
+        try
+        {
+            TaskUtil.checkInterruption();
+
+            targetDir = createPublishingTempDirectory();
+
+            // taken before documents are collected, so concurrent changes are not lost but land in next chunk as well
+            final Date timestamp = new Date();
+
+            final List<Integer> chunk =
+                incrementalHandler.getIncrementalUpdates( new IndexPackingRequest( context, targetDir ), properties );
+
+            if ( chunk == null )
             {
-                try
-                {
-                    if ( logger.isDebugEnabled() )
-                    {
-                        logger.debug( "Cleanup of temp files..." );
-                    }
+                logger.debug( "Published index of repository {} cannot be extended incrementally", repository.getId() );
+                return false;
+            }
 
-                    FileUtils.deleteDirectory( targetDir );
-                }
-                catch ( IOException e )
-                {
-                    lastException = e;
+            if ( chunk.isEmpty() )
+            {
+                logger.debug( "No index changes to publish for repository {}", repository.getId() );
+                return true;
+            }
 
-                    logger.warn( "Cleanup of temp files FAILED...", e );
-                }
+            logger.info( "Publishing incremental index chunk of {} documents for repository {}", chunk.size(),
+                         repository.getId() );
+
+            context.updateTimestamp( true, timestamp );
+
+            final File chunkFile =
+                new File( targetDir, IndexingContext.INDEX_FILE_PREFIX + "."
+                    + properties.getProperty( IndexingContext.INDEX_CHUNK_PREFIX + "0" ) + ".gz" );
+
+            writeIndexData( context, chunk, chunkFile );
+
+            // full index file must match the advertised timestamp and chunk counter
+            final File indexFile = new File( targetDir, IndexingContext.INDEX_FILE_PREFIX + ".gz" );
+            writeIndexData( context, null, indexFile );
+
+            final SimpleDateFormat df = new SimpleDateFormat( IndexingContext.INDEX_TIME_FORMAT );
+            df.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+            properties.setProperty( IndexingContext.INDEX_TIMESTAMP, df.format( timestamp ) );
+
+            // data goes first, consumers look at properties to find out about it
+            storeIndexItem( repository, chunkFile, context );
+            storeIndexItem( repository, indexFile, context );
+            storeIndexItem( repository, writeIndexProperties( properties, targetDir ), context );
+
+            logger.debug( "Published incremental index chunk for repository {}", repository.getId() );
+
+            return true;
+        }
+        finally
+        {
+            deletePublishingTempDirectory( targetDir );
+        }
+    }
+
+    /**
+     * Writes given documents of the context (all of them if {@code docIndexes} is null) in index data format.
+     */
+    private void writeIndexData( final IndexingContext context, final List<Integer> docIndexes, final File file )
+        throws IOException
+    {
+        OutputStream os = null;
+        try
+        {
+            os = new BufferedOutputStream( new FileOutputStream( file ) );
+            new IndexDataWriter( os ).write( context, docIndexes );
+            os.flush();
+        }
+        finally
+        {
+            IOUtil.close( os );
+        }
+    }
+
+    /**
+     * Reads properties of the published repository index, returns null if there is no published index.
+     */
+    private Properties readPublishedIndexProperties( final Repository repository )
+    {
+        final ResourceStoreRequest request =
+            new ResourceStoreRequest( PUBLISHING_PATH_PREFIX + "/" + IndexingContext.INDEX_FILE_PREFIX
+                + ".properties" );
+
+        InputStream is = null;
+
+        try
+        {
+            final StorageItem item = repository.getLocalStorage().retrieveItem( repository, request );
+
+            if ( item instanceof StorageFileItem )
+            {
+                is = ( (StorageFileItem) item ).getInputStream();
+
+                final Properties properties = new Properties();
+                properties.load( is );
+                return properties;
             }
+        }
+        catch ( ItemNotFoundException e )
+        {
+            // nothing serious, no index was published yet
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Cannot read published index properties of repository " + repository.getId(), e );
+        }
+        finally
+        {
+            IOUtil.close( is );
+        }
+
+        return null;
+    }
+
+    private File writeIndexProperties( final Properties properties, final File targetDir )
+        throws IOException
+    {
+        final File file = new File( targetDir, IndexingContext.INDEX_FILE_PREFIX + ".properties" );
+
+        OutputStream os = null;
+        try
+        {
+            os = new FileOutputStream( file );
+            properties.store( os, null );
+            os.flush();
+        }
+        finally
+        {
+            IOUtil.close( os );
+        }
+
+        return file;
+    }
+
+    private File createPublishingTempDirectory()
+        throws IOException
+    {
+        final File targetDir = new File( getTempDirectory(), "nx-index-" + Long.toHexString( System.nanoTime() ) );
+
+        if ( !targetDir.mkdirs() )
+        {
+            throw new IOException( "Could not create temp dir for packing indexes: " + targetDir );
+        }
+
+        return targetDir;
+    }
 
-            if ( lastException != null )
+    private void deletePublishingTempDirectory( final File targetDir )
+        throws IOException
+    {
+        if ( targetDir != null )
+        {
+            try
             {
-                IOException eek = new IOException( lastException );
+                if ( logger.isDebugEnabled() )
+                {
+                    logger.debug( "Cleanup of temp files..." );
+                }
 
-                throw eek;
+                FileUtils.deleteDirectory( targetDir );
+            }
+            catch ( IOException e )
+            {
+                logger.warn( "Cleanup of temp files FAILED...", e );
+
+                throw new IOException( e );
             }
         }
     }
@@ -1692,7 +2271,181 @@ public class DefaultIndexerManager
     public Collection<ArtifactInfo> identifyArtifact( Field field, String data )
         throws IOException
     {
-        return mavenIndexer.identify( field, data );
+        final Sha1Index index = MAVEN.SHA1.equals( field ) ? sha1Index : null;
+        if ( index != null && !index.mayContain( data, null ) )
+        {
+            return Collections.emptyList();
+        }
+
+        // all non-group repositories, searchable or not, lazily opened contexts get opened, but only those SHA1 index
+        // cannot rule out
+        final List<Repository> repositories = new ArrayList<Repository>();
+        for ( Repository repository : repositoryRegistry.getRepositories() )
+        {
+            if ( INDEXABLE( repository ) && !ISGROUP( repository )
+                && ( index == null || index.mayContain( data, repository.getId() ) ) )
+            {
+                repositories.add( repository );
+            }
+        }
+        if ( repositories.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        final LockedIndexingContexts lockedContexts = lockIndexingContexts( repositories, null );
+        if ( lockedContexts == null )
+        {
+            return Collections.emptyList();
+        }
+
+        try
+        {
+            return mavenIndexer.identify( mavenIndexer.constructQuery( field, data, SearchType.EXACT ),
+                lockedContexts.contexts.values() );
+        }
+        finally
+        {
+            lockedContexts.lock.unlock();
+        }
+    }
+
+    public Map<String, Collection<ArtifactInfo>> identifyArtifacts( Field field, Collection<String> data )
+        throws IOException
+    {
+        final Map<String, Collection<ArtifactInfo>> result = new LinkedHashMap<String, Collection<ArtifactInfo>>();
+
+        for ( String datum : data )
+        {
+            result.put( datum, identifyArtifact( field, datum ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Loads SHA1s of repository index into SHA1 index in background. Until loaded, SHA1 index is bypassed.
+     */
+    private void loadSha1Index( final Repository repository )
+    {
+        if ( ISGROUP( repository ) )
+        {
+            // merged contexts have no documents of their own
+            return;
+        }
+
+        final Sha1Index index = sha1Index;
+        index.loading( repository.getId() );
+        sha1IndexLoader.execute( new java.lang.Runnable()
+        {
+            @Override
+            public void run()
+            {
+                loadSha1Index( index, repository );
+            }
+        } );
+    }
+
+    private void loadSha1Index( final Sha1Index index, final Repository repository )
+    {
+        // do not keep lazy contexts open just because their SHA1s were loaded
+        final LazyContext lazy = lazyContexts.get( repository.getId() );
+        final boolean wasOpen = mavenIndexer.getIndexingContexts().containsKey( getContextId( repository.getId() ) );
+        try
+        {
+            final boolean[] loaded = new boolean[1];
+            sharedSingle( repository, new Runnable()
+            {
+                @Override
+                public void run( IndexingContext context )
+                    throws IOException
+                {
+                    final IndexSearcher indexSearcher = context.acquireIndexSearcher();
+                    try
+                    {
+                        final TermEnum terms = indexSearcher.getIndexReader().terms( new Term( ArtifactInfo.SHA1, "" ) );
+                        try
+                        {
+                            do
+                            {
+                                final Term term = terms.term();
+                                if ( term == null || !ArtifactInfo.SHA1.equals( term.field() ) )
+                                {
+                                    break;
+                                }
+                                index.add( repository.getId(), term.text() );
+                            }
+                            while ( terms.next() );
+                        }
+                        finally
+                        {
+                            terms.close();
+                        }
+                    }
+                    finally
+                    {
+                        context.releaseIndexSearcher( indexSearcher );
+                    }
+                    loaded[0] = true;
+                }
+            } );
+
+            if ( loaded[0] || !hasRepositoryIndexContext( repository ) )
+            {
+                index.loaded( repository.getId() );
+                logger.debug( "Loaded SHA1 index of repository {}, {} SHA1s in total", repository.getId(),
+                              index.size() );
+            }
+            else
+            {
+                // stays "loading", so SHA1 index is bypassed instead of giving false negatives
+                logger.warn( "Could not load SHA1 index of repository {}, checksum lookups will search indexes",
+                             repository.getId() );
+            }
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Could not load SHA1 index of repository {}, checksum lookups will search indexes",
+                         repository.getId(), e );
+        }
+        finally
+        {
+            if ( lazy != null && !wasOpen )
+            {
+                closeLazyContext( lazy );
+            }
+        }
+    }
+
+    /**
+     * Replaces SHA1 index with new one, loaded from indexes of all repositories. New index is bypassed until loaded.
+     */
+    private synchronized void rebuildSha1Index()
+    {
+        final Sha1Index index = new Sha1Index( sha1Index.size(), SHA1_INDEX_MAX_ENTRIES );
+        final List<Repository> repositories = new ArrayList<Repository>();
+        for ( Repository repository : repositoryRegistry.getRepositories() )
+        {
+            if ( INDEXABLE( repository ) && !ISGROUP( repository ) && hasRepositoryIndexContext( repository ) )
+            {
+                index.loading( repository.getId() );
+                repositories.add( repository );
+            }
+        }
+
+        sha1Index = index;
+
+        for ( final Repository repository : repositories )
+        {
+            sha1IndexLoader.execute( new java.lang.Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    loadSha1Index( index, repository );
+                }
+            } );
+        }
     }
 
     // ----------------------------------------------------------------------------
@@ -2120,6 +2873,11 @@ public class DefaultIndexerManager
             bq.add( constructQuery( MAVEN.SHA1, sha1Checksum, searchType ), BooleanClause.Occur.MUST );
         }
 
+        if ( searchType == SearchType.EXACT && !sha1Index.mayContain( sha1Checksum, repositoryId ) )
+        {
+            return IteratorSearchResponse.empty( bq );
+        }
+
         IteratorSearchRequest req = createRequest( bq, from, count, hitLimit, false, filters );
 
         return searchIterator( repositoryId, req );
@@ -2369,7 +3127,7 @@ public class DefaultIndexerManager
             lock = getRepositoryLock( repository, false /* shared */);
             if ( lock != null )
             {
-                IndexingContext context = getRepositoryIndexContext( repository );
+                IndexingContext context = getOpenedIndexContext( repository.getId() );
                 if ( context != null )
                 {
                     lockedContext = new LockingIndexingContext( context, lock );
@@ -2412,7 +3170,7 @@ public class DefaultIndexerManager
         {
             try
             {
-                IndexingContext ctx = getRepositoryIndexContext( repository );
+                IndexingContext ctx = getOpenedIndexContext( repository.getId() );
                 if ( ctx != null )
                 {
                     runnable.run( ctx );
@@ -2477,6 +3235,10 @@ public class DefaultIndexerManager
                     if (target != null)
                     {
                         target.replace( temporary.getIndexDirectory() );
+
+                        indexChangeTracker.indexChanged( repository.getId() );
+                        indexTreeNodeCache.invalidate( repository.getId() );
+                        loadSha1Index( repository );
                     }
                     else
                     {
@@ -2534,7 +3296,7 @@ public class DefaultIndexerManager
         {
             try
             {
-                IndexingContext ctx = getRepositoryIndexContext( repository );
+                IndexingContext ctx = getOpenedIndexContext( repository.getId() );
                 runnable.run( ctx );
             }
             finally
@@ -2560,16 +3322,7 @@ public class DefaultIndexerManager
             return null;
         }
 
-        ReadWriteLock rwlock;
-        synchronized ( repositoryLocks )
-        {
-            rwlock = repositoryLocks.get( repository.getId() );
-            if ( rwlock == null )
-            {
-                rwlock = NamedReadWriteLock.decorate( new ReentrantReadWriteLock(), repository.getId() );
-                repositoryLocks.put( repository.getId(), rwlock );
-            }
-        }
+        final ReadWriteLock rwlock = getRepositoryReadWriteLock( repository );
 
         try
         {
@@ -2602,6 +3355,35 @@ public class DefaultIndexerManager
         return null;
     }
 
+    /**
+     * Acquires exclusive "repository" lock only if it is not held by another thread at the time of invocation, returns
+     * null otherwise.
+     */
+    private Lock tryExclusiveRepositoryLock( Repository repository )
+    {
+        if ( deleteThreads.containsKey( repository.getId() ) )
+        {
+            return null;
+        }
+
+        final Lock lock = getRepositoryReadWriteLock( repository ).writeLock();
+        return lock.tryLock() ? lock : null;
+    }
+
+    private ReadWriteLock getRepositoryReadWriteLock( Repository repository )
+    {
+        synchronized ( repositoryLocks )
+        {
+            ReadWriteLock rwlock = repositoryLocks.get( repository.getId() );
+            if ( rwlock == null )
+            {
+                rwlock = NamedReadWriteLock.decorate( new ReentrantReadWriteLock(), repository.getId() );
+                repositoryLocks.put( repository.getId(), rwlock );
+            }
+            return rwlock;
+        }
+    }
+
     /**
      * Returns "reindex" reentrant lock that corresponds to the repository. The lock is used to protect access to
      * repository gz index download and publishing areas and to the repository local storage.
@@ -2689,7 +3471,7 @@ public class DefaultIndexerManager
             if ( lock != null )
             {
                 // at this point repository index cannot be added or removed, we can safely use it
-                IndexingContext context = getRepositoryIndexContext( repository );
+                IndexingContext context = getOpenedIndexContext( repository.getId() );
 
                 if ( !repository.getId().equals( force ) && context == null )
                 {
@@ -2746,6 +3528,59 @@ public class DefaultIndexerManager
      */
     public IndexingContext getRepositoryIndexContext( String repositoryId )
     {
-        return mavenIndexer.getIndexingContexts().get( getContextId( repositoryId ) );
+        final LazyContext lazy = lazyContexts.get( repositoryId );
+        if ( lazy == null )
+        {
+            return mavenIndexer.getIndexingContexts().get( getContextId( repositoryId ) );
+        }
+
+        // opening lazy context requires shared lock, context may get closed as idle once it is released
+        final Lock lock = getRepositoryLock( lazy.repository, false /* shared */);
+        if ( lock == null )
+        {
+            return null;
+        }
+        try
+        {
+            return getOpenedIndexContext( repositoryId );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns repository IndexingContext, opening lazily registered context if needed. Caller must hold at least
+     * shared repository lock.
+     */
+    private IndexingContext getOpenedIndexContext( final String repositoryId )
+    {
+        IndexingContext context = mavenIndexer.getIndexingContexts().get( getContextId( repositoryId ) );
+        final LazyContext lazy = lazyContexts.get( repositoryId );
+        if ( lazy != null )
+        {
+            if ( context == null )
+            {
+                context = openLazyContext( lazy );
+            }
+            lazy.lastUsed = System.currentTimeMillis();
+        }
+        return context;
+    }
+
+    /**
+     * Indexing context registration of repository, which context is opened on first use.
+     */
+    private static class LazyContext
+    {
+        final Repository repository;
+
+        volatile long lastUsed = System.currentTimeMillis();
+
+        public LazyContext( final Repository repository )
+        {
+            this.repository = repository;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of what happened to repository indexes since they were last published. Item level changes (driven by
+ * index update events) can be published as an incremental chunk, while changes that bypass the item level (remote
+ * index download, index replacement) require full repack of the published index.
+ * <p>
+ * Repositories without recorded state (for example, right after Nexus startup) are assumed to have item level changes,
+ * so the first publish after startup will look for changes without forcing a full repack.
+ * <p>
+ * Tracker also maintains index "generation" of each repository, a number that increases with every change of the
+ * repository index (and its indexing context), usable to validate caches of data derived from repository index.
+ *
+ * @since 2.4
+ */
+class IndexChangeTracker
+{
+    /**
+     * Publishing work needed to bring published index up to date with the repository index. Ordered by "severity".
+     */
+    public static enum PublishMode
+    {
+        /**
+         * Nothing changed since last publish.
+         */
+        NONE,
+
+        /**
+         * Individual documents were added or removed, an incremental chunk is enough.
+         */
+        INCREMENTAL,
+
+        /**
+         * The index was changed in bulk, full repack is needed.
+         */
+        FULL;
+    }
+
+    private final ConcurrentMap<String, PublishMode> pending = new ConcurrentHashMap<String, PublishMode>();
+
+    private final ConcurrentMap<String, Long> generations = new ConcurrentHashMap<String, Long>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Records item level change (add or remove) of repository index.
+     */
+    public void itemChanged( final String repositoryId )
+    {
+        advance( repositoryId );
+        escalate( repositoryId, PublishMode.INCREMENTAL );
+    }
+
+    /**
+     * Records bulk change of repository index that cannot be published incrementally.
+     */
+    public void indexChanged( final String repositoryId )
+    {
+        advance( repositoryId );
+        escalate( repositoryId, PublishMode.FULL );
+    }
+
+    /**
+     * Returns publishing work needed for the repository and marks the repository as clean. Should the publishing fail,
+     * callers must hand back the returned mode using {@link #escalate(String, PublishMode)}.
+     */
+    public PublishMode take( final String repositoryId )
+    {
+        final PublishMode mode = pending.put( repositoryId, PublishMode.NONE );
+        return mode != null ? mode : PublishMode.INCREMENTAL;
+    }
+
+    /**
+     * Raises the pending publishing work for the repository to at least the given mode.
+     */
+    public void escalate( final String repositoryId, final PublishMode mode )
+    {
+        while ( true )
+        {
+            final PublishMode current = pending.putIfAbsent( repositoryId, mode );
+            if ( current == null || current.compareTo( mode ) >= 0 || pending.replace( repositoryId, current, mode ) )
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forgets recorded publishing state of the repository, used when repository indexing context is added or removed.
+     */
+    public void forget( final String repositoryId )
+    {
+        advance( repositoryId );
+        pending.remove( repositoryId );
+    }
+
+    /**
+     * Returns current index generation of the repository, 0 if no change was recorded since startup.
+     */
+    public long getGeneration( final String repositoryId )
+    {
+        final Long generation = generations.get( repositoryId );
+        return generation != null ? generation.longValue() : 0L;
+    }
+
+    private void advance( final String repositoryId )
+    {
+        // single sequence for all repositories, so "max" of generations changes whenever any of them changes
+        generations.put( repositoryId, sequence.incrementAndGet() );
+    }
+}
@@ -144,6 +144,26 @@ public interface IndexerManager
     void publishRepositoryIndex( String repositoryId )
         throws IOException, NoSuchRepositoryException;
 
+    /**
+     * Publishes indexes of all repositories. Unless full repack is requested, only changes since last publish are
+     * published as incremental chunks.
+     *
+     * @param fullRepack true to repack and publish whole indexes, false to publish incremental chunks where possible.
+     * @since 2.4
+     */
+    void publishAllIndex( boolean fullRepack )
+        throws IOException;
+
+    /**
+     * Publishes index of the repository (and its members, if it is a group). Unless full repack is requested, only
+     * changes since last publish are published as incremental chunk.
+     *
+     * @param fullRepack true to repack and publish whole index, false to publish incremental chunk where possible.
+     * @since 2.4
+     */
+    void publishRepositoryIndex( String repositoryId, boolean fullRepack )
+        throws IOException, NoSuchRepositoryException;
+
     // ----------------------------------------------------------------------------
     // Optimizing index
     // ----------------------------------------------------------------------------
@@ -161,6 +181,15 @@ public interface IndexerManager
     Collection<ArtifactInfo> identifyArtifact( Field field, String data )
         throws IOException;
 
+    /**
+     * Identifies multiple artifacts at once, returning results keyed by the passed in data (in same order). Data that
+     * did not identify any artifact maps to empty collection.
+     * 
+     * @since 2.4
+     */
+    Map<String, Collection<ArtifactInfo>> identifyArtifacts( Field field, Collection<String> data )
+        throws IOException;
+
     // ----------------------------------------------------------------------------
     // Combined searching
     // ----------------------------------------------------------------------------
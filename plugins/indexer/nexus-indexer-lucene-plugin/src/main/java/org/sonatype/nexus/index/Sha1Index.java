@@ -0,0 +1,376 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory lookup structure answering "may any repository index contain this SHA1?" without touching Lucene. Made of
+ * a Bloom filter (compact, answers most of the misses with a few bit probes) backed by an open addressing table mapping
+ * the first 64 bits of SHA1 to a bit mask of repositories that had a document with it. Answers are conservative: a
+ * negative answer is definitive, while a positive answer has to be confirmed by index search.
+ * <p>
+ * Removals are not applied (an entry may be shared by several documents), they are only counted as "stale", and the
+ * index should be rebuilt once too many stale entries pile up. While any repository is being loaded, or when the index
+ * grew over its configured capacity, every lookup is answered positively.
+ * 
+ * @since 2.4
+ */
+class Sha1Index
+{
+    /**
+     * Mask returned for SHA1s that are surely not indexed.
+     */
+    static final long NONE = 0L;
+
+    /**
+     * Mask bit meaning "any repository", used for repositories without a dedicated bit, and returned when the index
+     * cannot answer.
+     */
+    static final long ANY = 1L << 63;
+
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+
+    private static final int BLOOM_HASHES = 7;
+
+    private static final int MIN_CAPACITY = 1 << 16;
+
+    private final int maxEntries;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Long> repositoryBits = new HashMap<String, Long>();
+
+    private final Set<String> loading = new HashSet<String>();
+
+    private long[] bloom;
+
+    private long[] keys;
+
+    private long[] masks;
+
+    private int size;
+
+    private int stale;
+
+    private boolean overflown;
+
+    Sha1Index( final int expectedEntries, final int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+        final int capacity = tableCapacity( Math.max( MIN_CAPACITY, Math.min( expectedEntries, maxEntries ) ) );
+        this.keys = new long[capacity];
+        this.masks = new long[capacity];
+        this.bloom = new long[bloomWords( capacity )];
+    }
+
+    /**
+     * Marks repository as being loaded, all lookups answer positively until {@link #loaded(String)} is called.
+     */
+    public void loading( final String repositoryId )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            loading.add( repositoryId );
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks repository as loaded (all it's SHA1s were added).
+     */
+    public void loaded( final String repositoryId )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            loading.remove( repositoryId );
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records that the repository index contains given SHA1.
+     */
+    public void add( final String repositoryId, final String sha1 )
+    {
+        final long key = key( sha1 );
+        if ( key == 0 )
+        {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            if ( overflown )
+            {
+                return;
+            }
+
+            final long bit = repositoryBit( repositoryId );
+            int slot = find( key );
+            if ( keys[slot] == key )
+            {
+                masks[slot] |= bit;
+                return;
+            }
+
+            if ( size + 1 > maxEntries )
+            {
+                overflown = true;
+                return;
+            }
+            if ( ( size + 1 ) * 4L > keys.length * 3L )
+            {
+                grow();
+                slot = find( key );
+            }
+
+            keys[slot] = key;
+            masks[slot] = bit;
+            size++;
+            setBloomBits( key );
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a document was removed from some repository index.
+     */
+    public void removed()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            stale++;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the mask of repositories that may contain given SHA1, {@link #NONE} if none of them does.
+     */
+    public long lookup( final String sha1 )
+    {
+        final long key = key( sha1 );
+
+        lock.readLock().lock();
+        try
+        {
+            if ( key == 0 || overflown || !loading.isEmpty() )
+            {
+                return ANY;
+            }
+            if ( !mayContain( key ) )
+            {
+                return NONE;
+            }
+            final int slot = find( key );
+            return keys[slot] == key ? masks[slot] : NONE;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the SHA1 may be contained by the repository index (or by any repository index, if
+     * repository ID is {@code null}).
+     */
+    public boolean mayContain( final String sha1, final String repositoryId )
+    {
+        final long mask = lookup( sha1 );
+        if ( mask == NONE || repositoryId == null || ( mask & ANY ) != 0 )
+        {
+            return mask != NONE;
+        }
+
+        lock.readLock().lock();
+        try
+        {
+            final Long bit = repositoryBits.get( repositoryId );
+            // repositories without own bit (groups for example) cannot be excluded
+            return bit == null || ( mask & bit.longValue() ) != 0;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if stale entries make up a significant portion of the index, and it should be rebuilt.
+     */
+    public boolean isRebuildNeeded()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return stale > MIN_CAPACITY && stale > size / 4;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==
+
+    private long repositoryBit( final String repositoryId )
+    {
+        Long bit = repositoryBits.get( repositoryId );
+        if ( bit == null )
+        {
+            // 63 dedicated bits, the rest shares the ANY bit
+            bit = repositoryBits.size() < 63 ? Long.valueOf( 1L << repositoryBits.size() ) : Long.valueOf( ANY );
+            repositoryBits.put( repositoryId, bit );
+        }
+        return bit.longValue();
+    }
+
+    private int find( final long key )
+    {
+        final int slotMask = keys.length - 1;
+        int slot = (int) ( mix( key ) & slotMask );
+        while ( keys[slot] != 0 && keys[slot] != key )
+        {
+            slot = ( slot + 1 ) & slotMask;
+        }
+        return slot;
+    }
+
+    private void grow()
+    {
+        final long[] oldKeys = keys;
+        final long[] oldMasks = masks;
+        keys = new long[oldKeys.length * 2];
+        masks = new long[oldMasks.length * 2];
+        // bloom filter is sized along with the table, rebuilt from the keys
+        bloom = new long[bloomWords( keys.length )];
+        for ( int i = 0; i < oldKeys.length; i++ )
+        {
+            if ( oldKeys[i] != 0 )
+            {
+                final int slot = find( oldKeys[i] );
+                keys[slot] = oldKeys[i];
+                masks[slot] = oldMasks[i];
+                setBloomBits( oldKeys[i] );
+            }
+        }
+    }
+
+    private void setBloomBits( final long key )
+    {
+        final long bitMask = bloom.length * 64L - 1;
+        final long h2 = mix( key ) | 1;
+        for ( int i = 0; i < BLOOM_HASHES; i++ )
+        {
+            final long bit = ( key + i * h2 ) & bitMask;
+            bloom[(int) ( bit >>> 6 )] |= 1L << ( bit & 63 );
+        }
+    }
+
+    private boolean mayContain( final long key )
+    {
+        final long bitMask = bloom.length * 64L - 1;
+        final long h2 = mix( key ) | 1;
+        for ( int i = 0; i < BLOOM_HASHES; i++ )
+        {
+            final long bit = ( key + i * h2 ) & bitMask;
+            if ( ( bloom[(int) ( bit >>> 6 )] & ( 1L << ( bit & 63 ) ) ) == 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int tableCapacity( final int entries )
+    {
+        // keep load factor under 0.75
+        int capacity = Integer.highestOneBit( entries );
+        while ( capacity * 3L < entries * 4L )
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int bloomWords( final int tableCapacity )
+    {
+        // table holds at most 3/4 capacity entries, power of two words keep bit indexing a simple mask
+        return Integer.highestOneBit( Math.max( 1, tableCapacity * 3 / 4 * BLOOM_BITS_PER_ENTRY / 64 ) ) << 1;
+    }
+
+    private static long mix( final long key )
+    {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ ( h >>> 29 );
+    }
+
+    /**
+     * Returns the first 64 bits of hex encoded SHA1, or 0 if the string is not a SHA1.
+     */
+    static long key( final String sha1 )
+    {
+        if ( sha1 == null || sha1.length() != 40 )
+        {
+            return 0;
+        }
+        long key = 0;
+        for ( int i = 0; i < 16; i++ )
+        {
+            final int digit = Character.digit( sha1.charAt( i ), 16 );
+            if ( digit < 0 )
+            {
+                return 0;
+            }
+            key = ( key << 4 ) | digit;
+        }
+        // 0 marks empty slot
+        return key != 0 ? key : 1;
+    }
+}
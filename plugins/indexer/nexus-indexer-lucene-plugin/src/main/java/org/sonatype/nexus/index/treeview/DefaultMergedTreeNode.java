@@ -12,8 +12,11 @@
  */
 package org.sonatype.nexus.index.treeview;
 
+import java.util.List;
+
 import org.apache.maven.index.treeview.DefaultTreeNode;
 import org.apache.maven.index.treeview.IndexTreeView;
+import org.apache.maven.index.treeview.TreeNode;
 import org.apache.maven.index.treeview.TreeViewRequest;
 
 /**
@@ -218,4 +221,63 @@ public class DefaultMergedTreeNode
         this.artifactOriginUrl = artifactOriginUrl;
     }
 
+    /**
+     * Returns a copy of this node and of it's children, that does not reference the tree view and request it was listed
+     * with, hence does not keep the indexing context reachable. Detached copy is plain data, it cannot list children.
+     * 
+     * @return the detached copy of this node.
+     * @since 2.4
+     */
+    public DefaultMergedTreeNode detach()
+    {
+        final DefaultMergedTreeNode copy = newDetachedNode();
+        copyTo( copy );
+        return copy;
+    }
+
+    /**
+     * Creates an empty node of the same type as this node, not bound to any tree view or request.
+     * 
+     * @since 2.4
+     */
+    protected DefaultMergedTreeNode newDetachedNode()
+    {
+        return new DefaultMergedTreeNode( null, null );
+    }
+
+    /**
+     * Copies the data of this node (and detached copies of it's children) into the target node.
+     * 
+     * @since 2.4
+     */
+    protected void copyTo( final DefaultMergedTreeNode target )
+    {
+        target.setType( getType() );
+        target.setLeaf( isLeaf() );
+        target.setNodeName( getNodeName() );
+        target.setPath( getPath() );
+        target.setGroupId( getGroupId() );
+        target.setArtifactId( getArtifactId() );
+        target.setVersion( getVersion() );
+        target.setRepositoryId( getRepositoryId() );
+        target.setLocallyAvailable( isLocallyAvailable() );
+        target.setArtifactTimestamp( getArtifactTimestamp() );
+        target.setArtifactSha1Checksum( getArtifactSha1Checksum() );
+        target.setArtifactMd5Checksum( getArtifactMd5Checksum() );
+        target.setInitiatorUserId( getInitiatorUserId() );
+        target.setInitiatorIpAddress( getInitiatorIpAddress() );
+        target.setArtifactOriginReason( getArtifactOriginReason() );
+        target.setArtifactOriginUrl( getArtifactOriginUrl() );
+
+        final List<TreeNode> children = getChildren();
+        if ( children != null && !children.isEmpty() )
+        {
+            for ( TreeNode child : children )
+            {
+                target.getChildren().add(
+                    child instanceof DefaultMergedTreeNode ? ( (DefaultMergedTreeNode) child ).detach() : child );
+            }
+        }
+    }
+
 }
@@ -0,0 +1,370 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index.treeview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Cache of index tree view nodes as served to the index browser. Every node carries one level of children (that is
+ * what tree view lists), so expanding an already seen node costs a cache lookup instead of a prefix scan of the
+ * repository index. Cached nodes are invalidated by indexer manager: an artifact change evicts only the nodes on the
+ * artifact path, while bulk changes (remote index update, reindex, context removal) evict the whole repository.
+ * Entries of groups are evicted whenever any of their (transitive) members is affected, or group members change.
+ * <p>
+ * Cached nodes are detached copies, plain data not referencing the indexing context they were listed from. Cache is
+ * bounded, least recently used entries are evicted when it's full.
+ * 
+ * @since 2.4
+ */
+@Named
+@Singleton
+@EventBus.Managed
+public class IndexTreeNodeCache
+{
+    private static final int MAX_ENTRIES = SystemPropertiesHelper.getInteger(
+        "org.sonatype.nexus.index.treeview.IndexTreeNodeCache.maxEntries", 2000 );
+
+    /**
+     * Cached entries in LRU order, guarded by itself.
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * Keys of cached entries by their source repository ids, guarded by {@link #entries}.
+     */
+    private final Map<String, Set<String>> keysBySource;
+
+    /**
+     * Stamps of repositories, bumped whenever the repository is invalidated.
+     */
+    private final ConcurrentMap<String, AtomicLong> stamps;
+
+    public IndexTreeNodeCache()
+    {
+        this.keysBySource = new HashMap<String, Set<String>>();
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, Entry> eldest )
+            {
+                if ( size() > MAX_ENTRIES )
+                {
+                    unindex( eldest.getKey(), eldest.getValue() );
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.stamps = new ConcurrentHashMap<String, AtomicLong>();
+    }
+
+    /**
+     * Returns the stamp to be passed to {@link #put(Repository, String, String, DefaultMergedTreeNode, long)}, has to
+     * be obtained <b>before</b> the node is listed from index, to not cache nodes that were invalidated while being
+     * listed. Stamp covers the repository and all it's (transitive) members.
+     * 
+     * @param repository the repository the node is about to be listed from.
+     * @return current stamp of the repository.
+     */
+    public long getStamp( final Repository repository )
+    {
+        return stamp( sources( repository ) );
+    }
+
+    /**
+     * Returns the cached node, or {@code null}.
+     * 
+     * @param repository the repository the node was listed from.
+     * @param path the tree path of the node.
+     * @param variant anything else the node rendering depends on (hints, links).
+     * @return the cached node or {@code null} if not cached.
+     */
+    public DefaultMergedTreeNode get( final Repository repository, final String path, final String variant )
+    {
+        final Entry entry;
+        synchronized ( entries )
+        {
+            entry = entries.get( key( repository.getId(), path, variant ) );
+        }
+        return entry != null ? entry.getNode() : null;
+    }
+
+    /**
+     * Caches detached copy of the node, unless the repository was invalidated since the passed in stamp was obtained.
+     * 
+     * @param repository the repository the node was listed from.
+     * @param path the tree path of the node.
+     * @param variant anything else the node rendering depends on (hints, links).
+     * @param node the node with it's children listed.
+     * @param stamp the stamp obtained before the node was listed.
+     */
+    public void put( final Repository repository, final String path, final String variant,
+                     final DefaultMergedTreeNode node, final long stamp )
+    {
+        final Set<String> sources = sources( repository );
+        if ( stamp( sources ) != stamp )
+        {
+            return;
+        }
+
+        final String key = key( repository.getId(), path, variant );
+        final Entry entry = new Entry( path, sources, node.detach() );
+        synchronized ( entries )
+        {
+            final Entry replaced = entries.put( key, entry );
+            if ( replaced != null )
+            {
+                unindex( key, replaced );
+            }
+            for ( String source : sources )
+            {
+                Set<String> keys = keysBySource.get( source );
+                if ( keys == null )
+                {
+                    keys = new HashSet<String>();
+                    keysBySource.put( source, keys );
+                }
+                keys.add( key );
+            }
+        }
+
+        // invalidation might have happened while we were putting, it bumps stamps before evicting
+        if ( stamp( sources ) != stamp )
+        {
+            synchronized ( entries )
+            {
+                if ( entries.get( key ) == entry )
+                {
+                    entries.remove( key );
+                    unindex( key, entry );
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates cached nodes affected by a change of single item in repository index. Structural changes (artifact
+     * added or removed) affect all the parent nodes of the item, while a change of the already indexed artifact affects
+     * only the node listing it.
+     * 
+     * @param repositoryId the repository whose index changed.
+     * @param itemPath the path of the changed item.
+     * @param structural {@code true} if an artifact was added or removed.
+     */
+    public void invalidate( final String repositoryId, final String itemPath, final boolean structural )
+    {
+        invalidate( repositoryId, parentPaths( itemPath, structural ) );
+    }
+
+    /**
+     * Invalidates all the cached nodes of given repository (and of groups having it as member).
+     * 
+     * @param repositoryId the repository whose index changed.
+     */
+    public void invalidate( final String repositoryId )
+    {
+        invalidate( repositoryId, null );
+    }
+
+    /**
+     * Group member changes change what group nodes list, without any index change.
+     * 
+     * @param evt the event.
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent( final RepositoryGroupMembersChangedEvent evt )
+    {
+        invalidate( evt.getGroupRepository().getId() );
+    }
+
+    // ==
+
+    protected void invalidate( final String repositoryId, final Set<String> paths )
+    {
+        stampOf( repositoryId ).incrementAndGet();
+
+        synchronized ( entries )
+        {
+            final Set<String> keys = keysBySource.get( repositoryId );
+            if ( keys == null )
+            {
+                return;
+            }
+            for ( String key : new ArrayList<String>( keys ) )
+            {
+                final Entry entry = entries.get( key );
+                if ( entry == null )
+                {
+                    keys.remove( key );
+                }
+                else if ( paths == null || paths.contains( entry.getPath() ) )
+                {
+                    entries.remove( key );
+                    unindex( key, entry );
+                }
+            }
+        }
+    }
+
+    protected int size()
+    {
+        synchronized ( entries )
+        {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the tree paths of the nodes listing an item path (directories the item is in). For non structural
+     * changes only the immediate parent is returned.
+     */
+    protected static Set<String> parentPaths( final String itemPath, final boolean structural )
+    {
+        final int lastSlash = itemPath.lastIndexOf( '/' );
+        if ( lastSlash < 0 )
+        {
+            return Collections.singleton( "/" );
+        }
+        if ( !structural )
+        {
+            return Collections.singleton( itemPath.substring( 0, lastSlash + 1 ) );
+        }
+
+        final Set<String> result = new HashSet<String>();
+        result.add( "/" );
+        for ( int i = itemPath.indexOf( '/', 1 ); i > -1 && i <= lastSlash; i = itemPath.indexOf( '/', i + 1 ) )
+        {
+            result.add( itemPath.substring( 0, i + 1 ) );
+        }
+        return result;
+    }
+
+    /**
+     * Removes the key from source index, caller must hold lock of {@link #entries}.
+     */
+    private void unindex( final String key, final Entry entry )
+    {
+        for ( String source : entry.getSources() )
+        {
+            final Set<String> keys = keysBySource.get( source );
+            if ( keys != null )
+            {
+                keys.remove( key );
+                if ( keys.isEmpty() )
+                {
+                    keysBySource.remove( source );
+                }
+            }
+        }
+    }
+
+    private Set<String> sources( final Repository repository )
+    {
+        final Set<String> sources = new HashSet<String>();
+        sources.add( repository.getId() );
+        final GroupRepository group = repository.adaptToFacet( GroupRepository.class );
+        if ( group != null )
+        {
+            sources.addAll( group.getTransitiveMemberRepositoryIds() );
+        }
+        return sources;
+    }
+
+    /**
+     * Returns the combined stamp of repositories, stamps only grow, so the sum changes whenever any of them changes.
+     */
+    private long stamp( final Set<String> repositoryIds )
+    {
+        long result = 0;
+        for ( String repositoryId : repositoryIds )
+        {
+            result += stampOf( repositoryId ).get();
+        }
+        return result;
+    }
+
+    private AtomicLong stampOf( final String repositoryId )
+    {
+        AtomicLong stamp = stamps.get( repositoryId );
+        if ( stamp == null )
+        {
+            final AtomicLong newStamp = new AtomicLong();
+            stamp = stamps.putIfAbsent( repositoryId, newStamp );
+            if ( stamp == null )
+            {
+                stamp = newStamp;
+            }
+        }
+        return stamp;
+    }
+
+    private static String key( final String repositoryId, final String path, final String variant )
+    {
+        return repositoryId + "|" + path + "|" + variant;
+    }
+
+    // ==
+
+    private static class Entry
+    {
+        private final String path;
+
+        private final Set<String> sources;
+
+        private final DefaultMergedTreeNode node;
+
+        public Entry( final String path, final Set<String> sources, final DefaultMergedTreeNode node )
+        {
+            this.path = path;
+            this.sources = sources;
+            this.node = node;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public Set<String> getSources()
+        {
+            return sources;
+        }
+
+        public DefaultMergedTreeNode getNode()
+        {
+            return node;
+        }
+    }
+}
@@ -12,6 +12,8 @@
  */
 package org.sonatype.nexus.rest;
 
+import org.sonatype.nexus.rest.identify.IdentifiedHashDTO;
+import org.sonatype.nexus.rest.identify.IdentifyHashesResponseDTO;
 import org.sonatype.nexus.rest.indextreeview.IndexBrowserTreeNode;
 import org.sonatype.nexus.rest.indextreeview.IndexBrowserTreeViewResponseDTO;
 import org.sonatype.nexus.rest.model.AliasingListConverter;
@@ -30,6 +32,12 @@ public class MIndexerXStreamConfigurator
         xstream.processAnnotations( IndexBrowserTreeNode.class );
         xstream.registerLocalConverter( IndexBrowserTreeNode.class, "children", new AliasingListConverter(
             IndexBrowserTreeNode.class, "child" ) );
+
+        // Batch identify
+        xstream.processAnnotations( IdentifyHashesResponseDTO.class );
+        xstream.processAnnotations( IdentifiedHashDTO.class );
+        xstream.registerLocalConverter( IdentifyHashesResponseDTO.class, "data", new AliasingListConverter(
+            IdentifiedHashDTO.class, "identifiedHash" ) );
         return xstream;
     }
 }
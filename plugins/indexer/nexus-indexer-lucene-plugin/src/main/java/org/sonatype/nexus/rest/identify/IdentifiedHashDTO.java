@@ -0,0 +1,66 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.identify;
+
+import org.sonatype.nexus.rest.model.NexusArtifact;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+
+/**
+ * Single entry of {@link IdentifyHashesResponseDTO}, the hash and the artifact it identified, if any.
+ * 
+ * @since 2.4
+ */
+@XStreamAlias( "identifiedHash" )
+public class IdentifiedHashDTO
+{
+    /**
+     * The hash as passed in by request.
+     */
+    private String hash;
+
+    /**
+     * The identified artifact, {@code null} if none.
+     */
+    private NexusArtifact artifact;
+
+    public IdentifiedHashDTO()
+    {
+    }
+
+    public IdentifiedHashDTO( String hash, NexusArtifact artifact )
+    {
+        this.hash = hash;
+        this.artifact = artifact;
+    }
+
+    public String getHash()
+    {
+        return hash;
+    }
+
+    public void setHash( String hash )
+    {
+        this.hash = hash;
+    }
+
+    public NexusArtifact getArtifact()
+    {
+        return artifact;
+    }
+
+    public void setArtifact( NexusArtifact artifact )
+    {
+        this.artifact = artifact;
+    }
+}
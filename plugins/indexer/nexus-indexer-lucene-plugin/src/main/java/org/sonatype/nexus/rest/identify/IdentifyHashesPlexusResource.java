@@ -0,0 +1,148 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.identify;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.MAVEN;
+import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.Variant;
+import org.sonatype.nexus.index.IndexerManager;
+import org.sonatype.nexus.rest.AbstractIndexerNexusPlexusResource;
+import org.sonatype.nexus.rest.model.NexusArtifact;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+/**
+ * Batch variant of {@link IdentifyHashPlexusResource}, identifies artifacts by many hashes (passed in as repeated
+ * {@code hash} query parameter) in one call. Recognized algorithms: "sha1".
+ * 
+ * @since 2.4
+ */
+@Component( role = PlexusResource.class, hint = "IdentifyHashesPlexusResource" )
+@Path( IdentifyHashesPlexusResource.RESOURCE_URI )
+@Produces( { "application/xml", "application/json" } )
+public class IdentifyHashesPlexusResource
+    extends AbstractIndexerNexusPlexusResource
+{
+    public static final String ALGORITHM_KEY = "algorithm";
+
+    public static final String HASH_PARAMETER = "hash";
+
+    public static final String RESOURCE_URI = "/identify/{" + ALGORITHM_KEY + "}";
+
+    private static final int MAX_HASHES = SystemPropertiesHelper.getInteger(
+        "org.sonatype.nexus.rest.identify.IdentifyHashesPlexusResource.maxHashes", 1000 );
+
+    @Requirement
+    private IndexerManager indexerManager;
+
+    @Override
+    public Object getPayloadInstance()
+    {
+        return null;
+    }
+
+    @Override
+    public String getResourceUri()
+    {
+        return RESOURCE_URI;
+    }
+
+    @Override
+    public PathProtectionDescriptor getResourceProtection()
+    {
+        return new PathProtectionDescriptor( "/identify/*", "authcBasic,perms[nexus:identify]" );
+    }
+
+    /**
+     * Retrieve artifact details for multiple hash values. Every hash is answered with one entry, having no artifact if
+     * the hash did not identify any.
+     * 
+     * @param algorithm The hash algorithm (i.e. sha1).
+     * @param hash The hash strings to compare, may be repeated.
+     */
+    @Override
+    @GET
+    @ResourceMethodSignature( pathParams = { @PathParam( IdentifyHashesPlexusResource.ALGORITHM_KEY ) }, queryParams = { @QueryParam( IdentifyHashesPlexusResource.HASH_PARAMETER ) },
+        output = IdentifyHashesResponseDTO.class )
+    public Object get( Context context, Request request, Response response, Variant variant )
+        throws ResourceException
+    {
+        String alg = request.getAttributes().get( ALGORITHM_KEY ).toString();
+
+        if ( !"sha1".equalsIgnoreCase( alg ) )
+        {
+            throw new ResourceException( Status.CLIENT_ERROR_BAD_REQUEST, "Unsupported hash algorithm " + alg );
+        }
+
+        Set<String> hashes = new LinkedHashSet<String>();
+
+        for ( String hash : request.getResourceRef().getQueryAsForm().getValuesArray( HASH_PARAMETER ) )
+        {
+            hashes.add( hash.trim() );
+        }
+
+        if ( hashes.size() > MAX_HASHES )
+        {
+            throw new ResourceException( Status.CLIENT_ERROR_BAD_REQUEST, "Too many hashes, at most " + MAX_HASHES
+                + " are allowed per request" );
+        }
+
+        IdentifyHashesResponseDTO result = new IdentifyHashesResponseDTO();
+
+        try
+        {
+            Map<String, Collection<ArtifactInfo>> identified = indexerManager.identifyArtifacts( MAVEN.SHA1, hashes );
+
+            for ( Map.Entry<String, Collection<ArtifactInfo>> entry : identified.entrySet() )
+            {
+                NexusArtifact na = null;
+
+                Collection<NexusArtifact> nas = ai2NaColl( request, entry.getValue() );
+
+                if ( nas != null && nas.size() > 0 )
+                {
+                    na = nas.iterator().next();
+                }
+
+                result.getData().add( new IdentifiedHashDTO( entry.getKey(), na ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new ResourceException( Status.SERVER_ERROR_INTERNAL, "IOException during hash identification!", e );
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.identify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+
+/**
+ * REST response of batch hash identification, one entry per requested hash, in request order.
+ * 
+ * @since 2.4
+ */
+@XStreamAlias( "identifyHashesResponse" )
+public class IdentifyHashesResponseDTO
+{
+    private List<IdentifiedHashDTO> data = new ArrayList<IdentifiedHashDTO>();
+
+    public List<IdentifiedHashDTO> getData()
+    {
+        return data;
+    }
+
+    public void setData( List<IdentifiedHashDTO> data )
+    {
+        this.data = data;
+    }
+}
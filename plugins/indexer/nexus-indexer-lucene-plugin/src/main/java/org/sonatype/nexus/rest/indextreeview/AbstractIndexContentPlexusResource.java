@@ -29,6 +29,7 @@ import org.restlet.data.Status;
 import org.restlet.resource.ResourceException;
 import org.restlet.resource.Variant;
 import org.sonatype.nexus.index.IndexerManager;
+import org.sonatype.nexus.index.treeview.IndexTreeNodeCache;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
@@ -55,6 +56,9 @@ public abstract class AbstractIndexContentPlexusResource
     @Requirement
     protected IndexerManager indexerManager;
 
+    @Requirement
+    protected IndexTreeNodeCache indexTreeNodeCache;
+
     @Override
     public Object getPayloadInstance()
     {
@@ -108,8 +112,7 @@ public abstract class AbstractIndexContentPlexusResource
 
             if ( GroupRepository.class.isInstance( repository ) || repository.isSearchable() )
             {
-                TreeNodeFactory factory =
-                    new IndexBrowserTreeNodeFactory( repository, createRedirectBaseRef( request ).toString() );
+                final String baseLinkUrl = createRedirectBaseRef( request ).toString();
 
                 HashMap<Field, String> hints = new HashMap<Field, String>();
 
@@ -128,12 +131,26 @@ public abstract class AbstractIndexContentPlexusResource
                     hints.put( MAVEN.VERSION, versionHint );
                 }
 
-                TreeNode node = indexerManager.listNodes( factory, path, hints, null, repository.getId() );
+                // nodes carry links, so they are cached per base link URL too
+                final String variant = baseLinkUrl + "|" + groupIdHint + "|" + artifactIdHint + "|" + versionHint;
+
+                TreeNode node = indexTreeNodeCache.get( repository, path, variant );
 
                 if ( node == null )
                 {
-                    throw new PlexusResourceException( Status.CLIENT_ERROR_NOT_FOUND,
-                        "Unable to retrieve index tree nodes" );
+                    final long stamp = indexTreeNodeCache.getStamp( repository );
+
+                    TreeNodeFactory factory = new IndexBrowserTreeNodeFactory( repository, baseLinkUrl );
+
+                    node = indexerManager.listNodes( factory, path, hints, null, repository.getId() );
+
+                    if ( node == null )
+                    {
+                        throw new PlexusResourceException( Status.CLIENT_ERROR_NOT_FOUND,
+                            "Unable to retrieve index tree nodes" );
+                    }
+
+                    indexTreeNodeCache.put( repository, path, variant, (IndexBrowserTreeNode) node, stamp );
                 }
 
                 return new IndexBrowserTreeViewResponseDTO( (IndexBrowserTreeNode) node );
@@ -160,4 +160,23 @@ public class IndexBrowserTreeNode
     {
         this.packaging = packaging;
     }
+
+    @Override
+    protected DefaultMergedTreeNode newDetachedNode()
+    {
+        return new IndexBrowserTreeNode( null, null );
+    }
+
+    @Override
+    protected void copyTo( final DefaultMergedTreeNode target )
+    {
+        super.copyTo( target );
+
+        final IndexBrowserTreeNode node = (IndexBrowserTreeNode) target;
+        node.setClassifier( getClassifier() );
+        node.setExtension( getExtension() );
+        node.setPackaging( getPackaging() );
+        node.setArtifactUri( getArtifactUri() );
+        node.setPomUri( getPomUri() );
+    }
 }
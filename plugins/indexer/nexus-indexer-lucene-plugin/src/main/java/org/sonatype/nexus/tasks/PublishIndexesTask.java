@@ -52,11 +52,11 @@ public class PublishIndexesTask
         {
             if ( getRepositoryId() != null )
             {
-                indexerManager.publishRepositoryIndex( getRepositoryId() );
+                indexerManager.publishRepositoryIndex( getRepositoryId(), isFullRepack() );
             }
             else
             {
-                indexerManager.publishAllIndex();
+                indexerManager.publishAllIndex( isFullRepack() );
             }
         }
         catch ( IOException e )
@@ -67,6 +67,21 @@ public class PublishIndexesTask
         return null;
     }
 
+    /**
+     * Tasks created before the parameter was introduced have no value for it, and they keep doing full repacks. Only
+     * tasks that explicitly opt out of it publish incremental chunks.
+     */
+    public boolean isFullRepack()
+    {
+        final String fullRepack = getParameters().get( PublishIndexesTaskDescriptor.FULL_REPACK_FIELD_ID );
+        return fullRepack == null || Boolean.parseBoolean( fullRepack );
+    }
+
+    public void setFullRepack( boolean fullRepack )
+    {
+        getParameters().put( PublishIndexesTaskDescriptor.FULL_REPACK_FIELD_ID, Boolean.toString( fullRepack ) );
+    }
+
     @Override
     protected String getAction()
     {
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.codehaus.plexus.component.annotations.Component;
+import org.sonatype.nexus.formfields.CheckboxFormField;
 import org.sonatype.nexus.formfields.FormField;
 import org.sonatype.nexus.formfields.RepoOrGroupComboFormField;
 
@@ -27,9 +28,18 @@ public class PublishIndexesTaskDescriptor
 
     public static final String REPO_OR_GROUP_FIELD_ID = "repositoryId";
 
+    public static final String FULL_REPACK_FIELD_ID = "fullRepack";
+
     private final RepoOrGroupComboFormField repoField = new RepoOrGroupComboFormField( REPO_OR_GROUP_FIELD_ID,
                                                                                        FormField.MANDATORY );
 
+    private final CheckboxFormField fullRepackField =
+        new CheckboxFormField(
+                               FULL_REPACK_FIELD_ID,
+                               "Full repack",
+                               "If selected, the whole index will be repacked and published. Otherwise, only changes since last publish are published as an incremental chunk (and the full index file is refreshed), and nothing is published if the index did not change.",
+                               FormField.OPTIONAL ).withInitialValue( true );
+
     public String getId()
     {
         return ID;
@@ -45,6 +55,7 @@ public class PublishIndexesTaskDescriptor
         List<FormField> fields = new ArrayList<FormField>();
 
         fields.add( repoField );
+        fields.add( fullRepackField );
 
         return fields;
     }
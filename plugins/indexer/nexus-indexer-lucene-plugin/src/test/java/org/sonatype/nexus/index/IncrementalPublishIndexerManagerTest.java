@@ -0,0 +1,160 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.maven.index.context.IndexingContext;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Test;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.StorageItem;
+
+/**
+ * Tests for publishing of incremental index chunks between full repacks.
+ */
+public class IncrementalPublishIndexerManagerTest
+    extends AbstractIndexerManagerTest
+{
+    private static final String NEW_JAR_PATH =
+        "/org/sonatype/plexus/plexus-plugin-manager/1.1-SNAPSHOT/plexus-plugin-manager-1.1-20081125.071530-1.jar";
+
+    private static final String NEW_DOCUMENT = "plexus-plugin-manager|1.1-";
+
+    @Test
+    public void chunkPublishRefreshesFullIndexFile()
+        throws Exception
+    {
+        fillInRepo();
+        indexerManager.reindexRepository( null, snapshots.getId(), true );
+
+        final File index = new File( new File( new URL( snapshots.getLocalUrl() ).toURI() ), ".index" );
+        final File indexFile = new File( index, "nexus-maven-repository-index.gz" );
+        final File propertiesFile = new File( index, "nexus-maven-repository-index.properties" );
+        assertTrue( "Index .gz file should exist.", indexFile.exists() );
+        assertFalse( "New artifact should not be published yet.", readIndexData( indexFile ).contains( NEW_DOCUMENT ) );
+        final Properties fullProperties = readProperties( propertiesFile );
+
+        // add new stuff to the index, without publishing it
+        copyDirectory( new File( getBasedir(), "src/test/resources/reposes/apache-snapshots-2" ),
+            new File( new URL( snapshots.getLocalUrl() ).toURI() ) );
+        final StorageItem item = snapshots.retrieveItem( new ResourceStoreRequest( NEW_JAR_PATH, true, false ) );
+        indexerManager.addItemToIndex( snapshots, item );
+
+        indexerManager.publishRepositoryIndex( snapshots.getId(), false );
+
+        final Properties chunkProperties = readProperties( propertiesFile );
+        final String chunkName = chunkProperties.getProperty( IndexingContext.INDEX_CHUNK_PREFIX + "0" );
+        assertFalse( "Chunk counter should advance.",
+            chunkName.equals( fullProperties.getProperty( IndexingContext.INDEX_CHUNK_PREFIX + "0" ) ) );
+        assertEquals( fullProperties.getProperty( IndexingContext.INDEX_CHAIN_ID ),
+            chunkProperties.getProperty( IndexingContext.INDEX_CHAIN_ID ) );
+
+        final File chunkFile = new File( index, "nexus-maven-repository-index." + chunkName + ".gz" );
+        assertTrue( "Incremental chunk should exist.", chunkFile.exists() );
+        assertTrue( "Chunk should contain the new artifact.", readIndexData( chunkFile ).contains( NEW_DOCUMENT ) );
+
+        // consumers doing full download must get what the properties advertise
+        assertTrue( "Full index should contain the new artifact.",
+            readIndexData( indexFile ).contains( NEW_DOCUMENT ) );
+        assertEquals( parseTimestamp( chunkProperties.getProperty( IndexingContext.INDEX_TIMESTAMP ) ),
+            readIndexTimestamp( indexFile ) );
+    }
+
+    @Test
+    public void unchangedIndexIsNotPublished()
+        throws Exception
+    {
+        fillInRepo();
+        indexerManager.reindexRepository( null, snapshots.getId(), true );
+
+        final File index = new File( new File( new URL( snapshots.getLocalUrl() ).toURI() ), ".index" );
+        final File propertiesFile = new File( index, "nexus-maven-repository-index.properties" );
+        final Properties fullProperties = readProperties( propertiesFile );
+
+        indexerManager.publishRepositoryIndex( snapshots.getId(), false );
+
+        assertEquals( fullProperties, readProperties( propertiesFile ) );
+        assertFalse( "No incremental chunk should exist.",
+            new File( index, "nexus-maven-repository-index.1.gz" ).exists() );
+    }
+
+    // ==
+
+    private Properties readProperties( final File file )
+        throws Exception
+    {
+        final InputStream is = new FileInputStream( file );
+        try
+        {
+            final Properties properties = new Properties();
+            properties.load( is );
+            return properties;
+        }
+        finally
+        {
+            IOUtil.close( is );
+        }
+    }
+
+    /**
+     * Returns the raw content of index data file, document fields are plain (UTF) strings in it.
+     */
+    private String readIndexData( final File file )
+        throws Exception
+    {
+        final InputStream is = new GZIPInputStream( new FileInputStream( file ) );
+        try
+        {
+            return new String( IOUtil.toByteArray( is ), "ISO-8859-1" );
+        }
+        finally
+        {
+            IOUtil.close( is );
+        }
+    }
+
+    /**
+     * Reads the timestamp from index data file header (version byte followed by timestamp).
+     */
+    private long readIndexTimestamp( final File file )
+        throws Exception
+    {
+        final DataInputStream is = new DataInputStream( new GZIPInputStream( new FileInputStream( file ) ) );
+        try
+        {
+            is.readByte();
+            return is.readLong();
+        }
+        finally
+        {
+            IOUtil.close( is );
+        }
+    }
+
+    private long parseTimestamp( final String timestamp )
+        throws Exception
+    {
+        final SimpleDateFormat df = new SimpleDateFormat( IndexingContext.INDEX_TIME_FORMAT );
+        df.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        return df.parse( timestamp ).getTime();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sonatype.nexus.index.IndexChangeTracker.PublishMode;
+
+public class IndexChangeTrackerTest
+{
+    private final IndexChangeTracker subject = new IndexChangeTracker();
+
+    @Test
+    public void testUnknownRepositoryIsIncremental()
+    {
+        Assert.assertEquals( PublishMode.INCREMENTAL, subject.take( "repo" ) );
+        Assert.assertEquals( PublishMode.NONE, subject.take( "repo" ) );
+    }
+
+    @Test
+    public void testItemChanges()
+    {
+        subject.take( "repo" );
+        subject.itemChanged( "repo" );
+        subject.itemChanged( "repo" );
+        Assert.assertEquals( PublishMode.INCREMENTAL, subject.take( "repo" ) );
+        Assert.assertEquals( PublishMode.NONE, subject.take( "repo" ) );
+    }
+
+    @Test
+    public void testIndexChangeWins()
+    {
+        subject.take( "repo" );
+        subject.indexChanged( "repo" );
+        subject.itemChanged( "repo" );
+        Assert.assertEquals( PublishMode.FULL, subject.take( "repo" ) );
+    }
+
+    @Test
+    public void testEscalateAfterFailedPublish()
+    {
+        subject.take( "repo" );
+        subject.itemChanged( "repo" );
+        final PublishMode mode = subject.take( "repo" );
+        subject.escalate( "repo", mode );
+        Assert.assertEquals( PublishMode.INCREMENTAL, subject.take( "repo" ) );
+    }
+
+    @Test
+    public void testForget()
+    {
+        subject.take( "repo" );
+        subject.forget( "repo" );
+        Assert.assertEquals( PublishMode.INCREMENTAL, subject.take( "repo" ) );
+    }
+
+    @Test
+    public void testGenerations()
+    {
+        Assert.assertEquals( 0L, subject.getGeneration( "repo" ) );
+        subject.itemChanged( "repo" );
+        final long first = subject.getGeneration( "repo" );
+        Assert.assertTrue( first > 0L );
+        subject.take( "repo" );
+        Assert.assertEquals( first, subject.getGeneration( "repo" ) );
+        subject.itemChanged( "other" );
+        Assert.assertTrue( subject.getGeneration( "other" ) > first );
+        subject.forget( "repo" );
+        Assert.assertTrue( subject.getGeneration( "repo" ) > subject.getGeneration( "other" ) );
+    }
+}
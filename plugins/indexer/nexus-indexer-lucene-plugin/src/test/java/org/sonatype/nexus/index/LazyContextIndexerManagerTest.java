@@ -0,0 +1,82 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.Collection;
+
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.MAVEN;
+import org.junit.Test;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+/**
+ * Tests for lazily opened indexing contexts, that are closed when idle and reopened on use.
+ */
+public class LazyContextIndexerManagerTest
+    extends AbstractIndexerManagerTest
+{
+    // org.sonatype.nexus : nexus-indexer : 1.0-beta-4, present in releases only
+    private static final String RELEASES_ONLY_SHA1 = "86e12071021fa0be4ec809d4d2e08f07b80d4877";
+
+    @Test
+    public void idleContextClosedAndReopenedOnUse()
+        throws Exception
+    {
+        fillInRepo();
+        indexerManager.reindexRepository( "/", snapshots.getId(), false );
+        assertTrue( isOpen( snapshots ) );
+
+        indexerManager.setContextIdleTimeoutSeconds( 0 );
+        indexerManager.closeIdleContexts();
+        assertFalse( isOpen( snapshots ) );
+        assertNotNull( indexerManager.getRepositoryIndexContext( snapshots.getId() ) );
+
+        // search reopens it, and the index content is still there
+        indexerManager.closeIdleContexts();
+        assertFalse( isOpen( snapshots ) );
+        searchFor( "org.sonatype.plexus", 1, snapshots.getId() );
+        assertTrue( isOpen( snapshots ) );
+    }
+
+    @Test
+    public void identifyOpensOnlyContextsThatMayContainSha1()
+        throws Exception
+    {
+        fillInRepo();
+        indexerManager.reindexAllRepositories( "/", false );
+        indexerManager.setContextIdleTimeoutSeconds( 0 );
+
+        // SHA1 index is loaded in background, until then identify has to open all the contexts
+        Collection<ArtifactInfo> ais = null;
+        for ( int i = 0; i < 100; i++ )
+        {
+            indexerManager.closeIdleContexts();
+            ais = indexerManager.identifyArtifact( MAVEN.SHA1, RELEASES_ONLY_SHA1 );
+            if ( !isOpen( snapshots ) )
+            {
+                break;
+            }
+            Thread.sleep( 100 );
+        }
+
+        assertEquals( 1, ais.size() );
+        assertTrue( isOpen( releases ) );
+        assertFalse( isOpen( snapshots ) );
+    }
+
+    private boolean isOpen( final Repository repository )
+    {
+        return indexerManager.getNexusIndexer().getIndexingContexts().containsKey(
+            indexerManager.getContextId( repository.getId() ) );
+    }
+}
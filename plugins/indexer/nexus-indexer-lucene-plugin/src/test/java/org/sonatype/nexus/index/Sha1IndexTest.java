@@ -0,0 +1,84 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Sha1IndexTest
+{
+    private static final String SHA1_A = "2c3e8d7ec7a7bd0ad64ad8db3e0fd3e3a64cdf1b";
+
+    private static final String SHA1_B = "9f0bd9e0ecba1dc0e3e5b5c6b2c1d3e4f5a6b7c8";
+
+    private final Sha1Index subject = new Sha1Index( 0, 1000000 );
+
+    @Test
+    public void testLookup()
+    {
+        subject.add( "repo", SHA1_A );
+        Assert.assertTrue( subject.mayContain( SHA1_A, null ) );
+        Assert.assertTrue( subject.mayContain( SHA1_A.toUpperCase(), "repo" ) );
+        Assert.assertFalse( subject.mayContain( SHA1_B, null ) );
+    }
+
+    @Test
+    public void testRepositoryMask()
+    {
+        subject.add( "repo", SHA1_A );
+        subject.add( "other", SHA1_B );
+        Assert.assertTrue( subject.mayContain( SHA1_A, "repo" ) );
+        Assert.assertFalse( subject.mayContain( SHA1_A, "other" ) );
+        // unknown repositories (groups) cannot be excluded
+        Assert.assertTrue( subject.mayContain( SHA1_A, "group" ) );
+    }
+
+    @Test
+    public void testLoadingIsBypassed()
+    {
+        subject.loading( "repo" );
+        Assert.assertTrue( subject.mayContain( SHA1_B, null ) );
+        subject.loaded( "repo" );
+        Assert.assertFalse( subject.mayContain( SHA1_B, null ) );
+    }
+
+    @Test
+    public void testNotSha1IsBypassed()
+    {
+        Assert.assertTrue( subject.mayContain( "2c3e8d7e", null ) );
+        Assert.assertTrue( subject.mayContain( "not-a-sha1-not-a-sha1-not-a-sha1-not-a-s", null ) );
+    }
+
+    @Test
+    public void testGrow()
+    {
+        for ( int i = 0; i < 200000; i++ )
+        {
+            subject.add( "repo", String.format( "%016x%024x", i * 0x9E3779B97F4A7C15L, i ) );
+        }
+        Assert.assertEquals( 200000, subject.size() );
+        for ( int i = 0; i < 200000; i += 1000 )
+        {
+            Assert.assertTrue( subject.mayContain( String.format( "%016x%024x", i * 0x9E3779B97F4A7C15L, i ), null ) );
+        }
+    }
+
+    @Test
+    public void testOverflowIsBypassed()
+    {
+        final Sha1Index small = new Sha1Index( 0, 1 );
+        small.add( "repo", SHA1_A );
+        small.add( "repo", SHA1_B );
+        Assert.assertTrue( small.mayContain( "0000000000000000000000000000000000000000", null ) );
+    }
+}
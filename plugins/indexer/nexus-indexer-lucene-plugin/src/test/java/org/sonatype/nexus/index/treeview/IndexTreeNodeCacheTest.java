@@ -0,0 +1,142 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index.treeview;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.maven.index.treeview.TreeNode.Type;
+import org.junit.Assert;
+import org.junit.Test;
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+public class IndexTreeNodeCacheTest
+{
+    private final IndexTreeNodeCache subject = new IndexTreeNodeCache();
+
+    private Repository repository( final String id )
+    {
+        final Repository repository = mock( Repository.class );
+        when( repository.getId() ).thenReturn( id );
+        return repository;
+    }
+
+    private DefaultMergedTreeNode node()
+    {
+        final DefaultMergedTreeNode node = new DefaultMergedTreeNode( null, null );
+        node.setType( Type.G );
+        node.setPath( "/org/" );
+        return node;
+    }
+
+    private GroupRepository group( final String id, final String... memberIds )
+    {
+        final GroupRepository group = mock( GroupRepository.class );
+        when( group.getId() ).thenReturn( id );
+        when( group.getTransitiveMemberRepositoryIds() ).thenReturn( Arrays.asList( memberIds ) );
+        when( group.adaptToFacet( GroupRepository.class ) ).thenReturn( group );
+        return group;
+    }
+
+    @Test
+    public void testParentPaths()
+    {
+        Assert.assertEquals( 5, IndexTreeNodeCache.parentPaths( "/org/sonatype/foo/1.0/foo-1.0.jar", true ).size() );
+        Assert.assertTrue( IndexTreeNodeCache.parentPaths( "/org/sonatype/foo/1.0/foo-1.0.jar", true ).contains(
+            "/org/sonatype/" ) );
+        Assert.assertEquals( IndexTreeNodeCache.parentPaths( "/org/sonatype/foo/1.0/foo-1.0.jar", false ).iterator().next(),
+            "/org/sonatype/foo/1.0/" );
+    }
+
+    @Test
+    public void testStructuralChangeEvictsParents()
+    {
+        final Repository repo = repository( "repo" );
+        subject.put( repo, "/", "v", node(), subject.getStamp( repo ) );
+        subject.put( repo, "/org/", "v", node(), subject.getStamp( repo ) );
+        subject.put( repo, "/com/", "v", node(), subject.getStamp( repo ) );
+
+        subject.invalidate( "repo", "/org/foo/1.0/foo-1.0.jar", false );
+        Assert.assertNotNull( subject.get( repo, "/org/", "v" ) );
+
+        subject.invalidate( "repo", "/org/foo/1.0/foo-1.0.jar", true );
+        Assert.assertNull( subject.get( repo, "/", "v" ) );
+        Assert.assertNull( subject.get( repo, "/org/", "v" ) );
+        Assert.assertNotNull( subject.get( repo, "/com/", "v" ) );
+    }
+
+    @Test
+    public void testMemberChangeEvictsGroup()
+    {
+        final Repository repo = repository( "repo" );
+        final GroupRepository group = group( "group", "repo" );
+        subject.put( repo, "/", "v", node(), subject.getStamp( repo ) );
+        subject.put( group, "/", "v", node(), subject.getStamp( group ) );
+
+        subject.invalidate( "repo" );
+        Assert.assertNull( subject.get( repo, "/", "v" ) );
+        Assert.assertNull( subject.get( group, "/", "v" ) );
+    }
+
+    @Test
+    public void testStaleNodeIsNotCached()
+    {
+        final Repository repo = repository( "repo" );
+        final long stamp = subject.getStamp( repo );
+        subject.invalidate( "repo" );
+        subject.put( repo, "/", "v", node(), stamp );
+        Assert.assertNull( subject.get( repo, "/", "v" ) );
+    }
+
+    @Test
+    public void testOtherRepositoryChangeDoesNotPreventCaching()
+    {
+        final Repository repo = repository( "repo" );
+        final long stamp = subject.getStamp( repo );
+        subject.invalidate( "other" );
+        subject.put( repo, "/", "v", node(), stamp );
+        Assert.assertNotNull( subject.get( repo, "/", "v" ) );
+    }
+
+    @Test
+    public void testGroupMembersChangeEvictsGroup()
+    {
+        final Repository repo = repository( "repo" );
+        final GroupRepository group = group( "group", "repo" );
+        subject.put( repo, "/", "v", node(), subject.getStamp( repo ) );
+        subject.put( group, "/", "v", node(), subject.getStamp( group ) );
+
+        subject.onEvent( new RepositoryGroupMembersChangedEvent( group, Arrays.asList( "repo" ),
+            Collections.<String> emptyList() ) );
+        Assert.assertNotNull( subject.get( repo, "/", "v" ) );
+        Assert.assertNull( subject.get( group, "/", "v" ) );
+    }
+
+    @Test
+    public void testCachedNodeIsDetachedCopy()
+    {
+        final Repository repo = repository( "repo" );
+        final DefaultMergedTreeNode node = node();
+        subject.put( repo, "/org/", "v", node, subject.getStamp( repo ) );
+
+        final DefaultMergedTreeNode cached = subject.get( repo, "/org/", "v" );
+        Assert.assertNotSame( node, cached );
+        Assert.assertEquals( Type.G, cached.getType() );
+        Assert.assertEquals( "/org/", cached.getPath() );
+    }
+}
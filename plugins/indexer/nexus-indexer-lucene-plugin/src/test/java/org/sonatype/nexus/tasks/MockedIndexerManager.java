@@ -145,6 +145,20 @@ public class MockedIndexerManager
 
     }
 
+    @Override
+    public void publishAllIndex( boolean fullRepack )
+        throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void publishRepositoryIndex( String repositoryId, boolean fullRepack )
+        throws IOException, NoSuchRepositoryException
+    {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void optimizeAllRepositoriesIndex()
         throws IOException
@@ -168,6 +182,13 @@ public class MockedIndexerManager
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Map<String, Collection<ArtifactInfo>> identifyArtifacts( Field field, Collection<String> data )
+        throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public FlatSearchResponse searchArtifactFlat( String term, String repositoryId, Integer from, Integer count,
                                                   Integer hitLimit )
@@ -0,0 +1,43 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.tasks;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.Test;
+import org.sonatype.nexus.NexusAppTestSupport;
+import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.tasks.descriptors.PublishIndexesTaskDescriptor;
+
+public class PublishIndexesTaskTest
+    extends NexusAppTestSupport
+{
+    @Test
+    public void testFullRepackByDefault()
+        throws Exception
+    {
+        final PublishIndexesTask task = lookup( NexusScheduler.class ).createTaskInstance( PublishIndexesTask.class );
+
+        // tasks scheduled before the parameter existed
+        assertThat( task.getParameters().containsKey( PublishIndexesTaskDescriptor.FULL_REPACK_FIELD_ID ),
+            equalTo( false ) );
+        assertThat( task.isFullRepack(), equalTo( true ) );
+
+        task.setFullRepack( false );
+        assertThat( task.isFullRepack(), equalTo( false ) );
+
+        task.setFullRepack( true );
+        assertThat( task.isFullRepack(), equalTo( true ) );
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.plugins.mac;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.archetype.catalog.Archetype;
+import org.apache.maven.archetype.catalog.ArchetypeCatalog;
+import org.apache.maven.archetype.catalog.io.xpp3.ArchetypeCatalogXpp3Writer;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.ArtifactInfoFilter;
+import org.apache.maven.index.context.IndexingContext;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.sonatype.nexus.index.DefaultIndexerManager;
+import org.sonatype.nexus.index.IndexArtifactFilter;
+import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.DigesterUtils;
+
+/**
+ * Cache of rendered archetype catalogs. Catalogs are built from repository index once per repository and exposed
+ * repository URL, and are validated against the repository index generation: when the index changes, the previously
+ * rendered catalog is still served while a new one is built in background.
+ * <p>
+ * As the catalog content depends on the permissions of the current user, the catalog is built unfiltered, remembering
+ * the index entries it was built from. Per request, only the permission checks are performed against those entries:
+ * if everything is permitted (the usual case), the full rendered catalog is served, otherwise a filtered variant is
+ * rendered (and cached) from the catalog model, without touching the index.
+ *
+ * @since 2.4
+ */
+@Named
+@Singleton
+public class ArchetypeCatalogCache
+    extends AbstractLoggingComponent
+    implements Disposable
+{
+    /**
+     * Maximum count of filtered variants kept per catalog.
+     */
+    private static final int MAX_VARIANTS = 32;
+
+    private final MacPlugin macPlugin;
+
+    private final DefaultIndexerManager indexerManager;
+
+    private final IndexArtifactFilter indexArtifactFilter;
+
+    private final ConcurrentMap<String, CachedCatalog> catalogs;
+
+    private final ConcurrentMap<String, FutureTask<CachedCatalog>> builds;
+
+    private final ThreadPoolExecutor executor;
+
+    @Inject
+    public ArchetypeCatalogCache( final MacPlugin macPlugin, final DefaultIndexerManager indexerManager,
+                                  final IndexArtifactFilter indexArtifactFilter )
+    {
+        this.macPlugin = macPlugin;
+        this.indexerManager = indexerManager;
+        this.indexArtifactFilter = indexArtifactFilter;
+        this.catalogs = new ConcurrentHashMap<String, CachedCatalog>();
+        this.builds = new ConcurrentHashMap<String, FutureTask<CachedCatalog>>();
+        this.executor =
+            new ThreadPoolExecutor( 1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NexusThreadFactory( "mac", "Archetype Catalog" ) );
+        this.executor.allowCoreThreadTimeOut( true );
+    }
+
+    // == Disposable iface, to manage ExecutorService lifecycle
+
+    @Override
+    public void dispose()
+    {
+        executor.shutdownNow();
+    }
+
+    // ==
+
+    /**
+     * Returns the archetype catalog of repository, filtered by permissions of current user.
+     */
+    public RenderedCatalog getCatalog( final Repository repository, final String repositoryContentUrl )
+        throws IOException
+    {
+        final String key = repository.getId() + "|" + repositoryContentUrl;
+        final long generation = indexerManager.getIndexGeneration( repository );
+
+        CachedCatalog catalog = catalogs.get( key );
+        if ( catalog == null )
+        {
+            catalog = build( key, repository, repositoryContentUrl, generation );
+        }
+        else if ( catalog.getGeneration() != generation )
+        {
+            // serve what we have, and refresh it in background
+            refresh( key, repository, repositoryContentUrl, generation );
+        }
+
+        return catalog.render( indexArtifactFilter );
+    }
+
+    /**
+     * Drops cached catalogs of the repository.
+     */
+    public void invalidate( final Repository repository )
+    {
+        final String prefix = repository.getId() + "|";
+        for ( String key : catalogs.keySet() )
+        {
+            if ( key.startsWith( prefix ) )
+            {
+                catalogs.remove( key );
+            }
+        }
+    }
+
+    // ==
+
+    private CachedCatalog build( final String key, final Repository repository, final String repositoryContentUrl,
+                                 final long generation )
+        throws IOException
+    {
+        final FutureTask<CachedCatalog> build = newBuild( key, repository, repositoryContentUrl, generation );
+        FutureTask<CachedCatalog> running = builds.putIfAbsent( key, build );
+        if ( running == null )
+        {
+            running = build;
+            running.run();
+        }
+
+        try
+        {
+            // the build might be performed by another thread, that's fine, we wait for it
+            return running.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while building archetype catalog", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException( "Could not build archetype catalog", e.getCause() );
+        }
+    }
+
+    private void refresh( final String key, final Repository repository, final String repositoryContentUrl,
+                          final long generation )
+    {
+        final FutureTask<CachedCatalog> build = newBuild( key, repository, repositoryContentUrl, generation );
+        if ( builds.putIfAbsent( key, build ) == null )
+        {
+            try
+            {
+                executor.execute( build );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                // shutting down
+                builds.remove( key, build );
+                getLogger().debug( "Could not refresh archetype catalog of {}", repository.getId(), e );
+            }
+        }
+    }
+
+    /**
+     * Creates the build task of a catalog. Callers must register it in {@link #builds} before running it, to make sure
+     * only one build happens for a catalog at a time.
+     */
+    private FutureTask<CachedCatalog> newBuild( final String key, final Repository repository,
+                                                final String repositoryContentUrl, final long generation )
+    {
+        return new FutureTask<CachedCatalog>( new Callable<CachedCatalog>()
+        {
+            @Override
+            public CachedCatalog call()
+                throws Exception
+            {
+                try
+                {
+                    final CachedCatalog catalog = buildCatalog( repository, repositoryContentUrl, generation );
+                    catalogs.put( key, catalog );
+                    return catalog;
+                }
+                catch ( IOException e )
+                {
+                    getLogger().warn( "Could not build archetype catalog of {}",
+                        RepositoryStringUtils.getHumanizedNameString( repository ), e );
+                    throw e;
+                }
+                finally
+                {
+                    builds.remove( key );
+                }
+            }
+        } );
+    }
+
+    private CachedCatalog buildCatalog( final Repository repository, final String repositoryContentUrl,
+                                        final long generation )
+        throws IOException
+    {
+        // entries the catalog is built from, needed to apply per-user permissions later
+        final List<ArtifactInfo> entries = Collections.synchronizedList( new ArrayList<ArtifactInfo>() );
+        final ArtifactInfoFilter recordingFilter = new ArtifactInfoFilter()
+        {
+            public boolean accepts( IndexingContext ctx, ArtifactInfo ai )
+            {
+                entries.add( ai );
+                return true;
+            }
+        };
+        final MacRequest req = new MacRequest( repository.getId(), repositoryContentUrl, recordingFilter );
+
+        final ArchetypeCatalog[] result = new ArchetypeCatalog[1];
+        indexerManager.shared( repository, new DefaultIndexerManager.Runnable()
+        {
+            @Override
+            public void run( IndexingContext context )
+                throws IOException
+            {
+                result[0] = macPlugin.listArcherypesAsCatalog( req, context );
+            }
+        } );
+
+        if ( result[0] == null )
+        {
+            // NEXUS-5216: Warn if indexing context is null (indexable=false) for given repository but continue
+            // to return the correct empty catalog
+            getLogger().info(
+                "Archetype Catalog for repository {} is not buildable as it lacks IndexingContext (indexable=false?).",
+                RepositoryStringUtils.getHumanizedNameString( repository ) );
+
+            result[0] = macPlugin.listArcherypesAsCatalog( req, null );
+        }
+
+        return new CachedCatalog( generation, result[0], new ArrayList<ArtifactInfo>( entries ) );
+    }
+
+    // ==
+
+    /**
+     * Serialized archetype catalog with its SHA1 and timestamp.
+     */
+    public static class RenderedCatalog
+    {
+        private final byte[] payload;
+
+        private final String sha1;
+
+        private final long modified;
+
+        RenderedCatalog( final ArchetypeCatalog catalog, final long modified )
+            throws IOException
+        {
+            final StringWriter sw = new StringWriter();
+            final ArchetypeCatalogXpp3Writer writer = new ArchetypeCatalogXpp3Writer();
+            writer.write( sw, catalog );
+            this.payload = sw.toString().getBytes( "UTF-8" );
+            this.sha1 = DigesterUtils.getSha1Digest( payload );
+            this.modified = modified;
+        }
+
+        /**
+         * Returns the catalog XML, must not be modified.
+         */
+        public byte[] getPayload()
+        {
+            return payload;
+        }
+
+        public String getSha1()
+        {
+            return sha1;
+        }
+
+        public long getModified()
+        {
+            return modified;
+        }
+    }
+
+    private static class CachedCatalog
+    {
+        private final long generation;
+
+        private final ArchetypeCatalog catalog;
+
+        private final List<ArtifactInfo> entries;
+
+        private final RenderedCatalog full;
+
+        private final ConcurrentMap<Set<String>, RenderedCatalog> variants;
+
+        CachedCatalog( final long generation, final ArchetypeCatalog catalog, final List<ArtifactInfo> entries )
+            throws IOException
+        {
+            this.generation = generation;
+            this.catalog = catalog;
+            this.entries = entries;
+            // HTTP dates have second precision, conditional GETs would never match otherwise
+            this.full = new RenderedCatalog( catalog, ( System.currentTimeMillis() / 1000L ) * 1000L );
+            this.variants = new ConcurrentHashMap<Set<String>, RenderedCatalog>();
+        }
+
+        long getGeneration()
+        {
+            return generation;
+        }
+
+        RenderedCatalog render( final IndexArtifactFilter filter )
+            throws IOException
+        {
+            final Set<String> permitted = new HashSet<String>();
+            boolean denied = false;
+            for ( ArtifactInfo entry : entries )
+            {
+                if ( filter.filterArtifactInfo( entry ) )
+                {
+                    permitted.add( gav( entry.groupId, entry.artifactId, entry.version ) );
+                }
+                else
+                {
+                    denied = true;
+                }
+            }
+
+            if ( !denied )
+            {
+                return full;
+            }
+
+            RenderedCatalog variant = variants.get( permitted );
+            if ( variant == null )
+            {
+                final ArchetypeCatalog filtered = new ArchetypeCatalog();
+                for ( Archetype archetype : catalog.getArchetypes() )
+                {
+                    if ( permitted.contains( gav( archetype.getGroupId(), archetype.getArtifactId(),
+                                                  archetype.getVersion() ) ) )
+                    {
+                        filtered.addArchetype( archetype );
+                    }
+                }
+                variant = new RenderedCatalog( filtered, full.getModified() );
+                if ( variants.size() >= MAX_VARIANTS )
+                {
+                    variants.clear();
+                }
+                variants.put( permitted, variant );
+            }
+            return variant;
+        }
+
+        private static String gav( final String groupId, final String artifactId, final String version )
+        {
+            return groupId + ":" + artifactId + ":" + version;
+        }
+    }
+}
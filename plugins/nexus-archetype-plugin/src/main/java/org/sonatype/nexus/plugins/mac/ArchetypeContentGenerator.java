@@ -12,18 +12,17 @@
  */
 package org.sonatype.nexus.plugins.mac;
 
+import java.io.IOException;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.apache.maven.index.ArtifactInfo;
-import org.apache.maven.index.ArtifactInfoFilter;
-import org.apache.maven.index.context.IndexingContext;
-import org.sonatype.nexus.index.DefaultIndexerManager;
-import org.sonatype.nexus.index.IndexArtifactFilter;
+import org.sonatype.nexus.plugins.mac.ArchetypeCatalogCache.RenderedCatalog;
 import org.sonatype.nexus.proxy.IllegalOperationException;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.LocalStorageException;
+import org.sonatype.nexus.proxy.attributes.inspectors.DigestCalculatingInspector;
 import org.sonatype.nexus.proxy.item.ContentGenerator;
 import org.sonatype.nexus.proxy.item.ContentLocator;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
@@ -43,13 +42,7 @@ public class ArchetypeContentGenerator
     public static final String ID = "ArchetypeContentGenerator";
 
     @Inject
-    private MacPlugin macPlugin;
-
-    @Inject
-    private DefaultIndexerManager indexerManager;
-
-    @Inject
-    private IndexArtifactFilter indexArtifactFilter;
+    private ArchetypeCatalogCache archetypeCatalogCache;
 
     @Inject
     private RepositoryURLBuilder repositoryURLBuilder;
@@ -64,19 +57,23 @@ public class ArchetypeContentGenerator
     public ContentLocator generateContent( Repository repository, String path, StorageFileItem item )
         throws IllegalOperationException, ItemNotFoundException, LocalStorageException
     {
-        // make length unknown (since it will be known only in the moment of actual content pull)
-        item.setLength( -1 );
+        final String exposedRepositoryContentUrl = repositoryURLBuilder.getExposedRepositoryContentUrl( repository );
 
-        ArtifactInfoFilter artifactInfoFilter = new ArtifactInfoFilter()
+        final RenderedCatalog catalog;
+        try
         {
-            public boolean accepts( IndexingContext ctx, ArtifactInfo ai )
-            {
-                return indexArtifactFilter.filterArtifactInfo( ai );
-            }
-        };
-        final String exposedRepositoryContentUrl = repositoryURLBuilder.getExposedRepositoryContentUrl( repository );
+            catalog = archetypeCatalogCache.getCatalog( repository, exposedRepositoryContentUrl );
+        }
+        catch ( IOException e )
+        {
+            throw new LocalStorageException( "Could not generate archetype catalog", e );
+        }
+
+        // expose the rendered catalog properties, so conditional GETs are answered without content transfer
+        item.setLength( catalog.getPayload().length );
+        item.getRepositoryItemAttributes().setModified( catalog.getModified() );
+        item.getRepositoryItemAttributes().put( DigestCalculatingInspector.DIGEST_SHA1_KEY, catalog.getSha1() );
 
-        return new ArchetypeContentLocator( repository, exposedRepositoryContentUrl, indexerManager, macPlugin,
-                                            artifactInfoFilter );
+        return new ArchetypeContentLocator( catalog );
     }
 }
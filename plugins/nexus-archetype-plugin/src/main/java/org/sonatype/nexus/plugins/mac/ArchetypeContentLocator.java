@@ -15,102 +15,37 @@ package org.sonatype.nexus.plugins.mac;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 
-import org.apache.maven.archetype.catalog.ArchetypeCatalog;
-import org.apache.maven.archetype.catalog.io.xpp3.ArchetypeCatalogXpp3Writer;
-import org.apache.maven.index.ArtifactInfoFilter;
-import org.apache.maven.index.context.IndexingContext;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.sonatype.nexus.index.DefaultIndexerManager;
+import org.sonatype.nexus.plugins.mac.ArchetypeCatalogCache.RenderedCatalog;
 import org.sonatype.nexus.proxy.item.ContentLocator;
-import org.sonatype.nexus.proxy.repository.Repository;
-import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
 
 /**
- * A content locator to generate archetype catalog. This way, the actual work (search, archetype catalog model fillup
- * from results, converting it to string and flushing it as byte array backed stream) is postponed to very last moment,
- * when the content itself is asked for.
+ * A content locator to serve archetype catalog. The actual work (search, archetype catalog model fillup from results,
+ * converting it to string) is done and cached by {@link ArchetypeCatalogCache}, this locator only flushes the
+ * rendered catalog as byte array backed stream, when the content itself is asked for.
  * 
  * @author cstamas
  */
 public class ArchetypeContentLocator
     implements ContentLocator
 {
-    private final Logger logger = LoggerFactory.getLogger( getClass() );
+    private final RenderedCatalog catalog;
 
-    private final Repository repository;
-
-    private final String repositoryContentUrl;
-
-    private final DefaultIndexerManager nexusIndexer;
-
-    private final MacPlugin macPlugin;
-
-    private final ArtifactInfoFilter artifactInfoFilter;
-
-    private volatile String payload;
-
-    public ArchetypeContentLocator( final Repository repository, final String repositoryContentUrl,
-                                    final DefaultIndexerManager nexusIndexer, final MacPlugin macPlugin,
-                                    final ArtifactInfoFilter artifactInfoFilter )
+    public ArchetypeContentLocator( final RenderedCatalog catalog )
     {
-        this.repository = repository;
-        this.repositoryContentUrl = repositoryContentUrl;
-        this.nexusIndexer = nexusIndexer;
-        this.macPlugin = macPlugin;
-        this.artifactInfoFilter = artifactInfoFilter;
+        this.catalog = catalog;
     }
 
-    protected synchronized String generateCatalogPayload()
-        throws IOException
+    public long getLength()
     {
-        if ( payload == null )
-        {
-            nexusIndexer.shared( repository, new DefaultIndexerManager.Runnable()
-            {
-                @Override
-                public void run( IndexingContext context )
-                    throws IOException
-                {
-                    // XXX igorf, this is not called when context == null, but we need to generate an empty catalog
-
-                    payload = generateCatalogPayload( context );
-                }
-            } );
-        }
-
-        return payload;
-    }
-
-    private String generateCatalogPayload( IndexingContext context )
-        throws IOException
-    {
-        final MacRequest req = new MacRequest( repository.getId(), repositoryContentUrl, artifactInfoFilter );
-
-        // NEXUS-5216: Warn if indexing context is null (indexable=false) for given repository but continue
-        // to return the correct empty catalog
-        if ( context == null )
-        {
-            logger.info( "Archetype Catalog for repository {} is not buildable as it lacks IndexingContext (indexable=false?).",
-                         RepositoryStringUtils.getHumanizedNameString( repository ) );
-        }
-
-        // get the catalog
-        final ArchetypeCatalog catalog = macPlugin.listArcherypesAsCatalog( req, context );
-        // serialize it to XML
-        final StringWriter sw = new StringWriter();
-        final ArchetypeCatalogXpp3Writer writer = new ArchetypeCatalogXpp3Writer();
-        writer.write( sw, catalog );
-        return sw.toString();
+        return catalog.getPayload().length;
     }
 
     @Override
     public InputStream getContent()
         throws IOException
     {
-        return new ByteArrayInputStream( generateCatalogPayload().getBytes( "UTF-8" ) );
+        return new ByteArrayInputStream( catalog.getPayload() );
     }
 
     @Override
@@ -22,6 +22,7 @@ import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.events.EventInspector;
 import org.sonatype.nexus.proxy.events.RepositoryEventLocalStatusChanged;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventAdd;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryRepositoryEvent;
 import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
 import org.sonatype.nexus.proxy.item.StringContentLocator;
@@ -51,9 +52,16 @@ public class MacPluginEventInspector
     @Named( "maven2" )
     private ContentClass maven2ContentClass;
 
+    @Inject
+    private ArchetypeCatalogCache archetypeCatalogCache;
+
     public boolean accepts( Event<?> evt )
     {
-        if ( evt instanceof RepositoryRegistryEventAdd )
+        if ( evt instanceof RepositoryRegistryEventRemove )
+        {
+            return true;
+        }
+        else if ( evt instanceof RepositoryRegistryEventAdd )
         {
             RepositoryRegistryRepositoryEvent registryEvent = (RepositoryRegistryRepositoryEvent) evt;
 
@@ -81,7 +89,14 @@ public class MacPluginEventInspector
     {
         Repository repository = null;
 
-        if ( evt instanceof RepositoryRegistryEventAdd )
+        if ( evt instanceof RepositoryRegistryEventRemove )
+        {
+            // drop cached catalogs of removed repository
+            archetypeCatalogCache.invalidate( ( (RepositoryRegistryEventRemove) evt ).getRepository() );
+
+            return;
+        }
+        else if ( evt instanceof RepositoryRegistryEventAdd )
         {
             RepositoryRegistryRepositoryEvent registryEvent = (RepositoryRegistryRepositoryEvent) evt;
 
@@ -23,6 +23,7 @@ import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonatype.nexus.plugins.rrb.parsers.ArtifactoryRemoteRepositoryParser;
@@ -56,6 +57,20 @@ public class MavenRepositoryReader
 
     private String id;
 
+    private String ifModifiedSince;
+
+    private String ifNoneMatch;
+
+    private int requestCount;
+
+    private String lastModified;
+
+    private String etag;
+
+    private boolean notModified;
+
+    private boolean cacheable;
+
     public MavenRepositoryReader( final HttpClient client, final QueryStringBuilder queryStringBuilder )
     {
         this.client = checkNotNull(client);
@@ -70,6 +85,11 @@ public class MavenRepositoryReader
     public List<RepositoryDirectory> extract( String remotePath, String localUrl, final ProxyRepository proxyRepository, String id )
     {
         logger.debug( "remotePath={}", remotePath );
+        this.requestCount = 0;
+        this.lastModified = null;
+        this.etag = null;
+        this.notModified = false;
+        this.cacheable = true;
         this.remotePath = remotePath;
         this.localUrl = localUrl;
         this.proxyRepository = proxyRepository;
@@ -88,6 +108,10 @@ public class MavenRepositoryReader
         }
 
         StringBuilder html = getContent();
+        if ( notModified )
+        {
+            return null;
+        }
         if ( logger.isDebugEnabled() )
         {
             logger.trace( html.toString() );
@@ -95,6 +119,60 @@ public class MavenRepositoryReader
         return parseResult(html);
     }
 
+    /**
+     * Same as {@link #extract(String, String, ProxyRepository, String)}, but makes the request conditional using the
+     * validators received with a previous extraction of same listing.
+     *
+     * @param ifModifiedSince the "Last-Modified" received last time, or {@code null}
+     * @param ifNoneMatch the "ETag" received last time, or {@code null}
+     * @return a list containing the remote data, or {@code null} if remote reported it as not modified
+     * @since 2.4
+     */
+    public List<RepositoryDirectory> extract( String remotePath, String localUrl,
+                                              final ProxyRepository proxyRepository, String id,
+                                              final String ifModifiedSince, final String ifNoneMatch )
+    {
+        this.ifModifiedSince = ifModifiedSince;
+        this.ifNoneMatch = ifNoneMatch;
+        try
+        {
+            return extract( remotePath, localUrl, proxyRepository, id );
+        }
+        finally
+        {
+            this.ifModifiedSince = null;
+            this.ifNoneMatch = null;
+        }
+    }
+
+    /**
+     * @return the "Last-Modified" of last extracted listing, or {@code null} if not known
+     * @since 2.4
+     */
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * @return the "ETag" of last extracted listing, or {@code null} if not known
+     * @since 2.4
+     */
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    /**
+     * @return {@code true} if last extracted listing is a successful remote response (not a transport failure or an
+     *         error response), hence it may be cached
+     * @since 2.4
+     */
+    public boolean isCacheable()
+    {
+        return cacheable;
+    }
+
     private ArrayList<RepositoryDirectory> parseResult( StringBuilder indata )
     {
         RemoteRepositoryParser parser = null;
@@ -231,12 +309,41 @@ public class MavenRepositoryReader
         url = maybeAppendQueryString(url);
 
         HttpGet method = new HttpGet(url);
+        // only the first request of an extraction is conditional, validators of subsequent ones are not kept
+        requestCount++;
+        if (requestCount == 1) {
+            if (ifModifiedSince != null) {
+                method.addHeader(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+            }
+            if (ifNoneMatch != null) {
+                method.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+            }
+        }
         try {
             logger.debug("Requesting: {}", method);
             HttpResponse response = client.execute(method);
             int statusCode = response.getStatusLine().getStatusCode();
             logger.debug("Status code: {}", statusCode);
 
+            if (requestCount == 1) {
+                lastModified = getHeaderValue(response, HttpHeaders.LAST_MODIFIED);
+                etag = getHeaderValue(response, HttpHeaders.ETAG);
+            }
+            else {
+                lastModified = null;
+                etag = null;
+            }
+            if (statusCode == 304 && requestCount == 1) {
+                notModified = true;
+                EntityUtils.consumeQuietly(response.getEntity());
+                return buff;
+            }
+            // error pages (like S3 access denied) are parsed too, but only a successful response is worth caching
+            cacheable = statusCode >= 200 && statusCode < 300;
+            if (response.getEntity() == null) {
+                return buff;
+            }
+
             BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent()));
             String line;
             while ((line = reader.readLine()) != null) {
@@ -258,8 +365,14 @@ public class MavenRepositoryReader
         }
         catch (Exception e) {
             logger.warn("Failed to get directory listing content", e);
+            cacheable = false;
         }
 
         return buff;
     }
+
+    private String getHeaderValue(final HttpResponse response, final String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
 }
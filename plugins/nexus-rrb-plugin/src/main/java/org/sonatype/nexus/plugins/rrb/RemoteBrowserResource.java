@@ -20,7 +20,6 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 
-import org.apache.http.client.HttpClient;
 import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
@@ -33,14 +32,11 @@ import org.restlet.resource.ResourceException;
 import org.restlet.resource.Variant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonatype.nexus.apachehttpclient.Hc4Provider;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.NoSuchResourceStoreException;
 import org.sonatype.nexus.proxy.ResourceStore;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
-import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
-import org.sonatype.nexus.proxy.storage.remote.http.QueryStringBuilder;
 import org.sonatype.nexus.rest.AbstractResourceStoreContentPlexusResource;
 import org.sonatype.nexus.rest.repositories.AbstractRepositoryPlexusResource;
 import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
@@ -63,10 +59,7 @@ public class RemoteBrowserResource
         AbstractRepositoryPlexusResource.REPOSITORY_ID_KEY + "}/remotebrowser";
 
     @Requirement
-    private QueryStringBuilder queryStringBuilder;
-
-    @Requirement
-    private Hc4Provider httpClientProvider;
+    private RemoteListingCache remoteListingCache;
 
     private final Logger logger = LoggerFactory.getLogger( RemoteBrowserResource.class );
 
@@ -125,13 +118,11 @@ public class RemoteBrowserResource
         try
         {
             ProxyRepository proxyRepository = getUnprotectedRepositoryRegistry().getRepositoryWithFacet( id, ProxyRepository.class );
-            HttpClient client = httpClientProvider.createHttpClient(proxyRepository.getRemoteStorageContext());
 
-            MavenRepositoryReader mr = new MavenRepositoryReader( client, queryStringBuilder );
             MavenRepositoryReaderResponse data = new MavenRepositoryReaderResponse();
             // FIXME: Sort this out, NEXUS-4058 was closed about a year go (orig: we really should not do the encoding here, but this is work around until NEXUS-4058 is fixed).
             String localUrl = createRemoteResourceReference( request, id, "" ).toString(false, false);
-            List<RepositoryDirectory> result = mr.extract(remotePath, localUrl, proxyRepository, id);
+            List<RepositoryDirectory> result = remoteListingCache.getListing( proxyRepository, remotePath, localUrl, id );
             data.setData( result );
             logger.debug( "return value is {}", data );
 
@@ -0,0 +1,303 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.plugins.rrb;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.client.HttpClient;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.apachehttpclient.Hc4Provider;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.storage.remote.http.QueryStringBuilder;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+/**
+ * Cache of remote repository listings, to not hit the remote with a request (and parse the response) on every tree
+ * expansion in the remote browser UI. Listings are kept for a TTL, after which they are revalidated using a conditional
+ * request (if the remote sent validators). Only one extraction runs per listing at a time, concurrent requests for same
+ * listing wait for it and use its result. Cache is bounded by the estimated memory weight of the listings, least
+ * recently used listings are evicted first.
+ * <p>
+ * TTL defaults to 60 seconds, and is configurable with system property
+ * {@code org.sonatype.nexus.plugins.rrb.RemoteListingCache.ttlMillis}, where 0 disables caching. The maximum weight
+ * (in bytes, estimated) defaults to 10MB, and is configurable with system property
+ * {@code org.sonatype.nexus.plugins.rrb.RemoteListingCache.maxWeight}.
+ *
+ * @since 2.4
+ */
+@Component( role = RemoteListingCache.class )
+public class RemoteListingCache
+{
+    private static final long TTL_MILLIS = SystemPropertiesHelper.getLong( RemoteListingCache.class.getName()
+        + ".ttlMillis", 60000L );
+
+    private static final long MAX_WEIGHT = SystemPropertiesHelper.getLong( RemoteListingCache.class.getName()
+        + ".maxWeight", 10L * 1024L * 1024L );
+
+    /**
+     * Estimated memory weight of a listing entry and of each directory in it, beside their strings.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Logger logger = LoggerFactory.getLogger( RemoteListingCache.class );
+
+    @Requirement
+    private Hc4Provider httpClientProvider;
+
+    @Requirement
+    private QueryStringBuilder queryStringBuilder;
+
+    private final long ttlMillis;
+
+    private final long maxWeight;
+
+    /**
+     * Access ordered, so iteration starts with least recently used entry. Guards {@link #totalWeight} and
+     * {@link Entry#accountedWeight} too.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long totalWeight;
+
+    public RemoteListingCache()
+    {
+        this( TTL_MILLIS, MAX_WEIGHT );
+    }
+
+    RemoteListingCache( final long ttlMillis, final long maxWeight )
+    {
+        this.ttlMillis = ttlMillis;
+        this.maxWeight = maxWeight;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+    }
+
+    /**
+     * Returns the listing of remote path of proxy repository, from cache if it's fresh or was revalidated, or freshly
+     * extracted from remote.
+     *
+     * @param proxyRepository the proxy repository being browsed
+     * @param remotePath remote path added to the URL
+     * @param localUrl url to the local resource service (the listing links point to it)
+     * @param id the ID of the proxy repository
+     * @return a list containing the remote data, must not be modified
+     */
+    public List<RepositoryDirectory> getListing( final ProxyRepository proxyRepository, final String remotePath,
+                                                 final String localUrl, final String id )
+    {
+        if ( ttlMillis <= 0 )
+        {
+            return createReader( proxyRepository ).extract( remotePath, localUrl, proxyRepository, id );
+        }
+
+        // listing links are built with local URL, so it is part of the key
+        final String key = id + "|" + proxyRepository.getRemoteUrl() + "|" + remotePath + "|" + localUrl;
+        final Entry entry = getEntry( key );
+        synchronized ( entry )
+        {
+            final long now = System.currentTimeMillis();
+            if ( entry.data != null && now - entry.validated < ttlMillis )
+            {
+                logger.debug( "Listing of {} served from cache", key );
+                return entry.data;
+            }
+
+            try
+            {
+                final MavenRepositoryReader reader = createReader( proxyRepository );
+                if ( entry.data != null && ( entry.lastModified != null || entry.etag != null ) )
+                {
+                    final List<RepositoryDirectory> data =
+                        reader.extract( remotePath, localUrl, proxyRepository, id, entry.lastModified, entry.etag );
+                    if ( data == null )
+                    {
+                        logger.debug( "Listing of {} revalidated", key );
+                        entry.validated = now;
+                        return entry.data;
+                    }
+                    return update( entry, reader, data, now );
+                }
+                else
+                {
+                    return update( entry, reader, reader.extract( remotePath, localUrl, proxyRepository, id ), now );
+                }
+            }
+            finally
+            {
+                if ( entry.data == null )
+                {
+                    // extraction failed, do not leave the empty placeholder entry behind
+                    remove( entry );
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all the cached listings.
+     */
+    public void clear()
+    {
+        synchronized ( entries )
+        {
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+
+    // ==
+
+    protected MavenRepositoryReader createReader( final ProxyRepository proxyRepository )
+    {
+        final HttpClient client = httpClientProvider.createHttpClient( proxyRepository.getRemoteStorageContext() );
+        return new MavenRepositoryReader( client, queryStringBuilder );
+    }
+
+    protected long getTotalWeight()
+    {
+        synchronized ( entries )
+        {
+            return totalWeight;
+        }
+    }
+
+    protected int size()
+    {
+        synchronized ( entries )
+        {
+            return entries.size();
+        }
+    }
+
+    private Entry getEntry( final String key )
+    {
+        synchronized ( entries )
+        {
+            Entry entry = entries.get( key );
+            if ( entry == null )
+            {
+                entry = new Entry( key );
+                entries.put( key, entry );
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Invoked while holding the lock of entry.
+     */
+    private List<RepositoryDirectory> update( final Entry entry, final MavenRepositoryReader reader,
+                                              final List<RepositoryDirectory> data, final long now )
+    {
+        if ( !reader.isCacheable() )
+        {
+            // remote failure, do not keep serving it
+            logger.debug( "Listing of {} not cached due to remote failure", entry.key );
+            remove( entry );
+            return data;
+        }
+
+        entry.data = Collections.unmodifiableList( data );
+        entry.lastModified = reader.getLastModified();
+        entry.etag = reader.getEtag();
+        entry.validated = now;
+        final long weight = weigh( entry );
+        synchronized ( entries )
+        {
+            // might be evicted meanwhile
+            if ( entries.get( entry.key ) == entry )
+            {
+                totalWeight += weight - entry.accountedWeight;
+                entry.accountedWeight = weight;
+                evict();
+            }
+        }
+        return entry.data;
+    }
+
+    private void remove( final Entry entry )
+    {
+        synchronized ( entries )
+        {
+            // might be evicted meanwhile
+            if ( entries.get( entry.key ) == entry )
+            {
+                entries.remove( entry.key );
+                totalWeight -= entry.accountedWeight;
+            }
+        }
+    }
+
+    /**
+     * Invoked while holding the lock of entries.
+     */
+    private void evict()
+    {
+        for ( Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext()
+            && totalWeight > maxWeight; )
+        {
+            final Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            totalWeight -= eldest.accountedWeight;
+            logger.debug( "Listing of {} evicted", eldest.key );
+        }
+    }
+
+    private static long weigh( final Entry entry )
+    {
+        long result = ENTRY_OVERHEAD + 2L * entry.key.length();
+        for ( RepositoryDirectory directory : entry.data )
+        {
+            result +=
+                ENTRY_OVERHEAD + 2L
+                    * ( length( directory.getResourceURI() ) + length( directory.getRelativePath() )
+                        + length( directory.getText() ) + length( directory.getLastModified() ) );
+        }
+        return result;
+    }
+
+    private static int length( final String string )
+    {
+        return string != null ? string.length() : 0;
+    }
+
+    private static class Entry
+    {
+        private final String key;
+
+        // guarded by this
+
+        private List<RepositoryDirectory> data;
+
+        private String lastModified;
+
+        private String etag;
+
+        private long validated;
+
+        // guarded by entries
+
+        private long accountedWeight;
+
+        private Entry( final String key )
+        {
+            this.key = key;
+        }
+    }
+}
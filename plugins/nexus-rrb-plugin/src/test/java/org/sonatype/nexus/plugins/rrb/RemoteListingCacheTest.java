@@ -0,0 +1,225 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.plugins.rrb;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+public class RemoteListingCacheTest
+    extends TestSupport
+{
+    private static final String LOCAL_URL =
+        "http://localhost:8081/nexus/service/local/repositories/central/remotebrowser/";
+
+    private static final String LAST_MODIFIED = "Tue, 19 Feb 2013 12:12:50 GMT";
+
+    @Mock
+    private ProxyRepository proxyRepository;
+
+    @Mock
+    private MavenRepositoryReader reader;
+
+    @Before
+    public void prepare()
+    {
+        when( proxyRepository.getRemoteUrl() ).thenReturn( "http://repo1.maven.org/maven2/" );
+    }
+
+    protected RemoteListingCache createCache( final long ttlMillis, final long maxWeight )
+    {
+        return new RemoteListingCache( ttlMillis, maxWeight )
+        {
+            @Override
+            protected MavenRepositoryReader createReader( final ProxyRepository proxyRepository )
+            {
+                return reader;
+            }
+        };
+    }
+
+    protected List<RepositoryDirectory> listing( final String text )
+    {
+        final RepositoryDirectory directory = new RepositoryDirectory();
+        directory.setText( text );
+        directory.setRelativePath( "/" + text + "/" );
+        directory.setResourceURI( LOCAL_URL + text + "/" );
+        return Collections.singletonList( directory );
+    }
+
+    @Test
+    public void freshListingIsServedFromCache()
+    {
+        final RemoteListingCache cache = createCache( 60000L, 1024L * 1024L );
+        final List<RepositoryDirectory> listing = listing( "org" );
+        when( reader.extract( "org/", LOCAL_URL, proxyRepository, "central" ) ).thenReturn( listing );
+        when( reader.isCacheable() ).thenReturn( true );
+
+        final List<RepositoryDirectory> first = cache.getListing( proxyRepository, "org/", LOCAL_URL, "central" );
+        final List<RepositoryDirectory> second = cache.getListing( proxyRepository, "org/", LOCAL_URL, "central" );
+        assertThat( first, equalTo( listing ) );
+        assertThat( second, sameInstance( first ) );
+        verify( reader, times( 1 ) ).extract( "org/", LOCAL_URL, proxyRepository, "central" );
+    }
+
+    @Test
+    public void staleListingIsRevalidated()
+        throws Exception
+    {
+        final RemoteListingCache cache = createCache( 1L, 1024L * 1024L );
+        final List<RepositoryDirectory> listing = listing( "org" );
+        when( reader.extract( "org/", LOCAL_URL, proxyRepository, "central" ) ).thenReturn( listing );
+        when( reader.isCacheable() ).thenReturn( true );
+        when( reader.getLastModified() ).thenReturn( LAST_MODIFIED );
+        when( reader.extract( "org/", LOCAL_URL, proxyRepository, "central", LAST_MODIFIED, null ) ).thenReturn( null );
+
+        final List<RepositoryDirectory> first = cache.getListing( proxyRepository, "org/", LOCAL_URL, "central" );
+        Thread.sleep( 5L );
+        final List<RepositoryDirectory> second = cache.getListing( proxyRepository, "org/", LOCAL_URL, "central" );
+        assertThat( second, sameInstance( first ) );
+        verify( reader, times( 1 ) ).extract( "org/", LOCAL_URL, proxyRepository, "central" );
+        verify( reader, times( 1 ) ).extract( "org/", LOCAL_URL, proxyRepository, "central", LAST_MODIFIED, null );
+    }
+
+    @Test
+    public void failedListingIsNotCached()
+    {
+        final RemoteListingCache cache = createCache( 60000L, 1024L * 1024L );
+        when( reader.extract( "org/", LOCAL_URL, proxyRepository, "central" ) ).thenReturn(
+            Collections.<RepositoryDirectory> emptyList() );
+        when( reader.isCacheable() ).thenReturn( false );
+
+        cache.getListing( proxyRepository, "org/", LOCAL_URL, "central" );
+        cache.getListing( proxyRepository, "org/", LOCAL_URL, "central" );
+        verify( reader, times( 2 ) ).extract( "org/", LOCAL_URL, proxyRepository, "central" );
+        assertThat( cache.size(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void throwingExtractionLeavesNoEntry()
+    {
+        final RemoteListingCache cache = createCache( 60000L, 1024L * 1024L );
+        when( reader.extract( "org/", LOCAL_URL, proxyRepository, "central" ) ).thenThrow(
+            new IllegalStateException( "boom" ) );
+
+        try
+        {
+            cache.getListing( proxyRepository, "org/", LOCAL_URL, "central" );
+            fail();
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+        assertThat( cache.size(), equalTo( 0 ) );
+        assertThat( cache.getTotalWeight(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void evictionByWeight()
+    {
+        final RemoteListingCache cache = createCache( 60000L, 2048L );
+        when( reader.extract( anyString(), eq( LOCAL_URL ), eq( proxyRepository ), eq( "central" ) ) ).thenAnswer(
+            new Answer<List<RepositoryDirectory>>()
+            {
+                @Override
+                public List<RepositoryDirectory> answer( final InvocationOnMock invocation )
+                {
+                    return listing( (String) invocation.getArguments()[0] );
+                }
+            } );
+        when( reader.isCacheable() ).thenReturn( true );
+
+        for ( int i = 0; i < 20; i++ )
+        {
+            cache.getListing( proxyRepository, "path" + i + "/", LOCAL_URL, "central" );
+            assertThat( cache.getTotalWeight(), lessThanOrEqualTo( 2048L ) );
+        }
+        assertThat( cache.size() < 20, equalTo( true ) );
+
+        // most recently used is still cached
+        cache.getListing( proxyRepository, "path19/", LOCAL_URL, "central" );
+        verify( reader, times( 1 ) ).extract( "path19/", LOCAL_URL, proxyRepository, "central" );
+    }
+
+    @Test
+    public void singleFlightPerKey()
+        throws Exception
+    {
+        final RemoteListingCache cache = createCache( 60000L, 1024L * 1024L );
+        final CountDownLatch extracting = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final List<RepositoryDirectory> listing = listing( "org" );
+        when( reader.extract( "org/", LOCAL_URL, proxyRepository, "central" ) ).thenAnswer(
+            new Answer<List<RepositoryDirectory>>()
+            {
+                @Override
+                public List<RepositoryDirectory> answer( final InvocationOnMock invocation )
+                    throws Exception
+                {
+                    extracting.countDown();
+                    release.await();
+                    return listing;
+                }
+            } );
+        when( reader.isCacheable() ).thenReturn( true );
+
+        final ExecutorService executorService = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            final Callable<List<RepositoryDirectory>> browse = new Callable<List<RepositoryDirectory>>()
+            {
+                @Override
+                public List<RepositoryDirectory> call()
+                {
+                    return cache.getListing( proxyRepository, "org/", LOCAL_URL, "central" );
+                }
+            };
+            final Future<List<RepositoryDirectory>> first = executorService.submit( browse );
+            extracting.await( 5, TimeUnit.SECONDS );
+            final Future<List<RepositoryDirectory>> second = executorService.submit( browse );
+            release.countDown();
+            assertThat( first.get( 5, TimeUnit.SECONDS ), equalTo( listing ) );
+            assertThat( second.get( 5, TimeUnit.SECONDS ), equalTo( listing ) );
+            verify( reader, times( 1 ) ).extract( "org/", LOCAL_URL, proxyRepository, "central" );
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -16,8 +16,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.sonatype.nexus.timeline.Entry;
-
-import com.google.common.base.Predicate;
+import org.sonatype.nexus.timeline.IndexablePredicate;
+import org.sonatype.timeline.filter.TermTimelineFilter;
 
 /**
  * Timeline filter that filters by repository IDs.
@@ -26,7 +26,7 @@ import com.google.common.base.Predicate;
  * @since 2.0
  */
 public class RepositoryIdTimelineFilter
-    implements Predicate<Entry>
+    implements IndexablePredicate
 {
     private final Set<String> repositoryIds;
 
@@ -47,4 +47,10 @@ public class RepositoryIdTimelineFilter
         return ( hit.getData().containsKey( DefaultFeedRecorder.REPOSITORY ) && repositoryIds.contains( hit.getData().get(
             DefaultFeedRecorder.REPOSITORY ) ) );
     }
+
+    @Override
+    public TermTimelineFilter toTimelineFilter()
+    {
+        return new TermTimelineFilter().withValues( DefaultFeedRecorder.REPOSITORY, repositoryIds );
+    }
 }
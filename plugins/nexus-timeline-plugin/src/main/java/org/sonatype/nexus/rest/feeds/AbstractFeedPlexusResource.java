@@ -13,9 +13,12 @@
 package org.sonatype.nexus.rest.feeds;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 import org.restlet.Context;
@@ -24,9 +27,12 @@ import org.restlet.data.MediaType;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
 import org.restlet.data.Status;
+import org.restlet.data.Tag;
 import org.restlet.resource.ResourceException;
 import org.restlet.resource.Variant;
 import org.sonatype.nexus.rest.AbstractNexusPlexusResource;
+import org.sonatype.nexus.rest.feeds.FeedCache.CachedFeed;
+import org.sonatype.nexus.rest.feeds.sources.AbstractFeedSource;
 import org.sonatype.nexus.rest.feeds.sources.FeedSource;
 
 import com.sun.syndication.feed.synd.SyndFeed;
@@ -48,6 +54,9 @@ public abstract class AbstractFeedPlexusResource
     @Requirement( role = FeedSource.class )
     private Map<String, FeedSource> feeds;
 
+    @Requirement
+    private FeedCache feedCache;
+
     public List<Variant> getVariants()
     {
         List<Variant> result = super.getVariants();
@@ -61,7 +70,7 @@ public abstract class AbstractFeedPlexusResource
         return result;
     }
 
-    public Object get( Context context, Request request, Response response, Variant variant )
+    public Object get( final Context context, final Request request, Response response, Variant variant )
         throws ResourceException
     {
         MediaType mediaType = variant.getMediaType();
@@ -91,21 +100,21 @@ public abstract class AbstractFeedPlexusResource
                 e );
         }
 
-        Map<String, String> par = params.getValuesMap();
+        final Map<String, String> par = params.getValuesMap();
 
         try
         {
             if ( !MediaType.APPLICATION_JSON.equals( mediaType, true ) )
             {
-                SyndFeed feed = getFeed( context, request, getChannelKey( request ), from, count, par );
+                final String feedType;
 
                 if ( FeedRepresentation.ATOM_MEDIA_TYPE.equals( mediaType, true ) )
                 {
-                    feed.setFeedType( ATOM_1_0 );
+                    feedType = ATOM_1_0;
                 }
                 else
                 {
-                    feed.setFeedType( RSS_2_0 );
+                    feedType = RSS_2_0;
 
                     // set the content type to RSS by default,
                     // however keep text/xml if it was requested this way (IE bug, see NEXUS-991)
@@ -114,9 +123,45 @@ public abstract class AbstractFeedPlexusResource
                     }
                 }
 
-                feed.setLink( request.getResourceRef().toString() );
+                final String channelKey = getChannelKey( request );
+
+                if ( feedCache.isEnabled() && feeds.get( channelKey ) instanceof AbstractFeedSource )
+                {
+                    // timeline backed feed, changes only when timeline changes; entries are filtered by the
+                    // permissions of current user, hence feeds are cached per user
+                    final String cacheKey =
+                        getCurrentUserId() + "|" + channelKey + "|" + feedType + "|" + mediaType + "|"
+                            + request.getRootRef() + "|" + request.getResourceRef();
+
+                    final CachedFeed cachedFeed = feedCache.getFeed( cacheKey, from, count, new FeedCache.FeedLoader()
+                    {
+                        @Override
+                        public SyndFeed load( final Integer pageFrom, final Integer pageCount )
+                            throws IOException, ComponentLookupException
+                        {
+                            return prepareFeed( request,
+                                getFeed( context, request, channelKey, pageFrom, pageCount, par ), feedType );
+                        }
+                    } );
+
+                    if ( isNotModified( request, cachedFeed ) )
+                    {
+                        throw new ResourceException( Status.REDIRECTION_NOT_MODIFIED, "Feed is not modified." );
+                    }
+
+                    FeedRepresentation representation = new FeedRepresentation( mediaType, cachedFeed.getContent() );
+
+                    representation.setTag( new Tag( cachedFeed.getTag(), false ) );
+
+                    representation.setModificationDate( new Date( cachedFeed.getLastModified() ) );
+
+                    return representation;
+                }
 
-                FeedRepresentation representation = new FeedRepresentation( mediaType, feed );
+                SyndFeed feed = getFeed( context, request, channelKey, from, count, par );
+
+                FeedRepresentation representation = new FeedRepresentation( mediaType, prepareFeed( request, feed,
+                    feedType ) );
 
                 return representation;
             }
@@ -135,6 +180,58 @@ public abstract class AbstractFeedPlexusResource
         }
     }
 
+    /**
+     * Returns the ID of current user, or {@code null} if there is no (even anonymous) user.
+     * 
+     * @since 2.4
+     */
+    protected String getCurrentUserId()
+    {
+        final Subject subject = SecurityUtils.getSubject();
+        if ( subject != null && subject.getPrincipal() != null )
+        {
+            return subject.getPrincipal().toString();
+        }
+        return null;
+    }
+
+    protected SyndFeed prepareFeed( final Request request, final SyndFeed feed, final String feedType )
+    {
+        feed.setFeedType( feedType );
+
+        feed.setLink( request.getResourceRef().toString() );
+
+        return feed;
+    }
+
+    /**
+     * Handles conditional GETs: returns {@code true} if the client already has the cached feed.
+     * 
+     * @since 2.4
+     */
+    protected boolean isNotModified( final Request request, final CachedFeed cachedFeed )
+    {
+        final List<Tag> noneMatch = request.getConditions().getNoneMatch();
+
+        if ( noneMatch != null && noneMatch.size() > 0 )
+        {
+            for ( Tag tag : noneMatch )
+            {
+                if ( "*".equals( tag.getName() ) || cachedFeed.getTag().equals( tag.getName() ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        final Date modifiedSince = request.getConditions().getModifiedSince();
+
+        // HTTP dates have seconds precision
+        return modifiedSince != null && cachedFeed.getLastModified() / 1000 <= modifiedSince.getTime() / 1000;
+    }
+
     protected SyndFeed getFeed( Context context, Request request, String channelKey, Integer from, Integer count,
         Map<String, String> params )
         throws IOException,
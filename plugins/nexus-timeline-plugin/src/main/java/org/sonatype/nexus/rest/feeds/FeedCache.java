@@ -0,0 +1,338 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.feeds;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.sonatype.nexus.feeds.DefaultFeedRecorder;
+import org.sonatype.nexus.logging.AbstractLoggingComponent;
+import org.sonatype.nexus.timeline.NexusTimeline;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.sun.syndication.feed.synd.SyndEntry;
+import com.sun.syndication.feed.synd.SyndFeed;
+
+/**
+ * Cache of rendered timeline backed feeds. Cached feeds are keyed by the caller (user, feed key, parameters, media
+ * type) and are valid as long as the {@link NexusTimeline} generation did not change. When only new records were
+ * added to the timeline since the feed was cached, and the feed is not paged, only the new entries are fetched and
+ * prepended to the cached ones, instead of rebuilding the whole feed. Feeds whose entries did not change keep their ETag and
+ * last modification timestamp, so polling clients may be answered with "304 Not Modified".
+ * 
+ * @since 2.4
+ */
+@Component( role = FeedCache.class )
+public class FeedCache
+    extends AbstractLoggingComponent
+{
+    private static final boolean ENABLED = SystemPropertiesHelper.getBoolean( FeedCache.class.getName()
+        + ".enabled", true );
+
+    private static final int MAX_ENTRIES = SystemPropertiesHelper.getInteger( FeedCache.class.getName()
+        + ".maxEntries", 100 );
+
+    /**
+     * Safety net: entry builders may use data not tracked by timeline generation (like repository names).
+     */
+    private static final long MAX_AGE_MILLIS = SystemPropertiesHelper.getLong( FeedCache.class.getName()
+        + ".maxAgeMillis", 5 * 60 * 1000L );
+
+    /**
+     * Loads a feed, is invoked with the paging parameters of the feed to load.
+     */
+    public interface FeedLoader
+    {
+        SyndFeed load( Integer from, Integer count )
+            throws IOException, ComponentLookupException;
+    }
+
+    @Requirement
+    private NexusTimeline nexusTimeline;
+
+    private final int maxEntries;
+
+    private final long maxAgeMillis;
+
+    private final Map<String, Slot> slots;
+
+    public FeedCache()
+    {
+        this( null, MAX_ENTRIES, MAX_AGE_MILLIS );
+    }
+
+    @VisibleForTesting
+    FeedCache( final NexusTimeline nexusTimeline, final int maxEntries, final long maxAgeMillis )
+    {
+        this.nexusTimeline = nexusTimeline;
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+        this.slots = new LinkedHashMap<String, Slot>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, Slot> eldest )
+            {
+                return size() > FeedCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns {@code true} if feed caching is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return ENABLED && maxEntries > 0;
+    }
+
+    /**
+     * Returns the cached feed for given key, loading or updating it using the loader if needed.
+     * 
+     * @param key the key of the feed, must contain everything the rendered feed depends on.
+     * @param from the "from" paging parameter, may be {@code null}.
+     * @param count the "count" paging parameter, may be {@code null}.
+     * @param loader the loader to load the feed with.
+     * @return the cached feed, never {@code null}.
+     */
+    public CachedFeed getFeed( final String key, final Integer from, final Integer count, final FeedLoader loader )
+        throws IOException, ComponentLookupException
+    {
+        final Slot slot = getSlot( key );
+        synchronized ( slot )
+        {
+            // read generations before loading, feeds loaded while records were added are not cached
+            final long generation = nexusTimeline.getGeneration();
+            final long purgeGeneration = nexusTimeline.getPurgeGeneration();
+            final long now = System.currentTimeMillis();
+            final CachedFeed current = slot.cachedFeed;
+            if ( current != null && current.purgeGeneration == purgeGeneration
+                && now - current.created < maxAgeMillis )
+            {
+                if ( current.generation == generation )
+                {
+                    return current;
+                }
+                if ( from == null || from == 0 )
+                {
+                    final CachedFeed updated = update( current, count, generation, loader );
+                    if ( updated != null )
+                    {
+                        return store( slot, updated, generation, purgeGeneration );
+                    }
+                }
+            }
+
+            final SyndFeed feed = loader.load( from, count );
+            return store( slot, create( current, feed, generation, purgeGeneration, now ), generation,
+                purgeGeneration );
+        }
+    }
+
+    /**
+     * Drops all cached feeds.
+     */
+    public void clear()
+    {
+        synchronized ( slots )
+        {
+            slots.clear();
+        }
+    }
+
+    // ==
+
+    protected Slot getSlot( final String key )
+    {
+        synchronized ( slots )
+        {
+            Slot slot = slots.get( key );
+            if ( slot == null )
+            {
+                slot = new Slot();
+                slots.put( key, slot );
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Caches the loaded feed in slot, unless timeline changed while it was loaded: records may have been added to
+     * timeline without the loaded feed containing them, while generation would tell it is up to date.
+     */
+    protected CachedFeed store( final Slot slot, final CachedFeed cachedFeed, final long generation,
+                                final long purgeGeneration )
+    {
+        if ( nexusTimeline.getGeneration() == generation && nexusTimeline.getPurgeGeneration() == purgeGeneration )
+        {
+            slot.cachedFeed = cachedFeed;
+        }
+        else
+        {
+            getLogger().debug( "Timeline changed while loading feed, not caching it." );
+        }
+        return cachedFeed;
+    }
+
+    /**
+     * Fetches the records added since the current feed was cached, and prepends the entries not yet present to the
+     * cached entries. Returns {@code null} if the feed needs to be rebuilt.
+     */
+    protected CachedFeed update( final CachedFeed current, final Integer count, final long generation,
+                                 final FeedLoader loader )
+        throws IOException, ComponentLookupException
+    {
+        final int limit = count != null ? count : DefaultFeedRecorder.DEFAULT_PAGE_SIZE;
+        final long added = generation - current.generation;
+        if ( added <= 0 || added >= limit )
+        {
+            return null;
+        }
+
+        // the newest records of this feed: the new ones plus at least one already cached, to find where they end
+        final SyndFeed delta = loader.load( 0, (int) added + 1 );
+        final List<SyndEntry> cachedEntries = current.getEntries();
+        final List<SyndEntry> newEntries = getNewEntries( delta.getEntries(), cachedEntries );
+        if ( newEntries == null )
+        {
+            return null;
+        }
+        if ( newEntries.isEmpty() )
+        {
+            return new CachedFeed( current, generation );
+        }
+
+        getLogger().debug( "Prepending {} new entries to cached feed.", newEntries.size() );
+        final List<SyndEntry> entries = new ArrayList<SyndEntry>( newEntries );
+        entries.addAll( cachedEntries.subList( 0, Math.min( cachedEntries.size(), limit - newEntries.size() ) ) );
+        delta.setEntries( entries );
+        return create( null, delta, generation, current.purgeGeneration, System.currentTimeMillis() );
+    }
+
+    /**
+     * Returns the entries preceding the head of cached entries, or {@code null} if the head of cached entries is not
+     * found in fetched entries (and hence it cannot be told which fetched entries are new).
+     */
+    @VisibleForTesting
+    static List<SyndEntry> getNewEntries( final List<?> fetchedEntries, final List<SyndEntry> cachedEntries )
+    {
+        final List<SyndEntry> result = new ArrayList<SyndEntry>();
+        final SyndEntry head = cachedEntries.isEmpty() ? null : cachedEntries.get( 0 );
+        for ( Object entry : fetchedEntries )
+        {
+            if ( head != null && head.equals( entry ) )
+            {
+                return result;
+            }
+            result.add( (SyndEntry) entry );
+        }
+        // nothing fetched or nothing cached: every fetched entry is new
+        return result.isEmpty() || head == null ? result : null;
+    }
+
+    protected CachedFeed create( final CachedFeed previous, final SyndFeed feed, final long generation,
+                                 final long purgeGeneration, final long now )
+        throws IOException
+    {
+        if ( previous != null && previous.getEntries().equals( feed.getEntries() ) )
+        {
+            // content unchanged: keep representation, ETag and modification timestamp
+            return new CachedFeed( previous, generation, purgeGeneration, now );
+        }
+        feed.setPublishedDate( new Date( now ) );
+        return new CachedFeed( feed, FeedRepresentation.render( feed ), generation, purgeGeneration, now );
+    }
+
+    // ==
+
+    protected static class Slot
+    {
+        private volatile CachedFeed cachedFeed;
+    }
+
+    /**
+     * A cached rendered feed. Instances are immutable.
+     */
+    public static class CachedFeed
+    {
+        private final SyndFeed feed;
+
+        private final byte[] content;
+
+        private final String tag;
+
+        private final long lastModified;
+
+        private final long generation;
+
+        private final long purgeGeneration;
+
+        private final long created;
+
+        CachedFeed( final SyndFeed feed, final byte[] content, final long generation, final long purgeGeneration,
+                    final long now )
+        {
+            this.feed = feed;
+            this.content = content;
+            this.tag = String.format( "%x-%x", now, content.length );
+            this.lastModified = now;
+            this.generation = generation;
+            this.purgeGeneration = purgeGeneration;
+            this.created = now;
+        }
+
+        CachedFeed( final CachedFeed previous, final long generation, final long purgeGeneration, final long now )
+        {
+            this.feed = previous.feed;
+            this.content = previous.content;
+            this.tag = previous.tag;
+            this.lastModified = previous.lastModified;
+            this.generation = generation;
+            this.purgeGeneration = purgeGeneration;
+            this.created = now;
+        }
+
+        CachedFeed( final CachedFeed previous, final long generation )
+        {
+            this( previous, generation, previous.purgeGeneration, previous.created );
+        }
+
+        @SuppressWarnings( "unchecked" )
+        List<SyndEntry> getEntries()
+        {
+            return feed.getEntries();
+        }
+
+        public byte[] getContent()
+        {
+            return content;
+        }
+
+        public String getTag()
+        {
+            return tag;
+        }
+
+        public long getLastModified()
+        {
+            return lastModified;
+        }
+    }
+}
@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.rest.feeds;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -40,6 +41,8 @@ public class FeedRepresentation
 
     private SyndFeed feed;
 
+    private byte[] content;
+
     public FeedRepresentation( MediaType mediaType, SyndFeed feed )
     {
         super( mediaType );
@@ -47,6 +50,20 @@ public class FeedRepresentation
         this.feed = feed;
     }
 
+    /**
+     * Creates a representation of an already rendered feed.
+     * 
+     * @since 2.4
+     */
+    public FeedRepresentation( MediaType mediaType, byte[] content )
+    {
+        super( mediaType );
+
+        this.content = content;
+
+        setSize( content.length );
+    }
+
     @Override
     public InputStream getStream()
         throws IOException
@@ -57,6 +74,13 @@ public class FeedRepresentation
     public void write( OutputStream outputStream )
         throws IOException
     {
+        if ( content != null )
+        {
+            outputStream.write( content );
+
+            return;
+        }
+
         try
         {
             Writer w = new OutputStreamWriter( outputStream );
@@ -70,4 +94,19 @@ public class FeedRepresentation
             throw new RuntimeException( "Got exception while generating feed!", e );
         }
     }
+
+    /**
+     * Renders the feed into a byte array, the same way as {@link #write(OutputStream)} would.
+     * 
+     * @since 2.4
+     */
+    public static byte[] render( SyndFeed feed )
+        throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        new FeedRepresentation( null, feed ).write( bos );
+
+        return bos.toByteArray();
+    }
 }
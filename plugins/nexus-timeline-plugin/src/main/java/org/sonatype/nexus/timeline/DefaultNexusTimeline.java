@@ -17,6 +17,7 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
@@ -29,9 +30,12 @@ import org.codehaus.plexus.util.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonatype.nexus.configuration.application.ApplicationConfiguration;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.timeline.Timeline;
 import org.sonatype.timeline.TimelineCallback;
 import org.sonatype.timeline.TimelineConfiguration;
+import org.sonatype.timeline.TimelineConfiguration.Durability;
+import org.sonatype.timeline.TimelineFilter;
 import org.sonatype.timeline.TimelineRecord;
 
 import com.google.common.base.Predicate;
@@ -50,8 +54,27 @@ public class DefaultNexusTimeline
 
     private static final String TIMELINE_BASEDIR = "timeline";
 
+    private static final int COMMIT_INTERVAL_MILLIS = SystemPropertiesHelper.getInteger(
+        "org.sonatype.nexus.timeline.DefaultNexusTimeline.commitIntervalMillis",
+        TimelineConfiguration.DEFAULT_COMMIT_INTERVAL_MILLIS );
+
+    private static final int WRITE_QUEUE_SIZE = SystemPropertiesHelper.getInteger(
+        "org.sonatype.nexus.timeline.DefaultNexusTimeline.writeQueueSize",
+        TimelineConfiguration.DEFAULT_WRITE_QUEUE_SIZE );
+
+    private static final int INDEX_PARTITION_DAYS = SystemPropertiesHelper.getInteger(
+        "org.sonatype.nexus.timeline.DefaultNexusTimeline.indexPartitionDays",
+        TimelineConfiguration.DEFAULT_INDEX_PARTITION_DAYS );
+
+    private static final Durability DURABILITY = Durability.valueOf( SystemPropertiesHelper.getString(
+        "org.sonatype.nexus.timeline.DefaultNexusTimeline.durability", Durability.FLUSH.name() ).toUpperCase() );
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong purgeGeneration = new AtomicLong();
+
     @Requirement
     private Timeline timeline;
 
@@ -80,6 +103,7 @@ public class DefaultNexusTimeline
         {
             logger.info( "Starting Nexus Timeline..." );
             updateConfiguration();
+            purgeGeneration.incrementAndGet();
         }
         catch ( IOException e )
         {
@@ -146,8 +170,12 @@ public class DefaultNexusTimeline
     private void updateConfiguration()
         throws IOException
     {
+        final File baseDir = applicationConfiguration.getWorkingDirectory( TIMELINE_BASEDIR );
         final TimelineConfiguration config =
-            new TimelineConfiguration( applicationConfiguration.getWorkingDirectory( TIMELINE_BASEDIR ) );
+            new TimelineConfiguration( new File( baseDir, "persist" ), new File( baseDir, "index" ),
+                TimelineConfiguration.DEFAULT_ROLLING_INTERVAL_MILLIS,
+                TimelineConfiguration.DEFAULT_REPAIR_DAYS_TO_RESTORE, COMMIT_INTERVAL_MILLIS, WRITE_QUEUE_SIZE,
+                DURABILITY, INDEX_PARTITION_DAYS );
         timeline.start( config );
     }
 
@@ -155,6 +183,7 @@ public class DefaultNexusTimeline
     public void add( long timestamp, String type, String subType, Map<String, String> data )
     {
         timeline.add( new TimelineRecord( timestamp, type, subType, data ) );
+        generation.incrementAndGet();
     }
 
     @Override
@@ -163,7 +192,7 @@ public class DefaultNexusTimeline
     {
         if ( filter != null )
         {
-            timeline.retrieve( fromItem, count, types, subtypes, new PredicateTimelineFilter( filter ), cb );
+            timeline.retrieve( fromItem, count, types, subtypes, toTimelineFilter( filter ), cb );
         }
         else
         {
@@ -174,13 +203,43 @@ public class DefaultNexusTimeline
     @Override
     public int purgeOlderThan( long timestamp, Set<String> types, Set<String> subTypes, Predicate<Entry> filter )
     {
-        if ( filter != null )
+        try
         {
-            return timeline.purge( timestamp, types, subTypes, new PredicateTimelineFilter( filter ) );
+            if ( filter != null )
+            {
+                return timeline.purge( timestamp, types, subTypes, toTimelineFilter( filter ) );
+            }
+            else
+            {
+                return timeline.purge( timestamp, types, subTypes, null );
+            }
         }
-        else
+        finally
+        {
+            purgeGeneration.incrementAndGet();
+        }
+    }
+
+    @Override
+    public long getGeneration()
+    {
+        return generation.get();
+    }
+
+    @Override
+    public long getPurgeGeneration()
+    {
+        return purgeGeneration.get();
+    }
+
+    // ==
+
+    protected TimelineFilter toTimelineFilter( final Predicate<Entry> filter )
+    {
+        if ( filter instanceof IndexablePredicate )
         {
-            return timeline.purge( timestamp, types, subTypes, null );
+            return ( (IndexablePredicate) filter ).toTimelineFilter();
         }
+        return new PredicateTimelineFilter( filter );
     }
 }
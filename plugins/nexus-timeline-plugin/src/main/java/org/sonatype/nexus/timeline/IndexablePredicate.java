@@ -0,0 +1,32 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.timeline;
+
+import org.sonatype.timeline.filter.TermTimelineFilter;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Entry predicate that is expressible as {@link TermTimelineFilter}, hence is applied by timeline index query instead
+ * of being evaluated against every entry.
+ *
+ * @since 2.4
+ */
+public interface IndexablePredicate
+    extends Predicate<Entry>
+{
+    /**
+     * Returns the filter equivalent to this predicate.
+     */
+    TermTimelineFilter toTimelineFilter();
+}
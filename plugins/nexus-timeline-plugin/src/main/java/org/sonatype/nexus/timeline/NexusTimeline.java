@@ -61,4 +61,22 @@ public interface NexusTimeline
      * @return the count of purged records.
      */
     int purgeOlderThan( long timestamp, Set<String> types, Set<String> subTypes, Predicate<Entry> filter );
+
+    /**
+     * Returns the generation of this timeline, a counter incremented for each record added. It is an upper bound of
+     * the records added between two invocations, and never decreases while Nexus runs.
+     * 
+     * @return the current generation.
+     * @since 2.4
+     */
+    long getGeneration();
+
+    /**
+     * Returns the purge generation of this timeline, a counter incremented whenever records might have been removed
+     * from it (purge or restart). Consumers caching timeline derived data should drop their caches when this changes.
+     * 
+     * @return the current purge generation.
+     * @since 2.4
+     */
+    long getPurgeGeneration();
 }
@@ -27,6 +27,48 @@ public class TimelineConfiguration
      */
     public static final int DEFAULT_ROLLING_INTERVAL_MILLIS = 60 * 60 * 24;
 
+    /**
+     * Maximum time in milliseconds between two index commits. Records are persisted and indexed in batches as soon as
+     * they arrive, but the index is committed at most once per this interval. The default is one second.
+     *
+     * @since 2.4
+     */
+    public static final int DEFAULT_COMMIT_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Maximum count of records kept in memory waiting to be written. When full, adding records blocks until the
+     * writer catches up. The default is 8192.
+     *
+     * @since 2.4
+     */
+    public static final int DEFAULT_WRITE_QUEUE_SIZE = 8192;
+
+    /**
+     * Count of days one index partition covers. Purging drops whole partitions, so smaller partitions allow more
+     * precise purges, at the price of more open index files. The default is 7 days.
+     *
+     * @since 2.4
+     */
+    public static final int DEFAULT_INDEX_PARTITION_DAYS = 7;
+
+    /**
+     * The durability guarantee of written records.
+     *
+     * @since 2.4
+     */
+    public static enum Durability
+    {
+        /**
+         * Persisted records are flushed to the data file after each batch, leaving it to the OS to write them out.
+         */
+        FLUSH,
+
+        /**
+         * As {@link #FLUSH}, but the data files are also synced to disk on every index commit.
+         */
+        SYNC;
+    }
+
     // ==
 
     private final File persistDirectory;
@@ -37,13 +79,37 @@ public class TimelineConfiguration
 
     private final int repairDaysCountRestored;
 
+    private final int commitIntervalMillis;
+
+    private final int writeQueueSize;
+
+    private final Durability durability;
+
+    private final int indexPartitionDays;
+
+    /**
+     * @since 2.4
+     */
     public TimelineConfiguration( final File persistDirectory, final File indexDirectory,
-                                  final int persistRollingIntervalMillis, final int repairDaysCountRestored )
+                                  final int persistRollingIntervalMillis, final int repairDaysCountRestored,
+                                  final int commitIntervalMillis, final int writeQueueSize,
+                                  final Durability durability, final int indexPartitionDays )
     {
         this.persistDirectory = persistDirectory;
         this.indexDirectory = indexDirectory;
         this.persistRollingIntervalMillis = persistRollingIntervalMillis;
         this.repairDaysCountRestored = repairDaysCountRestored;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.writeQueueSize = writeQueueSize;
+        this.durability = durability;
+        this.indexPartitionDays = indexPartitionDays;
+    }
+
+    public TimelineConfiguration( final File persistDirectory, final File indexDirectory,
+                                  final int persistRollingIntervalMillis, final int repairDaysCountRestored )
+    {
+        this( persistDirectory, indexDirectory, persistRollingIntervalMillis, repairDaysCountRestored,
+            DEFAULT_COMMIT_INTERVAL_MILLIS, DEFAULT_WRITE_QUEUE_SIZE, Durability.FLUSH, DEFAULT_INDEX_PARTITION_DAYS );
     }
 
     public TimelineConfiguration( final File persistDirectory, final File indexDirectory )
@@ -76,4 +142,36 @@ public class TimelineConfiguration
     {
         return repairDaysCountRestored;
     }
+
+    /**
+     * @since 2.4
+     */
+    public int getCommitIntervalMillis()
+    {
+        return commitIntervalMillis;
+    }
+
+    /**
+     * @since 2.4
+     */
+    public int getWriteQueueSize()
+    {
+        return writeQueueSize;
+    }
+
+    /**
+     * @since 2.4
+     */
+    public Durability getDurability()
+    {
+        return durability;
+    }
+
+    /**
+     * @since 2.4
+     */
+    public int getIndexPartitionDays()
+    {
+        return indexPartitionDays;
+    }
 }
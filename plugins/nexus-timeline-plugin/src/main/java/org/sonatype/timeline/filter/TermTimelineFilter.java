@@ -0,0 +1,120 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.timeline.filter;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.sonatype.timeline.TimelineFilter;
+import org.sonatype.timeline.TimelineRecord;
+
+/**
+ * Structured filter on record data, that timeline implementations backed by an index may turn into a query clause,
+ * instead of loading all the records and filtering them one by one. Records pass when, for every constrained data
+ * key, the value is one of the given values and starts with the given prefix, and when the (optional) residual filter
+ * accepts them. The residual filter is always evaluated in memory, so it should be used for conditions not
+ * expressible with terms only.
+ *
+ * @since 2.4
+ */
+public class TermTimelineFilter
+    implements TimelineFilter
+{
+    private final Map<String, Set<String>> values;
+
+    private final Map<String, String> prefixes;
+
+    private TimelineFilter residual;
+
+    public TermTimelineFilter()
+    {
+        this.values = new LinkedHashMap<String, Set<String>>();
+        this.prefixes = new LinkedHashMap<String, String>();
+    }
+
+    /**
+     * Records must have value for data key among the given values.
+     */
+    public TermTimelineFilter withValues( final String key, final Set<String> allowedValues )
+    {
+        values.put( key, Collections.unmodifiableSet( new HashSet<String>( allowedValues ) ) );
+        return this;
+    }
+
+    /**
+     * Records must have value for data key equal to the given value.
+     */
+    public TermTimelineFilter withValue( final String key, final String value )
+    {
+        return withValues( key, Collections.singleton( value ) );
+    }
+
+    /**
+     * Records must have value for data key starting with the given prefix.
+     */
+    public TermTimelineFilter withPrefix( final String key, final String prefix )
+    {
+        prefixes.put( key, prefix );
+        return this;
+    }
+
+    /**
+     * Records must be accepted by the given filter too, that is evaluated in memory.
+     */
+    public TermTimelineFilter withResidual( final TimelineFilter filter )
+    {
+        this.residual = filter;
+        return this;
+    }
+
+    public Map<String, Set<String>> getValues()
+    {
+        return Collections.unmodifiableMap( values );
+    }
+
+    public Map<String, String> getPrefixes()
+    {
+        return Collections.unmodifiableMap( prefixes );
+    }
+
+    public TimelineFilter getResidual()
+    {
+        return residual;
+    }
+
+    @Override
+    public boolean accept( final TimelineRecord record )
+    {
+        final Map<String, String> data = record.getData();
+        for ( Map.Entry<String, Set<String>> entry : values.entrySet() )
+        {
+            final String value = data.get( entry.getKey() );
+            if ( value == null || !entry.getValue().contains( value ) )
+            {
+                return false;
+            }
+        }
+        for ( Map.Entry<String, String> entry : prefixes.entrySet() )
+        {
+            final String value = data.get( entry.getKey() );
+            if ( value == null || !value.startsWith( entry.getValue() ) )
+            {
+                return false;
+            }
+        }
+        return residual == null || residual.accept( record );
+    }
+}
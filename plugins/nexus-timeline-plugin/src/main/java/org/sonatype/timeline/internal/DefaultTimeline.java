@@ -13,6 +13,7 @@
 package org.sonatype.timeline.internal;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.inject.Named;
@@ -24,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.sonatype.timeline.Timeline;
 import org.sonatype.timeline.TimelineCallback;
 import org.sonatype.timeline.TimelineConfiguration;
+import org.sonatype.timeline.TimelineConfiguration.Durability;
 import org.sonatype.timeline.TimelineFilter;
 import org.sonatype.timeline.TimelineRecord;
 
@@ -43,6 +45,8 @@ public class DefaultTimeline
 
     private final ReentrantReadWriteLock timelineLock;
 
+    private volatile TimelineWriter writer;
+
     public DefaultTimeline()
     {
         this.logger = LoggerFactory.getLogger( getClass() );
@@ -123,6 +127,8 @@ public class DefaultTimeline
                         markIndexerDead( ex );
                     }
                 }
+                writer = createWriter( configuration );
+                writer.start();
                 DefaultTimeline.this.started = true;
                 getLogger().info( "Started Timeline..." );
             }
@@ -137,12 +143,19 @@ public class DefaultTimeline
         throws IOException
     {
         getLogger().debug( "Stopping Timeline..." );
+        // drain and commit pending records before taking exclusive lock, as writer needs shared access
+        final TimelineWriter currentWriter = writer;
+        if ( currentWriter != null )
+        {
+            currentWriter.stop();
+        }
         timelineLock.writeLock().lock();
         try
         {
             if ( started )
             {
                 DefaultTimeline.this.started = false;
+                writer = null;
                 indexer.stop();
                 getLogger().info( "Stopped Timeline..." );
             }
@@ -165,14 +178,10 @@ public class DefaultTimeline
         {
             return;
         }
-        try
+        final TimelineWriter currentWriter = writer;
+        if ( currentWriter == null || !currentWriter.add( records ) )
         {
-            persistor.persist( records );
-            addToIndexer( records );
-        }
-        catch ( IOException e )
-        {
-            getLogger().warn( "Failed to add a timeline record", e );
+            getLogger().debug( "Timeline is stopping, record not added" );
         }
     }
 
@@ -183,7 +192,15 @@ public class DefaultTimeline
         {
             return 0;
         }
-        return purgeFromIndexer( timestamp, types, subTypes, filter );
+        awaitWriter();
+        final int purged = purgeFromIndexer( timestamp, types, subTypes, filter );
+        if ( isEmpty( types ) && isEmpty( subTypes ) && filter == null )
+        {
+            // all records before timestamp are gone, data files holding them only go too, unless needed for repair
+            final int deletedFiles = persistor.purge( timestamp );
+            getLogger().debug( "Purged {} timeline data files", deletedFiles );
+        }
+        return purged;
     }
 
     @Override
@@ -194,6 +211,7 @@ public class DefaultTimeline
         {
             return;
         }
+        awaitWriter();
         retrieveFromIndexer( 0L, System.currentTimeMillis(), fromItem, count, types, subTypes, filter, callback );
     }
 
@@ -205,12 +223,78 @@ public class DefaultTimeline
         {
             return;
         }
+        awaitWriter();
         retrieveFromIndexer( fromTime, toTime, from, count, types, subTypes, filter, callback );
     }
 
     // ==
 
-    protected void addToIndexer( final TimelineRecord... records )
+    protected boolean isEmpty( final Set<String> set )
+    {
+        return set == null || set.isEmpty();
+    }
+
+    /**
+     * Creates the writer that persists and indexes records in batches, committing the index (and syncing the
+     * persisted files, if asked for) once per commit interval.
+     */
+    protected TimelineWriter createWriter( final TimelineConfiguration configuration )
+    {
+        final boolean sync = Durability.SYNC == configuration.getDurability();
+        return new TimelineWriter( new TimelineWriter.Sink()
+        {
+            @Override
+            public void write( final List<TimelineRecord> batch )
+                throws IOException
+            {
+                final TimelineRecord[] records = batch.toArray( new TimelineRecord[batch.size()] );
+                persistor.persist( records );
+                addBatchToIndexer( records );
+            }
+
+            @Override
+            public void commit()
+                throws IOException
+            {
+                if ( sync )
+                {
+                    persistor.sync();
+                }
+                commitIndexer();
+            }
+        }, configuration.getCommitIntervalMillis(), configuration.getWriteQueueSize() );
+    }
+
+    /**
+     * Makes records added so far visible to searches.
+     */
+    protected void awaitWriter()
+    {
+        final TimelineWriter currentWriter = writer;
+        if ( currentWriter != null )
+        {
+            currentWriter.awaitApplied();
+        }
+    }
+
+    protected void addBatchToIndexer( final TimelineRecord... records )
+    {
+        doShared( new Work<Void>()
+        {
+            @Override
+            public Void doIt()
+                throws IOException
+            {
+                for ( TimelineRecord record : records )
+                {
+                    indexer.addBatch( record );
+                }
+                return null;
+            }
+        } );
+    }
+
+    protected void commitIndexer()
     {
         doShared( new Work<Void>()
         {
@@ -218,7 +302,7 @@ public class DefaultTimeline
             public Void doIt()
                 throws IOException
             {
-                indexer.addAll( records );
+                indexer.finishBatch();
                 return null;
             }
         } );
@@ -227,7 +311,7 @@ public class DefaultTimeline
     protected int purgeFromIndexer( final long timestamp, final Set<String> types, final Set<String> subTypes,
         final TimelineFilter filter )
     {
-        return doShared( new Work<Integer>()
+        final Integer purged = doShared( new Work<Integer>()
         {
             @Override
             public Integer doIt()
@@ -236,6 +320,8 @@ public class DefaultTimeline
                 return indexer.purge( 0l, timestamp, types, subTypes );
             }
         } );
+        // doShared returns null if index is unavailable
+        return purged == null ? 0 : purged;
     }
 
     protected void retrieveFromIndexer( final long fromTime, final long toTime, final int from, final int count,
@@ -12,11 +12,18 @@
  */
 package org.sonatype.timeline.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -28,11 +35,14 @@ import org.apache.lucene.document.Fieldable;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
@@ -41,14 +51,23 @@ import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
+import org.codehaus.plexus.util.FileUtils;
 import org.sonatype.timeline.TimelineCallback;
 import org.sonatype.timeline.TimelineConfiguration;
 import org.sonatype.timeline.TimelineFilter;
 import org.sonatype.timeline.TimelineRecord;
+import org.sonatype.timeline.filter.TermTimelineFilter;
 
+/**
+ * Timeline indexer, that keeps the index partitioned by time (like persistor does with data files): records go into
+ * sub-indexes covering configured count of days, and are searched across all of them. Purging drops whole partitions
+ * when possible, instead of deleting documents one by one.
+ */
 public class DefaultTimelineIndexer
 {
 
@@ -58,15 +77,53 @@ public class DefaultTimelineIndexer
 
     private static final String SUBTYPE = "_2";
 
+    /**
+     * Marker of documents having their data indexed as terms too (legacy documents lack it).
+     */
+    private static final String TERMS_INDEXED = "_3";
+
+    /**
+     * Prefix of fields holding data values as (not analyzed) terms, usable by {@link TermTimelineFilter}.
+     */
+    private static final String TERM_PREFIX = "_k.";
+
+    /**
+     * Longer data values are indexed as terms truncated to this length, which still works for prefix matching.
+     */
+    private static final int MAX_TERM_LENGTH = 256;
+
+    /**
+     * Filters having more values for one key than this are evaluated in memory only.
+     */
+    private static final int MAX_TERM_VALUES = 512;
+
     private static final Resolution TIMELINE_RESOLUTION = Resolution.SECOND;
 
+    private static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+
+    private static final String PARTITION_NAME_DATE_FORMAT = "yyyy-MM-dd";
+
+    private static final Pattern PARTITION_NAME_PATTERN = Pattern.compile( "^\\d{4}-\\d{2}-\\d{2}$" );
+
+    /**
+     * Key of the partition in the root of index directory, that was written by versions not partitioning the index.
+     * It is searched and purged, but never written to.
+     */
+    private static final long LEGACY_PARTITION = Long.MIN_VALUE;
+
+    /**
+     * Attempts to add a document to the partition it belongs to. A closed partition is always unregistered before its
+     * lock is released, so one retry is enough, unless partitions keep getting closed (ie. indexer being stopped).
+     */
+    private static final int MAX_ADD_ATTEMPTS = 3;
+
     // ==
 
-    private Directory directory;
+    private File indexDirectory;
 
-    private IndexWriter indexWriter;
+    private long partitionMillis;
 
-    private SearcherManager searcherManager;
+    private final ConcurrentSkipListMap<Long, Partition> partitions = new ConcurrentSkipListMap<Long, Partition>();
 
     private int generation = 0;
 
@@ -76,40 +133,46 @@ public class DefaultTimelineIndexer
     protected void start( final TimelineConfiguration configuration )
         throws IOException
     {
-        closeIndexWriter();
-        if ( directory != null )
+        closePartitions();
+        indexDirectory = configuration.getIndexDirectory();
+        partitionMillis = Math.max( 1, configuration.getIndexPartitionDays() ) * DAY_MILLIS;
+        if ( !indexDirectory.isDirectory() )
         {
-            directory.close();
+            indexDirectory.mkdirs();
         }
-        directory = FSDirectory.open( configuration.getIndexDirectory() );
-        if ( IndexReader.indexExists( directory ) )
+
+        final Directory rootDirectory = FSDirectory.open( indexDirectory );
+        try
         {
-            if ( IndexWriter.isLocked( directory ) )
+            if ( IndexReader.indexExists( rootDirectory ) )
             {
-                IndexWriter.unlock( directory );
+                partitions.put( LEGACY_PARTITION, new Partition( indexDirectory, true ) );
+            }
+        }
+        finally
+        {
+            rootDirectory.close();
+        }
+        final File[] partitionDirectories = indexDirectory.listFiles();
+        if ( partitionDirectories != null )
+        {
+            for ( File partitionDirectory : partitionDirectories )
+            {
+                if ( partitionDirectory.isDirectory()
+                    && PARTITION_NAME_PATTERN.matcher( partitionDirectory.getName() ).matches() )
+                {
+                    partitions.put( parsePartitionName( partitionDirectory.getName() ),
+                        new Partition( partitionDirectory, false ) );
+                }
             }
         }
-
-        final IndexWriterConfig config =
-            new IndexWriterConfig( Version.LUCENE_36, new StandardAnalyzer( Version.LUCENE_36 ) );
-        config.setMergeScheduler( new SerialMergeScheduler() );
-        config.setRAMBufferSizeMB( 2.0 );
-        indexWriter = new IndexWriter( directory, config );
-        indexWriter.commit();
-
-        searcherManager = new SearcherManager( indexWriter, false, new SearcherFactory() );
         generation = generation + 1;
     }
 
     protected void stop()
         throws IOException
     {
-        closeIndexWriter();
-        if ( directory != null )
-        {
-            directory.close();
-            directory = null;
-        }
+        closePartitions();
     }
 
     protected int getGeneration()
@@ -128,21 +191,34 @@ public class DefaultTimelineIndexer
     {
         for ( TimelineRecord rec : records )
         {
-            indexWriter.addDocument( createDocument( rec ) );
+            addBatch( rec );
         }
-        indexWriter.commit();
+        finishBatch();
     }
 
     protected void addBatch( final TimelineRecord record )
         throws IOException
     {
-        indexWriter.addDocument( createDocument( record ) );
+        final Document document = createDocument( record );
+        // retry, as partition might get dropped by purge meanwhile
+        for ( int attempt = 0; attempt < MAX_ADD_ATTEMPTS; attempt++ )
+        {
+            if ( getPartition( record.getTimestamp() ).addDocument( document ) )
+            {
+                return;
+            }
+        }
+        throw new IOException( "Could not add record to timeline, partition of timestamp " + record.getTimestamp()
+            + " was closed " + MAX_ADD_ATTEMPTS + " times meanwhile" );
     }
 
     protected void finishBatch()
         throws IOException
     {
-        indexWriter.commit();
+        for ( Partition partition : partitions.values() )
+        {
+            partition.commit();
+        }
     }
 
     protected void retrieve( final long fromTime, final long toTime, final Set<String> types,
@@ -155,123 +231,357 @@ public class DefaultTimelineIndexer
             // new in Lucene 3.5, it would bitch IllegalArgEx if we ask for "top 0" docs
             return;
         }
-        searcherManager.maybeRefresh();
-        final IndexSearcher searcher = searcherManager.acquire();
+        // partitions starting after toTime cannot have matching records
+        final List<Partition> searchedPartitions = new ArrayList<Partition>();
+        final List<IndexSearcher> partitionSearchers = new ArrayList<IndexSearcher>();
         try
         {
-            if ( searcher.maxDoc() == 0 )
+            for ( Partition partition : partitions.headMap( toTime, true ).values() )
             {
-                // index empty
-                return;
+                try
+                {
+                    partition.searcherManager.maybeRefresh();
+                    partitionSearchers.add( partition.searcherManager.acquire() );
+                    searchedPartitions.add( partition );
+                }
+                catch ( AlreadyClosedException e )
+                {
+                    // dropped by purge meanwhile
+                }
             }
-            final TopFieldDocs topDocs;
-            if ( filter == null )
+            final IndexReader[] readers = new IndexReader[partitionSearchers.size()];
+            for ( int i = 0; i < readers.length; i++ )
             {
-                // without filter is easy: we account for paging only
-                topDocs =
-                    searcher.search( buildQuery( fromTime, toTime, types, subTypes ), null, from + count, new Sort(
-                        new SortField( TIMESTAMP, SortField.LONG, true ) ) );
+                readers[i] = partitionSearchers.get( i ).getIndexReader();
             }
-            else
+            final MultiReader multiReader = new MultiReader( readers, false );
+            try
+            {
+                final IndexSearcher searcher = new IndexSearcher( multiReader );
+                if ( searcher.maxDoc() == 0 )
+                {
+                    // index empty
+                    return;
+                }
+                final Query query = buildQuery( searcher, fromTime, toTime, types, subTypes, filter );
+                final Sort sort = new Sort( new SortField( TIMESTAMP, SortField.LONG, true ) );
+                final int maxDoc = searcher.maxDoc();
+
+                // we account for paging, but filter (the part not done by query) might throw out hits, so in that
+                // case we fetch pages of doubling size until we fulfil count to return or run out of hits
+                int wanted = (int) Math.max( 1, Math.min( (long) from + count, maxDoc ) );
+                int i = 0;
+                int returned = 0;
+                while ( true )
+                {
+                    final TopFieldDocs topDocs = searcher.search( query, null, wanted, sort );
+                    while ( i < topDocs.scoreDocs.length && returned < count )
+                    {
+                        Document doc = searcher.doc( topDocs.scoreDocs[i++].doc );
+                        TimelineRecord data = buildData( doc );
+                        if ( filter != null && !filter.accept( data ) )
+                        {
+                            continue;
+                        }
+                        // skip the unneeded stuff
+                        if ( from > 0 )
+                        {
+                            from--;
+                            continue;
+                        }
+                        returned++;
+                        if ( !callback.processNext( data ) )
+                        {
+                            return;
+                        }
+                    }
+                    if ( returned >= count || topDocs.scoreDocs.length < wanted || wanted >= maxDoc )
+                    {
+                        break;
+                    }
+                    wanted = (int) Math.min( wanted * 2L, maxDoc );
+                }
+            }
+            finally
             {
-                // with filter is hard: we go for max val and let's see what will filter throw out to fulfil count to
-                // return
-                topDocs =
-                    searcher.search( buildQuery( fromTime, toTime, types, subTypes ), null, Integer.MAX_VALUE,
-                                     new Sort( new SortField( TIMESTAMP, SortField.LONG, true ) ) );
+                multiReader.close();
             }
-            if ( topDocs.scoreDocs.length == 0 )
+        }
+        finally
+        {
+            for ( int i = 0; i < partitionSearchers.size(); i++ )
             {
-                // nothing found on index
-                return;
+                searchedPartitions.get( i ).searcherManager.release( partitionSearchers.get( i ) );
             }
+        }
+    }
 
-            // build result
-            int i = 0;
-            int returned = 0;
-            while ( true )
+    protected int purge( final long fromTime, final long toTime, final Set<String> types, final Set<String> subTypes )
+        throws IOException
+    {
+        final Query q = buildQuery( fromTime, toTime, types, subTypes );
+        int result = 0;
+        // partitions starting after toTime cannot have matching records
+        for ( Map.Entry<Long, Partition> entry : partitions.headMap( toTime, true ).entrySet() )
+        {
+            final Partition partition = entry.getValue();
+            synchronized ( partition )
             {
-                if ( i >= topDocs.scoreDocs.length || returned >= count )
+                final int purged = partition.purge( q );
+                if ( purged < 0 )
                 {
-                    break;
+                    // partition was dropped, unregister it before any add could get it again
+                    partitions.remove( entry.getKey(), partition );
+                    result += -purged;
                 }
-
-                Document doc = searcher.doc( topDocs.scoreDocs[i++].doc );
-                TimelineRecord data = buildData( doc );
-                if ( filter != null && !filter.accept( data ) )
-                {
-                    data = null;
-                    continue;
-                }
-                // skip the unneeded stuff
-                // Warning: this means we skip the needed FILTERED stuff out!
-                if ( from > 0 )
+                else
                 {
-                    from--;
-                    continue;
+                    result += purged;
                 }
-                returned++;
-                if ( !callback.processNext( data ) )
+            }
+        }
+        return result;
+    }
+
+    // ==
+
+    protected void closePartitions()
+        throws IOException
+    {
+        try
+        {
+            for ( Map.Entry<Long, Partition> entry : partitions.entrySet() )
+            {
+                final Partition partition = entry.getValue();
+                synchronized ( partition )
                 {
-                    break;
+                    try
+                    {
+                        partition.close();
+                    }
+                    finally
+                    {
+                        // unregister before any add could get it again
+                        partitions.remove( entry.getKey(), partition );
+                    }
                 }
             }
         }
         finally
         {
-            searcherManager.release( searcher );
+            partitions.clear();
         }
     }
 
-    protected int purge( final long fromTime, final long toTime, final Set<String> types, final Set<String> subTypes )
+    protected Partition getPartition( final long timestamp )
         throws IOException
     {
-        searcherManager.maybeRefresh();
-        final IndexSearcher searcher = searcherManager.acquire();
+        final long key = timestamp - ( ( timestamp % partitionMillis ) + partitionMillis ) % partitionMillis;
+        Partition partition = partitions.get( key );
+        if ( partition == null )
+        {
+            synchronized ( partitions )
+            {
+                partition = partitions.get( key );
+                if ( partition == null )
+                {
+                    partition = new Partition( new File( indexDirectory, formatPartitionName( key ) ), false );
+                    partitions.put( key, partition );
+                }
+            }
+        }
+        return partition;
+    }
+
+    protected String formatPartitionName( final long key )
+    {
+        final SimpleDateFormat format = new SimpleDateFormat( PARTITION_NAME_DATE_FORMAT );
+        format.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+        return format.format( key );
+    }
+
+    protected long parsePartitionName( final String name )
+        throws IOException
+    {
+        final SimpleDateFormat format = new SimpleDateFormat( PARTITION_NAME_DATE_FORMAT );
+        format.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
         try
         {
-            if ( searcher.maxDoc() == 0 )
+            return format.parse( name ).getTime();
+        }
+        catch ( ParseException e )
+        {
+            throw new IOException( "Invalid timeline index partition name: " + name, e );
+        }
+    }
+
+    protected static IndexWriterConfig createIndexWriterConfig()
+    {
+        final IndexWriterConfig config =
+            new IndexWriterConfig( Version.LUCENE_36, new StandardAnalyzer( Version.LUCENE_36 ) );
+        config.setMergeScheduler( new SerialMergeScheduler() );
+        config.setRAMBufferSizeMB( 2.0 );
+        return config;
+    }
+
+    /**
+     * One sub-index of the timeline. Adding documents and dropping the partition are mutually exclusive, so no
+     * document can get lost by being added to a partition being dropped.
+     */
+    protected static class Partition
+    {
+        private final File partitionDirectory;
+
+        private final boolean legacy;
+
+        private final Directory directory;
+
+        private final IndexWriter indexWriter;
+
+        private final SearcherManager searcherManager;
+
+        private volatile boolean dirty;
+
+        private boolean closed;
+
+        protected Partition( final File partitionDirectory, final boolean legacy )
+            throws IOException
+        {
+            this.partitionDirectory = partitionDirectory;
+            this.legacy = legacy;
+            this.directory = FSDirectory.open( partitionDirectory );
+            IndexWriter writer = null;
+            try
             {
-                // empty index, nothing to purge
-                return 0;
+                if ( IndexReader.indexExists( directory ) && IndexWriter.isLocked( directory ) )
+                {
+                    IndexWriter.unlock( directory );
+                }
+                writer = new IndexWriter( directory, createIndexWriterConfig() );
+                writer.commit();
+                this.searcherManager = new SearcherManager( writer, false, new SearcherFactory() );
+                this.indexWriter = writer;
             }
+            catch ( IOException e )
+            {
+                if ( writer != null )
+                {
+                    writer.close();
+                }
+                directory.close();
+                throw e;
+            }
+        }
 
-            final Query q = buildQuery( fromTime, toTime, types, subTypes );
-            // just to know how many will we delete, will not actually load 'em up
-            final TopFieldDocs topDocs =
-                searcher.search( q, null, searcher.maxDoc(),
-                                 new Sort( new SortField( TIMESTAMP, SortField.LONG, true ) ) );
-            if ( topDocs.scoreDocs.length == 0 )
+        protected synchronized boolean addDocument( final Document document )
+            throws IOException
+        {
+            if ( closed )
             {
-                // nothing matched to be purged
-                return 0;
+                return false;
             }
-            indexWriter.deleteDocuments( q );
-            indexWriter.commit();
-            indexWriter.optimize();
-            return topDocs.scoreDocs.length;
+            indexWriter.addDocument( document );
+            dirty = true;
+            return true;
         }
-        finally
+
+        protected synchronized void commit()
+            throws IOException
         {
-            searcherManager.release( searcher );
+            if ( dirty && !closed )
+            {
+                indexWriter.commit();
+                dirty = false;
+            }
         }
-    }
 
-    // ==
+        /**
+         * Deletes documents matching query, and returns their count. If all the documents matched, partition is
+         * dropped instead, and negated count is returned.
+         */
+        protected synchronized int purge( final Query query )
+            throws IOException
+        {
+            if ( closed )
+            {
+                return 0;
+            }
+            searcherManager.maybeRefresh();
+            final IndexSearcher searcher = searcherManager.acquire();
+            final int numDocs;
+            final TotalHitCountCollector collector = new TotalHitCountCollector();
+            try
+            {
+                numDocs = searcher.getIndexReader().numDocs();
+                searcher.search( query, collector );
+            }
+            finally
+            {
+                searcherManager.release( searcher );
+            }
+            final int matched = collector.getTotalHits();
+            if ( matched == 0 )
+            {
+                return 0;
+            }
+            else if ( matched < numDocs )
+            {
+                indexWriter.deleteDocuments( query );
+                indexWriter.commit();
+                dirty = false;
+                return matched;
+            }
+            else
+            {
+                drop();
+                return -matched;
+            }
+        }
 
-    protected void closeIndexWriter()
-        throws IOException
-    {
-        if ( searcherManager != null )
+        protected synchronized void close()
+            throws IOException
         {
-            searcherManager.close();
-            searcherManager = null;
+            if ( !closed )
+            {
+                closed = true;
+                try
+                {
+                    searcherManager.close();
+                    indexWriter.commit();
+                    indexWriter.close();
+                }
+                finally
+                {
+                    directory.close();
+                }
+            }
         }
-        if ( indexWriter != null )
+
+        protected void drop()
+            throws IOException
         {
-            indexWriter.commit();
-            indexWriter.close();
-            indexWriter = null;
+            closed = true;
+            try
+            {
+                searcherManager.close();
+                indexWriter.rollback();
+                if ( legacy )
+                {
+                    // legacy partition shares directory with partitions, delete index files only
+                    for ( String name : directory.listAll() )
+                    {
+                        directory.deleteFile( name );
+                    }
+                }
+            }
+            finally
+            {
+                directory.close();
+            }
+            if ( !legacy )
+            {
+                FileUtils.deleteDirectory( partitionDirectory );
+            }
         }
     }
 
@@ -282,13 +592,84 @@ public class DefaultTimelineIndexer
                             Field.Store.YES, Field.Index.NOT_ANALYZED ) );
         doc.add( new Field( TYPE, record.getType(), Field.Store.YES, Field.Index.NOT_ANALYZED ) );
         doc.add( new Field( SUBTYPE, record.getSubType(), Field.Store.YES, Field.Index.NOT_ANALYZED ) );
+        doc.add( new Field( TERMS_INDEXED, "1", Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS ) );
         for ( Map.Entry<String, String> dataEntry : record.getData().entrySet() )
         {
             doc.add( new Field( dataEntry.getKey(), dataEntry.getValue(), Field.Store.YES, Field.Index.ANALYZED ) );
+            doc.add( new Field( TERM_PREFIX + dataEntry.getKey(), StringUtils.left( dataEntry.getValue(),
+                MAX_TERM_LENGTH ), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS ) );
         }
         return doc;
     }
 
+    /**
+     * Builds query that applies the term part of the filter too, if possible. The filter itself is still to be
+     * applied on the hits.
+     */
+    protected Query buildQuery( final IndexSearcher searcher, final long from, final long to,
+                                final Set<String> types, final Set<String> subTypes, final TimelineFilter filter )
+        throws IOException
+    {
+        final Query query = buildQuery( from, to, types, subTypes );
+        if ( !( filter instanceof TermTimelineFilter ) )
+        {
+            return query;
+        }
+        final BooleanQuery termsQuery = buildTermsQuery( (TermTimelineFilter) filter );
+        if ( termsQuery.clauses().isEmpty() )
+        {
+            return query;
+        }
+        final BooleanQuery result = new BooleanQuery();
+        result.add( query, Occur.MUST );
+        final Term termsIndexed = new Term( TERMS_INDEXED, "1" );
+        if ( searcher.getIndexReader().docFreq( termsIndexed ) < searcher.maxDoc() )
+        {
+            // index has legacy documents without terms, let them through to be filtered in memory
+            final BooleanQuery legacyQuery = new BooleanQuery();
+            legacyQuery.add( new MatchAllDocsQuery(), Occur.MUST );
+            legacyQuery.add( new TermQuery( termsIndexed ), Occur.MUST_NOT );
+            final BooleanQuery eitherQuery = new BooleanQuery();
+            eitherQuery.add( termsQuery, Occur.SHOULD );
+            eitherQuery.add( legacyQuery, Occur.SHOULD );
+            result.add( eitherQuery, Occur.MUST );
+        }
+        else
+        {
+            result.add( termsQuery, Occur.MUST );
+        }
+        return result;
+    }
+
+    protected BooleanQuery buildTermsQuery( final TermTimelineFilter filter )
+    {
+        final BooleanQuery result = new BooleanQuery();
+        for ( Map.Entry<String, Set<String>> entry : filter.getValues().entrySet() )
+        {
+            if ( entry.getValue().size() > MAX_TERM_VALUES )
+            {
+                continue;
+            }
+            final BooleanQuery valuesQuery = new BooleanQuery();
+            for ( String value : entry.getValue() )
+            {
+                // values are indexed truncated, the filter sorts out false positives
+                valuesQuery.add( new TermQuery( new Term( TERM_PREFIX + entry.getKey(), StringUtils.left( value,
+                    MAX_TERM_LENGTH ) ) ), Occur.SHOULD );
+            }
+            result.add( valuesQuery, Occur.MUST );
+        }
+        for ( Map.Entry<String, String> entry : filter.getPrefixes().entrySet() )
+        {
+            if ( entry.getValue().length() > MAX_TERM_LENGTH )
+            {
+                continue;
+            }
+            result.add( new PrefixQuery( new Term( TERM_PREFIX + entry.getKey(), entry.getValue() ) ), Occur.MUST );
+        }
+        return result;
+    }
+
     protected Query buildQuery( final long from, final long to, final Set<String> types, final Set<String> subTypes )
     {
         if ( isEmptySet( types ) && isEmptySet( subTypes ) )
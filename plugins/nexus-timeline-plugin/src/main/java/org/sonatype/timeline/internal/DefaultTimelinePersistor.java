@@ -29,7 +29,9 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -64,12 +66,16 @@ public class DefaultTimelinePersistor
 
     private int rollingIntervalMillis;
 
+    private int repairDaysCountRestored;
+
     private File persistDirectory;
 
     private long lastRolledTimestamp = 0L;
 
     private File lastRolledFile;
 
+    private final Set<File> unsyncedFiles = new LinkedHashSet<File>();
+
     // ==
     // Public API
 
@@ -87,6 +93,7 @@ public class DefaultTimelinePersistor
             this.persistDirectory.mkdirs();
         }
         this.rollingIntervalMillis = configuration.getPersistRollingIntervalMillis();
+        this.repairDaysCountRestored = configuration.getRepairDaysCountRestored();
     }
 
     /**
@@ -102,7 +109,9 @@ public class DefaultTimelinePersistor
         OutputStream out = null;
         try
         {
-            out = new BufferedOutputStream( new FileOutputStream( getDataFile(), true ) );
+            final File dataFile = getDataFile();
+            unsyncedFiles.add( dataFile );
+            out = new BufferedOutputStream( new FileOutputStream( dataFile, true ) );
             for ( TimelineRecord record : records )
             {
                 toProto( record ).writeDelimitedTo( out );
@@ -115,6 +124,34 @@ public class DefaultTimelinePersistor
         }
     }
 
+    /**
+     * Forces the data files written since last invocation to the disk.
+     *
+     * @throws IOException
+     * @since 2.4
+     */
+    protected synchronized void sync()
+        throws IOException
+    {
+        for ( Iterator<File> itr = unsyncedFiles.iterator(); itr.hasNext(); )
+        {
+            final File file = itr.next();
+            if ( file.isFile() )
+            {
+                final FileOutputStream fos = new FileOutputStream( file, true );
+                try
+                {
+                    fos.getFD().sync();
+                }
+                finally
+                {
+                    IOUtil.close( fos );
+                }
+            }
+            itr.remove();
+        }
+    }
+
     /**
      * Only one method setting AND reading lastRolledTimestamp and lastRolledFile, called only from #persist that is already synced.
      *
@@ -152,47 +189,14 @@ public class DefaultTimelinePersistor
     protected void readAllSinceDays( final int days, final TimelineCallback callback )
         throws IOException
     {
-        // read data files
-        final File[] files = persistDirectory.listFiles( new FilenameFilter()
-        {
-            public boolean accept( File dir, String fname )
-            {
-                return V3_DATA_FILE_NAME_PATTERN.matcher( fname ).matches();
-            }
-        } );
+        final File[] files = listDataFiles();
 
         // do we have any?
-        if ( files == null || files.length == 0 )
+        if ( files.length == 0 )
         {
             return;
         }
 
-        // sort it, youngest goes 1st
-        Arrays.sort( files, new Comparator<File>()
-        {
-            public int compare( File f1, File f2 )
-            {
-                final long f1ts = getTimestampedFileNameTimestamp( f1 );
-                final long f2ts = getTimestampedFileNameTimestamp( f2 );
-
-                // "reverse" the sort, we need newest-first
-                final long result = -( f1ts - f2ts );
-
-                if ( result < 0 )
-                {
-                    return -1;
-                }
-                else if ( result > 0 )
-                {
-                    return 1;
-                }
-                else
-                {
-                    return 0;
-                }
-            }
-        } );
-
         // get the "last applicable" file time stamp if needed: it is the youngest (1st) minus (going into past) as many
         // days as wanted.
         final long oldestFileTimestampThreshold =
@@ -242,6 +246,90 @@ public class DefaultTimelinePersistor
         }
     }
 
+    /**
+     * Deletes data files holding only records written before given timestamp, that are not needed to repair the
+     * index either (see {@link TimelineConfiguration#getRepairDaysCountRestored()}).
+     *
+     * @param timestamp
+     * @return the count of deleted files.
+     * @since 2.4
+     */
+    protected synchronized int purge( final long timestamp )
+    {
+        final File[] files = listDataFiles();
+        if ( files.length == 0 )
+        {
+            return 0;
+        }
+        final long threshold =
+            Math.min( timestamp, getTimestampedFileNameTimestamp( files[0] )
+                - ( repairDaysCountRestored * 24L * 60L * 60L * 1000L ) );
+        int result = 0;
+        long youngerFileTimestamp = Long.MAX_VALUE;
+        for ( File file : files )
+        {
+            // younger file rolled before threshold, hence this one was written before it
+            if ( youngerFileTimestamp <= threshold && !file.equals( lastRolledFile ) )
+            {
+                if ( file.delete() )
+                {
+                    unsyncedFiles.remove( file );
+                    result++;
+                }
+            }
+            youngerFileTimestamp = getTimestampedFileNameTimestamp( file );
+        }
+        return result;
+    }
+
+    /**
+     * Returns the data files sorted by their timestamp, youngest first.
+     *
+     * @return
+     */
+    protected File[] listDataFiles()
+    {
+        final File[] files = persistDirectory.listFiles( new FilenameFilter()
+        {
+            public boolean accept( File dir, String fname )
+            {
+                return V3_DATA_FILE_NAME_PATTERN.matcher( fname ).matches();
+            }
+        } );
+
+        if ( files == null )
+        {
+            return new File[0];
+        }
+
+        // sort it, youngest goes 1st
+        Arrays.sort( files, new Comparator<File>()
+        {
+            public int compare( File f1, File f2 )
+            {
+                final long f1ts = getTimestampedFileNameTimestamp( f1 );
+                final long f2ts = getTimestampedFileNameTimestamp( f2 );
+
+                // "reverse" the sort, we need newest-first
+                final long result = -( f1ts - f2ts );
+
+                if ( result < 0 )
+                {
+                    return -1;
+                }
+                else if ( result > 0 )
+                {
+                    return 1;
+                }
+                else
+                {
+                    return 0;
+                }
+            }
+        } );
+        return files;
+    }
+
     /**
      * Reads a whole file into memory, and in case of any problem, it returns an empty collection, making this file to
      * be skipped.
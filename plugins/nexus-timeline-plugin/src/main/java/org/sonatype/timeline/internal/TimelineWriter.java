@@ -0,0 +1,289 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.timeline.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.timeline.TimelineRecord;
+
+/**
+ * Group commit writer of timeline records. Records are appended to a bounded in-memory ring, that is drained by one
+ * single writer thread, that hands them over to the {@link Sink} in batches, and commits the sink at most once per
+ * commit interval. Callers needing to see their own writes (like searches) should call {@link #awaitApplied()} before
+ * reading.
+ *
+ * @since 2.4
+ */
+public class TimelineWriter
+    implements Runnable
+{
+    /**
+     * The receiving end of the writer, invoked from the writer thread only.
+     */
+    public static interface Sink
+    {
+        /**
+         * Writes out a batch of records (without committing).
+         */
+        void write( List<TimelineRecord> batch )
+            throws IOException;
+
+        /**
+         * Commits all the batches written since last commit.
+         */
+        void commit()
+            throws IOException;
+    }
+
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * Sentinel put into the ring by {@link #stop()}, as interrupting the writer thread might corrupt the index.
+     */
+    private static final TimelineRecord STOP = new TimelineRecord( 0L, "stop", "stop", null );
+
+    private static final long AWAIT_APPLIED_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis( 30 );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Sink sink;
+
+    private final long commitIntervalMillis;
+
+    private final BlockingQueue<TimelineRecord> ring;
+
+    private final Object appliedLock = new Object();
+
+    private long enqueued;
+
+    private long applied;
+
+    private volatile boolean running;
+
+    private volatile Thread thread;
+
+    public TimelineWriter( final Sink sink, final int commitIntervalMillis, final int queueSize )
+    {
+        this.sink = sink;
+        this.commitIntervalMillis = Math.max( 0, commitIntervalMillis );
+        this.ring = new ArrayBlockingQueue<TimelineRecord>( Math.max( 1, queueSize ) );
+    }
+
+    public synchronized void start()
+    {
+        if ( thread == null )
+        {
+            running = true;
+            thread = new Thread( this, "Timeline Writer" );
+            thread.setDaemon( true );
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread, after it drained all the records enqueued so far and committed them.
+     */
+    public synchronized void stop()
+    {
+        if ( thread != null )
+        {
+            running = false;
+            try
+            {
+                ring.put( STOP );
+                thread.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Enqueues records to be written. Blocks if the ring is full, until the writer thread makes room.
+     *
+     * @return {@code true} if records were enqueued, {@code false} if writer is not running.
+     */
+    public boolean add( final TimelineRecord... records )
+    {
+        if ( !running )
+        {
+            return false;
+        }
+        // enqueueing and counting must be atomic, as readers rely on FIFO ordering in awaitApplied
+        synchronized ( ring )
+        {
+            try
+            {
+                for ( TimelineRecord record : records )
+                {
+                    ring.put( record );
+                    synchronized ( appliedLock )
+                    {
+                        enqueued++;
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all the records enqueued before this call are handed over to the sink.
+     */
+    public void awaitApplied()
+    {
+        final long deadline = System.currentTimeMillis() + AWAIT_APPLIED_TIMEOUT_MILLIS;
+        synchronized ( appliedLock )
+        {
+            final long target = enqueued;
+            while ( applied < target && thread != null && Thread.currentThread() != thread )
+            {
+                final long remaining = deadline - System.currentTimeMillis();
+                if ( remaining <= 0 )
+                {
+                    logger.debug( "Timed out waiting for timeline writer to apply {} records", target - applied );
+                    return;
+                }
+                try
+                {
+                    appliedLock.wait( remaining );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the count of records waiting in the ring.
+     */
+    public int getQueueDepth()
+    {
+        return ring.size();
+    }
+
+    // ==
+
+    @Override
+    public void run()
+    {
+        final List<TimelineRecord> batch = new ArrayList<TimelineRecord>( MAX_BATCH_SIZE );
+        boolean dirty = false;
+        boolean stopping = false;
+        long nextCommit = System.currentTimeMillis() + commitIntervalMillis;
+        while ( !stopping )
+        {
+            try
+            {
+                final long wait = dirty ? nextCommit - System.currentTimeMillis() : commitIntervalMillis;
+                final TimelineRecord first = ring.poll( Math.max( 1, wait ), TimeUnit.MILLISECONDS );
+                if ( first != null )
+                {
+                    batch.add( first );
+                    ring.drainTo( batch, MAX_BATCH_SIZE - 1 );
+                    stopping = removeStop( batch );
+                    if ( !batch.isEmpty() )
+                    {
+                        write( batch );
+                        dirty = true;
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                // nobody should interrupt us, but if so, go for a clean exit
+                stopping = true;
+            }
+            if ( dirty && ( stopping || System.currentTimeMillis() >= nextCommit ) )
+            {
+                commit();
+                dirty = false;
+                nextCommit = System.currentTimeMillis() + commitIntervalMillis;
+            }
+        }
+        // late comers that slipped in while stopping
+        ring.drainTo( batch );
+        removeStop( batch );
+        if ( !batch.isEmpty() )
+        {
+            write( batch );
+            commit();
+        }
+    }
+
+    private boolean removeStop( final List<TimelineRecord> batch )
+    {
+        boolean found = false;
+        for ( Iterator<TimelineRecord> itr = batch.iterator(); itr.hasNext(); )
+        {
+            if ( itr.next() == STOP )
+            {
+                itr.remove();
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    protected void write( final List<TimelineRecord> batch )
+    {
+        try
+        {
+            sink.write( batch );
+        }
+        catch ( Exception e )
+        {
+            logger.warn( "Failed to write {} timeline records", batch.size(), e );
+        }
+        finally
+        {
+            synchronized ( appliedLock )
+            {
+                applied += batch.size();
+                appliedLock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    protected void commit()
+    {
+        try
+        {
+            sink.commit();
+        }
+        catch ( Exception e )
+        {
+            logger.warn( "Failed to commit timeline records", e );
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.feeds;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.sonatype.nexus.rest.feeds.FeedCache.CachedFeed;
+import org.sonatype.nexus.timeline.NexusTimeline;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.sun.syndication.feed.synd.SyndEntry;
+import com.sun.syndication.feed.synd.SyndEntryImpl;
+import com.sun.syndication.feed.synd.SyndFeed;
+import com.sun.syndication.feed.synd.SyndFeedImpl;
+
+public class FeedCacheTest
+    extends TestSupport
+{
+    @Mock
+    private NexusTimeline nexusTimeline;
+
+    private RecordingLoader loader;
+
+    private FeedCache feedCache;
+
+    @Before
+    public void setup()
+    {
+        loader = new RecordingLoader();
+        feedCache = new FeedCache( nexusTimeline, 10, Long.MAX_VALUE );
+        when( nexusTimeline.getGeneration() ).thenReturn( 2L );
+        when( nexusTimeline.getPurgeGeneration() ).thenReturn( 1L );
+    }
+
+    @Test
+    public void unchangedGenerationServesCachedFeed()
+        throws Exception
+    {
+        loader.records.addAll( Arrays.asList( "b", "a" ) );
+        final CachedFeed first = feedCache.getFeed( "key", null, 5, loader );
+        final CachedFeed second = feedCache.getFeed( "key", null, 5, loader );
+
+        assertThat( second, sameInstance( first ) );
+        assertThat( loader.loads, equalTo( Arrays.asList( "null/5" ) ) );
+    }
+
+    @Test
+    public void feedLoadedWhileTimelineChangedIsNotCached()
+        throws Exception
+    {
+        loader.records.addAll( Arrays.asList( "b", "a" ) );
+        // a record was added while the first feed was loading
+        when( nexusTimeline.getGeneration() ).thenReturn( 2L, 3L );
+        feedCache.getFeed( "key", null, 5, loader );
+        feedCache.getFeed( "key", null, 5, loader );
+        feedCache.getFeed( "key", null, 5, loader );
+
+        assertThat( loader.loads, equalTo( Arrays.asList( "null/5", "null/5" ) ) );
+    }
+
+    @Test
+    public void newRecordsArePrepended()
+        throws Exception
+    {
+        loader.records.addAll( Arrays.asList( "b", "a" ) );
+        final CachedFeed first = feedCache.getFeed( "key", null, 3, loader );
+
+        loader.records.add( 0, "d" );
+        loader.records.add( 0, "c" );
+        when( nexusTimeline.getGeneration() ).thenReturn( 4L );
+        final CachedFeed second = feedCache.getFeed( "key", null, 3, loader );
+
+        assertThat( loader.loads, equalTo( Arrays.asList( "null/3", "0/3" ) ) );
+        assertThat( titles( second ), equalTo( Arrays.asList( "c", "d", "b" ) ) );
+        assertThat( second.getTag(), not( equalTo( first.getTag() ) ) );
+    }
+
+    @Test
+    public void recordsOfOtherFeedsKeepTag()
+        throws Exception
+    {
+        loader.records.addAll( Arrays.asList( "b", "a" ) );
+        final CachedFeed first = feedCache.getFeed( "key", null, 3, loader );
+
+        // a record was added to timeline, but it is not part of this feed
+        when( nexusTimeline.getGeneration() ).thenReturn( 3L );
+        final CachedFeed second = feedCache.getFeed( "key", null, 3, loader );
+
+        assertThat( loader.loads, equalTo( Arrays.asList( "null/3", "0/2" ) ) );
+        assertThat( titles( second ), equalTo( Arrays.asList( "b", "a" ) ) );
+        assertThat( second.getTag(), equalTo( first.getTag() ) );
+        assertThat( second.getContent(), sameInstance( first.getContent() ) );
+    }
+
+    @Test
+    public void purgeRebuildsFeed()
+        throws Exception
+    {
+        loader.records.addAll( Arrays.asList( "b", "a" ) );
+        feedCache.getFeed( "key", null, 3, loader );
+
+        loader.records.remove( "a" );
+        when( nexusTimeline.getPurgeGeneration() ).thenReturn( 2L );
+        final CachedFeed second = feedCache.getFeed( "key", null, 3, loader );
+
+        assertThat( loader.loads, equalTo( Arrays.asList( "null/3", "null/3" ) ) );
+        assertThat( titles( second ), equalTo( Arrays.asList( "b" ) ) );
+    }
+
+    @Test
+    public void pagedFeedIsRebuilt()
+        throws Exception
+    {
+        loader.records.addAll( Arrays.asList( "c", "b", "a" ) );
+        feedCache.getFeed( "key", 1, 2, loader );
+
+        loader.records.add( 0, "d" );
+        when( nexusTimeline.getGeneration() ).thenReturn( 3L );
+        final CachedFeed second = feedCache.getFeed( "key", 1, 2, loader );
+
+        assertThat( loader.loads, equalTo( Arrays.asList( "1/2", "1/2" ) ) );
+        assertThat( titles( second ), equalTo( Arrays.asList( "c", "b" ) ) );
+    }
+
+    @Test
+    public void newEntriesUnknownWhenHeadNotFetched()
+    {
+        final List<SyndEntry> cached = Arrays.asList( entry( "b" ), entry( "a" ) );
+
+        assertThat( FeedCache.getNewEntries( Arrays.asList( entry( "d" ), entry( "c" ) ), cached ), nullValue() );
+        assertThat( FeedCache.getNewEntries( new ArrayList<SyndEntry>(), cached ).size(), equalTo( 0 ) );
+        assertThat( FeedCache.getNewEntries( Arrays.asList( entry( "c" ) ), new ArrayList<SyndEntry>() ).size(),
+            equalTo( 1 ) );
+    }
+
+    // ==
+
+    private static List<String> titles( final CachedFeed cachedFeed )
+    {
+        final List<String> result = new ArrayList<String>();
+        for ( SyndEntry entry : cachedFeed.getEntries() )
+        {
+            result.add( entry.getTitle() );
+        }
+        return result;
+    }
+
+    private static SyndEntry entry( final String title )
+    {
+        final SyndEntryImpl entry = new SyndEntryImpl();
+        entry.setTitle( title );
+        entry.setLink( "http://localhost/" + title );
+        entry.setPublishedDate( new Date( title.hashCode() ) );
+        return entry;
+    }
+
+    private static class RecordingLoader
+        implements FeedCache.FeedLoader
+    {
+        private final List<String> records = new ArrayList<String>();
+
+        private final List<String> loads = new ArrayList<String>();
+
+        @Override
+        public SyndFeed load( final Integer from, final Integer count )
+            throws IOException
+        {
+            loads.add( from + "/" + count );
+            final int start = from == null ? 0 : from;
+            final int end = Math.min( records.size(), start + count );
+            final List<SyndEntry> entries = new ArrayList<SyndEntry>();
+            for ( String record : records.subList( start, end ) )
+            {
+                entries.add( entry( record ) );
+            }
+            final SyndFeedImpl feed = new SyndFeedImpl();
+            feed.setFeedType( "rss_2.0" );
+            feed.setTitle( "test" );
+            feed.setDescription( "test" );
+            feed.setLink( "http://localhost/feed" );
+            feed.setEntries( entries );
+            return feed;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.plexus.util.FileUtils;
 import org.sonatype.guice.bean.containers.InjectedTestCase;
 import org.sonatype.timeline.internal.DefaultTimeline;
 
@@ -64,14 +65,8 @@ public abstract class AbstractTimelineTestCase
     protected void cleanDirectory( File directory )
         throws Exception
     {
-        if ( directory.exists() )
-        {
-            for ( File file : directory.listFiles() )
-            {
-                file.delete();
-            }
-            directory.delete();
-        }
+        // index is partitioned into subdirectories
+        FileUtils.deleteDirectory( directory );
     }
 
     protected TimelineRecord createTimelineRecord()
@@ -21,6 +21,7 @@ import java.util.Set;
 import org.sonatype.timeline.TimelineConfiguration;
 import org.sonatype.timeline.TimelineFilter;
 import org.sonatype.timeline.TimelineRecord;
+import org.sonatype.timeline.filter.TermTimelineFilter;
 
 /**
  * Test the timeline indexer
@@ -625,4 +626,77 @@ public class TimelineIndexerTest
         assertEquals( "20", results.get( 0 ).getData().get( key ) );
         assertEquals( "28", results.get( 4 ).getData().get( key ) );
     }
+
+    public void testSearchWithTermFilter()
+        throws Exception
+    {
+        for ( int i = 0; i < 30; i++ )
+        {
+            TimelineRecord rec = createTimelineRecord( 10000000L - i * 60000L );
+            rec.getData().put( "count", "" + i );
+            rec.getData().put( "repo", "repo-" + ( i % 3 ) );
+            rec.getData().put( "path", "/org/group" + ( i % 2 ) + "/artifact" );
+
+            indexer.add( rec );
+        }
+
+        // matches 1, 7, 13, 19, 25
+        final TermTimelineFilter filter =
+            new TermTimelineFilter().withValue( "repo", "repo-1" ).withPrefix( "path", "/org/group1/" );
+
+        List<TimelineRecord> results;
+        results = asList( 0, System.currentTimeMillis(), null, null, 0, 10, filter );
+        assertEquals( 5, results.size() );
+        assertEquals( "1", results.get( 0 ).getData().get( "count" ) );
+        assertEquals( "25", results.get( 4 ).getData().get( "count" ) );
+
+        results = asList( 0, System.currentTimeMillis(), null, null, 1, 2, filter );
+        assertEquals( 2, results.size() );
+        assertEquals( "7", results.get( 0 ).getData().get( "count" ) );
+        assertEquals( "13", results.get( 1 ).getData().get( "count" ) );
+
+        // residual filter applied over the pages of hits
+        filter.withResidual( new TimelineFilter()
+        {
+            public boolean accept( TimelineRecord hit )
+            {
+                return Integer.parseInt( hit.getData().get( "count" ) ) > 10;
+            }
+        } );
+        results = asList( 0, System.currentTimeMillis(), null, null, 0, 2, filter );
+        assertEquals( 2, results.size() );
+        assertEquals( "13", results.get( 0 ).getData().get( "count" ) );
+        assertEquals( "19", results.get( 1 ).getData().get( "count" ) );
+    }
+
+    public void testPurgeDropsWholePartitions()
+        throws Exception
+    {
+        final long day = 24L * 60L * 60L * 1000L;
+        // default partitions are a week long, first two records go into 1st, the third into 2nd partition
+        indexer.add( createTimelineRecord( day ) );
+        indexer.add( createTimelineRecord( 2 * day ) );
+        indexer.add( createTimelineRecord( 10 * day ) );
+
+        assertTrue( new File( indexDirectory, "1970-01-01" ).isDirectory() );
+        assertTrue( new File( indexDirectory, "1970-01-08" ).isDirectory() );
+        assertEquals( 3, sizeOf( asList( 0, System.currentTimeMillis(), null, null, 0, 100, null ) ) );
+
+        // deletes from 1st partition only
+        assertEquals( 1, indexer.purge( 0, day, null, null ) );
+        assertTrue( new File( indexDirectory, "1970-01-01" ).isDirectory() );
+        assertEquals( 2, sizeOf( asList( 0, System.currentTimeMillis(), null, null, 0, 100, null ) ) );
+
+        // drops 1st partition
+        assertEquals( 1, indexer.purge( 0, 5 * day, null, null ) );
+        assertFalse( new File( indexDirectory, "1970-01-01" ).exists() );
+        assertTrue( new File( indexDirectory, "1970-01-08" ).isDirectory() );
+        final List<TimelineRecord> results = asList( 0, System.currentTimeMillis(), null, null, 0, 100, null );
+        assertEquals( 1, results.size() );
+        assertEquals( 10 * day, results.get( 0 ).getTimestamp() );
+
+        // partition gets recreated if needed
+        indexer.add( createTimelineRecord( 3 * day ) );
+        assertEquals( 2, sizeOf( asList( 0, System.currentTimeMillis(), null, null, 0, 100, null ) ) );
+    }
 }
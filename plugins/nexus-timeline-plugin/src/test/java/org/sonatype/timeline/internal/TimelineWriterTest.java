@@ -0,0 +1,112 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.timeline.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.sonatype.timeline.TimelineRecord;
+
+public class TimelineWriterTest
+{
+    private static class RecordingSink
+        implements TimelineWriter.Sink
+    {
+        private final List<TimelineRecord> written = Collections.synchronizedList( new ArrayList<TimelineRecord>() );
+
+        private final AtomicInteger batches = new AtomicInteger();
+
+        private final AtomicInteger commits = new AtomicInteger();
+
+        @Override
+        public void write( final List<TimelineRecord> batch )
+            throws IOException
+        {
+            batches.incrementAndGet();
+            written.addAll( batch );
+        }
+
+        @Override
+        public void commit()
+            throws IOException
+        {
+            commits.incrementAndGet();
+        }
+    }
+
+    private TimelineRecord record( final long ts )
+    {
+        return new TimelineRecord( ts, "type", "subType", Collections.<String, String> emptyMap() );
+    }
+
+    @Test
+    public void notStartedRejects()
+    {
+        final TimelineWriter writer = new TimelineWriter( new RecordingSink(), 1000, 10 );
+        assertFalse( writer.add( record( 1L ) ) );
+    }
+
+    @Test
+    public void awaitAppliedSeesOwnWritesInOrder()
+    {
+        final RecordingSink sink = new RecordingSink();
+        // long commit interval: records must be applied even before commit happens
+        final TimelineWriter writer = new TimelineWriter( sink, 60000, 16 );
+        writer.start();
+        try
+        {
+            for ( long i = 0; i < 100; i++ )
+            {
+                assertTrue( writer.add( record( i ) ) );
+            }
+            writer.awaitApplied();
+            assertEquals( 100, sink.written.size() );
+            for ( int i = 0; i < 100; i++ )
+            {
+                assertEquals( i, sink.written.get( i ).getTimestamp() );
+            }
+            assertEquals( 0, sink.commits.get() );
+        }
+        finally
+        {
+            writer.stop();
+        }
+        // stop commits once
+        assertEquals( 1, sink.commits.get() );
+    }
+
+    @Test
+    public void stopDrainsAndCommits()
+    {
+        final RecordingSink sink = new RecordingSink();
+        final TimelineWriter writer = new TimelineWriter( sink, 60000, 1000 );
+        writer.start();
+        for ( long i = 0; i < 500; i++ )
+        {
+            writer.add( record( i ) );
+        }
+        writer.stop();
+        assertEquals( 500, sink.written.size() );
+        assertTrue( sink.batches.get() <= 500 );
+        assertEquals( 1, sink.commits.get() );
+        assertFalse( writer.add( record( 1L ) ) );
+    }
+}
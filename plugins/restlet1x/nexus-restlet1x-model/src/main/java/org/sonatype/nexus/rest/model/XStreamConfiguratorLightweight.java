@@ -125,6 +125,10 @@ public class XStreamConfiguratorLightweight
         xstream.processAnnotations( MirrorResourceListResponse.class );
         xstream.processAnnotations( MirrorResourceListRequest.class );
         xstream.processAnnotations( MirrorStatusResourceListResponse.class );
+        xstream.processAnnotations( RepositoryStatisticsResourceResponse.class );
+        xstream.processAnnotations( RepositoryWarmUpResourceRequest.class );
+        xstream.processAnnotations( RepositoryWarmUpResourceResponse.class );
+        xstream.processAnnotations( RepositoryWarmUpListResourceResponse.class );
         xstream.processAnnotations( SmtpSettingsResourceRequest.class );
         xstream.processAnnotations( PlexusComponentListResourceResponse.class );
         xstream.processAnnotations( NexusRepositoryTypeListResourceResponse.class );
@@ -225,6 +229,11 @@ public class XStreamConfiguratorLightweight
         xstream.registerLocalConverter( MirrorStatusResourceListResponse.class, "data", new AliasingListConverter(
             MirrorStatusResource.class, "mirrorResource" ) );
 
+        xstream.registerLocalConverter( RepositoryWarmUpListResourceResponse.class, "data", new AliasingListConverter(
+            RepositoryWarmUpResource.class, "repository-warmup-item" ) );
+        xstream.registerLocalConverter( RepositoryWarmUpResource.class, "failures", new AliasingListConverter(
+            String.class, "failure" ) );
+
         xstream.registerLocalConverter( ContentListDescribeRequestResource.class, "requestContext",
             new AliasingListConverter( String.class, "requestContextItem" ) );
 
@@ -520,9 +520,11 @@ public abstract class AbstractResourceStoreContentPlexusResource
         {
             Tag tag = req.getConditions().getNoneMatch().get( 0 );
 
-            // this is a conditional get using ETag
-            if ( !file.getRepositoryItemAttributes().get( DigestCalculatingInspector.DIGEST_SHA1_KEY ).equals(
-                tag.getName() ) )
+            final String sha1 = file.getRepositoryItemAttributes().get( DigestCalculatingInspector.DIGEST_SHA1_KEY );
+
+            // this is a conditional get using ETag, accept both the plain SHA1 and the shielded form we send out
+            // (see StorageFileItemRepresentation)
+            if ( !sha1.equals( tag.getName() ) && !String.format( "{SHA1{%s}}", sha1 ).equals( tag.getName() ) )
             {
                 return new StorageFileItemRepresentation( file );
             }
@@ -26,6 +26,7 @@ import org.restlet.data.Status;
 import org.restlet.resource.ResourceException;
 import org.restlet.resource.Variant;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.mirror.MirrorScore;
 import org.sonatype.nexus.proxy.repository.Mirror;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
@@ -93,6 +94,14 @@ public class RepositoryMirrorStatusPlexusResource
                     resource.setId( mirror.getId() );
                     resource.setUrl( mirror.getUrl() );
                     resource.setStatus( px.getDownloadMirrors().isBlacklisted( mirror ) ? "Blacklisted" : "Available" );
+
+                    MirrorScore score = px.getDownloadMirrors().getMirrorScore( mirror );
+                    if ( score != null )
+                    {
+                        resource.setLatency( score.getLatency() );
+                        resource.setErrorRate( score.getErrorRate() );
+                        resource.setScore( score.getScore( -1 ) );
+                    }
                     
                     dto.addData( resource );
                 }
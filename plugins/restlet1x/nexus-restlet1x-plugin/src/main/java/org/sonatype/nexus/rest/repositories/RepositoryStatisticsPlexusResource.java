@@ -0,0 +1,124 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.repositories;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+
+import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.Variant;
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.statistics.RetrieveStatistics;
+import org.sonatype.nexus.proxy.statistics.RetrieveStatisticsManager;
+import org.sonatype.nexus.rest.NoSuchRepositoryAccessException;
+import org.sonatype.nexus.rest.model.RepositoryStatisticsResource;
+import org.sonatype.nexus.rest.model.RepositoryStatisticsResourceResponse;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+/**
+ * Resource exposing retrieve statistics (hits, bytes served, remote fetches and Not Found Cache hits) of a repository.
+ * 
+ * @since 2.4
+ */
+@Component( role = PlexusResource.class, hint = "RepositoryStatisticsPlexusResource" )
+@Path( RepositoryStatisticsPlexusResource.RESOURCE_URI )
+@Produces( { "application/xml", "application/json" } )
+public class RepositoryStatisticsPlexusResource
+    extends AbstractRepositoryPlexusResource
+{
+    public static final String RESOURCE_URI = "/repositories/{" + REPOSITORY_ID_KEY + "}/statistics";
+
+    @Requirement
+    private RetrieveStatisticsManager retrieveStatisticsManager;
+
+    @Override
+    public Object getPayloadInstance()
+    {
+        return null;
+    }
+
+    @Override
+    public String getResourceUri()
+    {
+        return RESOURCE_URI;
+    }
+
+    @Override
+    public PathProtectionDescriptor getResourceProtection()
+    {
+        return new PathProtectionDescriptor( "/repositories/*/statistics", "authcBasic,perms[nexus:repostatus]" );
+    }
+
+    /**
+     * Retrieve the retrieve statistics of the requested repository.
+     * 
+     * @param repositoryId The repository to access.
+     */
+    @Override
+    @GET
+    @ResourceMethodSignature( pathParams = { @PathParam( AbstractRepositoryPlexusResource.REPOSITORY_ID_KEY ) },
+                              output = RepositoryStatisticsResourceResponse.class )
+    public Object get( Context context, Request request, Response response, Variant variant )
+        throws ResourceException
+    {
+        String repoId = getRepositoryId( request );
+
+        try
+        {
+            Repository repo = getRepositoryRegistry().getRepository( repoId );
+
+            RepositoryStatisticsResourceResponse result = new RepositoryStatisticsResourceResponse();
+
+            result.setData( toResource( retrieveStatisticsManager.getStatistics( repo.getId() ) ) );
+
+            return result;
+        }
+        catch ( NoSuchRepositoryAccessException e )
+        {
+            getLogger().warn( "Repository access denied, id=" + repoId );
+
+            throw new ResourceException( Status.CLIENT_ERROR_FORBIDDEN, "Access Denied to Repository" );
+        }
+        catch ( NoSuchRepositoryException e )
+        {
+            getLogger().warn( "Repository not found, id=" + repoId );
+
+            throw new ResourceException( Status.CLIENT_ERROR_NOT_FOUND, "Repository Not Found" );
+        }
+    }
+
+    private RepositoryStatisticsResource toResource( final RetrieveStatistics statistics )
+    {
+        final RepositoryStatisticsResource resource = new RepositoryStatisticsResource();
+        resource.setRepositoryId( statistics.getRepositoryId() );
+        resource.setHits( statistics.getHits() );
+        resource.setBytes( statistics.getBytes() );
+        resource.setRemoteFetches( statistics.getRemoteFetches() );
+        resource.setNotFoundCacheHits( statistics.getNotFoundCacheHits() );
+        resource.setPrefetches( statistics.getPrefetches() );
+        resource.setPrefetchHits( statistics.getPrefetchHits() );
+        resource.setPrefetchHitRatio( statistics.getPrefetchHitRatio() );
+        return resource;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2012 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+
+import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.Variant;
+import org.sonatype.nexus.auth.ClientInfo;
+import org.sonatype.nexus.auth.ClientInfoProvider;
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.access.Action;
+import org.sonatype.nexus.proxy.access.NexusItemAuthorizer;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.warmup.CacheWarmUp;
+import org.sonatype.nexus.proxy.warmup.CacheWarmer;
+import org.sonatype.nexus.rest.NoSuchRepositoryAccessException;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpListResourceResponse;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpResource;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpResourceRequest;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpResourceResponse;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+/**
+ * Resource to warm up the caches of a proxy repository or group, by fetching a list of items ahead of demand. The
+ * warm-up runs in background, and it's progress and failures are reported by this resource. Users may warm up only
+ * items they are allowed to read, and may list and cancel only the warm-ups they started.
+ * 
+ * @since 2.4
+ */
+@Component( role = PlexusResource.class, hint = "RepositoryWarmUpPlexusResource" )
+@Path( RepositoryWarmUpPlexusResource.RESOURCE_URI )
+@Produces( { "application/xml", "application/json" } )
+@Consumes( { "application/xml", "application/json" } )
+public class RepositoryWarmUpPlexusResource
+    extends AbstractRepositoryPlexusResource
+{
+    public static final String RESOURCE_URI = "/repositories/{" + REPOSITORY_ID_KEY + "}/warmup";
+
+    @Requirement
+    private CacheWarmer cacheWarmer;
+
+    @Requirement
+    private NexusItemAuthorizer nexusItemAuthorizer;
+
+    @Requirement
+    private ClientInfoProvider clientInfoProvider;
+
+    public RepositoryWarmUpPlexusResource()
+    {
+        setModifiable( true );
+    }
+
+    @Override
+    public Object getPayloadInstance()
+    {
+        return new RepositoryWarmUpResourceRequest();
+    }
+
+    @Override
+    public String getResourceUri()
+    {
+        return RESOURCE_URI;
+    }
+
+    @Override
+    public PathProtectionDescriptor getResourceProtection()
+    {
+        return new PathProtectionDescriptor( "/repositories/*/warmup", "authcBasic,perms[nexus:cachewarmup]" );
+    }
+
+    /**
+     * Retrieve the recent cache warm-ups of the requested repository started by current user, with their progress and
+     * failures.
+     * 
+     * @param repositoryId The repository to access.
+     */
+    @Override
+    @GET
+    @ResourceMethodSignature( pathParams = { @PathParam( AbstractRepositoryPlexusResource.REPOSITORY_ID_KEY ) },
+                              output = RepositoryWarmUpListResourceResponse.class )
+    public Object get( Context context, Request request, Response response, Variant variant )
+        throws ResourceException
+    {
+        final Repository repository = getRepository( request );
+
+        final RepositoryWarmUpListResourceResponse result = new RepositoryWarmUpListResourceResponse();
+        for ( CacheWarmUp warmUp : getWarmUps( repository ) )
+        {
+            result.addData( toResource( warmUp ) );
+        }
+        return result;
+    }
+
+    /**
+     * Start warming up the caches of the requested proxy repository or group. Items are passed one per line, as
+     * repository paths, Maven coordinates or as output of "mvn dependency:tree". Items already cached and fresh are
+     * skipped. All the items must be readable by current user.
+     * 
+     * @param repositoryId The repository to warm up.
+     */
+    @Override
+    @POST
+    @ResourceMethodSignature( pathParams = { @PathParam( AbstractRepositoryPlexusResource.REPOSITORY_ID_KEY ) },
+                              input = RepositoryWarmUpResourceRequest.class,
+                              output = RepositoryWarmUpResourceResponse.class )
+    public Object post( Context context, Request request, Response response, Object payload )
+        throws ResourceException
+    {
+        final Repository repository = getRepository( request );
+
+        final RepositoryWarmUpResourceRequest warmUpRequest = (RepositoryWarmUpResourceRequest) payload;
+        final String entries =
+            warmUpRequest == null || warmUpRequest.getData() == null ? null : warmUpRequest.getData().getEntries();
+        final List<String> paths = cacheWarmer.resolvePaths( repository, entries );
+        if ( paths.isEmpty() )
+        {
+            throw new ResourceException( Status.CLIENT_ERROR_BAD_REQUEST, "No items to warm up" );
+        }
+        for ( String path : paths )
+        {
+            if ( !nexusItemAuthorizer.authorizePath( repository, new ResourceStoreRequest( path ), Action.read ) )
+            {
+                throw new ResourceException( Status.CLIENT_ERROR_FORBIDDEN, "Access Denied to Item " + path );
+            }
+        }
+
+        try
+        {
+            final RepositoryWarmUpResourceResponse result = new RepositoryWarmUpResourceResponse();
+            result.setData( toResource( cacheWarmer.warmUp( repository, paths, getCurrentUserId() ) ) );
+            response.setStatus( Status.SUCCESS_ACCEPTED );
+            return result;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new ResourceException( Status.CLIENT_ERROR_BAD_REQUEST, e.getMessage() );
+        }
+    }
+
+    /**
+     * Cancel the running cache warm-ups of the requested repository started by current user.
+     * 
+     * @param repositoryId The repository to cancel warm-ups of.
+     */
+    @Override
+    @DELETE
+    @ResourceMethodSignature( pathParams = { @PathParam( AbstractRepositoryPlexusResource.REPOSITORY_ID_KEY ) } )
+    public void delete( Context context, Request request, Response response )
+        throws ResourceException
+    {
+        final Repository repository = getRepository( request );
+
+        for ( CacheWarmUp warmUp : getWarmUps( repository ) )
+        {
+            warmUp.cancel();
+        }
+    }
+
+    // ==
+
+    /**
+     * Returns the warm-ups of given repository started by current user.
+     */
+    protected List<CacheWarmUp> getWarmUps( final Repository repository )
+    {
+        final List<CacheWarmUp> result = new ArrayList<CacheWarmUp>();
+        final String userId = getCurrentUserId();
+        if ( userId == null )
+        {
+            return result;
+        }
+        for ( CacheWarmUp warmUp : cacheWarmer.getWarmUps() )
+        {
+            if ( repository.getId().equals( warmUp.getRepositoryId() ) && userId.equals( warmUp.getUserId() ) )
+            {
+                result.add( warmUp );
+            }
+        }
+        return result;
+    }
+
+    protected RepositoryWarmUpResource toResource( final CacheWarmUp warmUp )
+    {
+        final RepositoryWarmUpResource resource = new RepositoryWarmUpResource();
+        resource.setId( warmUp.getId() );
+        resource.setRepositoryId( warmUp.getRepositoryId() );
+        resource.setState( warmUp.getState().name() );
+        resource.setTotal( warmUp.getTotal() );
+        resource.setFetched( warmUp.getFetched() );
+        resource.setSkipped( warmUp.getSkipped() );
+        resource.setNotFound( warmUp.getNotFound() );
+        resource.setFailed( warmUp.getFailed() );
+        resource.setStarted( warmUp.getStarted() );
+        resource.setFinished( warmUp.getFinished() );
+        for ( Map.Entry<String, String> failure : warmUp.getFailures().entrySet() )
+        {
+            resource.addFailure( failure.getKey() + ": " + failure.getValue() );
+        }
+        return resource;
+    }
+
+    protected String getCurrentUserId()
+    {
+        final ClientInfo clientInfo = clientInfoProvider.getCurrentThreadClientInfo();
+        return clientInfo != null ? clientInfo.getUserid() : null;
+    }
+
+    protected Repository getRepository( final Request request )
+        throws ResourceException
+    {
+        final String repoId = getRepositoryId( request );
+
+        try
+        {
+            return getRepositoryRegistry().getRepository( repoId );
+        }
+        catch ( NoSuchRepositoryAccessException e )
+        {
+            getLogger().warn( "Repository access denied, id=" + repoId );
+
+            throw new ResourceException( Status.CLIENT_ERROR_FORBIDDEN, "Access Denied to Repository" );
+        }
+        catch ( NoSuchRepositoryException e )
+        {
+            getLogger().warn( "Repository not found, id=" + repoId );
+
+            throw new ResourceException( Status.CLIENT_ERROR_NOT_FOUND, "Repository Not Found" );
+        }
+    }
+}
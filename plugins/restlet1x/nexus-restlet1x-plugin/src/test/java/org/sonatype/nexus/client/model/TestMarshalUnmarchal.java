@@ -100,6 +100,8 @@ import org.sonatype.nexus.rest.model.RepositoryRouteMemberRepository;
 import org.sonatype.nexus.rest.model.RepositoryRouteResource;
 import org.sonatype.nexus.rest.model.RepositoryRouteResourceResponse;
 import org.sonatype.nexus.rest.model.RepositoryShadowResource;
+import org.sonatype.nexus.rest.model.RepositoryStatisticsResource;
+import org.sonatype.nexus.rest.model.RepositoryStatisticsResourceResponse;
 import org.sonatype.nexus.rest.model.RepositoryStatusListResource;
 import org.sonatype.nexus.rest.model.RepositoryStatusListResourceResponse;
 import org.sonatype.nexus.rest.model.RepositoryStatusResource;
@@ -108,6 +110,11 @@ import org.sonatype.nexus.rest.model.RepositoryTargetListResource;
 import org.sonatype.nexus.rest.model.RepositoryTargetListResourceResponse;
 import org.sonatype.nexus.rest.model.RepositoryTargetResource;
 import org.sonatype.nexus.rest.model.RepositoryTargetResourceResponse;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpListResourceResponse;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpRequestResource;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpResource;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpResourceRequest;
+import org.sonatype.nexus.rest.model.RepositoryWarmUpResourceResponse;
 import org.sonatype.nexus.rest.model.RestApiSettings;
 import org.sonatype.nexus.rest.model.ScheduledServiceAdvancedResource;
 import org.sonatype.nexus.rest.model.ScheduledServiceBaseResource;
@@ -1987,6 +1994,92 @@ public class TestMarshalUnmarchal
         this.validateXmlHasNoPackageNames( response );
     }
 
+    @Test
+    public void testRepositoryStatisticsResourceResponse()
+    {
+        RepositoryStatisticsResourceResponse response = new RepositoryStatisticsResourceResponse();
+
+        RepositoryStatisticsResource data = new RepositoryStatisticsResource();
+        data.setRepositoryId( "id" );
+        data.setHits( 10 );
+        data.setBytes( 1024 );
+        data.setRemoteFetches( 5 );
+        data.setNotFoundCacheHits( 2 );
+        data.setPrefetches( 4 );
+        data.setPrefetchHits( 1 );
+        data.setPrefetchHitRatio( 0.25 );
+
+        response.setData( data );
+
+        this.marshalUnmarchalThenCompare( response );
+        this.validateXmlHasNoPackageNames( response );
+    }
+
+    @Test
+    public void testRepositoryWarmUpResourceRequest()
+    {
+        RepositoryWarmUpResourceRequest request = new RepositoryWarmUpResourceRequest();
+
+        RepositoryWarmUpRequestResource data = new RepositoryWarmUpRequestResource();
+        data.setEntries( "org.foo:bar:1.0\n/org/foo/baz/1.0/baz-1.0.pom" );
+
+        request.setData( data );
+
+        this.marshalUnmarchalThenCompare( request );
+        this.validateXmlHasNoPackageNames( request );
+    }
+
+    @Test
+    public void testRepositoryWarmUpListResourceResponse()
+    {
+        RepositoryWarmUpListResourceResponse response = new RepositoryWarmUpListResourceResponse();
+
+        RepositoryWarmUpResource data = new RepositoryWarmUpResource();
+        data.setId( "id" );
+        data.setRepositoryId( "central" );
+        data.setState( "RUNNING" );
+        data.setTotal( 10 );
+        data.setFetched( 5 );
+        data.setSkipped( 2 );
+        data.setNotFound( 1 );
+        data.setFailed( 1 );
+        data.setStarted( 1000 );
+        data.addFailure( "/org/foo/bar/1.0/bar-1.0.jar: Remote peer unavailable" );
+
+        response.addData( data );
+
+        RepositoryWarmUpResource data2 = new RepositoryWarmUpResource();
+        data2.setId( "id2" );
+        data2.setRepositoryId( "central" );
+        data2.setState( "DONE" );
+        data2.setTotal( 1 );
+        data2.setFetched( 1 );
+        data2.setStarted( 1000 );
+        data2.setFinished( 2000 );
+
+        response.addData( data2 );
+
+        this.marshalUnmarchalThenCompare( response );
+        this.validateXmlHasNoPackageNames( response );
+    }
+
+    @Test
+    public void testRepositoryWarmUpResourceResponse()
+    {
+        RepositoryWarmUpResourceResponse response = new RepositoryWarmUpResourceResponse();
+
+        RepositoryWarmUpResource data = new RepositoryWarmUpResource();
+        data.setId( "id" );
+        data.setRepositoryId( "central" );
+        data.setState( "RUNNING" );
+        data.setTotal( 10 );
+
+        response.setData( data );
+
+        this.marshalUnmarchalThenCompare( response );
+        this.validateXmlHasNoPackageNames( response );
+    }
+
     @Test
     public void testSmtpSettingsResourceRequest()
     {